@@ -0,0 +1,284 @@
+package com.sdl.hellosdlandroid;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.smartdevicelink.proxy.rpc.ImageField;
+import com.smartdevicelink.proxy.rpc.ImageResolution;
+import com.smartdevicelink.proxy.rpc.enums.FileType;
+import com.smartdevicelink.proxy.rpc.enums.ImageFieldName;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Prepares image resources for upload. Images are decoded, scaled down to the resolution the head unit
+// reports for the image field and recompressed before they are uploaded with PutFile.
+// The work is done on a background thread and results are cached in memory and on disk per resolution.
+public class ArtworkManager {
+    private static final String TAG = "SDL Artwork";
+
+    private static final String CACHE_DIRECTORY  = "artwork";
+    private static final int MEMORY_CACHE_SIZE   = 8;
+
+    // encoded images above this many bytes per pixel are recompressed with the JPEG ladder
+    private static final float BYTES_PER_PIXEL_BUDGET = 0.5f;
+    private static final int[] JPEG_QUALITY_LADDER    = { 90, 75, 60 };
+
+    public interface Listener {
+        void onArtworkReady(Artwork artwork);
+    }
+
+    public static class Artwork {
+        public final String fileName;
+        public final FileType fileType;
+        public final byte[] data;
+
+        Artwork(String fileName, FileType fileType, byte[] data) {
+            this.fileName = fileName;
+            this.fileType = fileType;
+            this.data = data;
+        }
+    }
+
+    private final Context context;
+    private final ExecutorService executor;
+
+    // recently prepared artworks by resource and resolution. accessed from the background thread only.
+    private final Map<String, Artwork> memoryCache;
+
+    // the manager is shared by all sessions. the image fields are passed per request.
+    public ArtworkManager(Context context) {
+        this.context = context.getApplicationContext();
+        this.executor = Executors.newSingleThreadExecutor();
+        this.memoryCache = new LinkedHashMap<String, Artwork>(MEMORY_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Artwork> eldest) {
+                return this.size() > MEMORY_CACHE_SIZE;
+            }
+        };
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    // prepares the resource for the image field (null if unknown). the listener is called on the callback executor.
+    // the listener receives null if the resource can't be read.
+    public void prepare(final int resource, final String name, final ImageField field,
+                        final Executor callbackExecutor, final Listener listener) {
+        this.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Artwork artwork = loadArtwork(resource, name, field);
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onArtworkReady(artwork);
+                    }
+                });
+            }
+        });
+    }
+
+    public static ImageField findImageField(List<ImageField> fields, ImageFieldName fieldName) {
+        if (fields != null) {
+            for (ImageField field : fields) {
+                if (fieldName.equals(field.getName())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    //region Background processing area
+
+    private Artwork loadArtwork(int resource, String name, ImageField field) {
+        ImageResolution resolution = field != null ? field.getImageResolution() : null;
+        int width = resolution != null && resolution.getResolutionWidth() != null ? resolution.getResolutionWidth() : 0;
+        int height = resolution != null && resolution.getResolutionHeight() != null ? resolution.getResolutionHeight() : 0;
+        boolean jpegSupported = field != null && field.getImageTypeSupported() != null
+                && field.getImageTypeSupported().contains(FileType.GRAPHIC_JPEG);
+
+        String key = resource + "_" + width + "x" + height + (jpegSupported ? "_j" : "");
+
+        Artwork artwork = this.memoryCache.get(key);
+        if (artwork == null) {
+            artwork = this.readFromDisk(key, name);
+        }
+        if (artwork == null) {
+            byte[] data = this.readBytesFromResource(resource);
+            if (data == null) {
+                return null;
+            }
+            artwork = this.processImage(data, name, width, height, jpegSupported);
+            this.writeToDisk(key, artwork);
+        }
+
+        this.memoryCache.put(key, artwork);
+        return artwork;
+    }
+
+    private Artwork processImage(byte[] data, String name, int maxWidth, int maxHeight, boolean jpegSupported) {
+        Artwork original = new Artwork(name + ".png", FileType.GRAPHIC_PNG, data);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return original;
+        }
+
+        // the head unit didn't tell a resolution or the image is small enough already
+        if (maxWidth <= 0 || maxHeight <= 0 || (options.outWidth <= maxWidth && options.outHeight <= maxHeight)) {
+            return original;
+        }
+
+        // fit into the field keeping the aspect ratio
+        float scale = Math.min((float) maxWidth / options.outWidth, (float) maxHeight / options.outHeight);
+        int width = Math.max(1, Math.round(options.outWidth * scale));
+        int height = Math.max(1, Math.round(options.outHeight * scale));
+
+        // decode subsampled to save memory for images much larger than the field
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (options.outWidth / (options.inSampleSize * 2) >= width
+                && options.outHeight / (options.inSampleSize * 2) >= height) {
+            options.inSampleSize *= 2;
+        }
+
+        Bitmap decoded = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (decoded == null) {
+            return original;
+        }
+
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+
+        try {
+            int budget = (int) (width * height * BYTES_PER_PIXEL_BUDGET);
+            Artwork result = new Artwork(name + ".png", FileType.GRAPHIC_PNG, compress(scaled, Bitmap.CompressFormat.PNG, 100));
+
+            // JPEG has no transparency. only try it for opaque images.
+            if (result.data.length > budget && jpegSupported && !scaled.hasAlpha()) {
+                for (int quality : JPEG_QUALITY_LADDER) {
+                    byte[] jpeg = compress(scaled, Bitmap.CompressFormat.JPEG, quality);
+                    if (jpeg.length < result.data.length) {
+                        result = new Artwork(name + ".jpg", FileType.GRAPHIC_JPEG, jpeg);
+                    }
+                    if (jpeg.length <= budget) {
+                        break;
+                    }
+                }
+            }
+
+            Log.v(TAG, name + ": " + data.length + " bytes resized to " + width + "x" + height
+                    + " with " + result.data.length + " bytes");
+            return result.data.length < data.length ? result : original;
+        } finally {
+            scaled.recycle();
+        }
+    }
+
+    private static byte[] compress(Bitmap bitmap, Bitmap.CompressFormat format, int quality) {
+        ByteArrayOutputStream os = new ByteArrayOutputStream(bitmap.getWidth() * bitmap.getHeight());
+        bitmap.compress(format, quality, os);
+        return os.toByteArray();
+    }
+
+    private byte[] readBytesFromResource(int resource) {
+        try {
+            return readFully(this.context.getResources().openRawResource(resource));
+        } catch (IOException e) {
+            Log.w(TAG, "Can't read image resource", e);
+            return null;
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream(is.available());
+            final int bufferSize = 4096;
+            final byte[] buffer = new byte[bufferSize];
+            int available;
+            while ((available = is.read(buffer)) >= 0) {
+                os.write(buffer, 0, available);
+            }
+            return os.toByteArray();
+        } finally {
+            try {
+                is.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    //endregion
+
+    //region Disk cache area
+
+    private File cacheFile(String key, FileType type) {
+        File directory = new File(this.context.getCacheDir(), CACHE_DIRECTORY);
+        return new File(directory, key + (FileType.GRAPHIC_JPEG.equals(type) ? ".jpg" : ".png"));
+    }
+
+    private Artwork readFromDisk(String key, String name) {
+        FileType[] types = { FileType.GRAPHIC_PNG, FileType.GRAPHIC_JPEG };
+        for (FileType type : types) {
+            File file = this.cacheFile(key, type);
+            if (file.exists()) {
+                try {
+                    byte[] data = readFully(new FileInputStream(file));
+                    String extension = FileType.GRAPHIC_JPEG.equals(type) ? ".jpg" : ".png";
+                    return new Artwork(name + extension, type, data);
+                } catch (IOException e) {
+                    Log.w(TAG, "Can't read cached artwork " + file, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeToDisk(String key, Artwork artwork) {
+        File file = this.cacheFile(key, artwork.fileType);
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
+        }
+
+        FileOutputStream os = null;
+        try {
+            os = new FileOutputStream(file);
+            os.write(artwork.data);
+        } catch (IOException e) {
+            Log.w(TAG, "Can't cache artwork " + file, e);
+            file.delete();
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    //endregion
+}
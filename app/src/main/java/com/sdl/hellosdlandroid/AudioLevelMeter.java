@@ -0,0 +1,73 @@
+package com.sdl.hellosdlandroid;
+
+// Measures the level of a captured stream of mono PCM audio: the RMS level of the last chunk and the
+// peak of the whole capture, both in dB relative to full scale.
+public class AudioLevelMeter implements AudioPassThruManager.Consumer {
+    // level reported for silence
+    public static final double MIN_LEVEL_DB = -96;
+
+    private int bitsPerSample;
+    private double lastLevelDb;
+    private double peakLevelDb;
+
+    public AudioLevelMeter() {
+        this.lastLevelDb = MIN_LEVEL_DB;
+        this.peakLevelDb = MIN_LEVEL_DB;
+    }
+
+    @Override
+    public void onCaptureStarted(int sampleRate, int bitsPerSample) {
+        this.bitsPerSample = bitsPerSample;
+        this.lastLevelDb = MIN_LEVEL_DB;
+        this.peakLevelDb = MIN_LEVEL_DB;
+    }
+
+    @Override
+    public void onChunk(AudioPassThruManager.Chunk chunk) {
+        byte[] data = chunk.getData();
+        double sum = 0;
+        int samples = 0;
+        int peak = 0;
+
+        if (this.bitsPerSample == 16) {
+            // signed, little endian
+            for (int i = 0; i + 1 < data.length; i += 2) {
+                int sample = (short) ((data[i] & 0xff) | (data[i + 1] << 8));
+                sum += (double) sample * sample;
+                peak = Math.max(peak, Math.abs(sample));
+                samples++;
+            }
+        } else {
+            // unsigned with an offset of 128
+            for (byte value : data) {
+                int sample = ((value & 0xff) - 128) << 8;
+                sum += (double) sample * sample;
+                peak = Math.max(peak, Math.abs(sample));
+                samples++;
+            }
+        }
+
+        if (samples == 0) {
+            return;
+        }
+
+        this.lastLevelDb = toDb(Math.sqrt(sum / samples));
+        this.peakLevelDb = Math.max(this.peakLevelDb, toDb(peak));
+    }
+
+    @Override
+    public void onCaptureFinished(boolean complete) {
+    }
+
+    private static double toDb(double amplitude) {
+        return amplitude > 0 ? Math.max(MIN_LEVEL_DB, 20 * Math.log10(amplitude / 32768)) : MIN_LEVEL_DB;
+    }
+
+    public double getLastLevelDb() {
+        return this.lastLevelDb;
+    }
+
+    public double getPeakLevelDb() {
+        return this.peakLevelDb;
+    }
+}
@@ -0,0 +1,294 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.EndAudioPassThru;
+import com.smartdevicelink.proxy.rpc.OnAudioPassThru;
+import com.smartdevicelink.proxy.rpc.PerformAudioPassThru;
+import com.smartdevicelink.proxy.rpc.enums.AudioType;
+import com.smartdevicelink.proxy.rpc.enums.BitsPerSample;
+import com.smartdevicelink.proxy.rpc.enums.SamplingRate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Captures the microphone of the head unit with PerformAudioPassThru. The audio arrives in chunks
+// which are passed to the consumers (e.g. a WAV writer or a level meter) as they are, without copying.
+// A consumer keeping a chunk after onChunk() retains it and releases it when done. Used from the
+// event loop of the session, except for Chunk.retain() and release() which work from any thread.
+public class AudioPassThruManager {
+    private static final String TAG = "SDL Audio";
+
+    // the format requested from the head unit. the head unit sends mono PCM, 16 bit little endian.
+    public static final int SAMPLE_RATE     = 16000;
+    public static final int BITS_PER_SAMPLE = 16;
+
+    // chunk wrappers kept for reuse
+    private static final int MAX_IDLE_CHUNKS = 8;
+
+    public interface Consumer {
+        void onCaptureStarted(int sampleRate, int bitsPerSample);
+
+        // the chunk is only valid during the call unless the consumer retains it
+        void onChunk(Chunk chunk);
+
+        // complete is false if the capture was aborted or the session closed
+        void onCaptureFinished(boolean complete);
+    }
+
+    // audio data of one OnAudioPassThru notification. the wrappers are pooled, the data isn't: it's the
+    // array the proxy parsed the notification into.
+    public static class Chunk {
+        private final AudioPassThruManager owner;
+        private byte[] data;
+        private long sequence;
+        private long receivedNs;
+        private int references;
+
+        Chunk(AudioPassThruManager owner) {
+            this.owner = owner;
+        }
+
+        public byte[] getData() {
+            return this.data;
+        }
+
+        // number of the chunk within the capture, starting at 0
+        public long getSequence() {
+            return this.sequence;
+        }
+
+        public long getReceivedNs() {
+            return this.receivedNs;
+        }
+
+        public void retain() {
+            synchronized (this.owner.idleChunks) {
+                this.references++;
+            }
+        }
+
+        public void release() {
+            this.owner.release(this);
+        }
+    }
+
+    private final RequestSender sender;
+    private final List<Consumer> consumers;
+
+    // guarded by itself
+    private final ArrayDeque<Chunk> idleChunks;
+
+    private boolean capturing;
+    private Integer performCorrelationID;
+    private long nextSequence;
+
+    // metrics of the current or last capture
+    private int chunks;
+    private int chunksDropped;
+    private long bytes;
+    private long handlingTotalNs;
+    private long handlingMaxNs;
+    private long captureStartNs;
+    private long captureStopNs;
+
+    public AudioPassThruManager(RequestSender sender) {
+        this.sender = sender;
+        this.consumers = new ArrayList<>(2);
+        this.idleChunks = new ArrayDeque<>(MAX_IDLE_CHUNKS);
+    }
+
+    //region Capture area
+
+    public boolean isCapturing() {
+        return this.capturing;
+    }
+
+    // starts a capture of at most maxDurationMs. the consumers are kept for this capture only.
+    public boolean start(String displayText, int maxDurationMs, List<Consumer> consumers) {
+        if (this.capturing) {
+            return false;
+        }
+
+        PerformAudioPassThru request = new PerformAudioPassThru();
+        request.setCorrelationID(this.sender.nextCorrelationID());
+        request.setAudioPassThruDisplayText1(displayText);
+        request.setSamplingRate(SamplingRate._16KHZ);
+        request.setBitsPerSample(BitsPerSample._16_BIT);
+        request.setAudioType(AudioType.PCM);
+        request.setMaxDuration(maxDurationMs);
+        request.setMuteAudio(true);
+
+        this.capturing = true;
+        this.performCorrelationID = request.getCorrelationID();
+        this.nextSequence = 0;
+        this.chunks = 0;
+        this.chunksDropped = 0;
+        this.bytes = 0;
+        this.handlingTotalNs = 0;
+        this.handlingMaxNs = 0;
+        this.captureStartNs = System.nanoTime();
+        this.captureStopNs = 0;
+
+        this.consumers.clear();
+        this.consumers.addAll(consumers);
+        for (Consumer consumer : this.consumers) {
+            consumer.onCaptureStarted(SAMPLE_RATE, BITS_PER_SAMPLE);
+        }
+
+        this.sender.sendRequest(request);
+        return true;
+    }
+
+    // ends the capture early. the consumers finish with the response of the capture.
+    public void stop() {
+        if (this.capturing) {
+            this.sender.sendRequest(new EndAudioPassThru());
+        }
+    }
+
+    // finishes the capture without waiting for the head unit, e.g. when the session closes
+    public void dispose() {
+        this.finish(false);
+    }
+
+    // delivers the audio data of a notification (or of a simulated stream) to the consumers
+    public void onAudioData(byte[] data) {
+        if (!this.capturing || data == null) {
+            this.chunksDropped++;
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        Chunk chunk = this.obtain();
+        chunk.data = data;
+        chunk.sequence = this.nextSequence++;
+        chunk.receivedNs = start;
+
+        for (Consumer consumer : this.consumers) {
+            try {
+                consumer.onChunk(chunk);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Consumer failed", e);
+            }
+        }
+        chunk.release();
+
+        long handling = System.nanoTime() - start;
+        this.chunks++;
+        this.bytes += data.length;
+        this.handlingTotalNs += handling;
+        this.handlingMaxNs = Math.max(this.handlingMaxNs, handling);
+    }
+
+    private void finish(boolean complete) {
+        if (!this.capturing) {
+            return;
+        }
+
+        this.capturing = false;
+        this.performCorrelationID = null;
+        this.captureStopNs = System.nanoTime();
+
+        for (Consumer consumer : this.consumers) {
+            try {
+                consumer.onCaptureFinished(complete);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Consumer failed", e);
+            }
+        }
+        this.consumers.clear();
+
+        Log.v(TAG, this.getMetricsSummary());
+    }
+
+    //endregion
+
+    //region Chunk area
+
+    private Chunk obtain() {
+        synchronized (this.idleChunks) {
+            Chunk chunk = this.idleChunks.poll();
+            if (chunk == null) {
+                chunk = new Chunk(this);
+            }
+            chunk.references = 1;
+            return chunk;
+        }
+    }
+
+    private void release(Chunk chunk) {
+        synchronized (this.idleChunks) {
+            if (--chunk.references > 0) {
+                return;
+            }
+            chunk.data = null;
+            if (this.idleChunks.size() < MAX_IDLE_CHUNKS) {
+                this.idleChunks.add(chunk);
+            }
+        }
+    }
+
+    //endregion
+
+    //region Notification & response area
+
+    public void onOnAudioPassThru(OnAudioPassThru notification) {
+        this.onAudioData(notification.getAPTData());
+    }
+
+    public void onPerformAudioPassThruResponse(RPCResponse response) {
+        if (this.performCorrelationID == null || !this.performCorrelationID.equals(response.getCorrelationID())) {
+            return;
+        }
+
+        // the capture ends successfully after the max duration or if the user pressed done
+        if (!response.getSuccess()) {
+            Log.w(TAG, "Capture ended: " + response.getResultCode());
+        }
+        this.finish(response.getSuccess());
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public int getChunks() {
+        return this.chunks;
+    }
+
+    // chunks received without a capture running
+    public int getChunksDropped() {
+        return this.chunksDropped;
+    }
+
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    public double getAverageHandlingLatencyMs() {
+        return this.chunks > 0 ? this.handlingTotalNs / 1e6 / this.chunks : 0;
+    }
+
+    public double getMaxHandlingLatencyMs() {
+        return this.handlingMaxNs / 1e6;
+    }
+
+    public double getBytesPerSecond() {
+        long end = this.captureStopNs != 0 ? this.captureStopNs : System.nanoTime();
+        long duration = end - this.captureStartNs;
+        return duration > 0 ? this.bytes * 1e9 / duration : 0;
+    }
+
+    public String getMetricsSummary() {
+        return String.format(Locale.US, "%d chunks (%d bytes, %.0f bytes/s), %d dropped, handling avg %.3f ms max %.3f ms",
+                this.chunks, this.bytes, this.getBytesPerSecond(), this.chunksDropped,
+                this.getAverageHandlingLatencyMs(), this.getMaxHandlingLatencyMs());
+    }
+
+    //endregion
+}
@@ -0,0 +1,507 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.TTSChunkFactory;
+import com.smartdevicelink.proxy.rpc.Choice;
+import com.smartdevicelink.proxy.rpc.CreateInteractionChoiceSetResponse;
+import com.smartdevicelink.proxy.rpc.CreateInteractionChoiceSet;
+import com.smartdevicelink.proxy.rpc.DeleteInteractionChoiceSet;
+import com.smartdevicelink.proxy.rpc.KeyboardProperties;
+import com.smartdevicelink.proxy.rpc.OnKeyboardInput;
+import com.smartdevicelink.proxy.rpc.PerformInteraction;
+import com.smartdevicelink.proxy.rpc.PerformInteractionResponse;
+import com.smartdevicelink.proxy.rpc.SetGlobalProperties;
+import com.smartdevicelink.proxy.rpc.enums.InteractionMode;
+import com.smartdevicelink.proxy.rpc.enums.KeyboardEvent;
+import com.smartdevicelink.proxy.rpc.enums.KeypressMode;
+import com.smartdevicelink.proxy.rpc.enums.LayoutMode;
+import com.smartdevicelink.proxy.rpc.enums.SystemContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Vector;
+
+// Caches choice sets on the head unit. A PerformInteraction with a list of choices that was used before
+// reuses the existing choice set instead of creating it again. Choice sets can be created ahead of the
+// interaction (prefetched). At most MAX_CHOICE_SETS are kept; the least recently used are deleted and
+// their IDs reused. A search shows the keyboard of the head unit, completes the entry from a prefix
+// trie and prefetches the choice sets of the likely results while the user types.
+public class ChoiceSetManager {
+    private static final String TAG = "SDL Choice";
+
+    // choice sets kept on the head unit
+    private static final int MAX_CHOICE_SETS = 16;
+
+    // choices of a search result. choice IDs are reserved in ranges of this size so ranges can be reused.
+    private static final int MAX_RESULTS = 10;
+
+    public interface InteractionListener {
+        void onChoiceSelected(String choice);
+        void onInteractionCanceled();
+    }
+
+    // a choice set created (or being created) on the head unit
+    private static class ChoiceSet {
+        final int id;
+        final int firstChoiceID;
+        // number of choice IDs reserved from firstChoiceID
+        final int capacity;
+        final List<String> choices;
+        boolean created;
+        boolean prefetched;
+        boolean used;
+        // interactions waiting for their response
+        int interactions;
+        // interactions waiting for the choice set to be created
+        final List<PerformInteraction> waiting;
+
+        ChoiceSet(int id, int firstChoiceID, int capacity, List<String> choices) {
+            this.id = id;
+            this.firstChoiceID = firstChoiceID;
+            this.capacity = capacity;
+            this.choices = choices;
+            this.waiting = new ArrayList<>(1);
+        }
+    }
+
+    // the keyboard interaction of a search
+    private static class Search {
+        final int correlationID;
+        final PrefixTrie terms;
+        final InteractionListener listener;
+        String autoCompleteText;
+
+        Search(int correlationID, PrefixTrie terms, InteractionListener listener) {
+            this.correlationID = correlationID;
+            this.terms = terms;
+            this.listener = listener;
+        }
+    }
+
+    private final RequestSender sender;
+
+    // cached choice sets by their list of choices in order of their last use
+    private final LinkedHashMap<List<String>, ChoiceSet> choiceSets;
+    // deleted choice sets whose ID and choice IDs can be used again
+    private final ArrayDeque<ChoiceSet> freeChoiceSets;
+
+    // pending requests by correlation ID
+    private final HashMap<Integer, ChoiceSet> pendingCreates;
+    private final HashMap<Integer, ChoiceSet> pendingDeletes;
+    private final HashMap<Integer, ChoiceSet> pendingInteractionSets;
+    private final HashMap<Integer, InteractionListener> pendingInteractions;
+
+    private Search search;
+
+    private int nextChoiceSetID;
+    private int nextChoiceID;
+
+    // time of the user action which opens an interaction, 0 if none is on its way
+    private long actionNs;
+
+    // metrics
+    private int choiceSetsCreated;
+    private int choiceSetsReused;
+    private int choiceSetsPrefetched;
+    private int prefetchHits;
+    private int choiceSetsDeleted;
+    private int autoCompletesSent;
+    private int interactionsShown;
+    private long showLatencyTotalNs;
+    private long showLatencyMaxNs;
+
+    public ChoiceSetManager(RequestSender sender) {
+        this.sender = sender;
+        this.choiceSets = new LinkedHashMap<>(16, 0.75f, true);
+        this.freeChoiceSets = new ArrayDeque<>();
+        this.pendingCreates = new HashMap<>();
+        this.pendingDeletes = new HashMap<>();
+        this.pendingInteractionSets = new HashMap<>();
+        this.pendingInteractions = new HashMap<>();
+        this.nextChoiceSetID = 1;
+        this.nextChoiceID = 1;
+    }
+
+    //region Interaction area
+
+    public void performInteraction(String initialText, List<String> choices, InteractionMode mode,
+                                   InteractionListener listener) {
+        this.actionNs = System.nanoTime();
+        this.perform(initialText, choices, mode, listener);
+    }
+
+    private void perform(String initialText, List<String> choices, InteractionMode mode,
+                         InteractionListener listener) {
+        CreateInteractionChoiceSet create = null;
+
+        ChoiceSet choiceSet = this.choiceSets.get(choices);
+        if (choiceSet == null) {
+            create = this.createChoiceSet(choices);
+            choiceSet = this.pendingCreates.get(create.getCorrelationID());
+            this.choiceSetsCreated++;
+        } else {
+            this.choiceSetsReused++;
+            if (choiceSet.prefetched && !choiceSet.used) {
+                this.prefetchHits++;
+            }
+        }
+        choiceSet.used = true;
+        choiceSet.interactions++;
+
+        PerformInteraction perform = new PerformInteraction();
+        perform.setCorrelationID(this.sender.nextCorrelationID());
+        perform.setInitialText(initialText);
+        perform.setInitialPrompt(TTSChunkFactory.createSimpleTTSChunks(initialText));
+        perform.setInteractionMode(mode);
+        Vector<Integer> choiceSetIDs = new Vector<>(1);
+        choiceSetIDs.add(choiceSet.id);
+        perform.setInteractionChoiceSetIDList(choiceSetIDs);
+
+        this.pendingInteractionSets.put(perform.getCorrelationID(), choiceSet);
+        if (listener != null) {
+            this.pendingInteractions.put(perform.getCorrelationID(), listener);
+        }
+
+        if (choiceSet.created) {
+            this.sender.sendRequest(perform);
+        } else {
+            // the choice set must exist before the interaction can use it. the interaction is sent when
+            // the choice set was created and canceled when it wasn't.
+            choiceSet.waiting.add(perform);
+        }
+        if (create != null) {
+            this.sender.sendRequest(create);
+        }
+
+        this.trim();
+    }
+
+    //endregion
+
+    //region Choice set area
+
+    // creates the choice set ahead of the interaction using it
+    public void prefetch(List<String> choices) {
+        if (choices.isEmpty() || this.choiceSets.containsKey(choices)) {
+            return;
+        }
+
+        CreateInteractionChoiceSet create = this.createChoiceSet(choices);
+        this.pendingCreates.get(create.getCorrelationID()).prefetched = true;
+        this.choiceSetsPrefetched++;
+        this.sender.sendRequest(create);
+
+        this.trim();
+    }
+
+    // builds the request and registers the choice set in the cache
+    private CreateInteractionChoiceSet createChoiceSet(List<String> choices) {
+        List<String> key = Collections.unmodifiableList(new ArrayList<>(choices));
+
+        ChoiceSet choiceSet;
+        ChoiceSet free = this.freeChoiceSets.peek();
+        if (free != null && free.capacity >= key.size()) {
+            this.freeChoiceSets.poll();
+            choiceSet = new ChoiceSet(free.id, free.firstChoiceID, free.capacity, key);
+        } else {
+            // choice IDs must be unique across all choice sets on the head unit
+            int capacity = Math.max(key.size(), MAX_RESULTS);
+            choiceSet = new ChoiceSet(this.nextChoiceSetID++, this.nextChoiceID, capacity, key);
+            this.nextChoiceID += capacity;
+        }
+
+        Vector<Choice> choiceList = new Vector<>(key.size());
+        for (int i = 0; i < key.size(); i++) {
+            Choice choice = new Choice();
+            choice.setChoiceID(choiceSet.firstChoiceID + i);
+            choice.setMenuName(key.get(i));
+            choice.setVrCommands(Collections.singletonList(key.get(i)));
+            choiceList.add(choice);
+        }
+
+        CreateInteractionChoiceSet request = new CreateInteractionChoiceSet();
+        request.setCorrelationID(this.sender.nextCorrelationID());
+        request.setInteractionChoiceSetID(choiceSet.id);
+        request.setChoiceSet(choiceList);
+
+        this.choiceSets.put(key, choiceSet);
+        this.pendingCreates.put(request.getCorrelationID(), choiceSet);
+
+        return request;
+    }
+
+    // deletes the least recently used choice sets above the limit
+    private void trim() {
+        Iterator<ChoiceSet> iterator = this.choiceSets.values().iterator();
+        while (this.choiceSets.size() > MAX_CHOICE_SETS && iterator.hasNext()) {
+            ChoiceSet choiceSet = iterator.next();
+            // choice sets on their way or used by an interaction stay
+            if (!choiceSet.created || choiceSet.interactions > 0) {
+                continue;
+            }
+            iterator.remove();
+
+            DeleteInteractionChoiceSet delete = new DeleteInteractionChoiceSet();
+            delete.setCorrelationID(this.sender.nextCorrelationID());
+            delete.setInteractionChoiceSetID(choiceSet.id);
+            this.pendingDeletes.put(delete.getCorrelationID(), choiceSet);
+            this.sender.sendRequest(delete);
+            this.choiceSetsDeleted++;
+        }
+    }
+
+    //endregion
+
+    //region Search area
+
+    // shows the keyboard of the head unit. the entry is completed from the terms and the choices
+    // matching the entry are shown when the user submits it.
+    public boolean startSearch(String initialText, PrefixTrie terms, InteractionListener listener) {
+        if (this.search != null) {
+            return false;
+        }
+        this.actionNs = System.nanoTime();
+
+        PerformInteraction perform = new PerformInteraction();
+        perform.setCorrelationID(this.sender.nextCorrelationID());
+        perform.setInitialText(initialText);
+        perform.setInteractionMode(InteractionMode.MANUAL_ONLY);
+        perform.setInteractionLayout(LayoutMode.KEYBOARD);
+        perform.setInteractionChoiceSetIDList(new Vector<Integer>(0));
+
+        this.search = new Search(perform.getCorrelationID(), terms, listener);
+        this.search.autoCompleteText = terms.complete("");
+
+        // the keyboard must be configured before it's shown
+        List<RPCRequest> requests = new ArrayList<>(2);
+        requests.add(this.buildKeyboardProperties(this.search.autoCompleteText));
+        requests.add(perform);
+        this.sender.sendRequests(requests, true);
+
+        // the results of an empty entry are the most likely ones
+        this.prefetch(terms.matches("", MAX_RESULTS));
+        return true;
+    }
+
+    private SetGlobalProperties buildKeyboardProperties(String autoCompleteText) {
+        KeyboardProperties properties = new KeyboardProperties();
+        // the head unit sends the whole entry with every key press
+        properties.setKeypressMode(KeypressMode.RESEND_CURRENT_ENTRY);
+        properties.setAutoCompleteText(autoCompleteText);
+
+        SetGlobalProperties request = new SetGlobalProperties();
+        request.setKeyboardProperties(properties);
+        return request;
+    }
+
+    public void onKeyboardInput(OnKeyboardInput notification) {
+        if (this.search == null) {
+            return;
+        }
+
+        if (notification.getEvent() == KeyboardEvent.KEYPRESS) {
+            this.onSearchEntryChanged(notification.getData() != null ? notification.getData() : "");
+        } else if (notification.getEvent() == KeyboardEvent.ENTRY_SUBMITTED) {
+            // the results are shown after the response of the keyboard
+            this.actionNs = System.nanoTime();
+        }
+    }
+
+    private void onSearchEntryChanged(String entry) {
+        PrefixTrie terms = this.search.terms;
+
+        String completion = terms.complete(entry);
+        if (completion != null ? !completion.equals(this.search.autoCompleteText) : this.search.autoCompleteText != null) {
+            this.search.autoCompleteText = completion;
+            this.sender.sendRequest(this.buildKeyboardProperties(completion));
+            this.autoCompletesSent++;
+        }
+
+        // the results of the entry so far and of the entry with the most likely next character
+        this.prefetch(terms.matches(entry, MAX_RESULTS));
+        String next = terms.nextPrefix(entry);
+        if (next != null) {
+            this.prefetch(terms.matches(next, MAX_RESULTS));
+        }
+    }
+
+    private void onSearchResponse(PerformInteractionResponse response) {
+        final Search search = this.search;
+        this.search = null;
+
+        String entry = response.getManualTextEntry();
+        List<String> results = response.getSuccess() && entry != null
+                ? search.terms.matches(entry, MAX_RESULTS) : Collections.<String>emptyList();
+        if (results.isEmpty()) {
+            this.actionNs = 0;
+            search.listener.onInteractionCanceled();
+            return;
+        }
+
+        if (this.actionNs == 0) {
+            this.actionNs = System.nanoTime();
+        }
+        this.perform(entry, results, InteractionMode.MANUAL_ONLY, new InteractionListener() {
+            @Override
+            public void onChoiceSelected(String choice) {
+                // chosen terms rank higher in the next search
+                search.terms.addWeight(choice, 1);
+                search.listener.onChoiceSelected(choice);
+            }
+
+            @Override
+            public void onInteractionCanceled() {
+                search.listener.onInteractionCanceled();
+            }
+        });
+    }
+
+    //endregion
+
+    //region Notification & response area
+
+    // an interaction on the screen changes the system context
+    public void onSystemContextChange(SystemContext systemContext) {
+        if (this.actionNs == 0
+                || (systemContext != SystemContext.SYSCTXT_HMI_OBSCURED && systemContext != SystemContext.SYSCTXT_VRSESSION)) {
+            return;
+        }
+
+        long latency = System.nanoTime() - this.actionNs;
+        this.actionNs = 0;
+        this.interactionsShown++;
+        this.showLatencyTotalNs += latency;
+        this.showLatencyMaxNs = Math.max(this.showLatencyMaxNs, latency);
+    }
+
+    public void onCreateInteractionChoiceSetResponse(CreateInteractionChoiceSetResponse response) {
+        ChoiceSet choiceSet = this.pendingCreates.remove(response.getCorrelationID());
+        if (choiceSet == null) {
+            return;
+        }
+
+        if (response.getSuccess()) {
+            choiceSet.created = true;
+            for (PerformInteraction perform : choiceSet.waiting) {
+                this.sender.sendRequest(perform);
+            }
+            choiceSet.waiting.clear();
+        } else {
+            // not on the head unit. the next interaction has to create it again. the ID and the choice IDs
+            // can be used again.
+            Log.w(TAG, "Choice set " + choiceSet.id + " rejected: " + response.getResultCode());
+            if (this.choiceSets.get(choiceSet.choices) == choiceSet) {
+                this.choiceSets.remove(choiceSet.choices);
+            }
+            this.freeChoiceSets.add(choiceSet);
+            for (PerformInteraction perform : choiceSet.waiting) {
+                choiceSet.interactions--;
+                this.pendingInteractionSets.remove(perform.getCorrelationID());
+                InteractionListener listener = this.pendingInteractions.remove(perform.getCorrelationID());
+                if (listener != null) {
+                    listener.onInteractionCanceled();
+                }
+            }
+            choiceSet.waiting.clear();
+        }
+    }
+
+    public void onDeleteInteractionChoiceSetResponse(RPCResponse response) {
+        ChoiceSet choiceSet = this.pendingDeletes.remove(response.getCorrelationID());
+        if (choiceSet == null) {
+            return;
+        }
+
+        if (response.getSuccess()) {
+            this.freeChoiceSets.add(choiceSet);
+        } else {
+            // the IDs may still be in use on the head unit and aren't used again
+            Log.w(TAG, "Choice set " + choiceSet.id + " not deleted: " + response.getResultCode());
+        }
+    }
+
+    public void onPerformInteractionResponse(PerformInteractionResponse response) {
+        if (this.search != null && Integer.valueOf(this.search.correlationID).equals(response.getCorrelationID())) {
+            this.onSearchResponse(response);
+            return;
+        }
+
+        ChoiceSet choiceSet = this.pendingInteractionSets.remove(response.getCorrelationID());
+        InteractionListener listener = this.pendingInteractions.remove(response.getCorrelationID());
+        if (choiceSet == null) {
+            return;
+        }
+        choiceSet.interactions--;
+        // the interaction is over whether it was shown or not
+        this.actionNs = 0;
+        if (listener == null) {
+            return;
+        }
+
+        Integer choiceID = response.getChoiceID();
+        int index = choiceID != null ? choiceID - choiceSet.firstChoiceID : -1;
+
+        if (response.getSuccess() && index >= 0 && index < choiceSet.choices.size()) {
+            listener.onChoiceSelected(choiceSet.choices.get(index));
+        } else {
+            listener.onInteractionCanceled();
+        }
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public int getChoiceSetsCreated() {
+        return this.choiceSetsCreated;
+    }
+
+    public int getChoiceSetsReused() {
+        return this.choiceSetsReused;
+    }
+
+    public int getChoiceSetsPrefetched() {
+        return this.choiceSetsPrefetched;
+    }
+
+    // interactions which found their choice set prefetched
+    public int getPrefetchHits() {
+        return this.prefetchHits;
+    }
+
+    public int getChoiceSetsDeleted() {
+        return this.choiceSetsDeleted;
+    }
+
+    public int getAutoCompletesSent() {
+        return this.autoCompletesSent;
+    }
+
+    // time from the user action to the interaction on the screen
+    public double getAverageShowLatencyMs() {
+        return this.interactionsShown > 0 ? this.showLatencyTotalNs / 1e6 / this.interactionsShown : 0;
+    }
+
+    public double getMaxShowLatencyMs() {
+        return this.showLatencyMaxNs / 1e6;
+    }
+
+    public String getMetricsSummary() {
+        return String.format(Locale.US, "%d created, %d reused, %d prefetched (%d hits), %d deleted, %d autocompletes, "
+                        + "%d shown in avg %.1f ms max %.1f ms",
+                this.choiceSetsCreated, this.choiceSetsReused, this.choiceSetsPrefetched, this.prefetchHits,
+                this.choiceSetsDeleted, this.autoCompletesSent, this.interactionsShown,
+                this.getAverageShowLatencyMs(), this.getMaxShowLatencyMs());
+    }
+
+    //endregion
+}
@@ -0,0 +1,491 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.DIDResult;
+import com.smartdevicelink.proxy.rpc.GetDTCs;
+import com.smartdevicelink.proxy.rpc.GetDTCsResponse;
+import com.smartdevicelink.proxy.rpc.ReadDID;
+import com.smartdevicelink.proxy.rpc.ReadDIDResponse;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+import com.smartdevicelink.proxy.rpc.enums.VehicleDataResultCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+// Polls the DIDs and DTCs of the ECUs of the vehicle. The DIDs of an ECU are read in batches and
+// several requests are outstanding at the same time, limited by a request rate. A value is read again
+// only after its TTL expired. The TTL doubles every time the value didn't change. The head unit
+// rejecting requests as too many pending halves the outstanding requests allowed. Requests without a
+// response are given up after a timeout and their values are read again. Failed reads are retried
+// after a back off, reads the policy doesn't allow aren't sent at all.
+// Used from the event loop of the session only.
+public class DiagnosticsCollector {
+    private static final String TAG = "SDL Diagnostics";
+
+    // the head unit accepts up to 1000 DIDs per request. smaller batches spread the load.
+    private static final int MAX_DIDS_PER_REQUEST = 100;
+    private static final int MAX_OUTSTANDING      = 4;
+
+    // responses needed to allow one more outstanding request after a rejection
+    private static final int RECOVERY_RESPONSES   = 10;
+
+    private static final long DID_TTL_MS          = 10 * 1000;
+    private static final long MAX_DID_TTL_MS      = 5 * 60 * 1000;
+    private static final long DTC_INTERVAL_MS     = 60 * 1000;
+    private static final long REQUEST_TIMEOUT_MS  = 10 * 1000;
+    // first wait after a failed GetDTCs. doubles up to the DTC interval.
+    private static final long DTC_RETRY_MS        = 5 * 1000;
+
+    public interface Listener {
+        void onDidChanged(int ecuName, int didLocation, String data);
+
+        void onDtcsChanged(int ecuName, int[] dtcs);
+    }
+
+    private static class Ecu {
+        final int name;
+        final int[] didLocations;
+        boolean dtcsPending;
+        long dtcsDueAtMs = Long.MIN_VALUE / 2;
+        long dtcsRetryMs = DTC_RETRY_MS;
+        int ecuHeader;
+        // 4 bytes each: 3 bytes DTC and 1 byte status
+        int[] dtcs;
+
+        Ecu(int name, int[] didLocations) {
+            this.name = name;
+            this.didLocations = didLocations;
+        }
+    }
+
+    // the cached value of a DID
+    private static class DidValue {
+        String data;
+        VehicleDataResultCode resultCode;
+        long readAtMs;
+        long ttlMs;
+        boolean pending;
+    }
+
+    private static class Pending {
+        final Ecu ecu;
+        // null for GetDTCs
+        final int[] didLocations;
+        final long sentAtMs;
+
+        Pending(Ecu ecu, int[] didLocations, long sentAtMs) {
+            this.ecu = ecu;
+            this.didLocations = didLocations;
+            this.sentAtMs = sentAtMs;
+        }
+    }
+
+    private final RequestSender sender;
+    private final int requestsPerSecond;
+    private Listener listener;
+
+    private final List<Ecu> ecus;
+    private int nextEcu;
+    // cached values by ECU name and DID location (ecuName << 16 | didLocation)
+    private final HashMap<Integer, DidValue> values;
+    private final HashMap<Integer, Pending> pending;
+
+    // token bucket limiting the request rate
+    private double tokens;
+    private long tokensUpdatedAtMs;
+
+    private int maxOutstanding;
+    private int responsesSinceRejection;
+    private boolean disallowed;
+    // by the permissions of the app at the HMI level
+    private boolean didsAllowed = true;
+    private boolean dtcsAllowed = true;
+
+    // metrics
+    private int requests;
+    private int didsRequested;
+    private int didsChanged;
+    private int didsUnchanged;
+    private int dtcReads;
+    private int rejections;
+    private int failures;
+    private int timeouts;
+    private long latencyTotalMs;
+    private long latencyMaxMs;
+    private int responses;
+
+    public DiagnosticsCollector(RequestSender sender, int requestsPerSecond) {
+        this.sender = sender;
+        this.requestsPerSecond = requestsPerSecond;
+        this.ecus = new ArrayList<>();
+        this.values = new HashMap<>();
+        this.pending = new HashMap<>();
+        this.maxOutstanding = MAX_OUTSTANDING;
+        this.tokens = MAX_OUTSTANDING;
+        this.tokensUpdatedAtMs = -1;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // the policy may allow diagnostics now. the next poll tries again.
+    public void onPermissionsChange() {
+        this.disallowed = false;
+    }
+
+    // which reads the permissions of the app allow. reads not allowed would be held back and answered
+    // as disallowed, so they aren't sent.
+    public void setAllowed(boolean didsAllowed, boolean dtcsAllowed) {
+        this.didsAllowed = didsAllowed;
+        this.dtcsAllowed = dtcsAllowed;
+    }
+
+    // adds an ECU to poll. ECU names and DID locations are 16 bit values.
+    public void addEcu(int ecuName, int[] didLocations) {
+        this.ecus.add(new Ecu(ecuName & 0xffff, didLocations));
+    }
+
+    //region Poll area
+
+    // sends the requests which are due and allowed by the rate. call periodically and after responses.
+    public void poll(long nowMs) {
+        this.expirePending(nowMs);
+
+        if (this.disallowed || (!this.didsAllowed && !this.dtcsAllowed)) {
+            return;
+        }
+
+        if (this.tokensUpdatedAtMs >= 0) {
+            this.tokens = Math.min(MAX_OUTSTANDING, this.tokens + (nowMs - this.tokensUpdatedAtMs) * this.requestsPerSecond / 1000.0);
+        }
+        this.tokensUpdatedAtMs = nowMs;
+
+        while (this.pending.size() < this.maxOutstanding && this.tokens >= 1) {
+            if (!this.sendNext(nowMs)) {
+                break;
+            }
+            this.tokens -= 1;
+        }
+    }
+
+    // sends the next due request of the ECUs in turn. returns false if nothing is due.
+    private boolean sendNext(long nowMs) {
+        for (int i = 0; i < this.ecus.size(); i++) {
+            Ecu ecu = this.ecus.get((this.nextEcu + i) % this.ecus.size());
+
+            if (this.dtcsAllowed && !ecu.dtcsPending && nowMs >= ecu.dtcsDueAtMs) {
+                this.nextEcu = (this.nextEcu + i + 1) % this.ecus.size();
+                this.sendGetDTCs(ecu, nowMs);
+                return true;
+            }
+
+            int[] batch = this.didsAllowed ? this.collectDueDids(ecu, nowMs) : null;
+            if (batch != null) {
+                this.nextEcu = (this.nextEcu + i + 1) % this.ecus.size();
+                this.sendReadDID(ecu, batch, nowMs);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] collectDueDids(Ecu ecu, long nowMs) {
+        int[] batch = new int[Math.min(MAX_DIDS_PER_REQUEST, ecu.didLocations.length)];
+        int count = 0;
+
+        for (int didLocation : ecu.didLocations) {
+            if (count == batch.length) {
+                break;
+            }
+
+            DidValue value = this.values.get(key(ecu.name, didLocation));
+            if (value == null) {
+                value = new DidValue();
+                value.readAtMs = Long.MIN_VALUE / 2;
+                value.ttlMs = DID_TTL_MS;
+                this.values.put(key(ecu.name, didLocation), value);
+            }
+            if (value.pending) {
+                continue;
+            }
+            if (nowMs - value.readAtMs < value.ttlMs) {
+                continue;
+            }
+
+            value.pending = true;
+            batch[count++] = didLocation;
+        }
+
+        return count > 0 ? Arrays.copyOf(batch, count) : null;
+    }
+
+    private void sendReadDID(Ecu ecu, int[] didLocations, long nowMs) {
+        List<Integer> locations = new ArrayList<>(didLocations.length);
+        for (int didLocation : didLocations) {
+            locations.add(didLocation);
+        }
+
+        ReadDID request = new ReadDID();
+        request.setCorrelationID(this.sender.nextCorrelationID());
+        request.setEcuName(ecu.name);
+        request.setDidLocation(locations);
+        this.pending.put(request.getCorrelationID(), new Pending(ecu, didLocations, nowMs));
+        this.requests++;
+        this.didsRequested += didLocations.length;
+        this.sender.sendRequest(request);
+    }
+
+    private void sendGetDTCs(Ecu ecu, long nowMs) {
+        GetDTCs request = new GetDTCs();
+        request.setCorrelationID(this.sender.nextCorrelationID());
+        request.setEcuName(ecu.name);
+        ecu.dtcsPending = true;
+        this.pending.put(request.getCorrelationID(), new Pending(ecu, null, nowMs));
+        this.requests++;
+        this.sender.sendRequest(request);
+    }
+
+    // requests without a response hold their DIDs and DTCs and take an outstanding request for good
+    private void expirePending(long nowMs) {
+        Iterator<Pending> iterator = this.pending.values().iterator();
+        while (iterator.hasNext()) {
+            Pending request = iterator.next();
+            if (nowMs - request.sentAtMs < REQUEST_TIMEOUT_MS) {
+                continue;
+            }
+
+            iterator.remove();
+            this.timeouts++;
+            if (request.didLocations == null) {
+                request.ecu.dtcsPending = false;
+            } else {
+                this.clearPending(request);
+            }
+        }
+    }
+
+    private void clearPending(Pending request) {
+        for (int didLocation : request.didLocations) {
+            DidValue value = this.values.get(key(request.ecu.name, didLocation));
+            if (value != null) {
+                value.pending = false;
+            }
+        }
+    }
+
+    private static int key(int ecuName, int didLocation) {
+        return (ecuName << 16) | (didLocation & 0xffff);
+    }
+
+    //endregion
+
+    //region Response area
+
+    public void onReadDIDResponse(ReadDIDResponse response, long nowMs) {
+        Pending request = this.pending.remove(response.getCorrelationID());
+        if (request == null || request.didLocations == null) {
+            return;
+        }
+        this.onResponse(response, request, nowMs);
+
+        if (response.getDidResult() == null && isFailure(response.getResultCode())) {
+            // read again after the TTL
+            for (int didLocation : request.didLocations) {
+                DidValue value = this.values.get(key(request.ecu.name, didLocation));
+                if (value != null) {
+                    value.readAtMs = nowMs;
+                }
+            }
+        } else if (response.getDidResult() != null) {
+            for (DIDResult result : response.getDidResult()) {
+                if (result.getDidLocation() == null) {
+                    continue;
+                }
+                DidValue value = this.values.get(key(request.ecu.name, result.getDidLocation()));
+                if (value == null) {
+                    continue;
+                }
+                this.update(request.ecu, result.getDidLocation(), value, result, nowMs);
+            }
+        }
+
+        // DIDs without a result are read again with the next batch
+        this.clearPending(request);
+
+        this.poll(nowMs);
+    }
+
+    private void update(Ecu ecu, int didLocation, DidValue value, DIDResult result, long nowMs) {
+        value.readAtMs = nowMs;
+        value.resultCode = result.getResultCode();
+
+        if (result.getResultCode() != VehicleDataResultCode.SUCCESS) {
+            // the DID doesn't exist or can't be read. don't ask again soon.
+            value.ttlMs = MAX_DID_TTL_MS;
+            return;
+        }
+
+        String data = result.getData();
+        if (data != null && data.equals(value.data)) {
+            value.ttlMs = Math.min(MAX_DID_TTL_MS, value.ttlMs * 2);
+            this.didsUnchanged++;
+        } else {
+            value.data = data;
+            value.ttlMs = DID_TTL_MS;
+            this.didsChanged++;
+            if (this.listener != null) {
+                this.listener.onDidChanged(ecu.name, didLocation, data);
+            }
+        }
+    }
+
+    public void onGetDTCsResponse(GetDTCsResponse response, long nowMs) {
+        Pending request = this.pending.remove(response.getCorrelationID());
+        if (request == null || request.didLocations != null) {
+            return;
+        }
+        this.onResponse(response, request, nowMs);
+
+        Ecu ecu = request.ecu;
+        ecu.dtcsPending = false;
+
+        if (response.getSuccess()) {
+            ecu.dtcsDueAtMs = nowMs + DTC_INTERVAL_MS;
+            ecu.dtcsRetryMs = DTC_RETRY_MS;
+            ecu.ecuHeader = response.getEcuHeader() != null ? response.getEcuHeader() : 0;
+            int[] dtcs = parseDtcs(response.getDtc());
+            this.dtcReads++;
+            if (!Arrays.equals(dtcs, ecu.dtcs)) {
+                ecu.dtcs = dtcs;
+                if (this.listener != null) {
+                    this.listener.onDtcsChanged(ecu.name, dtcs);
+                }
+            }
+        } else if (isFailure(response.getResultCode())) {
+            ecu.dtcsDueAtMs = nowMs + ecu.dtcsRetryMs;
+            ecu.dtcsRetryMs = Math.min(DTC_INTERVAL_MS, ecu.dtcsRetryMs * 2);
+        }
+
+        this.poll(nowMs);
+    }
+
+    private void onResponse(RPCResponse response, Pending request, long nowMs) {
+        long latency = nowMs - request.sentAtMs;
+        this.responses++;
+        this.latencyTotalMs += latency;
+        this.latencyMaxMs = Math.max(this.latencyMaxMs, latency);
+
+        Result result = response.getResultCode();
+        if (result == Result.TOO_MANY_PENDING_REQUESTS || result == Result.REJECTED) {
+            this.rejections++;
+            this.responsesSinceRejection = 0;
+            this.maxOutstanding = Math.max(1, this.maxOutstanding / 2);
+        } else if (result == Result.DISALLOWED || result == Result.USER_DISALLOWED) {
+            // the policy of the head unit doesn't allow diagnostics for the app
+            Log.w(TAG, "Diagnostics not allowed: " + result);
+            this.disallowed = true;
+        } else if (isFailure(result)) {
+            this.failures++;
+        } else if (this.maxOutstanding < MAX_OUTSTANDING && ++this.responsesSinceRejection >= RECOVERY_RESPONSES) {
+            this.responsesSinceRejection = 0;
+            this.maxOutstanding++;
+        }
+    }
+
+    // a failed read which isn't handled by the outstanding requests or by the permissions
+    private static boolean isFailure(Result result) {
+        return result != null && result != Result.SUCCESS && result != Result.TOO_MANY_PENDING_REQUESTS
+                && result != Result.REJECTED && result != Result.DISALLOWED && result != Result.USER_DISALLOWED;
+    }
+
+    // DTCs are hex strings of 4 bytes. unreadable DTCs are skipped.
+    private static int[] parseDtcs(List<String> dtcs) {
+        if (dtcs == null) {
+            return new int[0];
+        }
+
+        int[] parsed = new int[dtcs.size()];
+        int count = 0;
+        for (String dtc : dtcs) {
+            String hex = dtc.startsWith("0x") || dtc.startsWith("0X") ? dtc.substring(2) : dtc;
+            try {
+                parsed[count] = (int) Long.parseLong(hex, 16);
+                count++;
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Unreadable DTC " + dtc);
+            }
+        }
+        return count == parsed.length ? parsed : Arrays.copyOf(parsed, count);
+    }
+
+    //endregion
+
+    //region Result area
+
+    // the last data read from the DID or null
+    public String getDid(int ecuName, int didLocation) {
+        DidValue value = this.values.get(key(ecuName, didLocation));
+        return value != null ? value.data : null;
+    }
+
+    // the last DTCs read from the ECU or null
+    public int[] getDtcs(int ecuName) {
+        for (Ecu ecu : this.ecus) {
+            if (ecu.name == ecuName) {
+                return ecu.dtcs;
+            }
+        }
+        return null;
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public int getRequests() {
+        return this.requests;
+    }
+
+    public int getDidsRequested() {
+        return this.didsRequested;
+    }
+
+    // DIDs read without a change. each doubles the time until the DID is read again.
+    public int getDidsUnchanged() {
+        return this.didsUnchanged;
+    }
+
+    public int getRejections() {
+        return this.rejections;
+    }
+
+    // reads which failed and are retried later
+    public int getFailures() {
+        return this.failures;
+    }
+
+    // requests given up without a response
+    public int getTimeouts() {
+        return this.timeouts;
+    }
+
+    public int getPending() {
+        return this.pending.size();
+    }
+
+    public String getMetricsSummary() {
+        return String.format(Locale.US, "%d requests (%d dtc reads), %d dids requested, %d changed, %d unchanged, "
+                        + "%d rejections, %d failures, %d timeouts, latency avg %.1f ms max %d ms",
+                this.requests, this.dtcReads, this.didsRequested, this.didsChanged, this.didsUnchanged, this.rejections,
+                this.failures, this.timeouts, this.responses > 0 ? (double) this.latencyTotalMs / this.responses : 0, this.latencyMaxMs);
+    }
+
+    //endregion
+}
@@ -0,0 +1,38 @@
+package com.sdl.hellosdlandroid;
+
+import android.app.Application;
+
+public class HelloSdlApplication extends Application {
+    // shows the lock screen for all sessions. lives as long as the process.
+    private LockScreenController lockScreenController;
+
+    // remembers the head units the app registered with
+    private SdlDeviceRegistry deviceRegistry;
+
+    // the running service or null (main thread only)
+    private SdlService sdlService;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        this.lockScreenController = new LockScreenController(this);
+        this.deviceRegistry = new SdlDeviceRegistry(this);
+    }
+
+    public LockScreenController getLockScreenController() {
+        return this.lockScreenController;
+    }
+
+    public SdlDeviceRegistry getDeviceRegistry() {
+        return this.deviceRegistry;
+    }
+
+    public SdlService getSdlService() {
+        return this.sdlService;
+    }
+
+    void setSdlService(SdlService sdlService) {
+        this.sdlService = sdlService;
+    }
+}
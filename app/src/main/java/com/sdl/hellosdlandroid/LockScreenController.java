@@ -0,0 +1,378 @@
+package com.sdl.hellosdlandroid;
+
+import android.app.Activity;
+import android.app.Application;
+import android.app.Application.ActivityLifecycleCallbacks;
+import android.content.Intent;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+
+import com.smartdevicelink.proxy.rpc.enums.LockScreenStatus;
+
+import java.lang.ref.WeakReference;
+
+// Shows and hides the lock screen for the status requested by the head units. The status can be updated
+// from any thread. Updates are collected and applied in a single transition on the main thread.
+// The lock screen is either the LockScreenActivity or, in overlay mode, a view added on top of the
+// activity in the foreground which doesn't need an activity launch.
+public class LockScreenController implements ActivityLifecycleCallbacks {
+    private static final String TAG = "SDL Lock Screen";
+
+    // unlocking waits this long so a quick flip back to locked doesn't close and relaunch the lock screen
+    private static final long UNLOCK_DEBOUNCE_MS = 150;
+
+    private final Application application;
+    private final Handler mainHandler;
+
+    private final Runnable transition = new Runnable() {
+        @Override
+        public void run() {
+            applyTransition();
+        }
+    };
+
+    //region Shared state (guarded by this)
+
+    private LockScreenStatus status;
+    private boolean transitionScheduled;
+    private boolean lockVisible;
+    // uptime the lock was requested at. 0 if the lock is visible or not required.
+    private long lockRequestedAt;
+
+    private boolean overlayMode;
+
+    // metrics
+    private int statusUpdates;
+    private int transitions;
+    private int launches;
+    private int suppressedLaunches;
+    private long lastLockLatencyMs;
+    private long maxLockLatencyMs;
+
+    //endregion
+
+    //region Main thread state
+
+    // the activity in the foreground. null if the app is in the background.
+    private WeakReference<Activity> resumedActivity;
+    // without lifecycle callbacks (API < 14) the app is assumed to be in the foreground
+    private final boolean lifecycleTracked;
+
+    private LockScreenActivity lockScreenActivity;
+    private boolean launchPending;
+
+    private View overlayView;
+    private WeakReference<Activity> overlayActivity;
+
+    //endregion
+
+    public LockScreenController(Application application) {
+        this.application = application;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.status = LockScreenStatus.OFF;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            this.lifecycleTracked = true;
+            application.registerActivityLifecycleCallbacks(this);
+        } else {
+            this.lifecycleTracked = false;
+        }
+    }
+
+    //region Status area
+
+    public synchronized LockScreenStatus getStatus() {
+        return this.status;
+    }
+
+    // shows the lock screen as a view on top of the foreground activity instead of launching an activity
+    public void setOverlayMode(final boolean overlayMode) {
+        synchronized (this) {
+            if (this.overlayMode == overlayMode) {
+                return;
+            }
+            this.overlayMode = overlayMode;
+        }
+
+        this.mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // take down the lock screen of the other mode. the transition brings up the new one.
+                hideLockScreen();
+                scheduleTransition(0);
+            }
+        });
+    }
+
+    // can be called from any thread
+    public void updateStatus(LockScreenStatus status) {
+        if (status == null) {
+            status = LockScreenStatus.OFF;
+        }
+
+        long delay;
+        synchronized (this) {
+            this.statusUpdates++;
+            boolean locked = !LockScreenStatus.OFF.equals(status);
+
+            if (!locked) {
+                this.lockRequestedAt = 0;
+            } else if (!this.lockVisible && this.lockRequestedAt == 0) {
+                this.lockRequestedAt = SystemClock.uptimeMillis();
+            }
+
+            this.status = status;
+            // locking is applied right away. unlocking is debounced.
+            delay = locked ? 0 : UNLOCK_DEBOUNCE_MS;
+        }
+
+        this.scheduleTransition(delay);
+    }
+
+    private void scheduleTransition(long delay) {
+        synchronized (this) {
+            if (this.transitionScheduled) {
+                if (delay > 0) {
+                    // already on its way. the transition reads the latest status.
+                    return;
+                }
+                // a lock must not wait for a pending unlock
+                this.mainHandler.removeCallbacks(this.transition);
+            }
+            this.transitionScheduled = true;
+        }
+
+        this.mainHandler.postDelayed(this.transition, delay);
+    }
+
+    //endregion
+
+    //region Transition area (main thread)
+
+    private void applyTransition() {
+        LockScreenStatus status;
+        synchronized (this) {
+            this.transitionScheduled = false;
+            this.transitions++;
+            status = this.status;
+        }
+
+        if (LockScreenStatus.OFF.equals(status)) {
+            this.hideLockScreen();
+        } else {
+            this.showLockScreen();
+        }
+    }
+
+    private void showLockScreen() {
+        boolean overlayMode;
+        synchronized (this) {
+            overlayMode = this.overlayMode;
+        }
+
+        if (overlayMode) {
+            Activity activity = this.resumedActivity != null ? this.resumedActivity.get() : null;
+            if (activity == null) {
+                // shown when the app comes to the foreground
+                return;
+            }
+            if (this.overlayView != null && this.overlayActivity.get() == activity) {
+                this.onLaunchSuppressed();
+                return;
+            }
+
+            this.removeOverlay();
+
+            View view = LayoutInflater.from(activity).inflate(R.layout.activity_lock_screen, null);
+            view.setBackgroundColor(Color.WHITE);
+            // swallows all touches to the activity below
+            view.setClickable(true);
+            activity.addContentView(view, new ViewGroup.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+
+            this.overlayView = view;
+            this.overlayActivity = new WeakReference<>(activity);
+            this.onLockVisible();
+        } else {
+            if (this.lockScreenActivity != null || this.launchPending) {
+                this.onLaunchSuppressed();
+                return;
+            }
+            if (this.lifecycleTracked && this.resumedActivity == null) {
+                // shown when the app comes to the foreground
+                return;
+            }
+
+            Intent intent = new Intent(this.application, LockScreenActivity.class);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            intent.addFlags(Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS);
+            intent.addFlags(Intent.FLAG_ACTIVITY_NO_USER_ACTION);
+
+            this.launchPending = true;
+            synchronized (this) {
+                this.launches++;
+            }
+            this.application.startActivity(intent);
+        }
+    }
+
+    private void hideLockScreen() {
+        // a lock screen activity still launching finishes itself once created
+        this.launchPending = false;
+        if (this.lockScreenActivity != null) {
+            this.lockScreenActivity.finish();
+        }
+        this.removeOverlay();
+
+        synchronized (this) {
+            this.lockVisible = false;
+        }
+    }
+
+    private void removeOverlay() {
+        if (this.overlayView != null) {
+            ViewParent parent = this.overlayView.getParent();
+            if (parent instanceof ViewGroup) {
+                ((ViewGroup) parent).removeView(this.overlayView);
+            }
+            this.overlayView = null;
+            this.overlayActivity = null;
+        }
+    }
+
+    private void onLockVisible() {
+        synchronized (this) {
+            this.lockVisible = true;
+            if (this.lockRequestedAt > 0) {
+                this.lastLockLatencyMs = SystemClock.uptimeMillis() - this.lockRequestedAt;
+                this.maxLockLatencyMs = Math.max(this.maxLockLatencyMs, this.lastLockLatencyMs);
+                this.lockRequestedAt = 0;
+                Log.v(TAG, "Lock screen visible after " + this.lastLockLatencyMs + " ms");
+            }
+        }
+    }
+
+    private synchronized void onLaunchSuppressed() {
+        this.suppressedLaunches++;
+    }
+
+    //endregion
+
+    //region Lock screen activity area (main thread)
+
+    void onLockScreenCreated(LockScreenActivity activity) {
+        this.lockScreenActivity = activity;
+        this.launchPending = false;
+
+        // unlocked while the activity was launching
+        if (LockScreenStatus.OFF.equals(this.getStatus())) {
+            activity.finish();
+        }
+    }
+
+    void onLockScreenResumed(LockScreenActivity activity) {
+        if (!LockScreenStatus.OFF.equals(this.getStatus())) {
+            this.onLockVisible();
+        }
+    }
+
+    void onLockScreenDestroyed(LockScreenActivity activity) {
+        if (this.lockScreenActivity == activity) {
+            this.lockScreenActivity = null;
+            synchronized (this) {
+                this.lockVisible = false;
+            }
+        }
+    }
+
+    //endregion
+
+    //region Activity lifecycle area (main thread)
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+        this.resumedActivity = new WeakReference<>(activity);
+
+        // bring up the lock screen if it was requested while the app was in the background
+        if (!(activity instanceof LockScreenActivity) && !LockScreenStatus.OFF.equals(this.getStatus())) {
+            boolean locked = this.lockScreenActivity != null || this.launchPending
+                    || (this.overlayView != null && this.overlayActivity.get() == activity);
+            if (!locked) {
+                this.scheduleTransition(0);
+            }
+        }
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+        if (this.resumedActivity != null && this.resumedActivity.get() == activity) {
+            this.resumedActivity = null;
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        if (this.overlayActivity != null && this.overlayActivity.get() == activity) {
+            this.overlayView = null;
+            this.overlayActivity = null;
+            synchronized (this) {
+                this.lockVisible = false;
+            }
+        }
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public synchronized int getStatusUpdates() {
+        return this.statusUpdates;
+    }
+
+    public synchronized int getTransitions() {
+        return this.transitions;
+    }
+
+    public synchronized int getLaunches() {
+        return this.launches;
+    }
+
+    public synchronized int getSuppressedLaunches() {
+        return this.suppressedLaunches;
+    }
+
+    public synchronized long getLastLockLatencyMs() {
+        return this.lastLockLatencyMs;
+    }
+
+    public synchronized long getMaxLockLatencyMs() {
+        return this.maxLockLatencyMs;
+    }
+
+    //endregion
+}
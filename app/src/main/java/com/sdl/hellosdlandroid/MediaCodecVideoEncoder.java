@@ -0,0 +1,117 @@
+package com.sdl.hellosdlandroid;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.view.Surface;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// Hardware H.264 encoder using MediaCodec with a surface as input (requires API 18).
+// The renderer draws straight into the codec input surface so frames never pass through the java heap.
+public class MediaCodecVideoEncoder implements VideoEncoder {
+    private static final String MIME_TYPE        = "video/avc";
+    private static final int    I_FRAME_INTERVAL = 5;
+
+    private MediaCodec codec;
+    private Surface inputSurface;
+    private MediaCodec.BufferInfo bufferInfo;
+    private ByteBuffer[] outputBuffers;
+    private int width;
+    private int height;
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    @Override
+    public void start(int width, int height, int frameRate, int bitRate) throws IOException {
+        this.width = width;
+        this.height = height;
+
+        MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+        format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+        format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, I_FRAME_INTERVAL);
+
+        try {
+            this.codec = MediaCodec.createEncoderByType(MIME_TYPE);
+            this.codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            this.inputSurface = this.codec.createInputSurface();
+            this.codec.start();
+        } catch (IllegalStateException e) {
+            this.stop();
+            throw new IOException("Unable to configure the H.264 encoder", e);
+        }
+
+        this.bufferInfo = new MediaCodec.BufferInfo();
+        this.outputBuffers = this.codec.getOutputBuffers();
+    }
+
+    @Override
+    public void renderFrame(VideoStreamRenderer renderer, long presentationTimeUs) {
+        renderer.onDrawFrame(this.inputSurface, this.width, this.height, presentationTimeUs);
+    }
+
+    @Override
+    public int drain(OutputStream out, byte[] scratch) throws IOException {
+        int written = 0;
+
+        while (true) {
+            int index = this.codec.dequeueOutputBuffer(this.bufferInfo, 0);
+
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                break;
+            } else if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                this.outputBuffers = this.codec.getOutputBuffers();
+            } else if (index >= 0) {
+                ByteBuffer buffer = this.outputBuffers[index];
+                buffer.position(this.bufferInfo.offset);
+                buffer.limit(this.bufferInfo.offset + this.bufferInfo.size);
+
+                // SPS/PPS arrive as codec config buffer and are forwarded like any other NAL unit
+                written += this.bufferInfo.size;
+
+                if (buffer.hasArray()) {
+                    out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                } else {
+                    // the output buffers are direct. the video stream of the proxy takes arrays only, so
+                    // the data is copied once through the scratch buffer.
+                    while (buffer.hasRemaining()) {
+                        int length = Math.min(scratch.length, buffer.remaining());
+                        buffer.get(scratch, 0, length);
+                        out.write(scratch, 0, length);
+                    }
+                }
+
+                this.codec.releaseOutputBuffer(index, false);
+            }
+        }
+
+        return written;
+    }
+
+    @Override
+    public void stop() {
+        if (this.codec != null) {
+            try {
+                this.codec.stop();
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
+            }
+            this.codec.release();
+            this.codec = null;
+        }
+
+        if (this.inputSurface != null) {
+            this.inputSurface.release();
+            this.inputSurface = null;
+        }
+
+        this.outputBuffers = null;
+    }
+}
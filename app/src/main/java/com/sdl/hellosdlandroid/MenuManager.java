@@ -0,0 +1,532 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.AddCommand;
+import com.smartdevicelink.proxy.rpc.AddSubMenu;
+import com.smartdevicelink.proxy.rpc.DeleteCommand;
+import com.smartdevicelink.proxy.rpc.DeleteSubMenu;
+import com.smartdevicelink.proxy.rpc.MenuParams;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the desired menu tree and the menu known to be on the head unit. A menu update only sends
+// the difference between both: a parallel batch of DeleteCommand/DeleteSubMenu and, once all of them
+// are answered, a parallel batch of AddSubMenu/AddCommand. One update is on its way at a time.
+// Sub menus can't contain sub menus as AddSubMenu has no parent ID. An update without all responses is
+// given up after a timeout: the unanswered entries are unknown, they are deleted with the next update
+// and the menu is diffed again.
+public class MenuManager {
+    private static final String TAG = "SDL Menu";
+
+    private static final long DEFAULT_RESPONSE_TIMEOUT = 10 * 1000;
+
+    // a menu entry as defined by the app. an entry with sub entries is a sub menu.
+    public static class MenuEntry {
+        final String title;
+        final List<String> voiceCommands;
+        final List<MenuEntry> subEntries;
+        final Runnable action;
+
+        public MenuEntry(String title, List<String> voiceCommands, Runnable action) {
+            this.title = title;
+            this.voiceCommands = voiceCommands;
+            this.subEntries = null;
+            this.action = action;
+        }
+
+        public MenuEntry(String title, List<MenuEntry> subEntries) {
+            for (MenuEntry entry : subEntries) {
+                if (entry.isSubMenu()) {
+                    throw new IllegalArgumentException("Sub menu " + entry.title + " can't be nested in " + title);
+                }
+            }
+            this.title = title;
+            this.voiceCommands = null;
+            this.subEntries = subEntries;
+            this.action = null;
+        }
+
+        boolean isSubMenu() {
+            return this.subEntries != null;
+        }
+    }
+
+    // a menu entry as it exists on the head unit
+    private static class MenuNode {
+        final int id;
+        MenuEntry entry;
+        List<MenuNode> children;
+
+        MenuNode(int id, MenuEntry entry) {
+            this.id = id;
+            this.entry = entry;
+            this.children = entry.isSubMenu() ? new ArrayList<MenuNode>() : null;
+        }
+    }
+
+    private final RequestSender sender;
+
+    // the top level menu on the head unit (updated when requests are sent, corrected on failures)
+    private List<MenuNode> menu;
+
+    // all command nodes by cmd ID to find the action for OnCommand
+    private final HashMap<Integer, MenuNode> commands;
+
+    // pending add requests by correlation ID to revert a failed add
+    private final HashMap<Integer, MenuNode> pendingAdds;
+    private int pendingRequests;
+
+    // the adds of the update on its way are sent once its deletes are answered
+    private final HashMap<Integer, RPCRequest> pendingDeletes;
+    private List<RPCRequest> waitingAdds;
+    private long requestsSentNs;
+    private long responseTimeoutNs;
+
+    // deletes of entries which may or may not be on the head unit, sent with the next update
+    private final List<RPCRequest> unknownDeletes;
+
+    // the last menu set and the last one set while an update is on its way
+    private List<MenuEntry> entries;
+    private List<MenuEntry> queuedEntries;
+
+    private int nextMenuID;
+
+    // menu updates wait while the driver is distracted. only the last one is sent afterwards.
+    private boolean distracted;
+    private List<MenuEntry> deferredEntries;
+
+    // metrics
+    private long updateStartNs;
+    private long lastUpdateDurationNs;
+    private int rpcsSent;
+    private int rpcsFullResend;
+    private int updatesDeferred;
+    private int updatesTimedOut;
+
+    public MenuManager(RequestSender sender) {
+        this.sender = sender;
+        this.menu = new ArrayList<>();
+        this.commands = new HashMap<>();
+        this.pendingAdds = new HashMap<>();
+        this.pendingDeletes = new HashMap<>();
+        this.unknownDeletes = new ArrayList<>();
+        this.responseTimeoutNs = TimeUnit.MILLISECONDS.toNanos(DEFAULT_RESPONSE_TIMEOUT);
+        this.nextMenuID = 1;
+    }
+
+    // time an update waits for the responses of its requests
+    public void setResponseTimeout(long responseTimeout) {
+        this.responseTimeoutNs = TimeUnit.MILLISECONDS.toNanos(responseTimeout);
+    }
+
+    public long getResponseTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(this.responseTimeoutNs);
+    }
+
+    // true while an update waits for responses. the session checks the timeout meanwhile.
+    public boolean isBusy() {
+        return this.pendingRequests > 0;
+    }
+
+    //region Menu update area
+
+    public void setDistracted(boolean distracted) {
+        this.distracted = distracted;
+
+        if (!distracted && this.deferredEntries != null) {
+            List<MenuEntry> entries = this.deferredEntries;
+            this.deferredEntries = null;
+            this.setMenu(entries);
+        }
+    }
+
+    public void setMenu(List<MenuEntry> entries) {
+        if (this.distracted) {
+            this.deferredEntries = entries;
+            this.updatesDeferred++;
+            return;
+        }
+
+        if (this.pendingRequests > 0) {
+            this.queuedEntries = entries;
+            return;
+        }
+        this.entries = entries;
+
+        List<RPCRequest> deletes = new ArrayList<>(this.unknownDeletes);
+        List<RPCRequest> adds = new ArrayList<>();
+        this.unknownDeletes.clear();
+
+        this.rpcsFullResend += countNodes(this.menu) + countEntries(entries);
+        this.menu = this.updateLevel(this.menu, entries, null, deletes, adds);
+
+        if (deletes.isEmpty() && adds.isEmpty()) {
+            return;
+        }
+
+        for (RPCRequest request : deletes) {
+            request.setCorrelationID(this.sender.nextCorrelationID());
+            this.pendingDeletes.put(request.getCorrelationID(), request);
+        }
+        for (RPCRequest request : adds) {
+            request.setCorrelationID(this.sender.nextCorrelationID());
+            if (request instanceof AddCommand) {
+                this.pendingAdds.put(request.getCorrelationID(), this.commands.get(((AddCommand) request).getCmdID()));
+            } else {
+                this.pendingAdds.put(request.getCorrelationID(), this.findNode(this.menu, ((AddSubMenu) request).getMenuID()));
+            }
+        }
+
+        this.updateStartNs = System.nanoTime();
+        this.requestsSentNs = this.updateStartNs;
+        this.pendingRequests = deletes.size() + adds.size();
+        this.rpcsSent += this.pendingRequests;
+
+        // the deletes must be done before the adds so the positions of the adds refer to the final
+        // menu and a new entry never meets the old one of the same name
+        if (deletes.isEmpty()) {
+            this.sender.sendRequests(adds, false);
+        } else {
+            this.waitingAdds = adds;
+            this.sender.sendRequests(deletes, false);
+        }
+    }
+
+    // diffs one menu level and returns the new list of nodes for that level
+    private List<MenuNode> updateLevel(List<MenuNode> current, List<MenuEntry> desired, Integer parentID,
+                                       List<RPCRequest> deletes, List<RPCRequest> adds) {
+        if (desired == null) {
+            desired = Collections.emptyList();
+        }
+
+        boolean[] keepCurrent = new boolean[current.size()];
+        int[] matchDesired = this.matchEntries(current, desired, keepCurrent);
+
+        for (int i = 0; i < current.size(); i++) {
+            if (!keepCurrent[i]) {
+                this.deleteNode(current.get(i), deletes);
+            }
+        }
+
+        List<MenuNode> result = new ArrayList<>(desired.size());
+        for (int i = 0; i < desired.size(); i++) {
+            MenuEntry entry = desired.get(i);
+            MenuNode node;
+
+            if (matchDesired[i] >= 0) {
+                // keep the node on the head unit but take the new entry (e.g. a new action)
+                node = current.get(matchDesired[i]);
+                node.entry = entry;
+                if (entry.isSubMenu()) {
+                    node.children = this.updateLevel(node.children, entry.subEntries, node.id, deletes, adds);
+                }
+            } else {
+                node = new MenuNode(this.nextMenuID++, entry);
+                if (entry.isSubMenu()) {
+                    AddSubMenu request = new AddSubMenu();
+                    request.setMenuID(node.id);
+                    request.setMenuName(entry.title);
+                    request.setPosition(i);
+                    adds.add(request);
+
+                    node.children = this.updateLevel(node.children, entry.subEntries, node.id, deletes, adds);
+                } else {
+                    MenuParams params = new MenuParams();
+                    params.setMenuName(entry.title);
+                    params.setPosition(i);
+                    if (parentID != null) {
+                        params.setParentID(parentID);
+                    }
+
+                    AddCommand request = new AddCommand();
+                    request.setCmdID(node.id);
+                    request.setMenuParams(params);
+                    if (entry.voiceCommands != null && !entry.voiceCommands.isEmpty()) {
+                        request.setVrCommands(entry.voiceCommands);
+                    }
+                    adds.add(request);
+
+                    this.commands.put(node.id, node);
+                }
+            }
+
+            result.add(node);
+        }
+
+        return result;
+    }
+
+    // keeps the longest sequence of compatible entries that have the same order on both sides (LCS).
+    // returns the index of the current node for every desired entry or -1 if it needs to be added.
+    private int[] matchEntries(List<MenuNode> current, List<MenuEntry> desired, boolean[] keepCurrent) {
+        int n = current.size();
+        int m = desired.size();
+        int[][] lengths = new int[n + 1][m + 1];
+
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = m - 1; j >= 0; j--) {
+                if (isCompatible(current.get(i).entry, desired.get(j))) {
+                    lengths[i][j] = lengths[i + 1][j + 1] + 1;
+                } else {
+                    lengths[i][j] = Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+                }
+            }
+        }
+
+        int[] match = new int[m];
+        for (int j = 0; j < m; j++) {
+            match[j] = -1;
+        }
+
+        int i = 0;
+        int j = 0;
+        while (i < n && j < m) {
+            if (isCompatible(current.get(i).entry, desired.get(j))) {
+                keepCurrent[i] = true;
+                match[j] = i;
+                i++;
+                j++;
+            } else if (lengths[i + 1][j] >= lengths[i][j + 1]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+
+        return match;
+    }
+
+    private static boolean isCompatible(MenuEntry a, MenuEntry b) {
+        if (!a.title.equals(b.title) || a.isSubMenu() != b.isSubMenu()) {
+            return false;
+        }
+        // sub menus are compatible regardless of their content. the content is diffed separately.
+        if (a.isSubMenu()) {
+            return true;
+        }
+        List<String> va = a.voiceCommands != null ? a.voiceCommands : Collections.<String>emptyList();
+        List<String> vb = b.voiceCommands != null ? b.voiceCommands : Collections.<String>emptyList();
+        return va.equals(vb);
+    }
+
+    private void deleteNode(MenuNode node, List<RPCRequest> deletes) {
+        deletes.add(buildDelete(node));
+        if (node.entry.isSubMenu()) {
+            // deleting the sub menu deletes all of its commands on the head unit
+            this.forgetCommands(node.children);
+        } else {
+            this.commands.remove(node.id);
+        }
+    }
+
+    private static RPCRequest buildDelete(MenuNode node) {
+        if (node.entry.isSubMenu()) {
+            DeleteSubMenu request = new DeleteSubMenu();
+            request.setMenuID(node.id);
+            return request;
+        }
+        DeleteCommand request = new DeleteCommand();
+        request.setCmdID(node.id);
+        return request;
+    }
+
+    // forgets the node of an add which isn't known to be on the head unit
+    private void forgetNode(MenuNode node) {
+        if (node == null) {
+            return;
+        }
+        this.removeNode(this.menu, node);
+        if (node.children != null) {
+            this.forgetCommands(node.children);
+        } else {
+            this.commands.remove(node.id);
+        }
+    }
+
+    private void forgetCommands(List<MenuNode> nodes) {
+        for (MenuNode node : nodes) {
+            if (node.children != null) {
+                this.forgetCommands(node.children);
+            } else {
+                this.commands.remove(node.id);
+            }
+        }
+    }
+
+    private MenuNode findNode(List<MenuNode> nodes, int id) {
+        for (MenuNode node : nodes) {
+            if (node.id == id) {
+                return node;
+            }
+            if (node.children != null) {
+                MenuNode child = this.findNode(node.children, id);
+                if (child != null) {
+                    return child;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean removeNode(List<MenuNode> nodes, MenuNode target) {
+        for (int i = 0; i < nodes.size(); i++) {
+            MenuNode node = nodes.get(i);
+            if (node == target) {
+                nodes.remove(i);
+                return true;
+            }
+            if (node.children != null && this.removeNode(node.children, target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int countNodes(List<MenuNode> nodes) {
+        int count = nodes.size();
+        for (MenuNode node : nodes) {
+            if (node.children != null) {
+                count += countNodes(node.children);
+            }
+        }
+        return count;
+    }
+
+    private static int countEntries(List<MenuEntry> entries) {
+        if (entries == null) {
+            return 0;
+        }
+        int count = entries.size();
+        for (MenuEntry entry : entries) {
+            count += countEntries(entry.subEntries);
+        }
+        return count;
+    }
+
+    //endregion
+
+    //region Notification & response area
+
+    // returns true if the command belongs to the menu
+    public boolean onCommand(int cmdID) {
+        MenuNode node = this.commands.get(cmdID);
+        if (node == null) {
+            return false;
+        }
+        if (node.entry.action != null) {
+            node.entry.action.run();
+        }
+        return true;
+    }
+
+    // to be called for AddCommand, AddSubMenu, DeleteCommand and DeleteSubMenu responses
+    public void onMenuResponse(RPCResponse response) {
+        Integer correlationID = response.getCorrelationID();
+        boolean wasAdd = this.pendingAdds.containsKey(correlationID);
+        MenuNode added = this.pendingAdds.remove(correlationID);
+        boolean wasDelete = this.pendingDeletes.remove(correlationID) != null;
+        if (!wasAdd && !wasDelete) {
+            // e.g. the late response of an update which timed out
+            return;
+        }
+
+        if (wasDelete && this.pendingDeletes.isEmpty() && this.waitingAdds != null) {
+            // a failed delete leaves an entry the menu doesn't know anymore. the adds go out anyway.
+            List<RPCRequest> adds = this.waitingAdds;
+            this.waitingAdds = null;
+            this.requestsSentNs = System.nanoTime();
+            this.sender.sendRequests(adds, false);
+        }
+
+        if (added != null && !response.getSuccess()) {
+            // the head unit doesn't have the entry. forget it so the next update adds it again.
+            Log.w(TAG, "Menu entry '" + added.entry.title + "' rejected: " + response.getResultCode());
+            this.forgetNode(added);
+        }
+
+        if (--this.pendingRequests == 0) {
+            this.lastUpdateDurationNs = System.nanoTime() - this.updateStartNs;
+            Log.v(TAG, "Menu updated in " + (this.lastUpdateDurationNs / 1000000) + "ms. rpcs sent "
+                    + this.rpcsSent + " of " + this.rpcsFullResend + " for full resends");
+
+            if (this.queuedEntries != null) {
+                List<MenuEntry> entries = this.queuedEntries;
+                this.queuedEntries = null;
+                this.setMenu(entries);
+            }
+        }
+    }
+
+    // gives up on an update without all responses, e.g. lost on the transport
+    public void checkTimeouts() {
+        if (this.pendingRequests == 0 || System.nanoTime() - this.requestsSentNs < this.responseTimeoutNs) {
+            return;
+        }
+
+        Log.w(TAG, "Menu update without " + this.pendingRequests + " responses");
+        this.updatesTimedOut++;
+
+        // the adds which weren't sent yet are not on the head unit
+        if (this.waitingAdds != null) {
+            for (RPCRequest request : this.waitingAdds) {
+                this.forgetNode(this.pendingAdds.remove(request.getCorrelationID()));
+            }
+            this.waitingAdds = null;
+        }
+
+        // the unanswered ones may be. they are deleted to be sure and added again.
+        this.unknownDeletes.addAll(this.pendingDeletes.values());
+        for (Map.Entry<Integer, MenuNode> entry : this.pendingAdds.entrySet()) {
+            MenuNode node = entry.getValue();
+            if (node != null && this.findNode(this.menu, node.id) != null) {
+                this.unknownDeletes.add(buildDelete(node));
+                this.forgetNode(node);
+            }
+        }
+        for (RPCRequest request : this.unknownDeletes) {
+            request.setCorrelationID(null);
+        }
+        this.pendingDeletes.clear();
+        this.pendingAdds.clear();
+        this.pendingRequests = 0;
+
+        List<MenuEntry> entries = this.queuedEntries != null ? this.queuedEntries : this.entries;
+        this.queuedEntries = null;
+        this.setMenu(entries);
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public long getLastUpdateDurationMs() {
+        return this.lastUpdateDurationNs / 1000000;
+    }
+
+    public int getRpcsSent() {
+        return this.rpcsSent;
+    }
+
+    // the number of requests a full delete and resend of the menu would have needed
+    public int getRpcsFullResend() {
+        return this.rpcsFullResend;
+    }
+
+    public int getUpdatesDeferred() {
+        return this.updatesDeferred;
+    }
+
+    public int getUpdatesTimedOut() {
+        return this.updatesTimedOut;
+    }
+
+    //endregion
+}
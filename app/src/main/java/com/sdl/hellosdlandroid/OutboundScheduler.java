@@ -0,0 +1,424 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import com.smartdevicelink.exception.SdlException;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.rpc.Alert;
+import com.smartdevicelink.proxy.rpc.DeleteFile;
+import com.smartdevicelink.proxy.rpc.EndAudioPassThru;
+import com.smartdevicelink.proxy.rpc.PerformAudioPassThru;
+import com.smartdevicelink.proxy.rpc.PerformInteraction;
+import com.smartdevicelink.proxy.rpc.PutFile;
+import com.smartdevicelink.proxy.rpc.PutFileResponse;
+import com.smartdevicelink.proxy.rpc.ScrollableMessage;
+import com.smartdevicelink.proxy.rpc.SetGlobalProperties;
+import com.smartdevicelink.proxy.rpc.SetMediaClockTimer;
+import com.smartdevicelink.proxy.rpc.Slider;
+import com.smartdevicelink.proxy.rpc.Speak;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Feeds the requests of a session to the proxy from a single sender thread in order of priority.
+// Requests reacting to the user go first, then display updates, then file uploads. Large uploads are
+// split into chunks so more urgent requests are sent between the chunks. A request waiting longer than
+// the bound of its class is sent before any other request so lower classes can't starve. An upload
+// whose chunk isn't answered within a timeout is failed back to the session.
+public class OutboundScheduler {
+    private static final String TAG = "SDL Outbound";
+
+    public static final int CLASS_INTERACTIVE = 0;
+    public static final int CLASS_DISPLAY     = 1;
+    public static final int CLASS_BULK        = 2;
+    private static final int CLASS_COUNT      = 3;
+
+    private static final String[] CLASS_NAMES = { "interactive", "display", "bulk" };
+
+    // longest time a request of each class waits for more urgent requests
+    private static final long[] MAX_QUEUE_DELAY_NS = { 0, 200 * 1000000L, 1000 * 1000000L };
+
+    // uploads larger than this are sent in chunks
+    private static final int CHUNK_SIZE = 32 * 1024;
+
+    // chunks use correlation IDs above the range of the session
+    private static final int FIRST_CHUNK_CORRELATION_ID = 0x10000;
+
+    private static final long DEFAULT_CHUNK_TIMEOUT = 10 * 1000;
+
+    public interface Sink {
+        void sendRPCRequest(RPCRequest request) throws SdlException;
+
+        // the failure response of an upload whose chunk wasn't answered. called from the sender thread.
+        void onUploadFailed(PutFileResponse response);
+    }
+
+    // a PutFile sent in chunks. the last chunk carries the correlation ID of the original request.
+    private static class Upload {
+        final PutFile original;
+        final byte[] data;
+        int offset;
+        int chunkCorrelationID;
+        long chunkSentNs;
+
+        Upload(PutFile original, byte[] data) {
+            this.original = original;
+            this.data = data;
+        }
+    }
+
+    private static class Entry {
+        final RPCRequest request;
+        final Upload upload;
+        final int priorityClass;
+        final long enqueuedNs;
+
+        Entry(RPCRequest request, Upload upload, int priorityClass) {
+            this.request = request;
+            this.upload = upload;
+            this.priorityClass = priorityClass;
+            this.enqueuedNs = System.nanoTime();
+        }
+    }
+
+    private final String name;
+    private final Sink sink;
+
+    // guarded by this
+    private final ArrayDeque<Entry>[] queues;
+    // uploads waiting for the response of a chunk by the chunk's correlation ID
+    private final HashMap<Integer, Upload> uploads;
+    private int nextChunkCorrelationID;
+    private int activeUploads;
+    private long chunkTimeoutNs;
+    private Thread senderThread;
+    private boolean stopped;
+
+    // metrics (guarded by this)
+    private final int[] sent;
+    private final long[] totalDelayNs;
+    private final long[] maxDelayNs;
+    private int chunksSent;
+    private int chunkTimeouts;
+    private int preemptions;
+
+    // generic arrays can only be created raw
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public OutboundScheduler(String name, Sink sink) {
+        this.name = name;
+        this.sink = sink;
+        this.queues = new ArrayDeque[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            this.queues[i] = new ArrayDeque<>();
+        }
+        this.uploads = new HashMap<>();
+        this.nextChunkCorrelationID = FIRST_CHUNK_CORRELATION_ID;
+        this.chunkTimeoutNs = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CHUNK_TIMEOUT);
+        this.sent = new int[CLASS_COUNT];
+        this.totalDelayNs = new long[CLASS_COUNT];
+        this.maxDelayNs = new long[CLASS_COUNT];
+    }
+
+    //region Lifecycle area
+
+    public synchronized void start() {
+        if (this.senderThread != null || this.stopped) {
+            return;
+        }
+
+        this.senderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                sendLoop();
+            }
+        }, "SdlSender " + this.name);
+        this.senderThread.start();
+    }
+
+    // drops the queued requests and stops the sender thread. the scheduler can't be started again.
+    public synchronized void stop() {
+        this.stopped = true;
+        for (ArrayDeque<Entry> queue : this.queues) {
+            queue.clear();
+        }
+        this.uploads.clear();
+        this.activeUploads = 0;
+        this.notifyAll();
+    }
+
+    // time a chunk waits for its response before the upload fails
+    public synchronized void setChunkTimeout(long chunkTimeout) {
+        this.chunkTimeoutNs = TimeUnit.MILLISECONDS.toNanos(chunkTimeout);
+        this.notifyAll();
+    }
+
+    //endregion
+
+    //region Queue area
+
+    public static int classify(RPCRequest request) {
+        if (request instanceof PutFile || request instanceof DeleteFile) {
+            return CLASS_BULK;
+        }
+        if (request instanceof SetMediaClockTimer || request instanceof Speak || request instanceof Alert
+                || request instanceof PerformInteraction || request instanceof ScrollableMessage
+                || request instanceof Slider || request instanceof PerformAudioPassThru
+                || request instanceof EndAudioPassThru) {
+            return CLASS_INTERACTIVE;
+        }
+        // the autocompletion of the keyboard follows the key presses of the user
+        if (request instanceof SetGlobalProperties && ((SetGlobalProperties) request).getKeyboardProperties() != null) {
+            return CLASS_INTERACTIVE;
+        }
+        return CLASS_DISPLAY;
+    }
+
+    public void enqueue(RPCRequest request) {
+        this.enqueue(request, classify(request));
+    }
+
+    public synchronized void enqueue(RPCRequest request, int priorityClass) {
+        if (this.stopped) {
+            return;
+        }
+
+        Upload upload = null;
+        if (request instanceof PutFile) {
+            byte[] data = request.getBulkData();
+            if (data != null && data.length > CHUNK_SIZE) {
+                upload = new Upload((PutFile) request, data);
+                this.activeUploads++;
+            }
+        }
+
+        this.queues[priorityClass].add(new Entry(request, upload, priorityClass));
+        this.notifyAll();
+    }
+
+    // returns the response to be handled by the session: the response itself, a failure response for
+    // the original request if a chunk failed, or null if the response belongs to an intermediate chunk
+    public PutFileResponse filterPutFileResponse(PutFileResponse response) {
+        Upload upload;
+        synchronized (this) {
+            upload = this.uploads.remove(response.getCorrelationID());
+            if (upload == null) {
+                return response;
+            }
+
+            if (response.getSuccess() && !this.stopped) {
+                // the next chunk waits in the bulk queue again
+                this.queues[CLASS_BULK].add(new Entry(null, upload, CLASS_BULK));
+                this.notifyAll();
+                return null;
+            }
+
+            this.activeUploads--;
+        }
+
+        return failure(upload, response.getResultCode() != null ? response.getResultCode() : Result.GENERIC_ERROR,
+                response.getInfo());
+    }
+
+    // the response of the original request of a failed upload
+    private static PutFileResponse failure(Upload upload, Result resultCode, String info) {
+        Log.w(TAG, "Upload of " + upload.original.getSdlFileName() + " failed at " + upload.offset + ": " + resultCode);
+
+        PutFileResponse failure = new PutFileResponse();
+        failure.setCorrelationID(upload.original.getCorrelationID());
+        failure.setSuccess(false);
+        failure.setResultCode(resultCode);
+        failure.setInfo(info);
+        return failure;
+    }
+
+    // fails the uploads whose chunk wasn't answered in time, e.g. lost on the transport. late responses
+    // of their chunks are passed on and ignored by the session.
+    private List<PutFileResponse> expireChunks() {
+        if (this.uploads.isEmpty()) {
+            return null;
+        }
+
+        long now = System.nanoTime();
+        List<PutFileResponse> failures = null;
+        Iterator<Upload> iterator = this.uploads.values().iterator();
+        while (iterator.hasNext()) {
+            Upload upload = iterator.next();
+            if (now - upload.chunkSentNs >= this.chunkTimeoutNs) {
+                iterator.remove();
+                this.activeUploads--;
+                this.chunkTimeouts++;
+                if (failures == null) {
+                    failures = new ArrayList<>(1);
+                }
+                failures.add(failure(upload, Result.TIMED_OUT, "No response to chunk"));
+            }
+        }
+        return failures;
+    }
+
+    //endregion
+
+    //region Sender area
+
+    private void sendLoop() {
+        while (true) {
+            RPCRequest request = null;
+            List<PutFileResponse> failures;
+            synchronized (this) {
+                Entry entry = null;
+                while ((failures = this.expireChunks()) == null && (entry = this.next()) == null) {
+                    if (this.stopped) {
+                        return;
+                    }
+                    // wakes up to check the chunks waiting for their response
+                    long waitMs = this.uploads.isEmpty() ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis(this.chunkTimeoutNs));
+                    try {
+                        this.wait(waitMs);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (this.stopped) {
+                    return;
+                }
+
+                if (entry != null) {
+                    if (entry.priorityClass != CLASS_BULK && this.activeUploads > 0) {
+                        // sent between the chunks of an upload
+                        this.preemptions++;
+                    }
+                    request = entry.upload != null ? this.nextChunk(entry.upload) : entry.request;
+                    this.recordDelay(entry);
+                }
+            }
+
+            if (failures != null) {
+                for (PutFileResponse failure : failures) {
+                    this.sink.onUploadFailed(failure);
+                }
+                continue;
+            }
+
+            try {
+                this.sink.sendRPCRequest(request);
+            } catch (SdlException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // the oldest request over the delay bound of its class or else the head of the most urgent class
+    private Entry next() {
+        long now = System.nanoTime();
+        int selected = -1;
+        long maxOverdue = 0;
+
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            Entry head = this.queues[i].peek();
+            if (head == null) {
+                continue;
+            }
+            long overdue = now - head.enqueuedNs - MAX_QUEUE_DELAY_NS[i];
+            if (overdue > maxOverdue) {
+                maxOverdue = overdue;
+                selected = i;
+            }
+        }
+
+        if (selected < 0) {
+            for (int i = 0; i < CLASS_COUNT; i++) {
+                if (!this.queues[i].isEmpty()) {
+                    selected = i;
+                    break;
+                }
+            }
+        }
+
+        return selected >= 0 ? this.queues[selected].poll() : null;
+    }
+
+    private PutFile nextChunk(Upload upload) {
+        int length = Math.min(CHUNK_SIZE, upload.data.length - upload.offset);
+        boolean last = upload.offset + length >= upload.data.length;
+
+        PutFile chunk = new PutFile();
+        chunk.setSdlFileName(upload.original.getSdlFileName());
+        chunk.setFileType(upload.original.getFileType());
+        chunk.setPersistentFile(upload.original.getPersistentFile());
+        chunk.setSystemFile(upload.original.getSystemFile());
+        chunk.setOffset((long) upload.offset);
+        chunk.setLength((long) upload.data.length);
+        chunk.setBulkData(Arrays.copyOfRange(upload.data, upload.offset, upload.offset + length));
+
+        if (last) {
+            // the session handles the response of the last chunk as the response of the request
+            chunk.setCorrelationID(upload.original.getCorrelationID());
+            this.activeUploads--;
+        } else {
+            upload.chunkCorrelationID = this.nextChunkCorrelationID++;
+            if (this.nextChunkCorrelationID < FIRST_CHUNK_CORRELATION_ID) {
+                this.nextChunkCorrelationID = FIRST_CHUNK_CORRELATION_ID;
+            }
+            chunk.setCorrelationID(upload.chunkCorrelationID);
+            upload.chunkSentNs = System.nanoTime();
+            this.uploads.put(upload.chunkCorrelationID, upload);
+        }
+
+        upload.offset += length;
+        this.chunksSent++;
+        return chunk;
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    private void recordDelay(Entry entry) {
+        long delay = System.nanoTime() - entry.enqueuedNs;
+        int priorityClass = entry.priorityClass;
+        this.sent[priorityClass]++;
+        this.totalDelayNs[priorityClass] += delay;
+        this.maxDelayNs[priorityClass] = Math.max(this.maxDelayNs[priorityClass], delay);
+    }
+
+    public synchronized int getSent(int priorityClass) {
+        return this.sent[priorityClass];
+    }
+
+    public synchronized double getAverageQueueDelayMs(int priorityClass) {
+        int sent = this.sent[priorityClass];
+        return sent > 0 ? this.totalDelayNs[priorityClass] / 1e6 / sent : 0;
+    }
+
+    public synchronized double getMaxQueueDelayMs(int priorityClass) {
+        return this.maxDelayNs[priorityClass] / 1e6;
+    }
+
+    public synchronized int getChunksSent() {
+        return this.chunksSent;
+    }
+
+    public synchronized int getChunkTimeouts() {
+        return this.chunkTimeouts;
+    }
+
+    public synchronized String getMetricsSummary() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            builder.append(String.format(Locale.US, "%s: %d sent, delay avg %.1f ms max %.1f ms; ",
+                    CLASS_NAMES[i], this.sent[i], this.getAverageQueueDelayMs(i), this.getMaxQueueDelayMs(i)));
+        }
+        builder.append(this.chunksSent).append(" chunks (").append(this.chunkTimeouts).append(" timed out), ")
+                .append(this.preemptions).append(" sent between chunks");
+        return builder.toString();
+    }
+
+    //endregion
+}
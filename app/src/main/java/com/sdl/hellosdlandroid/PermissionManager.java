@@ -0,0 +1,212 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.HMIPermissions;
+import com.smartdevicelink.proxy.rpc.OnPermissionsChange;
+import com.smartdevicelink.proxy.rpc.PermissionItem;
+import com.smartdevicelink.proxy.rpc.enums.HMILevel;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+// Keeps the permissions of the app from OnPermissionsChange as one bit mask of allowed HMI levels per
+// function ID. A request the head unit would reject at the current HMI level is held back instead of
+// being sent and goes out as soon as a permission change or a new HMI level allows it. Functions
+// without a permission item are never held back. A request dropped because too many are held gets a
+// DISALLOWED response through the response router like one rejected by the head unit, so the handlers
+// waiting for it are released. Used from the event loop of the session only.
+public class PermissionManager {
+    private static final String TAG = "SDL Permissions";
+
+    // function IDs of requests are small. larger IDs are not gated.
+    private static final int FUNCTION_ID_LIMIT = 256;
+
+    // requests held back at most. the oldest is dropped when more are held.
+    private static final int MAX_HELD_REQUESTS = 32;
+
+    private final RequestSender sender;
+    private final ResponseRouter responseRouter;
+
+    // bit mask of allowed HMI levels (1 << ordinal) by function ID
+    private final byte[] allowedLevels;
+    // bit set of function IDs with a permission item
+    private final long[] known;
+
+    private HMILevel hmiLevel;
+    private final List<RPCRequest> heldRequests;
+
+    // metrics
+    private int roundTripsSaved;
+    private int released;
+    private int dropped;
+    private int disallowedResponses;
+    private boolean dispatchingDropped;
+
+    public PermissionManager(RequestSender sender, ResponseRouter responseRouter) {
+        this.sender = sender;
+        this.responseRouter = responseRouter;
+        this.allowedLevels = new byte[FUNCTION_ID_LIMIT];
+        this.known = new long[FUNCTION_ID_LIMIT / 64];
+        this.heldRequests = new ArrayList<>();
+    }
+
+    //region Permission area
+
+    public void onPermissionsChange(OnPermissionsChange notification) {
+        if (notification.getPermissionItem() == null) {
+            return;
+        }
+
+        // the notification contains the complete permissions of the app
+        for (int i = 0; i < this.known.length; i++) {
+            this.known[i] = 0;
+        }
+
+        for (PermissionItem item : notification.getPermissionItem()) {
+            int functionID = FunctionID.getFunctionId(item.getRpcName());
+            if (functionID < 0 || functionID >= FUNCTION_ID_LIMIT) {
+                continue;
+            }
+
+            int levels = 0;
+            HMIPermissions permissions = item.getHMIPermissions();
+            if (permissions != null && permissions.getAllowed() != null) {
+                for (HMILevel level : permissions.getAllowed()) {
+                    levels |= 1 << level.ordinal();
+                }
+                if (permissions.getUserDisallowed() != null) {
+                    for (HMILevel level : permissions.getUserDisallowed()) {
+                        levels &= ~(1 << level.ordinal());
+                    }
+                }
+            }
+
+            this.allowedLevels[functionID] = (byte) levels;
+            this.known[functionID >> 6] |= 1L << functionID;
+        }
+
+        this.releaseAllowed();
+    }
+
+    public void setHmiLevel(HMILevel hmiLevel) {
+        this.hmiLevel = hmiLevel;
+        this.releaseAllowed();
+    }
+
+    public boolean isAllowed(RPCRequest request) {
+        return this.isAllowed(FunctionID.getFunctionId(request.getFunctionName()));
+    }
+
+    public boolean isAllowed(FunctionID functionID) {
+        return this.isAllowed(functionID.getId());
+    }
+
+    private boolean isAllowed(int functionID) {
+        if (functionID < 0 || functionID >= FUNCTION_ID_LIMIT || this.hmiLevel == null
+                || (this.known[functionID >> 6] & (1L << functionID)) == 0) {
+            return true;
+        }
+        return (this.allowedLevels[functionID] & (1 << this.hmiLevel.ordinal())) != 0;
+    }
+
+    //endregion
+
+    //region Gate area
+
+    // returns true if the request can be sent. otherwise the request is held back until it's allowed.
+    public boolean check(RPCRequest request) {
+        if (this.isAllowed(request)) {
+            return true;
+        }
+
+        RPCRequest oldest = null;
+        if (this.heldRequests.size() >= MAX_HELD_REQUESTS) {
+            oldest = this.heldRequests.remove(0);
+            this.dropped++;
+            Log.w(TAG, "Dropped " + oldest.getFunctionName() + " waiting for permission");
+        }
+        this.heldRequests.add(request);
+        this.roundTripsSaved++;
+
+        if (oldest != null) {
+            this.dispatchDropped(oldest);
+        }
+        return false;
+    }
+
+    // the request is answered as the head unit would have answered it
+    private void dispatchDropped(RPCRequest request) {
+        this.dispatchingDropped = true;
+        try {
+            this.responseRouter.dispatch(ResponseRouter.createResponse(request, Result.DISALLOWED,
+                    "Dropped waiting for permission"));
+        } finally {
+            this.dispatchingDropped = false;
+        }
+    }
+
+    private void releaseAllowed() {
+        if (this.heldRequests.isEmpty()) {
+            return;
+        }
+
+        List<RPCRequest> allowed = new ArrayList<>();
+        Iterator<RPCRequest> iterator = this.heldRequests.iterator();
+        while (iterator.hasNext()) {
+            RPCRequest request = iterator.next();
+            if (this.isAllowed(request)) {
+                iterator.remove();
+                allowed.add(request);
+            }
+        }
+
+        // in the order they were held back
+        for (RPCRequest request : allowed) {
+            this.released++;
+            this.sender.sendRequest(request);
+        }
+    }
+
+    // counts the requests the head unit rejected anyway
+    public void onResponse(RPCResponse response) {
+        if (this.dispatchingDropped) {
+            return;
+        }
+        if (response.getResultCode() == Result.DISALLOWED || response.getResultCode() == Result.USER_DISALLOWED) {
+            this.disallowedResponses++;
+        }
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    // requests held back instead of being rejected by the head unit
+    public int getRoundTripsSaved() {
+        return this.roundTripsSaved;
+    }
+
+    public int getReleased() {
+        return this.released;
+    }
+
+    public int getDropped() {
+        return this.dropped;
+    }
+
+    public int getDisallowedResponses() {
+        return this.disallowedResponses;
+    }
+
+    public int getHeld() {
+        return this.heldRequests.size();
+    }
+
+    //endregion
+}
@@ -0,0 +1,233 @@
+package com.sdl.hellosdlandroid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+// Prefix tree of search terms with a weight each, e.g. how often the term was chosen. Every node knows
+// the heaviest term below it, so the completion of a prefix costs one walk down the prefix. Prefixes
+// are matched ignoring the case. Not thread safe.
+public class PrefixTrie {
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static class Node {
+        // children sorted by their character
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+
+        // the term ending at this node or null
+        String term;
+        int weight;
+
+        // the node of the heaviest term in this subtree or null
+        Node best;
+
+        Node child(char key) {
+            int index = indexOf(this.keys, key);
+            return index >= 0 ? this.children[index] : null;
+        }
+
+        Node addChild(char key) {
+            int index = indexOf(this.keys, key);
+            if (index >= 0) {
+                return this.children[index];
+            }
+
+            index = -index - 1;
+            char[] keys = new char[this.keys.length + 1];
+            Node[] children = new Node[this.children.length + 1];
+            System.arraycopy(this.keys, 0, keys, 0, index);
+            System.arraycopy(this.children, 0, children, 0, index);
+            System.arraycopy(this.keys, index, keys, index + 1, this.keys.length - index);
+            System.arraycopy(this.children, index, children, index + 1, this.children.length - index);
+            keys[index] = key;
+            children[index] = new Node();
+            this.keys = keys;
+            this.children = children;
+            return children[index];
+        }
+
+        void updateBest() {
+            Node best = this.term != null ? this : null;
+            for (Node child : this.children) {
+                if (child.best != null && heavier(child.best, best)) {
+                    best = child.best;
+                }
+            }
+            this.best = best;
+        }
+    }
+
+    // a subtree or a single term waiting in the search for the heaviest matches
+    private static class Candidate implements Comparable<Candidate> {
+        final Node node;
+        final boolean termOnly;
+
+        Candidate(Node node, boolean termOnly) {
+            this.node = node;
+            this.termOnly = termOnly;
+        }
+
+        Node top() {
+            return this.termOnly ? this.node : this.node.best;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            Node top = this.top();
+            Node otherTop = other.top();
+            if (top == otherTop) {
+                return 0;
+            }
+            return heavier(top, otherTop) ? -1 : 1;
+        }
+    }
+
+    private final Node root;
+    private int size;
+
+    public PrefixTrie() {
+        this.root = new Node();
+    }
+
+    //region Terms area
+
+    public int size() {
+        return this.size;
+    }
+
+    // adds the term or sets the weight of the term
+    public void put(String term, int weight) {
+        List<Node> path = this.path(term);
+        Node node = path.get(path.size() - 1);
+        if (node.term == null) {
+            this.size++;
+        }
+        node.term = term;
+        node.weight = weight;
+        updateBest(path);
+    }
+
+    // raises the weight of a term, e.g. when it was chosen. unknown terms are added.
+    public void addWeight(String term, int weight) {
+        List<Node> path = this.path(term);
+        Node node = path.get(path.size() - 1);
+        if (node.term == null) {
+            this.size++;
+            node.term = term;
+        }
+        node.weight += weight;
+        updateBest(path);
+    }
+
+    // the heaviest term starting with the prefix or null
+    public String complete(String prefix) {
+        Node node = this.find(prefix);
+        return node != null && node.best != null ? node.best.term : null;
+    }
+
+    // the prefix with the next character of its heaviest term or null if there is none. the characters are
+    // those of the tree: lowercase may change the length of a term (e.g. the dotted I), so the prefix can't
+    // be cut from the term itself.
+    public String nextPrefix(String prefix) {
+        Node node = this.find(prefix);
+        if (node == null || node.best == null) {
+            return null;
+        }
+        String key = prefix.toLowerCase(Locale.US);
+        String completion = node.best.term.toLowerCase(Locale.US);
+        return completion.length() > key.length() ? completion.substring(0, key.length() + 1) : null;
+    }
+
+    // the heaviest terms starting with the prefix, heaviest first
+    public List<String> matches(String prefix, int limit) {
+        List<String> matches = new ArrayList<>(limit);
+        Node node = this.find(prefix);
+        if (node == null || node.best == null || limit <= 0) {
+            return matches;
+        }
+
+        // best first: a subtree is opened when its heaviest term is the heaviest of all candidates
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+        candidates.add(new Candidate(node, false));
+        while (!candidates.isEmpty() && matches.size() < limit) {
+            Candidate candidate = candidates.poll();
+            if (candidate.termOnly) {
+                matches.add(candidate.node.term);
+                continue;
+            }
+
+            if (candidate.node.term != null) {
+                candidates.add(new Candidate(candidate.node, true));
+            }
+            for (Node child : candidate.node.children) {
+                if (child.best != null) {
+                    candidates.add(new Candidate(child, false));
+                }
+            }
+        }
+        return matches;
+    }
+
+    //endregion
+
+    //region Tree area
+
+    private Node find(String prefix) {
+        String key = prefix.toLowerCase(Locale.US);
+        Node node = this.root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    private List<Node> path(String term) {
+        String key = term.toLowerCase(Locale.US);
+        List<Node> path = new ArrayList<>(key.length() + 1);
+        Node node = this.root;
+        path.add(node);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(key.charAt(i));
+            path.add(node);
+        }
+        return path;
+    }
+
+    private static void updateBest(List<Node> path) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            path.get(i).updateBest();
+        }
+    }
+
+    // the heavier of two terms. terms of the same weight are in alphabetical order.
+    private static boolean heavier(Node node, Node other) {
+        if (other == null) {
+            return true;
+        }
+        if (node.weight != other.weight) {
+            return node.weight > other.weight;
+        }
+        return node.term.compareToIgnoreCase(other.term) < 0;
+    }
+
+    private static int indexOf(char[] keys, char key) {
+        int low = 0;
+        int high = keys.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < key) {
+                low = middle + 1;
+            } else if (keys[middle] > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    //endregion
+}
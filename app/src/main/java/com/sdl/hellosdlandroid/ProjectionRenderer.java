@@ -0,0 +1,64 @@
+package com.sdl.hellosdlandroid;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.os.Build;
+import android.view.Surface;
+
+import java.util.Arrays;
+
+// Simple off-screen content for the projection: a dark background with the app name and a running seconds counter.
+public class ProjectionRenderer implements VideoStreamRenderer {
+    private static final byte BACKGROUND_LUMA   = (byte) 32;
+    private static final byte NEUTRAL_CHROMA    = (byte) 128;
+
+    private final String title;
+    private Paint paint;
+
+    public ProjectionRenderer(String title) {
+        this.title = title;
+    }
+
+    @Override
+    public void onDrawFrame(Surface surface, int width, int height, long presentationTimeUs) {
+        Canvas canvas;
+        try {
+            // codec input surfaces only support hardware canvases (API 23). older platforms may refuse to lock.
+            if (Build.VERSION.SDK_INT >= 23) {
+                canvas = surface.lockHardwareCanvas();
+            } else {
+                canvas = surface.lockCanvas(null);
+            }
+        } catch (RuntimeException e) {
+            return;
+        }
+
+        if (this.paint == null) {
+            this.paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            this.paint.setColor(Color.WHITE);
+            this.paint.setTextAlign(Paint.Align.CENTER);
+            this.paint.setTextSize(height / 10f);
+        }
+
+        canvas.drawColor(Color.DKGRAY);
+        canvas.drawText(this.title, width / 2f, height / 2f, this.paint);
+        canvas.drawText(String.valueOf(presentationTimeUs / 1000000), width / 2f, height * 3 / 4f, this.paint);
+        surface.unlockCanvasAndPost(canvas);
+    }
+
+    @Override
+    public void onFillFrame(byte[] frame, int width, int height, long presentationTimeUs) {
+        int lumaSize = width * height;
+
+        // plain background with a bar moving once per second so the stream visibly updates
+        Arrays.fill(frame, 0, lumaSize, BACKGROUND_LUMA);
+        Arrays.fill(frame, lumaSize, frame.length, NEUTRAL_CHROMA);
+
+        int barWidth = Math.max(2, width / 16);
+        int barX = (int) ((presentationTimeUs % 1000000) * (width - barWidth) / 1000000);
+        for (int y = height / 3; y < height * 2 / 3; y++) {
+            Arrays.fill(frame, y * width + barX, y * width + barX + barWidth, (byte) 235);
+        }
+    }
+}
@@ -0,0 +1,1657 @@
+package com.sdl.hellosdlandroid;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.smartdevicelink.exception.SdlException;
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.protocol.enums.SessionType;
+import com.smartdevicelink.proxy.RPCMessage;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.SdlProxyALM;
+import com.smartdevicelink.proxy.callbacks.OnServiceEnded;
+import com.smartdevicelink.proxy.callbacks.OnServiceNACKed;
+import com.smartdevicelink.proxy.interfaces.IProxyListenerALM;
+import com.smartdevicelink.proxy.rpc.*;
+import com.smartdevicelink.proxy.rpc.enums.AudioStreamingState;
+import com.smartdevicelink.proxy.rpc.enums.ButtonName;
+import com.smartdevicelink.proxy.rpc.enums.DriverDistractionState;
+import com.smartdevicelink.proxy.rpc.enums.FileType;
+import com.smartdevicelink.proxy.rpc.enums.HMILevel;
+import com.smartdevicelink.proxy.rpc.enums.ImageFieldName;
+import com.smartdevicelink.proxy.rpc.enums.ImageType;
+import com.smartdevicelink.proxy.rpc.enums.LockScreenStatus;
+import com.smartdevicelink.proxy.rpc.enums.SdlDisconnectedReason;
+import com.smartdevicelink.proxy.rpc.enums.SystemContext;
+import com.smartdevicelink.proxy.rpc.enums.UpdateMode;
+
+import com.smartdevicelink.transport.BaseTransportConfig;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+// One connection to a head unit. All state of the connection is kept here and isolated from other sessions.
+// Proxy callbacks, responses and timers of the session are executed on the session's event loop.
+// Responses don't have a callback each but go through the response router of the session.
+public class ProxySession implements RequestSender {
+    // the hosting service
+    public interface Host {
+        void onSessionRegistered(ProxySession session);
+        void onSessionClosed(ProxySession session);
+        void onLockScreenStatusChanged(ProxySession session, LockScreenStatus status);
+    }
+
+    //region Private static final area
+
+    private static final String APP_NAME                 = "Hello Sdl";
+    private static final String APP_ID                     = "8675309";
+
+    // the head unit accepts the video service only for navigation apps.
+    // enable together with registering the app with the NAVIGATION app hmi type.
+    private static final boolean VIDEO_STREAMING_ENABLED = false;
+    private static final int VIDEO_FRAME_RATE            = 30;
+    private static final int VIDEO_BIT_RATE              = 512 * 1024;
+    private static final int VIDEO_DEFAULT_WIDTH         = 800;
+    private static final int VIDEO_DEFAULT_HEIGHT        = 480;
+
+    private static final long DEFAULT_CONNECTION_TIMEOUT = 180 * 1000;
+
+    // recordings are written to files/audio/<session name>.wav
+    private static final String AUDIO_CAPTURE_DIRECTORY  = "audio";
+    private static final int AUDIO_CAPTURE_MAX_DURATION  = 10 * 1000;
+
+    // the head unit allows ReadDID and GetDTCs only if the policy of the app permits them.
+    // enable together with the ECUs and DIDs of the vehicle.
+    private static final boolean DIAGNOSTICS_ENABLED          = false;
+    private static final long DIAGNOSTICS_POLL_INTERVAL       = 1000;
+    private static final int DIAGNOSTICS_REQUESTS_PER_SECOND  = 5;
+    private static final int[] DIAGNOSTICS_ECUS               = { 0x7e0, 0x7e1 };
+    private static final int[] DIAGNOSTICS_DIDS               = { 0xf190, 0xf18c, 0xf40d, 0xf405 };
+
+    //endregion
+
+    //region Private variable area
+
+    // variables describing the session and its environment
+    private final Context context;
+    private final String name;
+    private final BaseTransportConfig transportConfig;
+    private final SessionEventLoop eventLoop;
+    private final Host host;
+
+    // variable to create and call functions of the SyncProxy
+    private SdlProxyALM proxy;
+
+    // sends the requests to the proxy in order of priority
+    private OutboundScheduler outboundScheduler;
+
+    // variable used to increment correlation ID for every request sent to SYNC
+    public int correlationID;
+
+    // variable used to auto stop the service and release the blocked RFCOMM of the proxy
+    private Handler connectionHandler;
+
+    // time the session waits for a head unit before it's disposed
+    private volatile long connectionTimeout;
+    // uptime at which the session is disposed if it's not connected by then
+    private volatile long connectionDeadline;
+
+    // the Bluetooth device the session was started for (null if unknown)
+    private volatile String deviceAddress;
+
+    // routes the responses to their handlers and releases pending sequential requests
+    private ResponseRouter responseRouter;
+
+    // variable to keep track if the app received the OnAppDidConnect notification
+    private boolean appDidConnect;
+
+    // variable to keep track if the app received the OnAppDidStart notification
+    private boolean appDidStart;
+
+    // variable to keep track if the app icon was set
+    private boolean appIconSet;
+
+    // artworks prepared while the list of remote files is requested
+    private ArtworkManager.Artwork appIconArtwork;
+    private ArtworkManager.Artwork graphicArtwork;
+
+    // variables to keep track if the graphic should be shown and if it was sent
+    private boolean graphicRequested;
+    private boolean graphicSent;
+
+    // prepares images in the resolution of the head unit (shared by all sessions)
+    private final ArtworkManager artworkManager;
+
+    // holding a media player for the reference audio file. created when audio gets audible.
+    private MediaPlayer appMediaPlayer;
+
+    // variable to keep track if the media player is prepared
+    private boolean appMediaPlayerPrepared;
+
+    // variable to keep track if playback starts once the media player is prepared
+    private boolean appMediaPlayerStartPending;
+
+    // variable to keep track if the user paused playback
+    private boolean appMediaPlayerUserPaused;
+
+    // variable to keep track of the current hmi level
+    private HMILevel sdlHMILevel;
+
+    // variable to keep track of the current audio streaming state
+    private AudioStreamingState sdlAudioStreamingState;
+
+    // variable to keep track of the current system context
+    private SystemContext sdlSystemContext;
+
+    // variable to keep track if the driver is distracted (reduced screen updates, no uploads)
+    private boolean sdlDriverDistracted;
+
+    // time the driver distraction ended until the full screen was shown again or 0
+    private long distractionFlushStartNs;
+    private long distractionFlushLatencyNs;
+
+    // variable to keep track if file management is supported by SDL
+    private boolean sdlSupportFiles;
+
+    // holding the image fields of the display
+    private List<ImageField> sdlImageFields;
+
+    // keeps track of the files on the remote unit and the space left for uploads
+    private RemoteFileManager remoteFileManager;
+    private boolean fileTimeoutsScheduled;
+
+    // captures the microphone of the head unit
+    private AudioPassThruManager audioPassThruManager;
+
+    // polls the diagnostics of the vehicle if enabled
+    private DiagnosticsCollector diagnosticsCollector;
+
+    // holding the projection pipeline while video is streamed to the head unit
+    private VideoStreamManager videoStreamManager;
+
+    // the last stopped pipeline. its encoder thread may still be closing the video service.
+    private VideoStreamManager stoppedVideoStreamManager;
+
+    // keeps the app menu on the head unit in sync with the desired menu
+    private MenuManager menuManager;
+    private boolean menuTimeoutsScheduled;
+
+    // caches the choice sets used for interactions
+    private ChoiceSetManager choiceSetManager;
+
+    // the commands of the menu which can be searched, ranked by how often they were chosen
+    private PrefixTrie searchTerms;
+    private HashMap<String, Runnable> searchActions;
+
+    // keeps track of the displayed template and sends only changed fields
+    private ScreenManager screenManager;
+
+    // recycles the frequent requests once their response arrived
+    private RequestPool requestPool;
+    private boolean poolTimeoutsScheduled;
+
+    // holds back requests the head unit doesn't permit at the current hmi level
+    private PermissionManager permissionManager;
+
+    // records the requests and messages of the session if tracing is enabled
+    private RpcTraceRecorder traceRecorder;
+    private int traceSessionID;
+
+    // plays a recorded head unit instead of the proxy
+    private RpcTraceReplay replay;
+
+    // measures the phases until the first Show is on the head unit
+    private StartupTrace startupTrace;
+
+    // accounts the RPCs, bytes, CPU time and wakeups of the session
+    private SessionProfiler profiler;
+    private File profileFile;
+
+    //endregion
+
+    //region Session lifecycle area
+
+    public ProxySession(Context context, String name, BaseTransportConfig transportConfig,
+                        SessionEventLoop eventLoop, ArtworkManager artworkManager, Host host) {
+        this.context = context;
+        this.name = name;
+        this.transportConfig = transportConfig;
+        this.eventLoop = eventLoop;
+        this.artworkManager = artworkManager;
+        this.host = host;
+
+        this.proxy = null;
+        this.correlationID = 0;
+        this.connectionHandler = new Handler(Looper.getMainLooper());
+        this.connectionTimeout = DEFAULT_CONNECTION_TIMEOUT;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    // executes the task on the event loop of the session
+    public void post(Runnable task) {
+        this.eventLoop.execute(task);
+    }
+
+    // must be set before the session is started
+    public void setConnectionTimeout(long connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public long getConnectionTimeout() {
+        return this.connectionTimeout;
+    }
+
+    // gives a session which isn't connected yet the longer timeout, counted from now
+    public void extendConnectionTimeout(long connectionTimeout) {
+        if (connectionTimeout <= this.connectionTimeout) {
+            return;
+        }
+        this.connectionTimeout = connectionTimeout;
+        this.connectionDeadline = Math.max(this.connectionDeadline, SystemClock.uptimeMillis() + connectionTimeout);
+    }
+
+    public void setDeviceAddress(String deviceAddress) {
+        this.deviceAddress = deviceAddress;
+    }
+
+    public String getDeviceAddress() {
+        return this.deviceAddress;
+    }
+
+    // records the timeline of the session. must be set before the session is started.
+    public void setTraceRecorder(RpcTraceRecorder traceRecorder, int traceSessionID) {
+        this.traceRecorder = traceRecorder;
+        this.traceSessionID = traceSessionID;
+    }
+
+    // profiles the session and appends the report to the file when the session ends.
+    // must be set before the session is started.
+    public void setProfiler(SessionProfiler profiler, File profileFile) {
+        this.profiler = profiler;
+        this.profileFile = profileFile;
+    }
+
+    // creates the proxy on the event loop. callbacks of the proxy are only executed on the event loop.
+    public void start() {
+        this.startupTrace = new StartupTrace(this.name);
+        this.post(new Runnable() {
+            @Override
+            public void run() {
+                setupProxy();
+            }
+        });
+    }
+
+    // starts the session without a proxy. requests go to the replay and the returned listener
+    // passes the messages of the replayed head unit to the session on its event loop.
+    public IProxyListenerALM startReplay(RpcTraceReplay replay) {
+        this.startupTrace = new StartupTrace(this.name);
+        this.resetProperties();
+        this.replay = replay;
+        return this.createListener();
+    }
+
+    // pauses playback because the audio output went away (e.g. the Bluetooth audio connection).
+    // playback stays paused until the user starts it again.
+    public void onAudioBecomingNoisy() {
+        this.post(new Runnable() {
+            @Override
+            public void run() {
+                pauseMedia(true);
+            }
+        });
+    }
+
+    public void dispose() {
+        this.post(new Runnable() {
+            @Override
+            public void run() {
+                disposeProxy();
+            }
+        });
+    }
+
+    //endregion
+
+    //region Proxy lifecycle area
+
+    private void resetProperties() {
+        this.appDidConnect = false;
+        this.appDidStart = false;
+        this.appIconSet = false;
+        this.appIconArtwork = null;
+        this.graphicArtwork = null;
+        this.graphicRequested = false;
+        this.graphicSent = false;
+        this.appMediaPlayer = null;
+        this.appMediaPlayerPrepared = false;
+        this.appMediaPlayerStartPending = false;
+        this.appMediaPlayerUserPaused = false;
+        this.sdlHMILevel = null;
+        this.sdlAudioStreamingState = null;
+        this.sdlSystemContext = null;
+        this.sdlDriverDistracted = false;
+        this.distractionFlushStartNs = 0;
+        this.distractionFlushLatencyNs = 0;
+        this.sdlSupportFiles = false;
+        this.sdlImageFields = null;
+        this.fileTimeoutsScheduled = false;
+        this.videoStreamManager = null;
+        this.stoppedVideoStreamManager = null;
+        this.audioPassThruManager = new AudioPassThruManager(this);
+        this.diagnosticsCollector = null;
+        this.menuManager = new MenuManager(this);
+        this.menuTimeoutsScheduled = false;
+        this.choiceSetManager = new ChoiceSetManager(this);
+        this.searchTerms = new PrefixTrie();
+        this.searchActions = new HashMap<>();
+        this.requestPool = new RequestPool(this);
+        this.poolTimeoutsScheduled = false;
+        this.responseRouter = this.createResponseRouter();
+        this.permissionManager = new PermissionManager(this, this.responseRouter);
+        this.remoteFileManager = new RemoteFileManager(this, this.responseRouter);
+        this.screenManager = new ScreenManager(this, this.requestPool);
+    }
+
+    private void scheduleConnectionTimeout(long delay) {
+        this.connectionHandler.postDelayed(this.profiled("connection timeout", new Runnable() {
+            @Override
+            public void run() {
+                // the timeout may have been extended meanwhile
+                long remaining = connectionDeadline - SystemClock.uptimeMillis();
+                if (remaining > 0) {
+                    scheduleConnectionTimeout(remaining);
+                } else {
+                    dispose();
+                }
+            }
+        }), delay);
+    }
+
+    private void setupProxy() {
+        if (proxy == null) {
+            try {
+                this.resetProperties();
+                this.connectionDeadline = SystemClock.uptimeMillis() + this.connectionTimeout;
+                this.scheduleConnectionTimeout(this.connectionTimeout);
+                this.proxy = new SdlProxyALM(this.createListener(), APP_NAME, true, APP_ID, this.transportConfig);
+                this.startupTrace.mark("proxy created");
+
+                final SdlProxyALM proxy = this.proxy;
+                this.outboundScheduler = new OutboundScheduler(this.name, new OutboundScheduler.Sink() {
+                    @Override
+                    public void sendRPCRequest(RPCRequest request) throws SdlException {
+                        proxy.sendRPCRequest(request);
+                    }
+
+                    @Override
+                    public void onUploadFailed(final PutFileResponse response) {
+                        // handled like the response of the upload
+                        post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (ProxySession.this.proxy == proxy) {
+                                    responseRouter.dispatch(FunctionID.PUT_FILE.getId(), response);
+                                }
+                            }
+                        });
+                    }
+                });
+                this.outboundScheduler.start();
+            } catch (SdlException e) {
+                e.printStackTrace();
+                if (proxy == null) {
+                    this.host.onSessionClosed(this);
+                }
+            }
+        }
+    }
+
+    private IProxyListenerALM createListener() {
+        // responses go to the router. the notifications the session handles go to its methods.
+        IProxyListenerALM listener = new RoutingProxyListener(this.responseRouter) {
+            @Override
+            public void onProxyClosed(String info, Exception e, SdlDisconnectedReason reason) {
+                ProxySession.this.onProxyClosed(info, e, reason);
+            }
+
+            @Override
+            public void onOnHMIStatus(OnHMIStatus notification) {
+                ProxySession.this.onOnHMIStatus(notification);
+            }
+
+            @Override
+            public void onOnLockScreenNotification(OnLockScreenStatus notification) {
+                ProxySession.this.onOnLockScreenNotification(notification);
+            }
+
+            @Override
+            public void onOnButtonPress(OnButtonPress notification) {
+                ProxySession.this.onOnButtonPress(notification);
+            }
+
+            @Override
+            public void onOnCommand(OnCommand notification) {
+                ProxySession.this.onOnCommand(notification);
+            }
+
+            @Override
+            public void onOnPermissionsChange(OnPermissionsChange notification) {
+                ProxySession.this.onOnPermissionsChange(notification);
+            }
+
+            @Override
+            public void onOnAudioPassThru(OnAudioPassThru notification) {
+                ProxySession.this.onOnAudioPassThru(notification);
+            }
+
+            @Override
+            public void onOnKeyboardInput(OnKeyboardInput notification) {
+                ProxySession.this.onOnKeyboardInput(notification);
+            }
+
+            @Override
+            public void onOnDriverDistraction(OnDriverDistraction notification) {
+                ProxySession.this.onOnDriverDistraction(notification);
+            }
+
+            @Override
+            public void onServiceNACKed(OnServiceNACKed serviceNACKed) {
+                ProxySession.this.onServiceNACKed(serviceNACKed);
+            }
+
+            @Override
+            public void onServiceDataACK() {
+                ProxySession.this.onServiceDataACK();
+            }
+        };
+        if (this.profiler != null) {
+            // measured on the event loop
+            listener = this.profiler.wrapListener(IProxyListenerALM.class, listener);
+        }
+        // the proxy calls the listener from its own threads. move every callback onto the event loop.
+        listener = this.eventLoop.wrapListener(IProxyListenerALM.class, listener);
+        if (this.traceRecorder != null) {
+            // record before the message is queued to keep the arrival time
+            listener = this.traceRecorder.wrapListener(IProxyListenerALM.class, listener, this.traceSessionID);
+        }
+        return listener;
+    }
+
+    // counts the task as a wakeup of the session if it's profiled
+    private Runnable profiled(String name, Runnable task) {
+        return this.profiler != null ? this.profiler.wrapWakeup(name, task) : task;
+    }
+
+    private void disposeProxy() {
+        this.host.onLockScreenStatusChanged(this, LockScreenStatus.OFF);
+
+        this.connectionHandler.removeCallbacksAndMessages(null);
+        this.stopVideoStreaming();
+
+        if (this.audioPassThruManager != null) {
+            this.audioPassThruManager.dispose();
+        }
+
+        if (this.diagnosticsCollector != null) {
+            Log.v("SDL", "diagnostics: " + this.diagnosticsCollector.getMetricsSummary());
+            this.diagnosticsCollector = null;
+        }
+
+        if (this.appMediaPlayer != null) {
+            this.onMediaActivity(false);
+            this.appMediaPlayer.release();
+            this.appMediaPlayer = null;
+            this.appMediaPlayerPrepared = false;
+            this.appMediaPlayerStartPending = false;
+        }
+
+        if (this.outboundScheduler != null) {
+            this.outboundScheduler.stop();
+            Log.v("SDL", "outbound: " + this.outboundScheduler.getMetricsSummary());
+            this.outboundScheduler = null;
+        }
+
+        if (this.requestPool != null) {
+            // the responses of the requests in flight never arrive
+            this.requestPool.dispose();
+        }
+
+        if (proxy != null) {
+            try {
+                proxy.dispose();
+            } catch (SdlException e) {
+                e.printStackTrace();
+            }
+            proxy = null;
+        }
+
+        if (this.profiler != null) {
+            this.profiler.stop();
+            Log.v("SDL", "profile: " + this.profiler.getSummary());
+            try {
+                this.profiler.writeReport(this.profileFile);
+            } catch (IOException e) {
+                Log.w("SDL", "Can't write " + this.profileFile, e);
+            }
+        }
+
+        this.host.onSessionClosed(this);
+    }
+
+    //endregion
+
+    //region Request management area
+
+    // serializing every message costs more than sending it. enabled with: adb shell setprop log.tag.SDL VERBOSE
+    private void logMessage(RPCMessage message) {
+        if (!Log.isLoggable("SDL", Log.VERBOSE)) {
+            return;
+        }
+        try { Log.v("SDL", message.serializeJSON((byte) 1).toString(2)); }
+        catch (JSONException e) { e.printStackTrace(); }
+    }
+
+    @Override
+    public int nextCorrelationID() {
+        correlationID = (correlationID % 0xffff) + 1;
+        return correlationID;
+    }
+
+    @Override
+    public void sendRequest(RPCRequest request) {
+        // auto set a correlation id
+        if (request.getCorrelationID() == null) {
+            request.setCorrelationID(nextCorrelationID());
+        }
+
+        // a request the head unit would reject is sent once it's allowed
+        if (!this.permissionManager.check(request)) {
+            return;
+        }
+
+        if (!this.poolTimeoutsScheduled) {
+            this.schedulePoolTimeouts();
+        }
+
+        this.logMessage(request);
+
+        if (this.traceRecorder != null) {
+            this.traceRecorder.recordRequest(this.traceSessionID, request);
+        }
+
+        if (this.profiler != null) {
+            this.profiler.onMessageSent(request);
+        }
+
+        if (this.replay != null) {
+            this.replay.onRequestSent(request);
+            return;
+        }
+
+        // the scheduler sends the actual request
+        if (this.outboundScheduler != null) {
+            this.outboundScheduler.enqueue(request);
+        }
+    }
+
+    @Override
+    public void sendRequests(List<RPCRequest> requests, boolean sequential) {
+        if (requests == null || requests.size() == 0) {
+            return;
+        }
+
+        if (sequential && requests.size() > 1) {
+            // one handler for the whole list. the caller may reuse its list.
+            new SequentialRequests(requests).sendNext();
+        } else {
+            // the list of requests doesn't need to be performed sequentially. send all now.
+            for (RPCRequest request : requests) {
+                this.sendRequest(request);
+            }
+        }
+    }
+
+    // the requests of a sequential list. the next one is sent with the response of the previous one.
+    private class SequentialRequests implements ResponseRouter.Handler {
+        private final RPCRequest[] requests;
+        private int next;
+
+        SequentialRequests(List<RPCRequest> requests) {
+            this.requests = requests.toArray(new RPCRequest[requests.size()]);
+        }
+
+        void sendNext() {
+            RPCRequest request = this.requests[this.next++];
+            if (this.next < this.requests.length) {
+                // specify the correlation ID for the request unless the caller already did
+                if (request.getCorrelationID() == null) {
+                    request.setCorrelationID(nextCorrelationID());
+                }
+                responseRouter.expect(request.getCorrelationID(), this);
+            }
+            sendRequest(request);
+        }
+
+        @Override
+        public void onResponse(RPCResponse response) {
+            this.sendNext();
+        }
+    }
+
+    //endregion
+
+    private void schedulePoolTimeouts() {
+        if (this.poolTimeoutsScheduled || this.requestPool.getInFlight() == 0) {
+            return;
+        }
+
+        this.poolTimeoutsScheduled = true;
+        // pooled requests without response would stay in the pool forever
+        this.connectionHandler.postDelayed(this.profiled("pool timeouts tick", new Runnable() {
+            @Override
+            public void run() {
+                post(profiled("pool timeouts", new Runnable() {
+                    @Override
+                    public void run() {
+                        poolTimeoutsScheduled = false;
+                        requestPool.checkTimeouts();
+                        schedulePoolTimeouts();
+                    }
+                }));
+            }
+        }), this.requestPool.getResponseTimeout());
+    }
+
+    //endregion
+
+    //region File & image management area
+
+    PutFile buildPutFile(byte[] data, String filename, FileType type, boolean persistent, boolean system) {
+        PutFile request = null;
+
+        if (this.sdlSupportFiles) {
+            request = new PutFile();
+            request.setBulkData(data);
+            request.setSdlFileName(filename);
+            request.setFileType(type);
+            request.setPersistentFile(persistent);
+            request.setSystemFile(system);
+        }
+
+        return request;
+    }
+
+    void sendListFiles() {
+        if (this.sdlSupportFiles) {
+            this.sendRequest(new ListFiles());
+        }
+    }
+
+    void prepareArtworks() {
+        // in case the head unit doesn't support files
+        if (!this.sdlSupportFiles) {
+            return;
+        }
+
+        // the images are scaled to the resolution of the head unit in the background
+        // while the list of remote files is requested
+        final SdlProxyALM requestProxy = this.proxy;
+        ImageField iconField = ArtworkManager.findImageField(this.sdlImageFields, ImageFieldName.appIcon);
+        this.artworkManager.prepare(R.drawable.ic_launcher, "ic_launcher", iconField, this.eventLoop, new ArtworkManager.Listener() {
+            @Override
+            public void onArtworkReady(ArtworkManager.Artwork artwork) {
+                // ignore the result if the proxy has changed in the meantime
+                if (artwork != null && proxy == requestProxy) {
+                    appIconArtwork = artwork;
+                    sendAppIcon();
+                }
+            }
+        });
+
+        ImageField graphicField = ArtworkManager.findImageField(this.sdlImageFields, ImageFieldName.graphic);
+        this.artworkManager.prepare(R.drawable.sdl_icon, "sdl_icon", graphicField, this.eventLoop, new ArtworkManager.Listener() {
+            @Override
+            public void onArtworkReady(ArtworkManager.Artwork artwork) {
+                if (artwork != null && proxy == requestProxy) {
+                    graphicArtwork = artwork;
+                    sendGraphic();
+                }
+            }
+        });
+    }
+
+    void sendAppIcon() {
+        // wait for the icon and the list of remote files. the icon is set only once.
+        if (this.appIconArtwork == null || !this.remoteFileManager.isListed() || this.appIconSet) {
+            return;
+        }
+
+        this.appIconSet = true;
+        this.sendAppIcon(this.appIconArtwork);
+    }
+
+    void sendGraphic() {
+        // wait for the first start, the graphic and the list of remote files. the graphic is sent only once.
+        if (!this.graphicRequested || this.graphicArtwork == null || !this.remoteFileManager.isListed() || this.graphicSent) {
+            return;
+        }
+
+        this.graphicSent = true;
+        this.sendGraphic(this.graphicArtwork);
+    }
+
+    private void sendAppIcon(ArtworkManager.Artwork icon) {
+        SetAppIcon setappicon = new SetAppIcon();
+        setappicon.setSdlFileName(icon.fileName);
+
+        // did we uploaded an app icon maybe in a previous session?
+        if (this.remoteFileManager.contains(icon.fileName)) {
+            this.sendRequest(setappicon);
+        } else {
+            // upload a persistent image (only once). the icon is set after the upload.
+            PutFile putfile = this.buildPutFile(icon.data, icon.fileName, icon.fileType, true, false);
+            this.upload(putfile, Collections.<RPCRequest>singletonList(setappicon));
+        }
+    }
+
+    private void sendGraphic(ArtworkManager.Artwork graphic) {
+        Image image = new Image();
+        image.setImageType(ImageType.DYNAMIC);
+        image.setValue(graphic.fileName);
+        this.screenManager.setGraphic(image);
+
+        // the displayed graphic must not be evicted for other uploads
+        this.remoteFileManager.setPinned(graphic.fileName, true);
+
+        if (this.remoteFileManager.contains(graphic.fileName)) {
+            // if the image is already available then use it immediately
+            this.screenManager.commit();
+        } else {
+            // the show (with graphic only) waits until the graphic is uploaded
+            PutFile putfile = this.buildPutFile(graphic.data, graphic.fileName, graphic.fileType, false, false);
+            this.upload(putfile, this.screenManager.buildUpdate());
+        }
+    }
+
+    private void upload(PutFile putfile, List<RPCRequest> followUps) {
+        this.remoteFileManager.upload(putfile, followUps);
+        this.scheduleFileTimeouts();
+    }
+
+    private void scheduleFileTimeouts() {
+        if (this.fileTimeoutsScheduled || !this.remoteFileManager.isBusy()) {
+            return;
+        }
+
+        this.fileTimeoutsScheduled = true;
+        // an upload or a delete without response would hold back all uploads. checked until the uploads are done.
+        this.connectionHandler.postDelayed(this.profiled("file timeouts tick", new Runnable() {
+            @Override
+            public void run() {
+                post(profiled("file timeouts", new Runnable() {
+                    @Override
+                    public void run() {
+                        fileTimeoutsScheduled = false;
+                        remoteFileManager.checkTimeouts();
+                        scheduleFileTimeouts();
+                    }
+                }));
+            }
+        }), this.remoteFileManager.getResponseTimeout());
+    }
+
+    //endregion
+
+    //region Menu management area
+
+    void sendMenu() {
+        List<MenuManager.MenuEntry> entries = new ArrayList<>(2);
+        entries.add(new MenuManager.MenuEntry("Play", Collections.singletonList("Play"), new Runnable() {
+            @Override
+            public void run() {
+                startMedia();
+            }
+        }));
+        entries.add(new MenuManager.MenuEntry("Pause", Collections.singletonList("Pause"), new Runnable() {
+            @Override
+            public void run() {
+                pauseMedia(true);
+            }
+        }));
+        entries.add(new MenuManager.MenuEntry("Record", Collections.singletonList("Record"), new Runnable() {
+            @Override
+            public void run() {
+                startAudioCapture();
+            }
+        }));
+
+        // the commands can be searched with the keyboard of the head unit
+        for (MenuManager.MenuEntry entry : entries) {
+            this.searchTerms.addWeight(entry.title, 0);
+            this.searchActions.put(entry.title, entry.action);
+        }
+        entries.add(new MenuManager.MenuEntry("Search", Collections.singletonList("Search"), new Runnable() {
+            @Override
+            public void run() {
+                startSearch();
+            }
+        }));
+
+        // only the difference to the menu on the head unit is sent
+        this.menuManager.setMenu(entries);
+        this.scheduleMenuTimeouts();
+    }
+
+    private void scheduleMenuTimeouts() {
+        if (this.menuTimeoutsScheduled || !this.menuManager.isBusy()) {
+            return;
+        }
+
+        this.menuTimeoutsScheduled = true;
+        // a menu request without response would hold back all later menu updates
+        this.connectionHandler.postDelayed(this.profiled("menu timeouts tick", new Runnable() {
+            @Override
+            public void run() {
+                post(profiled("menu timeouts", new Runnable() {
+                    @Override
+                    public void run() {
+                        menuTimeoutsScheduled = false;
+                        menuManager.checkTimeouts();
+                        scheduleMenuTimeouts();
+                    }
+                }));
+            }
+        }), this.menuManager.getResponseTimeout());
+    }
+
+    void startSearch() {
+        this.choiceSetManager.startSearch("Search", this.searchTerms, new ChoiceSetManager.InteractionListener() {
+            @Override
+            public void onChoiceSelected(String choice) {
+                Runnable action = searchActions.get(choice);
+                if (action != null) {
+                    action.run();
+                }
+            }
+
+            @Override
+            public void onInteractionCanceled() {
+            }
+        });
+    }
+
+    //endregion
+
+    //region Audio management area
+
+    void createMediaPlayer() {
+        AssetFileDescriptor descriptor = this.context.getResources().openRawResourceFd(R.raw.audio_01);
+        if (descriptor == null) {
+            return;
+        }
+
+        final MediaPlayer player = new MediaPlayer();
+        try {
+            player.setDataSource(descriptor.getFileDescriptor(), descriptor.getStartOffset(), descriptor.getLength());
+        } catch (IOException e) {
+            Log.w("SDL", "Can't open the audio file", e);
+            player.release();
+            return;
+        } finally {
+            try {
+                descriptor.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // the player is prepared in the background. a pending start is executed when it's ready.
+        player.setOnPreparedListener(new MediaPlayer.OnPreparedListener() {
+            @Override
+            public void onPrepared(MediaPlayer mediaPlayer) {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onMediaPlayerPrepared(player);
+                    }
+                });
+            }
+        });
+        player.setOnErrorListener(new MediaPlayer.OnErrorListener() {
+            @Override
+            public boolean onError(MediaPlayer mediaPlayer, int what, int extra) {
+                Log.w("SDL", "Media player error " + what + ", " + extra);
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (appMediaPlayer == player) {
+                            onMediaActivity(false);
+                            appMediaPlayer.release();
+                            appMediaPlayer = null;
+                            appMediaPlayerPrepared = false;
+                            appMediaPlayerStartPending = false;
+                        }
+                    }
+                });
+                return true;
+            }
+        });
+        player.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
+            @Override
+            public void onCompletion(MediaPlayer mediaPlayer) {
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onMediaActivity(false);
+                        setMediaClockTimer(UpdateMode.CLEAR);
+                    }
+                });
+            }
+        });
+
+        this.appMediaPlayer = player;
+        this.appMediaPlayerPrepared = false;
+        player.prepareAsync();
+    }
+
+    private void onMediaPlayerPrepared(MediaPlayer player) {
+        // the player was released in the meantime
+        if (player != this.appMediaPlayer) {
+            return;
+        }
+
+        this.appMediaPlayerPrepared = true;
+        if (this.appMediaPlayerStartPending) {
+            this.appMediaPlayerStartPending = false;
+            this.startMedia();
+        }
+    }
+
+    void startMedia() {
+        if (this.isMediaPlaying()) {
+            return;
+        }
+
+        // the media player is created the first time audio is played
+        if (this.appMediaPlayer == null) {
+            this.createMediaPlayer();
+        }
+        if (this.appMediaPlayer == null) {
+            return;
+        }
+
+        this.appMediaPlayerUserPaused = false;
+
+        if (!this.appMediaPlayerPrepared) {
+            this.appMediaPlayerStartPending = true;
+            return;
+        }
+
+        this.appMediaPlayer.start();
+        this.onMediaActivity(true);
+        this.setMediaClockTimer(UpdateMode.COUNTUP);
+    }
+
+    void stopMedia() {
+        if (this.isMediaPlaying()) {
+            this.pausePlayer();
+            this.appMediaPlayerUserPaused = false;
+
+            this.setMediaClockTimer(UpdateMode.CLEAR);
+        }
+    }
+
+    void pauseMedia(boolean userPaused) {
+        if (this.isMediaPlaying()) {
+            this.pausePlayer();
+            this.appMediaPlayerUserPaused = userPaused;
+
+            this.setMediaClockTimer(UpdateMode.PAUSE);
+        }
+    }
+
+    private void pausePlayer() {
+        if (this.appMediaPlayerStartPending) {
+            // not started yet
+            this.appMediaPlayerStartPending = false;
+        } else {
+            this.appMediaPlayer.pause();
+            this.onMediaActivity(false);
+        }
+    }
+
+    private void onMediaActivity(boolean playing) {
+        if (this.profiler == null) {
+            return;
+        }
+        if (playing) {
+            this.profiler.onMediaStarted();
+        } else {
+            this.profiler.onMediaStopped();
+        }
+    }
+
+    void setMediaClockTimer(UpdateMode updateMode) {
+        switch (updateMode) {
+            case COUNTUP: {
+                final int SECOND = 1000;
+                final int MINUTE = 60 * SECOND;
+                final int HOUR = 60 * MINUTE;
+
+                // the player may not be prepared yet
+                int position = this.appMediaPlayerPrepared ? this.appMediaPlayer.getCurrentPosition() : 0;
+                int positionHour = position / HOUR;
+                int positionMinute = (position % HOUR) / MINUTE;
+                int positionSecond = (position % MINUTE) / SECOND;
+
+                int duration = this.appMediaPlayerPrepared ? this.appMediaPlayer.getDuration() : 0;
+                int durationHour = duration / HOUR;
+                int durationMinute = (duration % HOUR) / MINUTE;
+                int durationSecond = (duration % MINUTE) / SECOND;
+
+                SetMediaClockTimer timer = this.requestPool.obtainSetMediaClockTimer();
+                timer.setUpdateMode(UpdateMode.COUNTUP);
+                timer.setStartTime(this.requestPool.obtainStartTime(positionHour, positionMinute, positionSecond));
+                if (duration > 0) {
+                    timer.setEndTime(this.requestPool.obtainStartTime(durationHour, durationMinute, durationSecond));
+                }
+                this.sendRequest(timer);
+
+                this.screenManager.setTextField(ScreenManager.MAIN_FIELD_3, "Playing");
+                this.screenManager.commit();
+                break;
+            }
+            case RESUME: {
+                SetMediaClockTimer timer = this.requestPool.obtainSetMediaClockTimer();
+                timer.setUpdateMode(UpdateMode.RESUME);
+                this.sendRequest(timer);
+
+                this.screenManager.setTextField(ScreenManager.MAIN_FIELD_3, "Playing");
+                this.screenManager.commit();
+                break;
+            }
+            case CLEAR: {
+                SetMediaClockTimer timer = this.requestPool.obtainSetMediaClockTimer();
+                timer.setUpdateMode(UpdateMode.CLEAR);
+                this.sendRequest(timer);
+
+                this.screenManager.setTextField(ScreenManager.MAIN_FIELD_3, "Stopped");
+                this.screenManager.commit();
+                break;
+            }
+            case PAUSE: {
+                SetMediaClockTimer timer = this.requestPool.obtainSetMediaClockTimer();
+                timer.setUpdateMode(UpdateMode.PAUSE);
+                this.sendRequest(timer);
+
+                this.screenManager.setTextField(ScreenManager.MAIN_FIELD_3, "Paused");
+                this.screenManager.commit();
+                break;
+            }
+        }
+    }
+
+    // a start waiting for the player to be prepared counts as playing
+    boolean isMediaPlaying() {
+        return this.appMediaPlayerStartPending
+                || (this.appMediaPlayerPrepared && this.appMediaPlayer.isPlaying());
+    }
+
+    boolean isMediaPausedByUser() {
+        return this.appMediaPlayerUserPaused;
+    }
+
+    //endregion
+
+    //region Video streaming area
+
+    void startVideoStreaming() {
+        if (!VIDEO_STREAMING_ENABLED || this.videoStreamManager != null) {
+            return;
+        }
+
+        int width = VIDEO_DEFAULT_WIDTH;
+        int height = VIDEO_DEFAULT_HEIGHT;
+        try {
+            ScreenParams params = proxy.getDisplayCapabilities().getScreenParams();
+            if (params != null && params.getImageResolution() != null) {
+                width = params.getImageResolution().getResolutionWidth();
+                height = params.getImageResolution().getResolutionHeight();
+            }
+        } catch (SdlException e) {
+            e.printStackTrace();
+        }
+
+        final SdlProxyALM streamProxy = this.proxy;
+        VideoStreamManager.Transport transport = new VideoStreamManager.Transport() {
+            @Override
+            public OutputStream openVideoStream() {
+                // blocks until the head unit accepted or rejected the video service
+                return streamProxy.startH264();
+            }
+
+            @Override
+            public void closeVideoStream() {
+                streamProxy.endH264();
+            }
+        };
+
+        this.videoStreamManager = new VideoStreamManager(transport, VideoStreamManager.createDefaultEncoder(),
+                new ProjectionRenderer(APP_NAME), width, height, VIDEO_FRAME_RATE, VIDEO_BIT_RATE);
+        this.videoStreamManager.start(this.stoppedVideoStreamManager);
+        this.stoppedVideoStreamManager = null;
+    }
+
+    // doesn't block the event loop. the encoder thread closes the stream in the background.
+    void stopVideoStreaming() {
+        if (this.videoStreamManager != null) {
+            this.videoStreamManager.stop();
+            Log.v("SDL", "video stream: " + this.videoStreamManager.getMetricsSummary());
+            this.stoppedVideoStreamManager = this.videoStreamManager;
+            this.videoStreamManager = null;
+        }
+    }
+
+    //endregion
+
+    //region App notification area
+
+    private void onAppDidConnect() {
+        Log.v("SDL", "onAppDidConnect");
+        this.startupTrace.mark("registered");
+        this.host.onSessionRegistered(this);
+
+        // the artworks are prepared while the list of remote files is requested.
+        // the media player is created when audio gets audible.
+        this.sendListFiles();
+        this.prepareArtworks();
+        this.startDiagnostics();
+    }
+
+    private void onAppDidDisconnect() {
+        Log.v("SDL", "onAppDidDisconnect");
+
+        // audio playback requirements: phase 1
+        this.stopMedia();
+
+        Log.v("SDL", "screen updates: " + this.screenManager.getRpcsSent() + " rpcs sent, "
+                + this.screenManager.getRpcsSaved() + " rpcs and " + this.screenManager.getBytesSaved() + " bytes saved");
+        Log.v("SDL", "remote files: " + this.remoteFileManager.getUploads() + " uploads ("
+                + this.remoteFileManager.getBytesUploaded() + " bytes), " + this.remoteFileManager.getFailedUploads()
+                + " failed (" + this.remoteFileManager.getTimedOutUploads() + " timed out), " + this.remoteFileManager.getEvictions() + " evicted, "
+                + this.remoteFileManager.getFailedDeletes() + " deletes failed, " + this.remoteFileManager.getFileCount()
+                + " files on the head unit (index " + this.remoteFileManager.getIndexMemoryBytes() + " bytes, "
+                + this.remoteFileManager.getLookupsRejectedByFilter() + " lookups rejected by filter)");
+        Log.v("SDL", "driver distraction: " + this.menuManager.getUpdatesDeferred() + " menu updates and "
+                + this.remoteFileManager.getUploadsDeferred() + " uploads deferred, "
+                + (this.screenManager.getBytesDeferred() + this.remoteFileManager.getBytesDeferred()) + " bytes deferred, "
+                + "last flush " + this.distractionFlushLatencyNs / 1000000 + " ms");
+        Log.v("SDL", "permissions: " + this.permissionManager.getRoundTripsSaved() + " round trips saved, "
+                + this.permissionManager.getDropped() + " dropped, " + this.permissionManager.getDisallowedResponses()
+                + " disallowed responses");
+        Log.v("SDL", "request pool: " + this.requestPool.getObtained() + " obtained, "
+                + this.requestPool.getAllocated() + " allocated, " + this.requestPool.getRecycled() + " recycled");
+        Log.v("SDL", "choice sets: " + this.choiceSetManager.getMetricsSummary());
+        Log.v("SDL", "responses: " + this.responseRouter.getMetricsSummary());
+    }
+
+    private void onAppDidStart(boolean firstStart) {
+        Log.v("SDL", "onAppDidStart. firstStart = " + (firstStart ? "yes" : "no"));
+        this.startupTrace.mark("hmi full");
+
+        if (firstStart) {
+            // lets subscribe to all buttons. each request needs its own object as sending is asynchronous.
+            for (ButtonName name : new ButtonName[] { ButtonName.OK, ButtonName.SEEKLEFT, ButtonName.SEEKRIGHT }) {
+                SubscribeButton button = this.requestPool.obtainSubscribeButton();
+                button.setButtonName(name);
+                this.sendRequest(button);
+            }
+
+            this.sendMenu();
+
+            // the text is shown immediately. the graphic follows with another Show once it is prepared.
+            this.screenManager.setTextField(ScreenManager.MAIN_FIELD_1, "Welcome to");
+            this.screenManager.setTextField(ScreenManager.MAIN_FIELD_2, "Hello SDL");
+            this.screenManager.commit();
+
+            this.graphicRequested = true;
+            this.sendGraphic();
+        }
+    }
+
+    private void onAppDidStop() {
+        Log.v("SDL", "onAppDidStop");
+    }
+
+    private void onHMILevelChange(HMILevel hmiLevel) {
+        Log.v("SDL", "onAppHMILevelChange: " + hmiLevel.toString());
+
+        // audio playback requirements: phase 1
+        switch (hmiLevel) {
+            case HMI_FULL:
+                this.setMediaClockTimer(UpdateMode.COUNTUP);
+                this.startVideoStreaming();
+                break;
+            case HMI_BACKGROUND:
+            case HMI_NONE:
+                this.stopMedia();
+                this.stopVideoStreaming();
+                break;
+        }
+    }
+
+    private void onAudioStreamingStateChange(AudioStreamingState audioStreamingState) {
+        Log.v("SDL", "onAppAudioStreamingStateChange: " + audioStreamingState.toString());
+
+        // audio playback requirements: phase 3
+        if (audioStreamingState.equals(AudioStreamingState.NOT_AUDIBLE)) {
+            if (this.isMediaPlaying()) {
+                this.pauseMedia(false);
+
+            }
+        } else {
+            if (!this.isMediaPlaying()) {
+                if (!this.isMediaPausedByUser()) {
+                    this.startMedia();
+                }
+            }
+        }
+    }
+
+    private void onSystemContextChange(SystemContext systemContext) {
+        Log.v("SDL", "onAppSystemContextChange: " + systemContext.toString());
+        this.choiceSetManager.onSystemContextChange(systemContext);
+    }
+
+    //endregion
+
+    //region Proxy notification area
+
+    public void onProxyClosed(String info, Exception e, SdlDisconnectedReason reason) {
+        // call the notification to prepare app disconnection
+        this.onAppDidDisconnect();
+        this.disposeProxy();
+    }
+
+    //endregion
+
+    //region RPC notification area
+
+    public void onOnHMIStatus(OnHMIStatus notification) {
+        // wrap logic to provide changes on hmi level
+        if (!notification.getHmiLevel().equals(this.sdlHMILevel)) {
+            // the requests sent for the new level are checked against it, not against the old one
+            this.permissionManager.setHmiLevel(notification.getHmiLevel());
+            // call the notification because hmi level has changed
+            this.onHMILevelChange(notification.getHmiLevel());
+            this.sdlHMILevel = notification.getHmiLevel();
+        }
+
+        // wrap logic to provide changes on audio streaming state
+        if (!notification.getAudioStreamingState().equals(this.sdlAudioStreamingState)) {
+            // call the notification because audio streaming state has changed
+            this.onAudioStreamingStateChange(notification.getAudioStreamingState());
+            this.sdlAudioStreamingState = notification.getAudioStreamingState();
+        }
+
+        // wrap logic to provide changes on system context
+        if (!notification.getSystemContext().equals(this.sdlSystemContext)) {
+            // call the notification becase system context has changed
+            this.onSystemContextChange(notification.getSystemContext());
+            this.sdlSystemContext = notification.getSystemContext();
+        }
+
+        // wrap logic to provide an OnAppDidConnect notification.
+        // this notification is called when the app freshly connected to the head unit.
+        if (this.appDidConnect == false) {
+            this.appDidConnect = true;
+            // the connection handler must be stoped. remove all callbacks
+            connectionHandler.removeCallbacksAndMessages(null);
+            // prepare sdl based parameters (a replayed session has no proxy)
+            if (proxy != null) {
+                try {
+                    DisplayCapabilities capabilities = proxy.getDisplayCapabilities();
+                    this.sdlSupportFiles = capabilities.getGraphicSupported();
+                    this.sdlImageFields = capabilities.getImageFields();
+                } catch (SdlException e) { e.printStackTrace(); }
+            }
+
+            // call the notification
+            this.onAppDidConnect();
+        }
+
+        // wrap logic to provide an OnAppDidStart notification.
+        // this notification is called when the app is started by the user
+        // in addition it can tell if it was the first start
+        if (notification.getHmiLevel().equals(HMILevel.HMI_FULL)) {
+            if (this.appDidStart == false) {
+                this.appDidStart = true;
+                // call the notification
+                this.onAppDidStart(notification.getFirstRun());
+            }
+        }
+
+        // wrap logic to provide an OnAppDidStop notification.
+        // this notification is called when the app is stopped by the user
+        if (notification.getHmiLevel().equals(HMILevel.HMI_NONE)) {
+            if (this.appDidStart == true) {
+                this.appDidStart = false;
+                // call the notification
+                this.onAppDidStop();
+            }
+        }
+    }
+
+    public void onOnLockScreenNotification(OnLockScreenStatus notification) {
+        this.host.onLockScreenStatusChanged(this, notification.getShowLockScreen());
+    }
+
+    public void onOnButtonPress(OnButtonPress notification) {
+        if (notification.getButtonName().equals(ButtonName.OK)) {
+            // audio playback requirements: phase 2
+            if (this.isMediaPlaying()) {
+                this.pauseMedia(true);
+            } else {
+                this.startMedia();
+            }
+        }
+    }
+
+    public void onOnCommand(OnCommand notification) {
+        this.menuManager.onCommand(notification.getCmdID());
+    }
+
+    public void onOnPermissionsChange(OnPermissionsChange notification) {
+        this.permissionManager.onPermissionsChange(notification);
+        if (this.diagnosticsCollector != null) {
+            this.diagnosticsCollector.onPermissionsChange();
+        }
+    }
+
+    public void onOnAudioPassThru(OnAudioPassThru notification) {
+        this.audioPassThruManager.onOnAudioPassThru(notification);
+    }
+
+    public void onOnKeyboardInput(OnKeyboardInput notification) {
+        this.choiceSetManager.onKeyboardInput(notification);
+    }
+
+    public void onOnDriverDistraction(OnDriverDistraction notification) {
+        boolean distracted = notification.getState() == DriverDistractionState.DD_ON;
+        if (distracted == this.sdlDriverDistracted) {
+            return;
+        }
+        this.sdlDriverDistracted = distracted;
+
+        this.screenManager.setDistracted(distracted);
+        if (distracted) {
+            this.menuManager.setDistracted(true);
+            this.remoteFileManager.setDistracted(true);
+            return;
+        }
+
+        // deferred work in order of priority: the full text first, then the menu, then the uploads
+        this.distractionFlushStartNs = System.nanoTime();
+        if (!this.screenManager.commit()) {
+            this.onDistractionFlushed();
+        }
+        this.menuManager.setDistracted(false);
+        this.scheduleMenuTimeouts();
+        this.remoteFileManager.setDistracted(false);
+    }
+
+    private void onDistractionFlushed() {
+        if (this.distractionFlushStartNs != 0) {
+            this.distractionFlushLatencyNs = System.nanoTime() - this.distractionFlushStartNs;
+            this.distractionFlushStartNs = 0;
+            Log.v("SDL", "distraction flushed in " + this.distractionFlushLatencyNs / 1000000 + " ms");
+        }
+    }
+
+    public void onServiceNACKed(OnServiceNACKed serviceNACKed) {
+        if (SessionType.NAV.equals(serviceNACKed.getSessionType())) {
+            this.stopVideoStreaming();
+        }
+    }
+
+    // the proxy doesn't tell the service of the ACK. the video service is the only stream the app opens
+    // and the manager counts the ACKs only while its stream is open.
+    public void onServiceDataACK() {
+        if (this.videoStreamManager != null) {
+            this.videoStreamManager.onDataAck();
+        }
+    }
+
+    //endregion
+
+    //region Diagnostics area
+
+    private void startDiagnostics() {
+        if (!DIAGNOSTICS_ENABLED || this.diagnosticsCollector != null) {
+            return;
+        }
+
+        this.diagnosticsCollector = new DiagnosticsCollector(this, DIAGNOSTICS_REQUESTS_PER_SECOND);
+        for (int ecu : DIAGNOSTICS_ECUS) {
+            this.diagnosticsCollector.addEcu(ecu, DIAGNOSTICS_DIDS);
+        }
+        this.scheduleDiagnostics(0);
+    }
+
+    private void scheduleDiagnostics(long delay) {
+        // the ticks stop with the other callbacks of the connection handler when the proxy is disposed
+        this.connectionHandler.postDelayed(this.profiled("diagnostics tick", new Runnable() {
+            @Override
+            public void run() {
+                post(profiled("diagnostics poll", new Runnable() {
+                    @Override
+                    public void run() {
+                        if (diagnosticsCollector == null) {
+                            return;
+                        }
+                        // diagnostics are not allowed without the app being at least in background
+                        if (sdlHMILevel != null && sdlHMILevel != HMILevel.HMI_NONE) {
+                            diagnosticsCollector.setAllowed(permissionManager.isAllowed(FunctionID.READ_DID),
+                                    permissionManager.isAllowed(FunctionID.GET_DTCS));
+                            diagnosticsCollector.poll(SystemClock.elapsedRealtime());
+                        }
+                        scheduleDiagnostics(DIAGNOSTICS_POLL_INTERVAL);
+                    }
+                }));
+            }
+        }), delay);
+    }
+
+    //endregion
+
+    //region Audio capture area
+
+    // records the microphone of the head unit into a WAV file
+    void startAudioCapture() {
+        if (this.audioPassThruManager.isCapturing()) {
+            this.audioPassThruManager.stop();
+            return;
+        }
+
+        final File file = new File(new File(this.context.getFilesDir(), AUDIO_CAPTURE_DIRECTORY), this.name + ".wav");
+        final AudioLevelMeter levelMeter = new AudioLevelMeter();
+        List<AudioPassThruManager.Consumer> consumers = new ArrayList<>(3);
+        consumers.add(new WavFileWriter(file));
+        consumers.add(levelMeter);
+        consumers.add(new AudioPassThruManager.Consumer() {
+            @Override
+            public void onCaptureStarted(int sampleRate, int bitsPerSample) {
+            }
+
+            @Override
+            public void onChunk(AudioPassThruManager.Chunk chunk) {
+            }
+
+            @Override
+            public void onCaptureFinished(boolean complete) {
+                Log.v("SDL", "audio capture " + (complete ? "complete" : "aborted") + ": " + file
+                        + ", peak " + Math.round(levelMeter.getPeakLevelDb()) + " dB");
+            }
+        });
+
+        this.audioPassThruManager.start("Recording", AUDIO_CAPTURE_MAX_DURATION, consumers);
+    }
+
+    //endregion
+
+    //region RPC response area
+
+    // every response is logged, handled by the handler of its function and by the request waiting for it.
+    // pooled requests and the permission metrics are completed last.
+    private ResponseRouter createResponseRouter() {
+        ResponseRouter router = new ResponseRouter();
+
+        router.addObserver(new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                logMessage(response);
+            }
+        });
+
+        router.addCompletionHandler(new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                requestPool.onResponse(response);
+                permissionManager.onResponse(response);
+            }
+        });
+
+        router.setHandler(FunctionID.LIST_FILES, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                remoteFileManager.onListFilesResponse((ListFilesResponse) response);
+                startupTrace.mark("files listed");
+
+                // the artworks waiting for the list can be sent now
+                sendAppIcon();
+                sendGraphic();
+            }
+        });
+
+        router.setFilter(FunctionID.PUT_FILE, new ResponseRouter.Filter() {
+            @Override
+            public RPCResponse filter(RPCResponse response) {
+                // responses to the chunks of an upload stay in the scheduler
+                if (outboundScheduler != null) {
+                    return outboundScheduler.filterPutFileResponse((PutFileResponse) response);
+                }
+                return response;
+            }
+        });
+
+        router.setHandler(FunctionID.PUT_FILE, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                remoteFileManager.onPutFileResponse((PutFileResponse) response);
+            }
+        });
+
+        router.setHandler(FunctionID.DELETE_FILE, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                remoteFileManager.onDeleteFileResponse((DeleteFileResponse) response);
+            }
+        });
+
+        ResponseRouter.Handler menuHandler = new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                menuManager.onMenuResponse(response);
+            }
+        };
+        router.setHandler(FunctionID.ADD_COMMAND, menuHandler);
+        router.setHandler(FunctionID.DELETE_COMMAND, menuHandler);
+        router.setHandler(FunctionID.ADD_SUB_MENU, menuHandler);
+        router.setHandler(FunctionID.DELETE_SUB_MENU, menuHandler);
+
+        router.setHandler(FunctionID.CREATE_INTERACTION_CHOICE_SET, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                choiceSetManager.onCreateInteractionChoiceSetResponse((CreateInteractionChoiceSetResponse) response);
+            }
+        });
+
+        router.setHandler(FunctionID.DELETE_INTERACTION_CHOICE_SET, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                choiceSetManager.onDeleteInteractionChoiceSetResponse(response);
+            }
+        });
+
+        router.setHandler(FunctionID.PERFORM_INTERACTION, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                choiceSetManager.onPerformInteractionResponse((PerformInteractionResponse) response);
+            }
+        });
+
+        router.setHandler(FunctionID.SHOW, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                screenManager.onShowResponse(response);
+                if (response.getSuccess()) {
+                    startupTrace.finish("first show visible");
+                }
+                // the first show after a distraction restores the full text
+                onDistractionFlushed();
+            }
+        });
+
+        router.setHandler(FunctionID.SET_DISPLAY_LAYOUT, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                screenManager.onSetDisplayLayoutResponse(response);
+            }
+        });
+
+        router.setHandler(FunctionID.PERFORM_AUDIO_PASS_THRU, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                audioPassThruManager.onPerformAudioPassThruResponse(response);
+            }
+        });
+
+        router.setHandler(FunctionID.READ_DID, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                if (diagnosticsCollector != null) {
+                    diagnosticsCollector.onReadDIDResponse((ReadDIDResponse) response, SystemClock.elapsedRealtime());
+                }
+            }
+        });
+
+        router.setHandler(FunctionID.GET_DTCS, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                if (diagnosticsCollector != null) {
+                    diagnosticsCollector.onGetDTCsResponse((GetDTCsResponse) response, SystemClock.elapsedRealtime());
+                }
+            }
+        });
+
+        return router;
+    }
+    //endregion
+}
@@ -0,0 +1,225 @@
+package com.sdl.hellosdlandroid;
+
+// Set of the names of the files on the head unit, compact enough for head units listing thousands of
+// files of all apps. The names are kept in an open addressing table (linear probing, at most half full)
+// next to their hashes, without an object per entry. A Bloom filter in front of the table answers
+// most lookups of names which aren't on the head unit without touching the table. Not thread safe.
+public class RemoteFileIndex {
+    private static final int MIN_CAPACITY = 64;
+
+    // bits of the Bloom filter per slot of the table, i.e. 16 to 32 bits per name. with two probes
+    // under 1% of the misses reach the table and a miss costs less than a lookup in a HashMap.
+    private static final int BLOOM_BITS_PER_SLOT = 8;
+    private static final int BLOOM_PROBES = 2;
+
+    private String[] names;
+    private int[] hashes;
+    private long[] bloom;
+    private int bloomMask;
+    private int size;
+
+    // names removed since the filter was built. their bits stay set until it's built again.
+    private int staleNames;
+
+    // metrics
+    private long lookups;
+    private long bloomRejects;
+    private long falsePositives;
+
+    public RemoteFileIndex() {
+        this.allocate(MIN_CAPACITY);
+    }
+
+    //region Set area
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean contains(String name) {
+        this.lookups++;
+        int hash = spread(name.hashCode());
+        if (!this.mightContain(hash)) {
+            this.bloomRejects++;
+            return false;
+        }
+        if (this.find(name, hash) >= 0) {
+            return true;
+        }
+        this.falsePositives++;
+        return false;
+    }
+
+    // returns false if the name was already in the index
+    public boolean add(String name) {
+        int hash = spread(name.hashCode());
+        if (this.find(name, hash) >= 0) {
+            return false;
+        }
+
+        if ((this.size + 1) * 2 > this.names.length) {
+            this.resize(this.names.length * 2);
+        }
+        this.insert(name, hash);
+        this.size++;
+        return true;
+    }
+
+    // returns false if the name wasn't in the index
+    public boolean remove(String name) {
+        int hash = spread(name.hashCode());
+        int hole = this.find(name, hash);
+        if (hole < 0) {
+            return false;
+        }
+
+        // backward shift deletion: move later entries of the probe sequence into the hole so lookups
+        // don't need tombstones
+        int mask = this.names.length - 1;
+        for (int slot = (hole + 1) & mask; this.names[slot] != null; slot = (slot + 1) & mask) {
+            int home = this.hashes[slot] & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                this.names[hole] = this.names[slot];
+                this.hashes[hole] = this.hashes[slot];
+                hole = slot;
+            }
+        }
+        this.names[hole] = null;
+        this.hashes[hole] = 0;
+        this.size--;
+
+        if (++this.staleNames > this.names.length / 4) {
+            this.buildBloom();
+        }
+        return true;
+    }
+
+    // makes room for the names of a list without growing the table several times
+    public void ensureCapacity(int count) {
+        int capacity = this.names.length;
+        while (count * 2 > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > this.names.length) {
+            this.resize(capacity);
+        }
+    }
+
+    public void clear() {
+        this.allocate(MIN_CAPACITY);
+    }
+
+    //endregion
+
+    //region Table area
+
+    private void allocate(int capacity) {
+        this.names = new String[capacity];
+        this.hashes = new int[capacity];
+        this.bloom = new long[capacity * BLOOM_BITS_PER_SLOT / 64];
+        this.bloomMask = capacity * BLOOM_BITS_PER_SLOT - 1;
+        this.size = 0;
+        this.staleNames = 0;
+    }
+
+    private void resize(int capacity) {
+        String[] oldNames = this.names;
+        int[] oldHashes = this.hashes;
+        int size = this.size;
+
+        this.allocate(capacity);
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldNames[i] != null) {
+                this.insert(oldNames[i], oldHashes[i]);
+            }
+        }
+        this.size = size;
+    }
+
+    private void insert(String name, int hash) {
+        int mask = this.names.length - 1;
+        int slot = hash & mask;
+        while (this.names[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        this.names[slot] = name;
+        this.hashes[slot] = hash;
+        this.setBloom(hash);
+    }
+
+    private int find(String name, int hash) {
+        int mask = this.names.length - 1;
+        for (int slot = hash & mask; this.names[slot] != null; slot = (slot + 1) & mask) {
+            if (this.hashes[slot] == hash && name.equals(this.names[slot])) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static int spread(int hash) {
+        hash *= 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    //endregion
+
+    //region Bloom filter area
+
+    private void buildBloom() {
+        for (int i = 0; i < this.bloom.length; i++) {
+            this.bloom[i] = 0;
+        }
+        for (int i = 0; i < this.names.length; i++) {
+            if (this.names[i] != null) {
+                this.setBloom(this.hashes[i]);
+            }
+        }
+        this.staleNames = 0;
+    }
+
+    private void setBloom(int hash) {
+        // double hashing. the step is odd to reach every bit.
+        int step = Integer.rotateLeft(hash * 0x85ebca6b, 13) | 1;
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            int bit = (hash + i * step) & this.bloomMask;
+            this.bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(int hash) {
+        int step = Integer.rotateLeft(hash * 0x85ebca6b, 13) | 1;
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            int bit = (hash + i * step) & this.bloomMask;
+            if ((this.bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public long getLookups() {
+        return this.lookups;
+    }
+
+    // lookups answered by the filter alone
+    public long getBloomRejects() {
+        return this.bloomRejects;
+    }
+
+    // lookups the filter passed for names which aren't in the index
+    public long getFalsePositives() {
+        return this.falsePositives;
+    }
+
+    // memory of the table, the hashes and the filter without the names themselves
+    public long getMemoryBytes() {
+        return (long) this.names.length * 8 + this.hashes.length * 4L + this.bloom.length * 8L;
+    }
+
+    //endregion
+}
@@ -0,0 +1,449 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.DeleteFile;
+import com.smartdevicelink.proxy.rpc.DeleteFileResponse;
+import com.smartdevicelink.proxy.rpc.ListFilesResponse;
+import com.smartdevicelink.proxy.rpc.PutFile;
+import com.smartdevicelink.proxy.rpc.PutFileResponse;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Keeps track of the files on the head unit and of the space left for the app. Uploads run in parallel
+// up to a limit and reserve their size until the response arrived. If an upload doesn't fit into the
+// space left, the least recently used non-persistent files are deleted in one parallel batch first.
+// The names of all files on the head unit are kept in a compact index which is updated with every
+// upload and delete. Only the files uploaded by the session are tracked with their size and last use.
+// Uploads and deletes without a response are given up after a timeout so the uploads waiting for them
+// continue. The follow up requests of an upload are sent after its successful response only, a failed
+// upload answers them with failed responses through the router.
+public class RemoteFileManager {
+    private static final String TAG = "SDL Files";
+
+    // uploads waiting for their response at the same time
+    private static final int MAX_UPLOADS_IN_FLIGHT = 3;
+
+    // files deleted at most in one eviction round
+    private static final int EVICTION_BATCH = 4;
+
+    private static final long DEFAULT_RESPONSE_TIMEOUT = 10 * 1000;
+
+    // a file uploaded by the session
+    private static class RemoteFile {
+        final String name;
+        final int size;
+        final boolean persistent;
+
+        RemoteFile(String name, int size, boolean persistent) {
+            this.name = name;
+            this.size = size;
+            this.persistent = persistent;
+        }
+    }
+
+    private static class Upload {
+        final PutFile putFile;
+        final List<RPCRequest> followUps;
+        final int size;
+        boolean deferred;
+        long sentNs;
+
+        Upload(PutFile putFile, List<RPCRequest> followUps) {
+            this.putFile = putFile;
+            this.followUps = followUps;
+            this.size = putFile.getBulkData() != null ? putFile.getBulkData().length : 0;
+        }
+    }
+
+    private final RequestSender sender;
+    private final ResponseRouter responseRouter;
+
+    // the names of all files on the head unit
+    private final RemoteFileIndex index;
+    // the files uploaded by the session in order of their last use (least recently used first)
+    private final LinkedHashMap<String, RemoteFile> files;
+    // files which must not be evicted, e.g. because they are displayed
+    private final HashSet<String> pinned;
+    private boolean listed;
+
+    // no uploads start while the driver is distracted
+    private boolean distracted;
+
+    // space left for the app as reported by the head unit or null if unknown
+    private Integer spaceAvailable;
+    // size of the uploads waiting for their response
+    private int reservedBytes;
+
+    private final ArrayDeque<Upload> waitingUploads;
+    private final HashMap<Integer, Upload> pendingUploads;
+    private final HashMap<Integer, String> pendingDeletes;
+    private long deletesSentNs;
+    private long responseTimeoutNs;
+
+    // metrics
+    private int uploads;
+    private int failedUploads;
+    private int timedOutUploads;
+    private long bytesUploaded;
+    private int evictions;
+    private int failedDeletes;
+    private int uploadsDeferred;
+    private long bytesDeferred;
+
+    public RemoteFileManager(RequestSender sender, ResponseRouter responseRouter) {
+        this.sender = sender;
+        this.responseRouter = responseRouter;
+        this.index = new RemoteFileIndex();
+        this.files = new LinkedHashMap<>(16, 0.75f, true);
+        this.pinned = new HashSet<>();
+        this.waitingUploads = new ArrayDeque<>();
+        this.pendingUploads = new HashMap<>();
+        this.pendingDeletes = new HashMap<>();
+        this.responseTimeoutNs = TimeUnit.MILLISECONDS.toNanos(DEFAULT_RESPONSE_TIMEOUT);
+    }
+
+    //region Files area
+
+    // true once the list of files was received. uploads wait for the list.
+    public boolean isListed() {
+        return this.listed;
+    }
+
+    // checks if the file is on the head unit. counts as a use of the file.
+    public boolean contains(String name) {
+        if (!this.index.contains(name)) {
+            return false;
+        }
+        this.files.get(name);
+        return true;
+    }
+
+    public void setPinned(String name, boolean pinned) {
+        if (pinned) {
+            this.pinned.add(name);
+        } else {
+            this.pinned.remove(name);
+        }
+    }
+
+    public void setDistracted(boolean distracted) {
+        this.distracted = distracted;
+        this.pump();
+    }
+
+    public Integer getSpaceAvailable() {
+        return this.spaceAvailable;
+    }
+
+    // time an upload or a delete waits for its response
+    public void setResponseTimeout(long responseTimeout) {
+        this.responseTimeoutNs = TimeUnit.MILLISECONDS.toNanos(responseTimeout);
+    }
+
+    public long getResponseTimeout() {
+        return TimeUnit.NANOSECONDS.toMillis(this.responseTimeoutNs);
+    }
+
+    // true while uploads or deletes wait. the session checks the timeouts meanwhile.
+    public boolean isBusy() {
+        return !this.waitingUploads.isEmpty() || !this.pendingUploads.isEmpty() || !this.pendingDeletes.isEmpty();
+    }
+
+    //endregion
+
+    //region Upload area
+
+    // uploads the file as soon as an upload slot and enough space is available. the follow up requests are
+    // sent sequentially after the successful response of the upload.
+    public void upload(PutFile putFile, List<RPCRequest> followUps) {
+        this.waitingUploads.add(new Upload(putFile, followUps));
+        this.pump();
+    }
+
+    // gives up on uploads and deletes without response, e.g. lost on the transport
+    public void checkTimeouts() {
+        this.expireUploads();
+        if (this.expireDeletes()) {
+            this.pump();
+        }
+    }
+
+    private void expireUploads() {
+        if (this.pendingUploads.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        List<PutFile> expired = null;
+        for (Upload upload : this.pendingUploads.values()) {
+            if (now - upload.sentNs >= this.responseTimeoutNs) {
+                if (expired == null) {
+                    expired = new ArrayList<>(MAX_UPLOADS_IN_FLIGHT);
+                }
+                expired.add(upload.putFile);
+            }
+        }
+        if (expired == null) {
+            return;
+        }
+
+        Log.w(TAG, expired.size() + " uploads without response");
+        for (PutFile putFile : expired) {
+            // answered like the head unit would. frees the slot and the reserved space and fails the follow ups.
+            this.timedOutUploads++;
+            this.responseRouter.dispatch(ResponseRouter.createResponse(putFile, Result.TIMED_OUT, "No response"));
+        }
+    }
+
+    private boolean expireDeletes() {
+        if (this.pendingDeletes.isEmpty() || System.nanoTime() - this.deletesSentNs < this.responseTimeoutNs) {
+            return false;
+        }
+
+        Log.w(TAG, this.pendingDeletes.size() + " deletes without response");
+        for (String name : this.pendingDeletes.values()) {
+            // like a failed delete. the file may still be there.
+            this.pinned.add(name);
+            this.failedDeletes++;
+        }
+        this.pendingDeletes.clear();
+        return true;
+    }
+
+    private void pump() {
+        this.expireDeletes();
+
+        if (this.distracted) {
+            for (Upload upload : this.waitingUploads) {
+                if (!upload.deferred) {
+                    upload.deferred = true;
+                    this.uploadsDeferred++;
+                    this.bytesDeferred += upload.size;
+                }
+            }
+            return;
+        }
+
+        // deletes in flight change the space left. wait for them before deciding on the next upload.
+        while (this.listed && this.pendingDeletes.isEmpty() && this.pendingUploads.size() < MAX_UPLOADS_IN_FLIGHT
+                && !this.waitingUploads.isEmpty()) {
+            Upload upload = this.waitingUploads.peek();
+
+            if (this.spaceAvailable != null) {
+                int missing = upload.size + this.reservedBytes - this.spaceAvailable;
+                if (missing > 0) {
+                    if (this.evict(missing)) {
+                        return;
+                    }
+                    Log.w(TAG, "Not enough space for " + upload.putFile.getSdlFileName() + ", " + missing + " bytes missing");
+                }
+            }
+
+            this.waitingUploads.poll();
+            this.start(upload);
+        }
+    }
+
+    private void start(Upload upload) {
+        PutFile putFile = upload.putFile;
+        if (putFile.getCorrelationID() == null) {
+            putFile.setCorrelationID(this.sender.nextCorrelationID());
+        }
+        this.pendingUploads.put(putFile.getCorrelationID(), upload);
+        this.reservedBytes += upload.size;
+        upload.sentNs = System.nanoTime();
+        this.sender.sendRequest(putFile);
+    }
+
+    // deletes least recently used files until the missing space is free. returns false if there is nothing to delete.
+    private boolean evict(int missing) {
+        HashSet<String> uploading = new HashSet<>();
+        for (Upload upload : this.pendingUploads.values()) {
+            uploading.add(upload.putFile.getSdlFileName());
+        }
+
+        // the deletes are independent from each other
+        List<RPCRequest> requests = new ArrayList<>(EVICTION_BATCH);
+        int freed = 0;
+        for (RemoteFile file : this.files.values()) {
+            if (freed >= missing || requests.size() >= EVICTION_BATCH) {
+                break;
+            }
+            if (file.persistent || this.pinned.contains(file.name) || uploading.contains(file.name)) {
+                continue;
+            }
+
+            DeleteFile delete = new DeleteFile();
+            delete.setCorrelationID(this.sender.nextCorrelationID());
+            delete.setSdlFileName(file.name);
+            requests.add(delete);
+            this.pendingDeletes.put(delete.getCorrelationID(), file.name);
+            freed += file.size;
+        }
+
+        if (requests.isEmpty()) {
+            return false;
+        }
+
+        this.deletesSentNs = System.nanoTime();
+        this.sender.sendRequests(requests, false);
+        return true;
+    }
+
+    //endregion
+
+    //region Response area
+
+    public void onListFilesResponse(ListFilesResponse response) {
+        if (response.getSuccess()) {
+            if (response.getFilenames() != null) {
+                // files of earlier sessions are persistent and never evicted. only the name is kept.
+                this.index.ensureCapacity(this.index.size() + response.getFilenames().size());
+                for (String name : response.getFilenames()) {
+                    this.index.add(name);
+                }
+            }
+            if (response.getSpaceAvailable() != null) {
+                this.spaceAvailable = response.getSpaceAvailable();
+            }
+        }
+
+        this.listed = true;
+        this.pump();
+    }
+
+    public void onPutFileResponse(PutFileResponse response) {
+        Upload upload = this.pendingUploads.remove(response.getCorrelationID());
+        if (upload == null) {
+            return;
+        }
+
+        this.reservedBytes -= upload.size;
+        String name = upload.putFile.getSdlFileName();
+
+        if (response.getSuccess()) {
+            boolean persistent = Boolean.TRUE.equals(upload.putFile.getPersistentFile());
+            this.index.add(name);
+            this.files.put(name, new RemoteFile(name, upload.size, persistent));
+            if (response.getSpaceAvailable() != null) {
+                this.spaceAvailable = response.getSpaceAvailable();
+            } else if (this.spaceAvailable != null) {
+                this.spaceAvailable -= upload.size;
+            }
+            this.uploads++;
+            this.bytesUploaded += upload.size;
+            if (upload.followUps != null) {
+                this.sender.sendRequests(upload.followUps, true);
+            }
+        } else {
+            this.failedUploads++;
+            if (response.getResultCode() == Result.OUT_OF_MEMORY && response.getSpaceAvailable() != null) {
+                this.spaceAvailable = response.getSpaceAvailable();
+            }
+            Log.w(TAG, "Upload of " + name + " failed: " + response.getResultCode());
+            this.failFollowUps(upload);
+        }
+
+        this.pump();
+    }
+
+    // the follow ups of a failed upload are never sent. their handlers get a failed response instead.
+    private void failFollowUps(Upload upload) {
+        if (upload.followUps == null) {
+            return;
+        }
+        for (RPCRequest request : upload.followUps) {
+            RPCResponse response = ResponseRouter.createResponse(request, Result.ABORTED,
+                    "Upload of " + upload.putFile.getSdlFileName() + " failed");
+            this.responseRouter.dispatch(response);
+        }
+    }
+
+    public void onDeleteFileResponse(DeleteFileResponse response) {
+        String name = this.pendingDeletes.remove(response.getCorrelationID());
+        if (name == null) {
+            return;
+        }
+
+        if (response.getSuccess()) {
+            this.index.remove(name);
+            RemoteFile file = this.files.remove(name);
+            if (response.getSpaceAvailable() != null) {
+                this.spaceAvailable = response.getSpaceAvailable();
+            } else if (this.spaceAvailable != null && file != null) {
+                this.spaceAvailable += file.size;
+            }
+            this.evictions++;
+        } else {
+            // don't try to delete the file again
+            this.pinned.add(name);
+            this.failedDeletes++;
+        }
+
+        this.pump();
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public int getUploads() {
+        return this.uploads;
+    }
+
+    // uploads rejected by the head unit or without response
+    public int getFailedUploads() {
+        return this.failedUploads;
+    }
+
+    public int getTimedOutUploads() {
+        return this.timedOutUploads;
+    }
+
+    public long getBytesUploaded() {
+        return this.bytesUploaded;
+    }
+
+    public int getEvictions() {
+        return this.evictions;
+    }
+
+    // deletes rejected by the head unit or without response
+    public int getFailedDeletes() {
+        return this.failedDeletes;
+    }
+
+    public int getFileCount() {
+        return this.index.size();
+    }
+
+    // lookups of files which aren't on the head unit answered without the table of names
+    public long getLookupsRejectedByFilter() {
+        return this.index.getBloomRejects();
+    }
+
+    public long getIndexMemoryBytes() {
+        return this.index.getMemoryBytes();
+    }
+
+    // uploads which waited for the driver not to be distracted
+    public int getUploadsDeferred() {
+        return this.uploadsDeferred;
+    }
+
+    public long getBytesDeferred() {
+        return this.bytesDeferred;
+    }
+
+    //endregion
+}
@@ -0,0 +1,221 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.RPCStruct;
+import com.smartdevicelink.proxy.rpc.SetMediaClockTimer;
+import com.smartdevicelink.proxy.rpc.Show;
+import com.smartdevicelink.proxy.rpc.StartTime;
+import com.smartdevicelink.proxy.rpc.SubscribeButton;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+// Recycles the requests the session sends most often. A request obtained from the pool gets its
+// correlation ID right away and returns to the pool with its nested structs when the response arrived
+// (or with recycle() if it's not sent at all). The caller must not keep a reference after sending it.
+// Requests without a response are forgotten after a timeout and when the session is disposed. Used from
+// the event loop of the session only.
+public class RequestPool {
+    // objects kept per type. more are left to the garbage collector.
+    private static final int MAX_IDLE = 8;
+
+    private static final long DEFAULT_RESPONSE_TIMEOUT = 10 * 1000;
+
+    private final RequestSender sender;
+
+    // idle objects by type
+    private final HashMap<Class<?>, ArrayDeque<RPCStruct>> idle;
+    // requests waiting for their response by correlation ID. the requests lent before the last check of
+    // the timeouts are in the previous map so a check doesn't need the time of every request.
+    private HashMap<Integer, RPCRequest> inFlight;
+    private HashMap<Integer, RPCRequest> previousInFlight;
+
+    // metrics
+    private int obtained;
+    private int allocated;
+    private int recycled;
+    private int expired;
+
+    public RequestPool(RequestSender sender) {
+        this.sender = sender;
+        this.idle = new HashMap<>();
+        this.inFlight = new HashMap<>();
+        this.previousInFlight = new HashMap<>();
+    }
+
+    //region Obtain area
+
+    public Show obtainShow() {
+        Show show = this.take(Show.class);
+        if (show == null) {
+            show = new Show();
+            this.allocated++;
+        }
+        return this.lend(show);
+    }
+
+    public SetMediaClockTimer obtainSetMediaClockTimer() {
+        SetMediaClockTimer timer = this.take(SetMediaClockTimer.class);
+        if (timer == null) {
+            timer = new SetMediaClockTimer();
+            this.allocated++;
+        }
+        return this.lend(timer);
+    }
+
+    public SubscribeButton obtainSubscribeButton() {
+        SubscribeButton button = this.take(SubscribeButton.class);
+        if (button == null) {
+            button = new SubscribeButton();
+            this.allocated++;
+        }
+        return this.lend(button);
+    }
+
+    // a start time returns to the pool with the timer using it
+    public StartTime obtainStartTime(int hours, int minutes, int seconds) {
+        StartTime time = this.take(StartTime.class);
+        if (time == null) {
+            time = new StartTime();
+            this.allocated++;
+        }
+        this.obtained++;
+        time.setHours(hours);
+        time.setMinutes(minutes);
+        time.setSeconds(seconds);
+        return time;
+    }
+
+    private <T extends RPCStruct> T take(Class<T> type) {
+        ArrayDeque<RPCStruct> queue = this.idle.get(type);
+        return queue != null ? type.cast(queue.poll()) : null;
+    }
+
+    private <T extends RPCRequest> T lend(T request) {
+        this.obtained++;
+        request.setCorrelationID(this.sender.nextCorrelationID());
+        this.inFlight.put(request.getCorrelationID(), request);
+        return request;
+    }
+
+    //endregion
+
+    //region Recycle area
+
+    // called for every response the session receives
+    public void onResponse(RPCResponse response) {
+        Integer correlationID = response.getCorrelationID();
+        RPCRequest request = this.inFlight.remove(correlationID);
+        if (request == null && !this.previousInFlight.isEmpty()) {
+            request = this.previousInFlight.remove(correlationID);
+        }
+        if (request != null) {
+            this.recycle(request);
+        }
+    }
+
+    // returns a request which was obtained but not sent
+    public void recycle(RPCRequest request) {
+        // the correlation ID stays. it's replaced when the request is obtained again.
+        this.inFlight.remove(request.getCorrelationID());
+        this.previousInFlight.remove(request.getCorrelationID());
+
+        if (request instanceof Show) {
+            Show show = (Show) request;
+            show.setMainField1(null);
+            show.setMainField2(null);
+            show.setMainField3(null);
+            show.setMainField4(null);
+            show.setAlignment(null);
+            show.setStatusBar(null);
+            // the app sets the media clock with SetMediaClockTimer. the setter of Show is deprecated.
+            show.setParameters(Show.KEY_MEDIA_CLOCK, null);
+            show.setMediaTrack(null);
+            show.setGraphic(null);
+            show.setSecondaryGraphic(null);
+            show.setSoftButtons(null);
+            show.setCustomPresets(null);
+        } else if (request instanceof SetMediaClockTimer) {
+            SetMediaClockTimer timer = (SetMediaClockTimer) request;
+            this.release(timer.getStartTime());
+            this.release(timer.getEndTime());
+            timer.setStartTime(null);
+            timer.setEndTime(null);
+            timer.setUpdateMode(null);
+        } else if (request instanceof SubscribeButton) {
+            ((SubscribeButton) request).setButtonName(null);
+        }
+
+        this.release(request);
+    }
+
+    private void release(RPCStruct struct) {
+        if (struct == null) {
+            return;
+        }
+
+        ArrayDeque<RPCStruct> queue = this.idle.get(struct.getClass());
+        if (queue == null) {
+            queue = new ArrayDeque<>(MAX_IDLE);
+            this.idle.put(struct.getClass(), queue);
+        }
+        if (queue.size() < MAX_IDLE) {
+            queue.add(struct);
+            this.recycled++;
+        }
+    }
+
+    // time after which a request without response is forgotten
+    public long getResponseTimeout() {
+        return DEFAULT_RESPONSE_TIMEOUT;
+    }
+
+    // to be called once per timeout while requests are in flight. forgets the requests which were already
+    // in flight at the last check, e.g. their responses got lost. they are left to the garbage collector
+    // as a late response must not recycle a request which was lent again.
+    public void checkTimeouts() {
+        this.expired += this.previousInFlight.size();
+        this.previousInFlight.clear();
+
+        HashMap<Integer, RPCRequest> checked = this.previousInFlight;
+        this.previousInFlight = this.inFlight;
+        this.inFlight = checked;
+    }
+
+    // forgets the requests in flight, e.g. when the session is closed
+    public void dispose() {
+        this.expired += this.getInFlight();
+        this.inFlight.clear();
+        this.previousInFlight.clear();
+        this.idle.clear();
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public int getObtained() {
+        return this.obtained;
+    }
+
+    // objects created because the pool was empty. stays flat once the pool is warm.
+    public int getAllocated() {
+        return this.allocated;
+    }
+
+    public int getRecycled() {
+        return this.recycled;
+    }
+
+    public int getInFlight() {
+        return this.inFlight.size() + this.previousInFlight.size();
+    }
+
+    // requests forgotten without response
+    public int getExpired() {
+        return this.expired;
+    }
+
+    //endregion
+}
@@ -0,0 +1,17 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.proxy.RPCRequest;
+
+import java.util.List;
+
+// The request management of the service as seen by the helper managers.
+// Requests without a correlation ID get one assigned when they are sent.
+public interface RequestSender {
+
+    int nextCorrelationID();
+
+    void sendRequest(RPCRequest request);
+
+    // sequential requests are sent one after the other as soon as the previous response arrived
+    void sendRequests(List<RPCRequest> requests, boolean sequential);
+}
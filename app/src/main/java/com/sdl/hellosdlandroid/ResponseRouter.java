@@ -0,0 +1,274 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import java.util.Locale;
+
+// Routes every response of the session through one path instead of one listener method per response
+// type. A response passes the filter and the handler of its function (tables indexed by function ID),
+// then the one-shot handler waiting for its correlation ID (e.g. the next of a sequential list of
+// requests) and finally the completion handlers which see every response. RoutingProxyListener passes
+// the responses of the proxy with their function ID. Used from the event loop of the session only.
+public class ResponseRouter {
+    // function IDs of responses are small. larger IDs skip the function tables.
+    private static final int FUNCTION_ID_LIMIT = 256;
+
+    // the package of the response classes of the proxy
+    private static final String RESPONSE_PACKAGE = "com.smartdevicelink.proxy.rpc.";
+
+    public interface Handler {
+        void onResponse(RPCResponse response);
+    }
+
+    public interface Filter {
+        // returns the response to route, another response in its place or null to drop it
+        RPCResponse filter(RPCResponse response);
+    }
+
+    private final Filter[] filters;
+    private final Handler[] handlers;
+
+    // one-shot handlers by correlation ID in an open addressing table (linear probing, a free slot has
+    // no handler). correlation IDs are not boxed on the path of every response.
+    private int[] expectedIDs;
+    private Handler[] expectedHandlers;
+    private int expectedCount;
+    // a bit for every expected correlation ID modulo 64 and the number of IDs sharing it. most
+    // responses skip the table.
+    private long expectedBits;
+    private final int[] expectedBitCounts;
+
+    private Handler[] observers;
+    private int observerCount;
+    private Handler[] completionHandlers;
+    private int completionHandlerCount;
+
+    // metrics
+    private int dispatched;
+    private int filtered;
+    private int expectedHandled;
+
+    public ResponseRouter() {
+        this.filters = new Filter[FUNCTION_ID_LIMIT];
+        this.handlers = new Handler[FUNCTION_ID_LIMIT];
+        this.expectedIDs = new int[64];
+        this.expectedHandlers = new Handler[64];
+        this.expectedBitCounts = new int[64];
+        this.observers = new Handler[2];
+        this.completionHandlers = new Handler[4];
+    }
+
+    //region Registration area
+
+    public void setFilter(FunctionID function, Filter filter) {
+        this.filters[function.getId()] = filter;
+    }
+
+    public void setHandler(FunctionID function, Handler handler) {
+        this.handlers[function.getId()] = handler;
+    }
+
+    // the handler is called once with the response for the correlation ID. a correlation ID can be
+    // expected by one handler at a time.
+    public void expect(int correlationID, Handler handler) {
+        int slot = this.findExpected(correlationID);
+        if (this.expectedHandlers[slot] != null) {
+            throw new IllegalStateException("Correlation ID " + correlationID + " is expected already");
+        }
+        if ((this.expectedCount + 1) * 2 > this.expectedIDs.length) {
+            this.resizeExpected(this.expectedIDs.length * 2);
+            slot = this.findExpected(correlationID);
+        }
+        this.expectedCount++;
+        this.expectedIDs[slot] = correlationID;
+        this.expectedHandlers[slot] = handler;
+        this.expectedBitCounts[correlationID & 63]++;
+        this.expectedBits |= 1L << correlationID;
+    }
+
+    // called for every response before it's handled
+    public void addObserver(Handler observer) {
+        this.observers = append(this.observers, this.observerCount++, observer);
+    }
+
+    // called for every response after it's handled
+    public void addCompletionHandler(Handler handler) {
+        this.completionHandlers = append(this.completionHandlers, this.completionHandlerCount++, handler);
+    }
+
+    private static Handler[] append(Handler[] handlers, int count, Handler handler) {
+        if (count == handlers.length) {
+            Handler[] grown = new Handler[count * 2];
+            System.arraycopy(handlers, 0, grown, 0, count);
+            handlers = grown;
+        }
+        handlers[count] = handler;
+        return handlers;
+    }
+
+    //endregion
+
+    //region Dispatch area
+
+    // routes a response of unknown type, e.g. one created by the app
+    public void dispatch(RPCResponse response) {
+        if (response == null) {
+            return;
+        }
+        this.dispatch(FunctionID.getFunctionId(response.getFunctionName()), response);
+    }
+
+    public void dispatch(int functionID, RPCResponse response) {
+        if (response == null) {
+            return;
+        }
+
+        Handler handler = null;
+        if (functionID >= 0 && functionID < FUNCTION_ID_LIMIT) {
+            Filter filter = this.filters[functionID];
+            if (filter != null) {
+                response = filter.filter(response);
+                if (response == null) {
+                    this.filtered++;
+                    return;
+                }
+            }
+            handler = this.handlers[functionID];
+        }
+
+        for (int i = 0; i < this.observerCount; i++) {
+            this.observers[i].onResponse(response);
+        }
+
+        if (handler != null) {
+            handler.onResponse(response);
+        }
+
+        if (this.expectedCount > 0) {
+            Integer correlationID = response.getCorrelationID();
+            Handler once = correlationID != null && (this.expectedBits & (1L << correlationID)) != 0
+                    ? this.removeExpected(correlationID) : null;
+            if (once != null) {
+                this.expectedHandled++;
+                once.onResponse(response);
+            }
+        }
+
+        for (int i = 0; i < this.completionHandlerCount; i++) {
+            this.completionHandlers[i].onResponse(response);
+        }
+        this.dispatched++;
+    }
+
+    // a failed response to a request which is never sent, e.g. to release the handlers waiting for it.
+    // the response has the class the proxy would deliver so the handlers can cast it.
+    public static RPCResponse createResponse(RPCRequest request, Result resultCode, String info) {
+        RPCResponse response;
+        try {
+            response = (RPCResponse) Class.forName(RESPONSE_PACKAGE + request.getFunctionName() + "Response")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            response = new RPCResponse(request.getFunctionName());
+        }
+        response.setCorrelationID(request.getCorrelationID());
+        response.setSuccess(false);
+        response.setResultCode(resultCode);
+        response.setInfo(info);
+        return response;
+    }
+
+    //endregion
+
+    //region Expected area
+
+    // the slot of the correlation ID or the free slot ending its probe sequence
+    private int findExpected(int correlationID) {
+        int mask = this.expectedIDs.length - 1;
+        int slot = spread(correlationID) & mask;
+        while (this.expectedHandlers[slot] != null && this.expectedIDs[slot] != correlationID) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private Handler removeExpected(int correlationID) {
+        int hole = this.findExpected(correlationID);
+        Handler handler = this.expectedHandlers[hole];
+        if (handler == null) {
+            return null;
+        }
+
+        // backward shift deletion like in RemoteFileIndex
+        int mask = this.expectedIDs.length - 1;
+        for (int slot = (hole + 1) & mask; this.expectedHandlers[slot] != null; slot = (slot + 1) & mask) {
+            int home = spread(this.expectedIDs[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                this.expectedIDs[hole] = this.expectedIDs[slot];
+                this.expectedHandlers[hole] = this.expectedHandlers[slot];
+                hole = slot;
+            }
+        }
+        this.expectedIDs[hole] = 0;
+        this.expectedHandlers[hole] = null;
+        this.expectedCount--;
+
+        // the bit may be shared with another ID
+        if (--this.expectedBitCounts[correlationID & 63] == 0) {
+            this.expectedBits &= ~(1L << correlationID);
+        }
+        return handler;
+    }
+
+    private void resizeExpected(int capacity) {
+        int[] ids = this.expectedIDs;
+        Handler[] handlers = this.expectedHandlers;
+        this.expectedIDs = new int[capacity];
+        this.expectedHandlers = new Handler[capacity];
+        for (int i = 0; i < ids.length; i++) {
+            if (handlers[i] != null) {
+                int slot = this.findExpected(ids[i]);
+                this.expectedIDs[slot] = ids[i];
+                this.expectedHandlers[slot] = handlers[i];
+            }
+        }
+    }
+
+    // correlation IDs are sequential. spread them so neighbours don't form clusters.
+    private static int spread(int correlationID) {
+        int hash = correlationID * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public int getDispatched() {
+        return this.dispatched;
+    }
+
+    // responses dropped by a filter, e.g. of intermediate chunks of an upload
+    public int getFiltered() {
+        return this.filtered;
+    }
+
+    public int getExpectedHandled() {
+        return this.expectedHandled;
+    }
+
+    // responses still expected, e.g. sequential requests waiting for their predecessor
+    public int getExpectedPending() {
+        return this.expectedCount;
+    }
+
+    public String getMetricsSummary() {
+        // the time spent in the handlers is measured by the session profiler
+        return String.format(Locale.US, "%d dispatched, %d filtered, %d expected handled, %d pending",
+                this.dispatched, this.filtered, this.expectedHandled, this.getExpectedPending());
+    }
+
+    //endregion
+}
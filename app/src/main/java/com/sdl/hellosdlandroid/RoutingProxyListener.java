@@ -0,0 +1,360 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.callbacks.OnServiceEnded;
+import com.smartdevicelink.proxy.callbacks.OnServiceNACKed;
+import com.smartdevicelink.proxy.interfaces.IProxyListenerALM;
+import com.smartdevicelink.proxy.rpc.AddCommandResponse;
+import com.smartdevicelink.proxy.rpc.AddSubMenuResponse;
+import com.smartdevicelink.proxy.rpc.AlertManeuverResponse;
+import com.smartdevicelink.proxy.rpc.AlertResponse;
+import com.smartdevicelink.proxy.rpc.ChangeRegistrationResponse;
+import com.smartdevicelink.proxy.rpc.CreateInteractionChoiceSetResponse;
+import com.smartdevicelink.proxy.rpc.DeleteCommandResponse;
+import com.smartdevicelink.proxy.rpc.DeleteFileResponse;
+import com.smartdevicelink.proxy.rpc.DeleteInteractionChoiceSetResponse;
+import com.smartdevicelink.proxy.rpc.DeleteSubMenuResponse;
+import com.smartdevicelink.proxy.rpc.DiagnosticMessageResponse;
+import com.smartdevicelink.proxy.rpc.DialNumberResponse;
+import com.smartdevicelink.proxy.rpc.EndAudioPassThruResponse;
+import com.smartdevicelink.proxy.rpc.GenericResponse;
+import com.smartdevicelink.proxy.rpc.GetDTCsResponse;
+import com.smartdevicelink.proxy.rpc.GetVehicleDataResponse;
+import com.smartdevicelink.proxy.rpc.ListFilesResponse;
+import com.smartdevicelink.proxy.rpc.OnAudioPassThru;
+import com.smartdevicelink.proxy.rpc.OnButtonEvent;
+import com.smartdevicelink.proxy.rpc.OnButtonPress;
+import com.smartdevicelink.proxy.rpc.OnCommand;
+import com.smartdevicelink.proxy.rpc.OnDriverDistraction;
+import com.smartdevicelink.proxy.rpc.OnHMIStatus;
+import com.smartdevicelink.proxy.rpc.OnHashChange;
+import com.smartdevicelink.proxy.rpc.OnKeyboardInput;
+import com.smartdevicelink.proxy.rpc.OnLanguageChange;
+import com.smartdevicelink.proxy.rpc.OnLockScreenStatus;
+import com.smartdevicelink.proxy.rpc.OnPermissionsChange;
+import com.smartdevicelink.proxy.rpc.OnStreamRPC;
+import com.smartdevicelink.proxy.rpc.OnSystemRequest;
+import com.smartdevicelink.proxy.rpc.OnTBTClientState;
+import com.smartdevicelink.proxy.rpc.OnTouchEvent;
+import com.smartdevicelink.proxy.rpc.OnVehicleData;
+import com.smartdevicelink.proxy.rpc.PerformAudioPassThruResponse;
+import com.smartdevicelink.proxy.rpc.PerformInteractionResponse;
+import com.smartdevicelink.proxy.rpc.PutFileResponse;
+import com.smartdevicelink.proxy.rpc.ReadDIDResponse;
+import com.smartdevicelink.proxy.rpc.ResetGlobalPropertiesResponse;
+import com.smartdevicelink.proxy.rpc.ScrollableMessageResponse;
+import com.smartdevicelink.proxy.rpc.SendLocationResponse;
+import com.smartdevicelink.proxy.rpc.SetAppIconResponse;
+import com.smartdevicelink.proxy.rpc.SetDisplayLayoutResponse;
+import com.smartdevicelink.proxy.rpc.SetGlobalPropertiesResponse;
+import com.smartdevicelink.proxy.rpc.SetMediaClockTimerResponse;
+import com.smartdevicelink.proxy.rpc.ShowConstantTbtResponse;
+import com.smartdevicelink.proxy.rpc.ShowResponse;
+import com.smartdevicelink.proxy.rpc.SliderResponse;
+import com.smartdevicelink.proxy.rpc.SpeakResponse;
+import com.smartdevicelink.proxy.rpc.StreamRPCResponse;
+import com.smartdevicelink.proxy.rpc.SubscribeButtonResponse;
+import com.smartdevicelink.proxy.rpc.SubscribeVehicleDataResponse;
+import com.smartdevicelink.proxy.rpc.SystemRequestResponse;
+import com.smartdevicelink.proxy.rpc.UnsubscribeButtonResponse;
+import com.smartdevicelink.proxy.rpc.UnsubscribeVehicleDataResponse;
+import com.smartdevicelink.proxy.rpc.UpdateTurnListResponse;
+import com.smartdevicelink.proxy.rpc.enums.SdlDisconnectedReason;
+
+// The listener of the proxy passing every response to the response router with the function ID of its
+// type, without looking up the function name. The notifications and the other callbacks do nothing.
+// The session overrides the ones it handles.
+public class RoutingProxyListener implements IProxyListenerALM {
+    private final ResponseRouter router;
+
+    public RoutingProxyListener(ResponseRouter router) {
+        this.router = router;
+    }
+
+    //region Response area
+
+    @Override
+    public void onStreamRPCResponse(StreamRPCResponse response) {
+        this.router.dispatch(FunctionID.STREAM_RPC.getId(), response);
+    }
+
+    @Override
+    public void onGenericResponse(GenericResponse response) {
+        this.router.dispatch(FunctionID.GENERIC_RESPONSE.getId(), response);
+    }
+
+    @Override
+    public void onAddCommandResponse(AddCommandResponse response) {
+        this.router.dispatch(FunctionID.ADD_COMMAND.getId(), response);
+    }
+
+    @Override
+    public void onAddSubMenuResponse(AddSubMenuResponse response) {
+        this.router.dispatch(FunctionID.ADD_SUB_MENU.getId(), response);
+    }
+
+    @Override
+    public void onCreateInteractionChoiceSetResponse(CreateInteractionChoiceSetResponse response) {
+        this.router.dispatch(FunctionID.CREATE_INTERACTION_CHOICE_SET.getId(), response);
+    }
+
+    @Override
+    public void onAlertResponse(AlertResponse response) {
+        this.router.dispatch(FunctionID.ALERT.getId(), response);
+    }
+
+    @Override
+    public void onDeleteCommandResponse(DeleteCommandResponse response) {
+        this.router.dispatch(FunctionID.DELETE_COMMAND.getId(), response);
+    }
+
+    @Override
+    public void onDeleteInteractionChoiceSetResponse(DeleteInteractionChoiceSetResponse response) {
+        this.router.dispatch(FunctionID.DELETE_INTERACTION_CHOICE_SET.getId(), response);
+    }
+
+    @Override
+    public void onDeleteSubMenuResponse(DeleteSubMenuResponse response) {
+        this.router.dispatch(FunctionID.DELETE_SUB_MENU.getId(), response);
+    }
+
+    @Override
+    public void onPerformInteractionResponse(PerformInteractionResponse response) {
+        this.router.dispatch(FunctionID.PERFORM_INTERACTION.getId(), response);
+    }
+
+    @Override
+    public void onResetGlobalPropertiesResponse(ResetGlobalPropertiesResponse response) {
+        this.router.dispatch(FunctionID.RESET_GLOBAL_PROPERTIES.getId(), response);
+    }
+
+    @Override
+    public void onSetGlobalPropertiesResponse(SetGlobalPropertiesResponse response) {
+        this.router.dispatch(FunctionID.SET_GLOBAL_PROPERTIES.getId(), response);
+    }
+
+    @Override
+    public void onSetMediaClockTimerResponse(SetMediaClockTimerResponse response) {
+        this.router.dispatch(FunctionID.SET_MEDIA_CLOCK_TIMER.getId(), response);
+    }
+
+    @Override
+    public void onShowResponse(ShowResponse response) {
+        this.router.dispatch(FunctionID.SHOW.getId(), response);
+    }
+
+    @Override
+    public void onSpeakResponse(SpeakResponse response) {
+        this.router.dispatch(FunctionID.SPEAK.getId(), response);
+    }
+
+    @Override
+    public void onSubscribeButtonResponse(SubscribeButtonResponse response) {
+        this.router.dispatch(FunctionID.SUBSCRIBE_BUTTON.getId(), response);
+    }
+
+    @Override
+    public void onUnsubscribeButtonResponse(UnsubscribeButtonResponse response) {
+        this.router.dispatch(FunctionID.UNSUBSCRIBE_BUTTON.getId(), response);
+    }
+
+    @Override
+    public void onSubscribeVehicleDataResponse(SubscribeVehicleDataResponse response) {
+        this.router.dispatch(FunctionID.SUBSCRIBE_VEHICLE_DATA.getId(), response);
+    }
+
+    @Override
+    public void onUnsubscribeVehicleDataResponse(UnsubscribeVehicleDataResponse response) {
+        this.router.dispatch(FunctionID.UNSUBSCRIBE_VEHICLE_DATA.getId(), response);
+    }
+
+    @Override
+    public void onGetVehicleDataResponse(GetVehicleDataResponse response) {
+        this.router.dispatch(FunctionID.GET_VEHICLE_DATA.getId(), response);
+    }
+
+    @Override
+    public void onPerformAudioPassThruResponse(PerformAudioPassThruResponse response) {
+        this.router.dispatch(FunctionID.PERFORM_AUDIO_PASS_THRU.getId(), response);
+    }
+
+    @Override
+    public void onEndAudioPassThruResponse(EndAudioPassThruResponse response) {
+        this.router.dispatch(FunctionID.END_AUDIO_PASS_THRU.getId(), response);
+    }
+
+    @Override
+    public void onPutFileResponse(PutFileResponse response) {
+        this.router.dispatch(FunctionID.PUT_FILE.getId(), response);
+    }
+
+    @Override
+    public void onDeleteFileResponse(DeleteFileResponse response) {
+        this.router.dispatch(FunctionID.DELETE_FILE.getId(), response);
+    }
+
+    @Override
+    public void onListFilesResponse(ListFilesResponse response) {
+        this.router.dispatch(FunctionID.LIST_FILES.getId(), response);
+    }
+
+    @Override
+    public void onSetAppIconResponse(SetAppIconResponse response) {
+        this.router.dispatch(FunctionID.SET_APP_ICON.getId(), response);
+    }
+
+    @Override
+    public void onScrollableMessageResponse(ScrollableMessageResponse response) {
+        this.router.dispatch(FunctionID.SCROLLABLE_MESSAGE.getId(), response);
+    }
+
+    @Override
+    public void onChangeRegistrationResponse(ChangeRegistrationResponse response) {
+        this.router.dispatch(FunctionID.CHANGE_REGISTRATION.getId(), response);
+    }
+
+    @Override
+    public void onSetDisplayLayoutResponse(SetDisplayLayoutResponse response) {
+        this.router.dispatch(FunctionID.SET_DISPLAY_LAYOUT.getId(), response);
+    }
+
+    @Override
+    public void onSliderResponse(SliderResponse response) {
+        this.router.dispatch(FunctionID.SLIDER.getId(), response);
+    }
+
+    @Override
+    public void onSystemRequestResponse(SystemRequestResponse response) {
+        this.router.dispatch(FunctionID.SYSTEM_REQUEST.getId(), response);
+    }
+
+    @Override
+    public void onDiagnosticMessageResponse(DiagnosticMessageResponse response) {
+        this.router.dispatch(FunctionID.DIAGNOSTIC_MESSAGE.getId(), response);
+    }
+
+    @Override
+    public void onReadDIDResponse(ReadDIDResponse response) {
+        this.router.dispatch(FunctionID.READ_DID.getId(), response);
+    }
+
+    @Override
+    public void onGetDTCsResponse(GetDTCsResponse response) {
+        this.router.dispatch(FunctionID.GET_DTCS.getId(), response);
+    }
+
+    @Override
+    public void onDialNumberResponse(DialNumberResponse response) {
+        this.router.dispatch(FunctionID.DIAL_NUMBER.getId(), response);
+    }
+
+    @Override
+    public void onSendLocationResponse(SendLocationResponse response) {
+        this.router.dispatch(FunctionID.SEND_LOCATION.getId(), response);
+    }
+
+    @Override
+    public void onShowConstantTbtResponse(ShowConstantTbtResponse response) {
+        this.router.dispatch(FunctionID.SHOW_CONSTANT_TBT.getId(), response);
+    }
+
+    @Override
+    public void onAlertManeuverResponse(AlertManeuverResponse response) {
+        this.router.dispatch(FunctionID.ALERT_MANEUVER.getId(), response);
+    }
+
+    @Override
+    public void onUpdateTurnListResponse(UpdateTurnListResponse response) {
+        this.router.dispatch(FunctionID.UPDATE_TURN_LIST.getId(), response);
+    }
+
+    //endregion
+
+    //region Notification area
+
+    @Override
+    public void onOnHMIStatus(OnHMIStatus notification) {
+    }
+
+    @Override
+    public void onProxyClosed(String info, Exception e, SdlDisconnectedReason reason) {
+    }
+
+    @Override
+    public void onServiceEnded(OnServiceEnded serviceEnded) {
+    }
+
+    @Override
+    public void onServiceNACKed(OnServiceNACKed serviceNACKed) {
+    }
+
+    @Override
+    public void onOnStreamRPC(OnStreamRPC notification) {
+    }
+
+    @Override
+    public void onError(String info, Exception e) {
+    }
+
+    @Override
+    public void onOnCommand(OnCommand notification) {
+    }
+
+    @Override
+    public void onOnButtonEvent(OnButtonEvent notification) {
+    }
+
+    @Override
+    public void onOnButtonPress(OnButtonPress notification) {
+    }
+
+    @Override
+    public void onOnPermissionsChange(OnPermissionsChange notification) {
+    }
+
+    @Override
+    public void onOnVehicleData(OnVehicleData notification) {
+    }
+
+    @Override
+    public void onOnAudioPassThru(OnAudioPassThru notification) {
+    }
+
+    @Override
+    public void onOnLanguageChange(OnLanguageChange notification) {
+    }
+
+    @Override
+    public void onOnHashChange(OnHashChange notification) {
+    }
+
+    @Override
+    public void onOnDriverDistraction(OnDriverDistraction notification) {
+    }
+
+    @Override
+    public void onOnTBTClientState(OnTBTClientState notification) {
+    }
+
+    @Override
+    public void onOnSystemRequest(OnSystemRequest notification) {
+    }
+
+    @Override
+    public void onOnKeyboardInput(OnKeyboardInput notification) {
+    }
+
+    @Override
+    public void onOnTouchEvent(OnTouchEvent notification) {
+    }
+
+    @Override
+    public void onOnLockScreenNotification(OnLockScreenStatus notification) {
+    }
+
+    @Override
+    public void onServiceDataACK() {
+    }
+
+    //endregion
+}
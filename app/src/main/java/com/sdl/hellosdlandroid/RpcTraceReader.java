@@ -0,0 +1,163 @@
+package com.sdl.hellosdlandroid;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads a trace written by RpcTraceRecorder. Only uses plain Java so traces pulled from a device
+// can be inspected on the JVM: java com.sdl.hellosdlandroid.RpcTraceReader <trace file>
+public class RpcTraceReader {
+    public static class Event {
+        public final long sequence;
+        public final long timeNanos;
+        public final byte type;
+        public final int session;
+        public final boolean success;
+        public final int functionID;
+        public final int correlationID;
+        public final int size;
+        public final int value;
+
+        Event(long sequence, long timeNanos, byte type, int session, boolean success, int functionID,
+              int correlationID, int size, int value) {
+            this.sequence = sequence;
+            this.timeNanos = timeNanos;
+            this.type = type;
+            this.session = session;
+            this.success = success;
+            this.functionID = functionID;
+            this.correlationID = correlationID;
+            this.size = size;
+            this.value = value;
+        }
+
+        public boolean isRequest() {
+            return this.type == RpcTraceRecorder.TYPE_REQUEST;
+        }
+
+        public boolean isResponse() {
+            return this.type == RpcTraceRecorder.TYPE_RESPONSE;
+        }
+
+        public boolean isNotification() {
+            return this.type == RpcTraceRecorder.TYPE_NOTIFICATION;
+        }
+
+        public boolean isClosed() {
+            return this.type == RpcTraceRecorder.TYPE_CLOSED;
+        }
+
+        public String getFunctionName() {
+            return RpcTraceRecorder.functionName(this.functionID);
+        }
+
+        @Override
+        public String toString() {
+            String type;
+            switch (this.type) {
+                case RpcTraceRecorder.TYPE_REQUEST: type = "request"; break;
+                case RpcTraceRecorder.TYPE_RESPONSE: type = this.success ? "response" : "failure"; break;
+                case RpcTraceRecorder.TYPE_NOTIFICATION: type = "notification"; break;
+                default: type = "closed"; break;
+            }
+            return String.format("%10.3f ms  s%d  %-12s %-28s id=%-5d size=%-7d value=%d",
+                    this.timeNanos / 1e6, this.session, type, this.getFunctionName(),
+                    this.correlationID, this.size, this.value);
+        }
+    }
+
+    private final long startTimeMillis;
+    private final List<Event> events;
+
+    private RpcTraceReader(long startTimeMillis, List<Event> events) {
+        this.startTimeMillis = startTimeMillis;
+        this.events = events;
+    }
+
+    public static RpcTraceReader read(File traceFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(traceFile, "r");
+        try {
+            byte[] data = new byte[(int) file.length()];
+            file.readFully(data);
+
+            ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+            if (data.length < RpcTraceRecorder.HEADER_SIZE
+                    || buffer.getInt(RpcTraceRecorder.HEADER_MAGIC) != RpcTraceRecorder.MAGIC) {
+                throw new IOException("Not a trace file: " + traceFile);
+            }
+            if (buffer.getInt(RpcTraceRecorder.HEADER_VERSION) != RpcTraceRecorder.VERSION) {
+                throw new IOException("Unsupported trace version " + buffer.getInt(RpcTraceRecorder.HEADER_VERSION));
+            }
+
+            int capacity = buffer.getInt(RpcTraceRecorder.HEADER_CAPACITY);
+            int eventSize = buffer.getInt(RpcTraceRecorder.HEADER_EVENT);
+            long next = buffer.getLong(RpcTraceRecorder.HEADER_NEXT);
+            long start = buffer.getLong(RpcTraceRecorder.HEADER_START);
+
+            if (data.length < RpcTraceRecorder.HEADER_SIZE + (long) capacity * eventSize) {
+                throw new IOException("Truncated trace file: " + traceFile);
+            }
+
+            // the ring holds the latest events up to its capacity
+            long first = Math.max(0, next - capacity);
+            List<Event> events = new ArrayList<>((int) (next - first));
+
+            for (long sequence = first; sequence < next; sequence++) {
+                int offset = RpcTraceRecorder.HEADER_SIZE + (int) (sequence % capacity) * eventSize;
+                if (buffer.getInt(offset + RpcTraceRecorder.EVENT_SEQUENCE) != (int) sequence) {
+                    // overwritten while the trace was copied
+                    continue;
+                }
+                events.add(new Event(sequence,
+                        buffer.getLong(offset + RpcTraceRecorder.EVENT_TIME),
+                        buffer.get(offset + RpcTraceRecorder.EVENT_TYPE),
+                        buffer.get(offset + RpcTraceRecorder.EVENT_SESSION) & 0xff,
+                        (buffer.getShort(offset + RpcTraceRecorder.EVENT_FLAGS) & RpcTraceRecorder.FLAG_SUCCESS) != 0,
+                        buffer.getInt(offset + RpcTraceRecorder.EVENT_FUNCTION),
+                        buffer.getInt(offset + RpcTraceRecorder.EVENT_CORRELATION),
+                        buffer.getInt(offset + RpcTraceRecorder.EVENT_SIZE_BYTES),
+                        buffer.getInt(offset + RpcTraceRecorder.EVENT_VALUE)));
+            }
+
+            return new RpcTraceReader(start, events);
+        } finally {
+            file.close();
+        }
+    }
+
+    public long getStartTimeMillis() {
+        return this.startTimeMillis;
+    }
+
+    public List<Event> getEvents() {
+        return this.events;
+    }
+
+    // the events of one session
+    public List<Event> getEvents(int session) {
+        List<Event> result = new ArrayList<>();
+        for (Event event : this.events) {
+            if (event.session == session) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: RpcTraceReader <trace file>");
+            System.exit(1);
+        }
+
+        RpcTraceReader reader = read(new File(args[0]));
+        for (Event event : reader.getEvents()) {
+            System.out.println(event);
+        }
+        System.out.println(reader.getEvents().size() + " events");
+    }
+}
@@ -0,0 +1,256 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCMessage;
+import com.smartdevicelink.proxy.RPCNotification;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.OnButtonPress;
+import com.smartdevicelink.proxy.rpc.OnCommand;
+import com.smartdevicelink.proxy.rpc.OnDriverDistraction;
+import com.smartdevicelink.proxy.rpc.OnHMIStatus;
+import com.smartdevicelink.proxy.rpc.OnLockScreenStatus;
+import com.smartdevicelink.proxy.rpc.enums.SdlDisconnectedReason;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Records the timeline of requests, responses and notifications of all sessions into a ring of
+// fixed size events in a memory mapped file. Recording an event is a few writes into the mapped
+// memory. The file is read with RpcTraceReader and replayed with RpcTraceReplay.
+public class RpcTraceRecorder {
+    //region File format
+
+    static final int MAGIC           = 0x53444c54; // "SDLT"
+    static final int VERSION         = 1;
+    static final int HEADER_SIZE     = 64;
+    static final int EVENT_SIZE      = 32;
+
+    // header: magic, version, capacity, event size, next sequence, start time (wall clock)
+    static final int HEADER_MAGIC    = 0;
+    static final int HEADER_VERSION  = 4;
+    static final int HEADER_CAPACITY = 8;
+    static final int HEADER_EVENT    = 12;
+    static final int HEADER_NEXT     = 16;
+    static final int HEADER_START    = 24;
+
+    // event: time (ns since start), type, session, flags, function ID, correlation ID, size, value, sequence
+    static final int EVENT_TIME      = 0;
+    static final int EVENT_TYPE      = 8;
+    static final int EVENT_SESSION   = 9;
+    static final int EVENT_FLAGS     = 10;
+    static final int EVENT_FUNCTION  = 12;
+    static final int EVENT_CORRELATION = 16;
+    static final int EVENT_SIZE_BYTES = 20;
+    static final int EVENT_VALUE     = 24;
+    static final int EVENT_SEQUENCE  = 28;
+
+    static final byte TYPE_REQUEST      = 1;
+    static final byte TYPE_RESPONSE     = 2;
+    static final byte TYPE_NOTIFICATION = 3;
+    static final byte TYPE_CLOSED       = 4;
+
+    static final short FLAG_SUCCESS     = 1;
+
+    // function IDs for messages the protocol doesn't assign an ID to (e.g. notifications created by the proxy)
+    private static final int LOCAL_FUNCTION_BASE = 0x10000000;
+    private static final String[] LOCAL_FUNCTIONS = {
+            "OnLockScreenStatus", "OnSdlChoiceChosen", "OnStreamRPC", "StreamRPC" };
+
+    //endregion
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final long startNanos;
+
+    // guarded by this
+    private long nextSequence;
+    private boolean closed;
+
+    private RpcTraceRecorder(RandomAccessFile file, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.startNanos = System.nanoTime();
+    }
+
+    // creates the trace file (replacing an older trace) with room for the given number of events
+    public static RpcTraceRecorder open(File traceFile, int capacity) throws IOException {
+        long length = HEADER_SIZE + (long) capacity * EVENT_SIZE;
+
+        RandomAccessFile file = new RandomAccessFile(traceFile, "rw");
+        try {
+            file.setLength(0);
+            file.setLength(length);
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(HEADER_MAGIC, MAGIC);
+            buffer.putInt(HEADER_VERSION, VERSION);
+            buffer.putInt(HEADER_CAPACITY, capacity);
+            buffer.putInt(HEADER_EVENT, EVENT_SIZE);
+            buffer.putLong(HEADER_NEXT, 0);
+            buffer.putLong(HEADER_START, System.currentTimeMillis());
+
+            return new RpcTraceRecorder(file, buffer, capacity);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.buffer.force();
+        try {
+            this.file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized long getEventCount() {
+        return this.nextSequence;
+    }
+
+    //region Recording area
+
+    public void recordRequest(int session, RPCRequest request) {
+        byte[] bulkData = request.getBulkData();
+        this.write(TYPE_REQUEST, session, (short) 0, functionID(request.getFunctionName()),
+                request.getCorrelationID() != null ? request.getCorrelationID() : -1,
+                bulkData != null ? bulkData.length : 0, 0);
+    }
+
+    public void recordInbound(int session, RPCMessage message) {
+        int functionID = functionID(message.getFunctionName());
+
+        if (message instanceof RPCResponse) {
+            RPCResponse response = (RPCResponse) message;
+            byte[] bulkData = response.getBulkData();
+            boolean success = Boolean.TRUE.equals(response.getSuccess());
+            this.write(TYPE_RESPONSE, session, success ? FLAG_SUCCESS : 0, functionID,
+                    response.getCorrelationID() != null ? response.getCorrelationID() : -1,
+                    bulkData != null ? bulkData.length : 0,
+                    response.getResultCode() != null ? response.getResultCode().ordinal() : -1);
+        } else if (message instanceof RPCNotification) {
+            this.write(TYPE_NOTIFICATION, session, (short) 0, functionID, -1, 0,
+                    notificationValue((RPCNotification) message));
+        }
+    }
+
+    public void recordClosed(int session, SdlDisconnectedReason reason) {
+        this.write(TYPE_CLOSED, session, (short) 0, -1, -1, 0, reason != null ? reason.ordinal() + 1 : 0);
+    }
+
+    // returns a listener recording every message before it is passed to the listener.
+    // messages are recorded on the thread of the caller (the proxy) to keep the real arrival time.
+    @SuppressWarnings("unchecked")
+    public <T> T wrapListener(Class<T> listenerInterface, final T listener, final int session) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (args != null && args.length == 1 && args[0] instanceof RPCMessage) {
+                    recordInbound(session, (RPCMessage) args[0]);
+                } else if ("onProxyClosed".equals(method.getName())) {
+                    recordClosed(session, (SdlDisconnectedReason) args[2]);
+                }
+
+                try {
+                    return method.invoke(listener, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        };
+
+        return (T) Proxy.newProxyInstance(listenerInterface.getClassLoader(), new Class<?>[] { listenerInterface }, handler);
+    }
+
+    private synchronized void write(byte type, int session, short flags, int functionID, int correlationID,
+                                    int size, int value) {
+        if (this.closed) {
+            return;
+        }
+
+        long sequence = this.nextSequence++;
+        int offset = HEADER_SIZE + (int) (sequence % this.capacity) * EVENT_SIZE;
+
+        MappedByteBuffer buffer = this.buffer;
+        buffer.putLong(offset + EVENT_TIME, System.nanoTime() - this.startNanos);
+        buffer.put(offset + EVENT_TYPE, type);
+        buffer.put(offset + EVENT_SESSION, (byte) session);
+        buffer.putShort(offset + EVENT_FLAGS, flags);
+        buffer.putInt(offset + EVENT_FUNCTION, functionID);
+        buffer.putInt(offset + EVENT_CORRELATION, correlationID);
+        buffer.putInt(offset + EVENT_SIZE_BYTES, size);
+        buffer.putInt(offset + EVENT_VALUE, value);
+        buffer.putInt(offset + EVENT_SEQUENCE, (int) sequence);
+        // the sequence in the header is written last. a reader ignores a half written event.
+        buffer.putLong(HEADER_NEXT, this.nextSequence);
+    }
+
+    //endregion
+
+    //region Function ID area
+
+    static int functionID(String functionName) {
+        int id = FunctionID.getFunctionId(functionName);
+        if (id == FunctionID.INVALID_ID) {
+            for (int i = 0; i < LOCAL_FUNCTIONS.length; i++) {
+                if (LOCAL_FUNCTIONS[i].equals(functionName)) {
+                    return LOCAL_FUNCTION_BASE + i;
+                }
+            }
+        }
+        return id;
+    }
+
+    static String functionName(int functionID) {
+        int local = functionID - LOCAL_FUNCTION_BASE;
+        if (local >= 0 && local < LOCAL_FUNCTIONS.length) {
+            return LOCAL_FUNCTIONS[local];
+        }
+        return FunctionID.getFunctionName(functionID);
+    }
+
+    // the state carried by the notifications the app reacts to. enough to replay them.
+    static int notificationValue(RPCNotification notification) {
+        if (notification instanceof OnHMIStatus) {
+            OnHMIStatus status = (OnHMIStatus) notification;
+            int value = 0;
+            value |= status.getHmiLevel() != null ? status.getHmiLevel().ordinal() + 1 : 0;
+            value |= (status.getAudioStreamingState() != null ? status.getAudioStreamingState().ordinal() + 1 : 0) << 8;
+            value |= (status.getSystemContext() != null ? status.getSystemContext().ordinal() + 1 : 0) << 16;
+            value |= Boolean.TRUE.equals(status.getFirstRun()) ? 1 << 24 : 0;
+            return value;
+        } else if (notification instanceof OnLockScreenStatus) {
+            OnLockScreenStatus status = (OnLockScreenStatus) notification;
+            return status.getShowLockScreen() != null ? status.getShowLockScreen().ordinal() + 1 : 0;
+        } else if (notification instanceof OnCommand) {
+            Integer commandID = ((OnCommand) notification).getCmdID();
+            return commandID != null ? commandID : 0;
+        } else if (notification instanceof OnButtonPress) {
+            OnButtonPress press = (OnButtonPress) notification;
+            return press.getButtonName() != null ? press.getButtonName().ordinal() + 1 : 0;
+        } else if (notification instanceof OnDriverDistraction) {
+            OnDriverDistraction distraction = (OnDriverDistraction) notification;
+            return distraction.getState() != null ? distraction.getState().ordinal() + 1 : 0;
+        }
+        return 0;
+    }
+
+    //endregion
+}
@@ -0,0 +1,262 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.proxy.RPCMessage;
+import com.smartdevicelink.proxy.RPCNotification;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.interfaces.IProxyListenerALM;
+import com.smartdevicelink.proxy.rpc.OnButtonPress;
+import com.smartdevicelink.proxy.rpc.OnCommand;
+import com.smartdevicelink.proxy.rpc.OnDriverDistraction;
+import com.smartdevicelink.proxy.rpc.OnHMIStatus;
+import com.smartdevicelink.proxy.rpc.OnLockScreenStatus;
+import com.smartdevicelink.proxy.rpc.enums.AudioStreamingState;
+import com.smartdevicelink.proxy.rpc.enums.ButtonName;
+import com.smartdevicelink.proxy.rpc.enums.DriverDistractionState;
+import com.smartdevicelink.proxy.rpc.enums.HMILevel;
+import com.smartdevicelink.proxy.rpc.enums.LockScreenStatus;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+import com.smartdevicelink.proxy.rpc.enums.SdlDisconnectedReason;
+import com.smartdevicelink.proxy.rpc.enums.SystemContext;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Plays the head unit's side of a recorded session against a session running without a proxy.
+// Responses and notifications are delivered with the recorded timing. A response waits for the request
+// it answers and keeps the recorded response time of the head unit, so the timeline reacts to the app
+// being slower or faster than in the recording. The report compares the requests with the recording.
+public class RpcTraceReplay {
+    // time the session gets to send a request the recording expects
+    private static final long REQUEST_TIMEOUT_MS = 5000;
+
+    private static class SentRequest {
+        final int correlationID;
+        final long timeNanos;
+
+        SentRequest(int correlationID, long timeNanos) {
+            this.correlationID = correlationID;
+            this.timeNanos = timeNanos;
+        }
+    }
+
+    private final List<RpcTraceReader.Event> events;
+    private final float speed;
+
+    // requests sent by the session and not yet matched, by function ID (guarded by this)
+    private final HashMap<Integer, ArrayDeque<SentRequest>> sentRequests;
+
+    // report
+    private int requestsMatched;
+    private int requestsMissing;
+    private int requestsUnexpected;
+    private int messagesDelivered;
+    private long totalLagNanos;
+    private long maxLagNanos;
+    private long durationNanos;
+
+    // replays the events of one session. a speed of 2 replays twice as fast as recorded.
+    public RpcTraceReplay(List<RpcTraceReader.Event> events, float speed) {
+        this.events = events;
+        this.speed = speed;
+        this.sentRequests = new HashMap<>();
+    }
+
+    // called by the session for every request it sends (any thread)
+    public synchronized void onRequestSent(RPCRequest request) {
+        int functionID = RpcTraceRecorder.functionID(request.getFunctionName());
+        ArrayDeque<SentRequest> queue = this.sentRequests.get(functionID);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            this.sentRequests.put(functionID, queue);
+        }
+        queue.add(new SentRequest(request.getCorrelationID() != null ? request.getCorrelationID() : -1, System.nanoTime()));
+        this.notifyAll();
+    }
+
+    // blocks until all events are replayed. the listener should execute the calls on the session's event loop.
+    public void run(IProxyListenerALM listener) throws InterruptedException {
+        HashMap<String, Method> methods = new HashMap<>();
+        for (Method method : IProxyListenerALM.class.getMethods()) {
+            methods.put(method.getName().toLowerCase(Locale.US), method);
+        }
+
+        // recorded correlation IDs to the IDs used by the session
+        HashMap<Integer, Integer> correlationIDs = new HashMap<>();
+
+        long start = System.nanoTime();
+        long anchorTrace = this.events.isEmpty() ? 0 : this.events.get(0).timeNanos;
+        long anchorReal = start;
+
+        for (RpcTraceReader.Event event : this.events) {
+            long due = anchorReal + (long) ((event.timeNanos - anchorTrace) / this.speed);
+
+            if (event.isRequest()) {
+                SentRequest sent = this.awaitRequest(event.functionID, REQUEST_TIMEOUT_MS);
+                if (sent == null) {
+                    this.requestsMissing++;
+                    continue;
+                }
+
+                long lag = sent.timeNanos - due;
+                this.requestsMatched++;
+                this.totalLagNanos += lag;
+                this.maxLagNanos = Math.max(this.maxLagNanos, lag);
+                correlationIDs.put(event.correlationID, sent.correlationID);
+
+                // the following events are timed relative to the actual request
+                anchorTrace = event.timeNanos;
+                anchorReal = sent.timeNanos;
+                continue;
+            }
+
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+
+            this.deliver(listener, methods, event, correlationIDs);
+        }
+
+        synchronized (this) {
+            for (ArrayDeque<SentRequest> queue : this.sentRequests.values()) {
+                this.requestsUnexpected += queue.size();
+            }
+        }
+        this.durationNanos = System.nanoTime() - start;
+    }
+
+    private synchronized SentRequest awaitRequest(int functionID, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            ArrayDeque<SentRequest> queue = this.sentRequests.get(functionID);
+            if (queue != null && !queue.isEmpty()) {
+                return queue.poll();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+    }
+
+    //region Message area
+
+    private void deliver(IProxyListenerALM listener, HashMap<String, Method> methods, RpcTraceReader.Event event,
+                         HashMap<Integer, Integer> correlationIDs) {
+        if (event.isClosed()) {
+            SdlDisconnectedReason[] reasons = SdlDisconnectedReason.values();
+            listener.onProxyClosed("replay", null, event.value > 0 ? reasons[event.value - 1] : null);
+            this.messagesDelivered++;
+            return;
+        }
+
+        String name = event.getFunctionName();
+        if (name == null) {
+            return;
+        }
+
+        String methodName;
+        if (event.isResponse()) {
+            methodName = name.endsWith("Response") ? "on" + name : "on" + name + "Response";
+        } else if ("OnLockScreenStatus".equals(name)) {
+            methodName = "onOnLockScreenNotification";
+        } else {
+            methodName = "on" + name;
+        }
+
+        Method method = methods.get(methodName.toLowerCase(Locale.US));
+        if (method == null || method.getParameterTypes().length != 1) {
+            return;
+        }
+
+        try {
+            RPCMessage message = (RPCMessage) method.getParameterTypes()[0].getDeclaredConstructor().newInstance();
+
+            if (message instanceof RPCResponse) {
+                RPCResponse response = (RPCResponse) message;
+                Integer correlationID = correlationIDs.get(event.correlationID);
+                response.setCorrelationID(correlationID != null ? correlationID : event.correlationID);
+                response.setSuccess(event.success);
+                if (event.value >= 0 && event.value < Result.values().length) {
+                    response.setResultCode(Result.values()[event.value]);
+                }
+            } else if (message instanceof RPCNotification) {
+                applyNotificationValue((RPCNotification) message, event.value);
+            }
+
+            method.invoke(listener, message);
+            this.messagesDelivered++;
+        } catch (InstantiationException e) {
+            e.printStackTrace();
+        } catch (NoSuchMethodException e) {
+            e.printStackTrace();
+        } catch (IllegalAccessException e) {
+            e.printStackTrace();
+        } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+        }
+    }
+
+    // the reverse of RpcTraceRecorder.notificationValue
+    private static void applyNotificationValue(RPCNotification notification, int value) {
+        if (notification instanceof OnHMIStatus) {
+            OnHMIStatus status = (OnHMIStatus) notification;
+            int hmiLevel = value & 0xff;
+            int audioStreamingState = (value >> 8) & 0xff;
+            int systemContext = (value >> 16) & 0xff;
+            status.setHmiLevel(hmiLevel > 0 ? HMILevel.values()[hmiLevel - 1] : null);
+            status.setAudioStreamingState(audioStreamingState > 0 ? AudioStreamingState.values()[audioStreamingState - 1] : null);
+            status.setSystemContext(systemContext > 0 ? SystemContext.values()[systemContext - 1] : null);
+            status.setFirstRun((value & (1 << 24)) != 0);
+        } else if (notification instanceof OnLockScreenStatus) {
+            ((OnLockScreenStatus) notification).setShowLockScreen(value > 0 ? LockScreenStatus.values()[value - 1] : null);
+        } else if (notification instanceof OnCommand) {
+            ((OnCommand) notification).setCmdID(value);
+        } else if (notification instanceof OnButtonPress) {
+            ((OnButtonPress) notification).setButtonName(value > 0 ? ButtonName.values()[value - 1] : null);
+        } else if (notification instanceof OnDriverDistraction) {
+            ((OnDriverDistraction) notification).setState(value > 0 ? DriverDistractionState.values()[value - 1] : null);
+        }
+    }
+
+    //endregion
+
+    //region Report area
+
+    public int getRequestsMatched() {
+        return this.requestsMatched;
+    }
+
+    public int getRequestsMissing() {
+        return this.requestsMissing;
+    }
+
+    public int getRequestsUnexpected() {
+        return this.requestsUnexpected;
+    }
+
+    // average time the requests were sent later than in the recording (negative if earlier)
+    public double getAverageLagMs() {
+        return this.requestsMatched > 0 ? this.totalLagNanos / 1e6 / this.requestsMatched : 0;
+    }
+
+    public double getMaxLagMs() {
+        return this.maxLagNanos / 1e6;
+    }
+
+    public String getReport() {
+        return String.format(Locale.US, "%d events in %.1f ms: %d messages delivered, %d requests matched, "
+                        + "%d missing, %d unexpected, lag avg %.2f ms max %.2f ms",
+                this.events.size(), this.durationNanos / 1e6, this.messagesDelivered, this.requestsMatched,
+                this.requestsMissing, this.requestsUnexpected, this.getAverageLagMs(), this.getMaxLagMs());
+    }
+
+    //endregion
+}
@@ -0,0 +1,314 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.Image;
+import com.smartdevicelink.proxy.rpc.SetDisplayLayout;
+import com.smartdevicelink.proxy.rpc.Show;
+import com.smartdevicelink.proxy.rpc.SoftButton;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+// Holds a model of the template on the head unit. Changes are collected with the setters and
+// commit() sends a single Show containing only the fields that differ from what is displayed.
+public class ScreenManager {
+    private static final String TAG = "SDL Screen";
+
+    public static final int MAIN_FIELD_1 = 0;
+    public static final int MAIN_FIELD_2 = 1;
+    public static final int MAIN_FIELD_3 = 2;
+    public static final int MAIN_FIELD_4 = 3;
+    public static final int MEDIA_TRACK  = 4;
+    public static final int STATUS_BAR   = 5;
+
+    private static final int GRAPHIC      = 6;
+    private static final int SOFT_BUTTONS = 7;
+    private static final int FIELD_COUNT  = 8;
+
+    // text fields are cut to this length while the driver is distracted
+    private static final int DISTRACTED_TEXT_LENGTH = 20;
+
+    private final RequestSender sender;
+    private final RequestPool requestPool;
+
+    // field values as strings: text, image name and a key describing the soft buttons
+    private final String[] desired;
+    // values sent to the head unit (including requests without response yet)
+    private final String[] sent;
+    // values the head unit confirmed with a successful response
+    private final String[] acknowledged;
+
+    // bit mask of fields set by the app since the last commit
+    private int touched;
+
+    private Image desiredGraphic;
+    private List<SoftButton> desiredSoftButtons;
+
+    private String desiredLayout;
+    private String sentLayout;
+
+    // sends shorter text while the driver is distracted. the full text follows when the driver isn't.
+    private boolean distracted;
+
+    // field values of pending Show requests by correlation ID. the arrays are reused.
+    private final HashMap<Integer, String[]> pendingShows;
+    private final ArrayDeque<String[]> idleValues;
+    private final HashMap<Integer, String> pendingLayouts;
+
+    // the requests of a commit. reused as they are sent right away.
+    private final List<RPCRequest> commitRequests;
+
+    // metrics
+    private int commits;
+    private int rpcsSent;
+    private int rpcsSaved;
+    private long bytesSent;
+    private long bytesSaved;
+    private long bytesDeferred;
+
+    public ScreenManager(RequestSender sender, RequestPool requestPool) {
+        this.sender = sender;
+        this.requestPool = requestPool;
+        this.desired = new String[FIELD_COUNT];
+        this.sent = new String[FIELD_COUNT];
+        this.acknowledged = new String[FIELD_COUNT];
+        this.pendingShows = new HashMap<>();
+        this.idleValues = new ArrayDeque<>();
+        this.pendingLayouts = new HashMap<>();
+        this.commitRequests = new ArrayList<>(2);
+    }
+
+    //region Model area
+
+    public void setTextField(int field, String text) {
+        if (field < MAIN_FIELD_1 || field > STATUS_BAR) {
+            throw new IllegalArgumentException("Unknown text field " + field);
+        }
+        this.setField(field, text != null ? text : "");
+    }
+
+    public void setGraphic(Image image) {
+        this.desiredGraphic = image;
+        this.setField(GRAPHIC, image != null ? image.getValue() : null);
+    }
+
+    public void setSoftButtons(List<SoftButton> softButtons) {
+        this.desiredSoftButtons = softButtons;
+
+        String key = null;
+        if (softButtons != null) {
+            StringBuilder builder = new StringBuilder();
+            for (SoftButton button : softButtons) {
+                builder.append(button.getSoftButtonID()).append('|')
+                        .append(button.getType()).append('|')
+                        .append(button.getText()).append('|')
+                        .append(button.getImage() != null ? button.getImage().getValue() : null).append('|')
+                        .append(button.getIsHighlighted()).append('|')
+                        .append(button.getSystemAction()).append(';');
+            }
+            key = builder.toString();
+        }
+        this.setField(SOFT_BUTTONS, key);
+    }
+
+    public void setLayout(String layout) {
+        this.desiredLayout = layout;
+    }
+
+    public void setDistracted(boolean distracted) {
+        this.distracted = distracted;
+    }
+
+    private void setField(int field, String value) {
+        this.desired[field] = value;
+        this.touched |= 1 << field;
+    }
+
+    //endregion
+
+    //region Update area
+
+    // sends the pending changes. returns false if nothing had to be sent.
+    public boolean commit() {
+        this.commitRequests.clear();
+        this.buildUpdate(this.commitRequests);
+        if (this.commitRequests.isEmpty()) {
+            return false;
+        }
+        this.sender.sendRequests(this.commitRequests, true);
+        this.commitRequests.clear();
+        return true;
+    }
+
+    // builds the requests for the pending changes without sending them. the caller has to send the
+    // requests in the returned order (e.g. appended to a sequential list after a PutFile).
+    public List<RPCRequest> buildUpdate() {
+        List<RPCRequest> requests = new ArrayList<>(2);
+        this.buildUpdate(requests);
+        return requests;
+    }
+
+    private void buildUpdate(List<RPCRequest> requests) {
+        this.commits++;
+
+        if (this.desiredLayout != null && !this.desiredLayout.equals(this.sentLayout)) {
+            SetDisplayLayout layout = new SetDisplayLayout();
+            layout.setCorrelationID(this.sender.nextCorrelationID());
+            layout.setDisplayLayout(this.desiredLayout);
+            requests.add(layout);
+
+            this.pendingLayouts.put(layout.getCorrelationID(), this.desiredLayout);
+            this.sentLayout = this.desiredLayout;
+
+            // a new layout starts empty. everything has to be shown again.
+            Arrays.fill(this.sent, null);
+            Arrays.fill(this.acknowledged, null);
+        }
+
+        // the show is recycled after its response
+        Show show = this.requestPool.obtainShow();
+        String[] values = this.idleValues.poll();
+        if (values == null) {
+            values = new String[FIELD_COUNT];
+        }
+        int changed = 0;
+        int bytes = 0;
+
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            String value = this.desired[field];
+            if (value != null && this.distracted && field <= STATUS_BAR && value.length() > DISTRACTED_TEXT_LENGTH) {
+                // the rest of the text is sent with the first commit after the distraction
+                value = value.substring(0, DISTRACTED_TEXT_LENGTH);
+                this.bytesDeferred += this.desired[field].length() - value.length();
+            }
+            if (value == null || value.equals(this.sent[field])) {
+                continue;
+            }
+
+            values[field] = value;
+            changed++;
+            bytes += fieldSize(field, value);
+            this.sent[field] = value;
+
+            switch (field) {
+                case MAIN_FIELD_1: show.setMainField1(value); break;
+                case MAIN_FIELD_2: show.setMainField2(value); break;
+                case MAIN_FIELD_3: show.setMainField3(value); break;
+                case MAIN_FIELD_4: show.setMainField4(value); break;
+                case MEDIA_TRACK: show.setMediaTrack(value); break;
+                case STATUS_BAR: show.setStatusBar(value); break;
+                case GRAPHIC: show.setGraphic(this.desiredGraphic); break;
+                case SOFT_BUTTONS: show.setSoftButtons(this.desiredSoftButtons); break;
+            }
+        }
+
+        // what a full resend of the fields set by the app would have cost
+        int touchedBytes = 0;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if ((this.touched & (1 << field)) != 0 && this.desired[field] != null) {
+                touchedBytes += fieldSize(field, this.desired[field]);
+            }
+        }
+        this.bytesSaved += Math.max(0, touchedBytes - bytes);
+        this.touched = 0;
+
+        if (changed > 0) {
+            requests.add(show);
+            this.pendingShows.put(show.getCorrelationID(), values);
+            this.bytesSent += bytes;
+        } else {
+            this.requestPool.recycle(show);
+            this.idleValues.add(values);
+            this.rpcsSaved++;
+        }
+
+        this.rpcsSent += requests.size();
+    }
+
+    private int fieldSize(int field, String value) {
+        if (field == SOFT_BUTTONS && this.desiredSoftButtons != null) {
+            // the key is only a summary. count the visible text of the buttons.
+            int size = 0;
+            for (SoftButton button : this.desiredSoftButtons) {
+                size += button.getText() != null ? button.getText().length() : 0;
+            }
+            return size;
+        }
+        return value.length();
+    }
+
+    //endregion
+
+    //region Response area
+
+    public void onShowResponse(RPCResponse response) {
+        String[] values = this.pendingShows.remove(response.getCorrelationID());
+        if (values == null) {
+            return;
+        }
+
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (values[field] == null) {
+                continue;
+            }
+            if (response.getSuccess()) {
+                this.acknowledged[field] = values[field];
+            } else if (values[field].equals(this.sent[field])) {
+                // the field is not displayed. the next commit has to send it again.
+                this.sent[field] = this.acknowledged[field];
+            }
+        }
+
+        Arrays.fill(values, null);
+        this.idleValues.add(values);
+
+        if (!response.getSuccess()) {
+            Log.w(TAG, "Show rejected: " + response.getResultCode());
+        }
+    }
+
+    public void onSetDisplayLayoutResponse(RPCResponse response) {
+        String layout = this.pendingLayouts.remove(response.getCorrelationID());
+        if (layout != null && !response.getSuccess() && layout.equals(this.sentLayout)) {
+            Log.w(TAG, "Layout " + layout + " rejected: " + response.getResultCode());
+            this.sentLayout = null;
+        }
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public int getCommits() {
+        return this.commits;
+    }
+
+    public int getRpcsSent() {
+        return this.rpcsSent;
+    }
+
+    public int getRpcsSaved() {
+        return this.rpcsSaved;
+    }
+
+    public long getBytesSent() {
+        return this.bytesSent;
+    }
+
+    public long getBytesSaved() {
+        return this.bytesSaved;
+    }
+
+    // text held back while the driver was distracted
+    public long getBytesDeferred() {
+        return this.bytesDeferred;
+    }
+
+    //endregion
+}
@@ -0,0 +1,189 @@
+package com.sdl.hellosdlandroid;
+
+import android.bluetooth.BluetoothClass;
+import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Remembers the Bluetooth devices the app registered with before. A connecting device decides if the
+// service is started: known head units start it as usual, unknown devices that may be a head unit start
+// it with a short connection timeout and devices like headphones or watches don't start it at all.
+public class SdlDeviceRegistry {
+    private static final String TAG = "SDL Devices";
+
+    private static final String PREFERENCES_NAME = "sdl_devices";
+    private static final String DEVICE_PREFIX    = "device:";
+    private static final String STAT_STARTS      = "stat:starts";
+    private static final String STAT_PROBES      = "stat:probes";
+    private static final String STAT_SKIPPED     = "stat:skipped";
+    private static final String STAT_WASTED      = "stat:wasted";
+
+    // the oldest device is forgotten when more devices are registered
+    private static final int MAX_DEVICES = 16;
+
+    // the device didn't report its Bluetooth class
+    static final int NO_DEVICE_CLASS = -1;
+
+    public enum Decision {
+        // a known head unit (or no device information). start with the normal connection timeout.
+        START,
+        // an unknown device which could be a head unit. start with a short connection timeout.
+        PROBE,
+        // not a head unit. don't start the service.
+        SKIP
+    }
+
+    private final SharedPreferences preferences;
+
+    // time of the last registration by device address (guarded by this)
+    private final HashMap<String, Long> devices;
+
+    public SdlDeviceRegistry(Context context) {
+        this(context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE));
+    }
+
+    SdlDeviceRegistry(SharedPreferences preferences) {
+        this.preferences = preferences;
+        this.devices = new HashMap<>();
+
+        for (Map.Entry<String, ?> entry : this.preferences.getAll().entrySet()) {
+            if (entry.getKey().startsWith(DEVICE_PREFIX) && entry.getValue() instanceof Long) {
+                this.devices.put(entry.getKey().substring(DEVICE_PREFIX.length()), (Long) entry.getValue());
+            }
+        }
+    }
+
+    //region Decision area
+
+    // called when a device connected. the decision is counted in the statistics.
+    public Decision onDeviceConnected(BluetoothDevice device) {
+        if (device == null) {
+            return this.onDeviceConnected(null, NO_DEVICE_CLASS, NO_DEVICE_CLASS);
+        }
+
+        BluetoothClass bluetoothClass = device.getBluetoothClass();
+        return this.onDeviceConnected(device.getAddress(),
+                bluetoothClass != null ? bluetoothClass.getMajorDeviceClass() : NO_DEVICE_CLASS,
+                bluetoothClass != null ? bluetoothClass.getDeviceClass() : NO_DEVICE_CLASS);
+    }
+
+    synchronized Decision onDeviceConnected(String address, int majorDeviceClass, int deviceClass) {
+        Decision decision = this.decide(address, majorDeviceClass, deviceClass);
+
+        switch (decision) {
+            case START: this.increment(STAT_STARTS); break;
+            case PROBE: this.increment(STAT_PROBES); break;
+            case SKIP: this.increment(STAT_SKIPPED); break;
+        }
+
+        if (address != null) {
+            Log.v(TAG, address + ": " + decision);
+        }
+        return decision;
+    }
+
+    private Decision decide(String address, int majorDeviceClass, int deviceClass) {
+        if (address == null) {
+            return Decision.START;
+        }
+        if (this.devices.containsKey(address)) {
+            return Decision.START;
+        }
+
+        if (majorDeviceClass == NO_DEVICE_CLASS) {
+            return Decision.PROBE;
+        }
+
+        switch (majorDeviceClass) {
+            case BluetoothClass.Device.Major.AUDIO_VIDEO:
+                // head units report themselves as car audio or hands-free
+                switch (deviceClass) {
+                    case BluetoothClass.Device.AUDIO_VIDEO_CAR_AUDIO:
+                    case BluetoothClass.Device.AUDIO_VIDEO_HANDSFREE:
+                    case BluetoothClass.Device.AUDIO_VIDEO_UNCATEGORIZED:
+                        return Decision.PROBE;
+                    default:
+                        return Decision.SKIP;
+                }
+            case BluetoothClass.Device.Major.MISC:
+            case BluetoothClass.Device.Major.UNCATEGORIZED:
+                return Decision.PROBE;
+            default:
+                return Decision.SKIP;
+        }
+    }
+
+    //endregion
+
+    //region Registration area
+
+    public synchronized boolean isKnownDevice(String address) {
+        return address != null && this.devices.containsKey(address);
+    }
+
+    // called when a session connected through the device registered the app
+    public synchronized void onDeviceRegistered(String address) {
+        if (address == null) {
+            return;
+        }
+
+        SharedPreferences.Editor editor = this.preferences.edit();
+        this.devices.put(address, System.currentTimeMillis());
+        editor.putLong(DEVICE_PREFIX + address, this.devices.get(address));
+
+        while (this.devices.size() > MAX_DEVICES) {
+            String oldest = null;
+            for (Map.Entry<String, Long> entry : this.devices.entrySet()) {
+                if (oldest == null || entry.getValue() < this.devices.get(oldest)) {
+                    oldest = entry.getKey();
+                }
+            }
+            this.devices.remove(oldest);
+            editor.remove(DEVICE_PREFIX + oldest);
+        }
+
+        editor.apply();
+    }
+
+    // called when a session started for a device closed without registering the app
+    public synchronized void onStartWasted() {
+        this.increment(STAT_WASTED);
+    }
+
+    //endregion
+
+    //region Statistics area
+
+    private void increment(String key) {
+        this.preferences.edit().putInt(key, this.preferences.getInt(key, 0) + 1).apply();
+    }
+
+    public synchronized int getStarts() {
+        return this.preferences.getInt(STAT_STARTS, 0);
+    }
+
+    public synchronized int getProbes() {
+        return this.preferences.getInt(STAT_PROBES, 0);
+    }
+
+    // starts avoided for devices which aren't head units
+    public synchronized int getSkipped() {
+        return this.preferences.getInt(STAT_SKIPPED, 0);
+    }
+
+    // starts which didn't lead to a registration
+    public synchronized int getWasted() {
+        return this.preferences.getInt(STAT_WASTED, 0);
+    }
+
+    public synchronized String getStatistics() {
+        return this.devices.size() + " known devices, " + this.getStarts() + " starts, " + this.getProbes()
+                + " probes, " + this.getSkipped() + " skipped, " + this.getWasted() + " wasted";
+    }
+
+    //endregion
+}
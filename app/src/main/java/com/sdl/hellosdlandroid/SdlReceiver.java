@@ -11,9 +11,12 @@ public class SdlReceiver  extends BroadcastReceiver {
 	public void onReceive(Context context, Intent intent) {
         String action = intent.getAction();
 		if (BluetoothDevice.ACTION_ACL_CONNECTED.equals(action)) {
-			SdlService.startService(context);
+			// headphones, watches etc. don't start the service
+			BluetoothDevice device = intent.getParcelableExtra(BluetoothDevice.EXTRA_DEVICE);
+			SdlService.startService(context, device);
 		} else if (AudioManager.ACTION_AUDIO_BECOMING_NOISY.equals(action)) {
-			// signal your service to stop playback
+			// signal the service to stop playback
+			SdlService.onAudioBecomingNoisy(context);
 		}
 	}
 }
\ No newline at end of file
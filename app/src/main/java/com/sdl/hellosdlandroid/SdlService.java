@@ -2,98 +2,91 @@ package com.sdl.hellosdlandroid;
 
 import android.app.Service;
 import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
 import android.content.Context;
 import android.content.Intent;
-import android.media.MediaPlayer;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
 import android.util.Log;
 
-import com.smartdevicelink.exception.SdlException;
-import com.smartdevicelink.proxy.RPCMessage;
-import com.smartdevicelink.proxy.RPCRequest;
-import com.smartdevicelink.proxy.RPCResponse;
-import com.smartdevicelink.proxy.SdlProxyALM;
-import com.smartdevicelink.proxy.callbacks.OnServiceEnded;
-import com.smartdevicelink.proxy.callbacks.OnServiceNACKed;
-import com.smartdevicelink.proxy.interfaces.IProxyListenerALM;
-import com.smartdevicelink.proxy.rpc.*;
-import com.smartdevicelink.proxy.rpc.enums.AudioStreamingState;
-import com.smartdevicelink.proxy.rpc.enums.ButtonName;
-import com.smartdevicelink.proxy.rpc.enums.FileType;
-import com.smartdevicelink.proxy.rpc.enums.HMILevel;
-import com.smartdevicelink.proxy.rpc.enums.ImageType;
 import com.smartdevicelink.proxy.rpc.enums.LockScreenStatus;
-import com.smartdevicelink.proxy.rpc.enums.SdlDisconnectedReason;
-import com.smartdevicelink.proxy.rpc.enums.SystemContext;
-import com.smartdevicelink.proxy.rpc.enums.UpdateMode;
+import com.smartdevicelink.transport.BTTransportConfig;
+import com.smartdevicelink.transport.BaseTransportConfig;
+import com.smartdevicelink.transport.TCPTransportConfig;
 
-import org.json.JSONException;
-
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class SdlService extends Service implements IProxyListenerALM {
+public class SdlService extends Service implements ProxySession.Host {
     //region Private static final area
 
-    private static final String APP_NAME                 = "Hello Sdl";
-    private static final String APP_ID                     = "8675309";
+    private static final String TAG = "SDL Service";
 
-    //endregion
+    // intent extras to connect to a TCP head unit (e.g. a test head unit or emulator)
+    private static final String EXTRA_TCP_HOST    = "com.sdl.hellosdlandroid.TCP_HOST";
+    private static final String EXTRA_TCP_PORT    = "com.sdl.hellosdlandroid.TCP_PORT";
 
-    //region Private variable area
+    // intent extras to replay a recorded trace against a session without a proxy
+    private static final String EXTRA_REPLAY_TRACE   = "com.sdl.hellosdlandroid.REPLAY_TRACE";
+    private static final String EXTRA_REPLAY_SESSION = "com.sdl.hellosdlandroid.REPLAY_SESSION";
+    private static final String EXTRA_REPLAY_SPEED   = "com.sdl.hellosdlandroid.REPLAY_SPEED";
 
-    // variable to create and call functions of the SyncProxy
-    private SdlProxyALM proxy;
+    // intent extras describing the Bluetooth device which started the service
+    private static final String EXTRA_DEVICE_ADDRESS = "com.sdl.hellosdlandroid.DEVICE_ADDRESS";
+    private static final String EXTRA_DEVICE_PROBE   = "com.sdl.hellosdlandroid.DEVICE_PROBE";
 
-    // variable used to increment correlation ID for every request sent to SYNC
-    public int correlationID;
+    private static final String BLUETOOTH_SESSION = "bluetooth";
 
-    // variable used to auto stop the service and release the blocked RFCOMM of the proxy
-    private Handler connectionHandler;
+    // time a session waits for a head unit. unknown devices get a shorter time to release the RFCOMM sooner.
+    private static final long CONNECTION_TIMEOUT       = 180 * 1000;
+    private static final long PROBE_CONNECTION_TIMEOUT = 30 * 1000;
 
-    // holding pending requests to execute them sequentially
-    private HashMap<Integer, RPCRequest> pendingSequentialRequests;
+    // when enabled the timeline of all sessions is recorded to files/traces/rpc.trace.
+    // the trace of the previous run is kept as rpc.trace.1.
+    private static final boolean RPC_TRACE_ENABLED = false;
+    private static final String RPC_TRACE_DIRECTORY = "traces";
+    private static final String RPC_TRACE_FILE      = "rpc.trace";
+    private static final int RPC_TRACE_CAPACITY     = 16 * 1024;
 
-    // variable to keep track if the app received the OnAppDidConnect notification
-    private boolean appDidConnect;
+    // the resource usage of every session is appended to files/profiles/<session name>.txt.
+    // a file grown over the limit is kept as <session name>.txt.1 and a new one is started.
+    private static final boolean SESSION_PROFILING_ENABLED = false;
+    private static final String SESSION_PROFILE_DIRECTORY  = "profiles";
+    private static final long SESSION_PROFILE_MAX_BYTES    = 256 * 1024;
 
-    // variable to keep track if the app received the OnAppDidStart notification
-    private boolean appDidStart;
+    //endregion
 
-    // variable to keep track if the app icon was set
-    private boolean appIconSet;
+    //region Private variable area
 
-    // holding a media player for the reference audio file
-    private MediaPlayer appMediaPlayer;
+    // variable to post to the main thread
+    private Handler mainHandler;
 
-    // variable to keep track if the user paused playback
-    private boolean appMediaPlayerUserPaused;
+    // holding all sessions connected or connecting to a head unit
+    private SessionManager sessionManager;
 
-    // variable to keep track of the current hmi level
-    private HMILevel sdlHMILevel;
+    // prepares images in the resolution of the head unit. shared by all sessions.
+    private ArtworkManager artworkManager;
 
-    // variable to keep track of the current audio streaming state
-    private AudioStreamingState sdlAudioStreamingState;
+    // holding the requested lock screen status of every session (main thread only)
+    private HashMap<ProxySession, LockScreenStatus> lockScreenStatus;
 
-    // variable to keep track of the current system context
-    private SystemContext sdlSystemContext;
+    private LockScreenController lockScreenController;
 
-    // variable to keep track if file management is supported by SDL
-    private boolean sdlSupportFiles;
+    // remembers the head units the app registered with
+    private SdlDeviceRegistry deviceRegistry;
 
-    // holding a list of unique names of files that exist on the remote unit
-    private Set<String> sdlRemoteFiles;
+    // sessions which registered the app on a head unit
+    private Set<ProxySession> registeredSessions;
 
-    // holding pending requests of files to be uploaded or deleted
-    private HashMap<Integer, String> sdlPendingRemoteFiles;
+    // records the timeline of all sessions (null if disabled)
+    private RpcTraceRecorder traceRecorder;
+    private int nextTraceSessionID;
 
     //endregion
 
@@ -109,24 +102,99 @@ public class SdlService extends Service implements IProxyListenerALM {
         }
     }
 
+    // starts the service for a connected Bluetooth device unless the device is known not to be a head unit
+    public static void startService(Context context, BluetoothDevice device) {
+        SdlDeviceRegistry registry = ((HelloSdlApplication) context.getApplicationContext()).getDeviceRegistry();
+        SdlDeviceRegistry.Decision decision = registry.onDeviceConnected(device);
+        if (decision == SdlDeviceRegistry.Decision.SKIP) {
+            return;
+        }
+
+        Intent intent = new Intent(context, SdlService.class);
+        if (device != null) {
+            intent.putExtra(EXTRA_DEVICE_ADDRESS, device.getAddress());
+        }
+        intent.putExtra(EXTRA_DEVICE_PROBE, decision == SdlDeviceRegistry.Decision.PROBE);
+        context.startService(intent);
+    }
+
+    // pauses playback of all sessions if the service is running
+    public static void onAudioBecomingNoisy(Context context) {
+        SdlService service = ((HelloSdlApplication) context.getApplicationContext()).getSdlService();
+        if (service != null) {
+            for (ProxySession session : service.sessionManager.getSessions()) {
+                session.onAudioBecomingNoisy();
+            }
+        }
+    }
+
+    // replays the head unit's side of a session recorded in the trace file. the trace of the previous
+    // run is at files/traces/rpc.trace.1. the first session of a trace is 0.
+    public static void startReplay(Context context, String traceFile, int traceSession, float speed) {
+        Intent intent = new Intent(context, SdlService.class);
+        intent.putExtra(EXTRA_REPLAY_TRACE, traceFile);
+        intent.putExtra(EXTRA_REPLAY_SESSION, traceSession);
+        intent.putExtra(EXTRA_REPLAY_SPEED, speed);
+        context.startService(intent);
+    }
+
+    // starts an additional session connecting to a head unit over TCP
+    public static void startTcpSession(Context context, String host, int port) {
+        Intent intent = new Intent(context, SdlService.class);
+        intent.putExtra(EXTRA_TCP_HOST, host);
+        intent.putExtra(EXTRA_TCP_PORT, port);
+        context.startService(intent);
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
 
-        proxy = null;
-        correlationID = 0;
-        connectionHandler = new Handler(Looper.getMainLooper());
+        mainHandler = new Handler(Looper.getMainLooper());
+        sessionManager = new SessionManager();
+        artworkManager = new ArtworkManager(this);
+        lockScreenStatus = new HashMap<>();
+        lockScreenController = ((HelloSdlApplication) getApplication()).getLockScreenController();
+        deviceRegistry = ((HelloSdlApplication) getApplication()).getDeviceRegistry();
+        registeredSessions = Collections.newSetFromMap(new ConcurrentHashMap<ProxySession, Boolean>());
+
+        ((HelloSdlApplication) getApplication()).setSdlService(this);
+
+        if (RPC_TRACE_ENABLED) {
+            this.openTraceRecorder();
+        }
     }
 
     @Override
     public void onDestroy() {
-        this.disposeProxy();
+        ((HelloSdlApplication) getApplication()).setSdlService(null);
+        Log.v(TAG, "devices: " + this.deviceRegistry.getStatistics());
+
+        this.sessionManager.shutdown();
+        this.artworkManager.shutdown();
+        if (this.traceRecorder != null) {
+            this.traceRecorder.close();
+        }
         super.onDestroy();
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        this.setupProxy();
+        String host = intent != null ? intent.getStringExtra(EXTRA_TCP_HOST) : null;
+        String trace = intent != null ? intent.getStringExtra(EXTRA_REPLAY_TRACE) : null;
+
+        if (trace != null) {
+            this.startReplay(trace, intent.getIntExtra(EXTRA_REPLAY_SESSION, 0), intent.getFloatExtra(EXTRA_REPLAY_SPEED, 1f));
+        } else if (host != null) {
+            int port = intent.getIntExtra(EXTRA_TCP_PORT, 12345);
+            this.startSession("tcp:" + host + ":" + port, new TCPTransportConfig(port, host, false), CONNECTION_TIMEOUT, null);
+        } else {
+            String address = intent != null ? intent.getStringExtra(EXTRA_DEVICE_ADDRESS) : null;
+            boolean probe = address != null && intent.getBooleanExtra(EXTRA_DEVICE_PROBE, false);
+            this.startSession(BLUETOOTH_SESSION, new BTTransportConfig(), probe ? PROBE_CONNECTION_TIMEOUT : CONNECTION_TIMEOUT,
+                    address);
+        }
+
         return START_STICKY;
     }
 
@@ -137,813 +205,171 @@ public class SdlService extends Service implements IProxyListenerALM {
 
     //endregion
 
-    //region Proxy lifecycle area
-
-    private void resetProperties() {
-        this.pendingSequentialRequests = new HashMap<>(100);
-        this.appDidConnect = false;
-        this.appDidStart = false;
-        this.appIconSet = false;
-        this.appMediaPlayer = null;
-        this.appMediaPlayerUserPaused = false;
-        this.sdlHMILevel = null;
-        this.sdlAudioStreamingState = null;
-        this.sdlSystemContext = null;
-        this.sdlSupportFiles = false;
-        this.sdlRemoteFiles = new HashSet<>(10);
-        this.sdlPendingRemoteFiles = new HashMap<>(10);
-    }
-
-    public void setupProxy() {
-        if (proxy == null) {
-            try {
-                this.resetProperties();
-                this.connectionHandler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        disposeProxy();
-                    }
-                }, 180 * 1000);
-                this.proxy = new SdlProxyALM(this, APP_NAME, true, APP_ID);
-            } catch (SdlException e) {
-                e.printStackTrace();
-                if (proxy == null) {
-                    stopSelf();
+    //region Session management area
+
+    // the device address is null for sessions not started for a Bluetooth device
+    private void startSession(String name, BaseTransportConfig transportConfig, long connectionTimeout, String deviceAddress) {
+        ProxySession existing = this.sessionManager.getSession(name);
+        if (existing != null) {
+            // e.g. a known head unit connected while the session probes another device
+            if (connectionTimeout > existing.getConnectionTimeout()) {
+                existing.extendConnectionTimeout(connectionTimeout);
+                if (deviceAddress != null) {
+                    existing.setDeviceAddress(deviceAddress);
                 }
             }
+            return;
         }
-    }
-
-    public void disposeProxy() {
-        LockScreenActivity.updateLockScreenStatus(LockScreenStatus.OFF);
 
-        if (proxy != null) {
-            try {
-                proxy.dispose();
-            } catch (SdlException e) {
-                e.printStackTrace();
-            }
-            proxy = null;
+        ProxySession session = new ProxySession(this, name, transportConfig,
+                this.sessionManager.newEventLoop(name), this.artworkManager, this);
+        session.setConnectionTimeout(connectionTimeout);
+        session.setDeviceAddress(deviceAddress);
+        if (this.traceRecorder != null) {
+            session.setTraceRecorder(this.traceRecorder, this.nextTraceSessionID++);
         }
-    }
-
-    //endregion
-
-    //region Request management area
-
-    private void logMessage(RPCMessage message) {
-        try { Log.v("SDL", message.serializeJSON((byte) 1).toString(2)); }
-        catch (JSONException e) { e.printStackTrace(); }
-    }
-
-    public int nextCorrelationID() {
-        correlationID = (correlationID % 0xffff) + 1;
-        return correlationID;
-    }
-
-    private void handleSequentialRequestsForResponse(RPCResponse response) {
-        if (response != null) {
-            this.logMessage(response);
-
-            // get the correlation id of the response
-            Integer correlationID = response.getCorrelationID();
-            // get a sequential request for the correlation id if any exist
-            RPCRequest request = this.pendingSequentialRequests.get(correlationID);
-
-            if (request != null) {
-                // there is another requet we need to send out now
-                this.pendingSequentialRequests.remove(correlationID);
-                this.sendRequest(request);
-            }
+        if (SESSION_PROFILING_ENABLED) {
+            this.enableProfiling(session);
         }
-    }
 
-    private void sendRequest(RPCRequest request) {
-        // auto set a correlation id
-        if (request.getCorrelationID() == null) {
-            request.setCorrelationID(nextCorrelationID());
+        if (this.sessionManager.addSession(session)) {
+            session.start();
         }
+    }
 
-        this.logMessage(request);
-
-        // check for remote file changes (putfile or deletefile)
-        String filename = null;
-        if (request instanceof PutFile) {
-            filename = ((PutFile) request).getSdlFileName();
-        } else if (request instanceof DeleteFile) {
-            filename = ((DeleteFile) request).getSdlFileName();
+    private void startReplay(final String traceFile, final int traceSession, final float speed) {
+        String name = "replay:" + traceFile;
+        if (this.sessionManager.getSession(name) != null) {
+            return;
         }
 
-        // in case we are going to change the list of remote files:
-        if (filename != null) {
-            this.sdlPendingRemoteFiles.put(request.getCorrelationID(), filename);
+        final ProxySession session = new ProxySession(this, name, null,
+                this.sessionManager.newEventLoop(name), this.artworkManager, this);
+        if (this.traceRecorder != null) {
+            // the replay is recorded as well to compare it with the original
+            session.setTraceRecorder(this.traceRecorder, this.nextTraceSessionID++);
         }
-
-        // send the actual request
-        try {
-            proxy.sendRPCRequest(request);
-        } catch (SdlException e) {
-            e.printStackTrace();
+        if (SESSION_PROFILING_ENABLED) {
+            // the profiles of replays of the same trace compare builds
+            this.enableProfiling(session);
         }
-    }
 
-    private void sendRequests(List<RPCRequest> requests, boolean sequential) {
-        if (requests == null || requests.size() == 0) {
+        if (!this.sessionManager.addSession(session)) {
             return;
         }
 
-        if (sequential) {
-            for (int i = 0; i < requests.size() - 1; i++) {
-                // get the request to that a sequential request should be performed
-                RPCRequest request = requests.get(i);
-                // the next request that has to be performed after the current one
-                RPCRequest next = requests.get(i+1);
-
-                // specify the correlation ID for the request
-                request.setCorrelationID(nextCorrelationID());
-
-                // use this correlation id to send the next one
-                this.pendingSequentialRequests.put(request.getCorrelationID(), next);
-            }
-
-            this.sendRequest(requests.get(0));
-        } else {
-            // the list of requests doesn't need to be performed sequentially. send all now.
-            for (RPCRequest request : requests) {
-                this.sendRequest(request);
-            }
-        }
-    }
-
-    //endregion
-
-    //region File & image management area
-
-    private byte[] readBytesFromResource(int resource) {
-        InputStream is = null;
-        try {
-            is = getResources().openRawResource(resource);
-            ByteArrayOutputStream os = new ByteArrayOutputStream(is.available());
-            final int bufferSize = 4096;
-            final byte[] buffer = new byte[bufferSize];
-            int available;
-            while ((available = is.read(buffer)) >= 0) {
-                os.write(buffer, 0, available);
-            }
-            return os.toByteArray();
-        } catch (IOException e) {
-            Log.w("SDL Service", "Can't read icon file", e);
-            return null;
-        } finally {
-            if (is != null) {
+        // the replay blocks while it waits for the timeline. run it on its own thread.
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
                 try {
-                    is.close();
+                    RpcTraceReader reader = RpcTraceReader.read(new File(traceFile));
+                    RpcTraceReplay replay = new RpcTraceReplay(reader.getEvents(traceSession), speed);
+                    replay.run(session.startReplay(replay));
+                    Log.i(TAG, "Replay of " + traceFile + ": " + replay.getReport());
                 } catch (IOException e) {
-                    e.printStackTrace();
+                    Log.e(TAG, "Can't replay " + traceFile, e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    session.dispose();
                 }
             }
-        }
+        }, "SdlTraceReplay").start();
     }
 
-    PutFile buildPutFile(byte[] data, String filename, FileType type, boolean persistent, boolean system) {
-        PutFile request = null;
-
-        if (this.sdlSupportFiles) {
-            request = new PutFile();
-            request.setBulkData(data);
-            request.setSdlFileName(filename);
-            request.setFileType(type);
-            request.setPersistentFile(persistent);
-            request.setSystemFile(system);
-        }
-
-        return request;
-    }
+    @Override
+    public void onSessionRegistered(ProxySession session) {
+        this.registeredSessions.add(session);
 
-    void sendListFiles() {
-        if (this.sdlSupportFiles) {
-            this.sendRequest(new ListFiles());
+        // the device the session was started for is a head unit
+        if (session.getDeviceAddress() != null) {
+            this.deviceRegistry.onDeviceRegistered(session.getDeviceAddress());
         }
     }
 
-    void sendAppIcon() {
-        // in case the head unit doesn't support files or the icon is already set
-        if (!this.sdlSupportFiles || this.appIconSet) {
-            return;
-        }
-
-        this.appIconSet = true;
-
-        String iconName = "ic_launcher.png";
-
-        Vector<RPCRequest> requests = new Vector<>(2);
+    @Override
+    public void onSessionClosed(ProxySession session) {
+        this.sessionManager.removeSession(session);
 
-        // did we uploaded an app icon maybe in a previous session?
-        if (!this.sdlRemoteFiles.contains(iconName)) {
-            // load the data of the app icon
-            byte[] data = this.readBytesFromResource(R.drawable.ic_launcher);
-            // build a putfile request for a persistent image (upload only once).
-            PutFile putfile = this.buildPutFile(data, iconName, FileType.GRAPHIC_PNG, true, false);
-            requests.add(putfile);
+        if (!this.registeredSessions.remove(session) && session.getDeviceAddress() != null) {
+            this.deviceRegistry.onStartWasted();
         }
-
-        SetAppIcon setappicon = new SetAppIcon();
-        setappicon.setSdlFileName(iconName);
-        requests.add(setappicon);
-
-        // send the requests sequentially
-        this.sendRequests(requests, true);
     }
 
-    //endregion
-
-    //region Audio management area
-
-    void createMediaPlayer() {
-        this.appMediaPlayer = MediaPlayer.create(this, R.raw.audio_01);
-        this.appMediaPlayer.setOnCompletionListener(new MediaPlayer.OnCompletionListener() {
+    @Override
+    public void onLockScreenStatusChanged(final ProxySession session, final LockScreenStatus status) {
+        this.mainHandler.post(new Runnable() {
             @Override
-            public void onCompletion(MediaPlayer mediaPlayer) {
-                setMediaClockTimer(UpdateMode.CLEAR);
+            public void run() {
+                updateLockScreenStatus(session, status);
             }
         });
     }
 
-    void startMedia() {
-        if (this.appMediaPlayer != null && !this.isMediaPlaying()) {
-            this.appMediaPlayer.start();
-            this.appMediaPlayerUserPaused = false;
-
-            this.setMediaClockTimer(UpdateMode.COUNTUP);
-        }
-    }
-
-    void stopMedia() {
-        if (this.appMediaPlayer != null && this.isMediaPlaying()) {
-            this.appMediaPlayer.pause();
-            this.appMediaPlayerUserPaused = false;
-
-            this.setMediaClockTimer(UpdateMode.CLEAR);
-        }
-    }
-
-    void pauseMedia(boolean userPaused) {
-        if (this.appMediaPlayer != null && this.isMediaPlaying()) {
-            this.appMediaPlayer.pause();
-            this.appMediaPlayerUserPaused = userPaused;
-
-            this.setMediaClockTimer(UpdateMode.PAUSE);
-        }
-    }
-
-    void setMediaClockTimer(UpdateMode updateMode) {
-        switch (updateMode) {
-            case COUNTUP: {
-                final int SECOND = 1000;
-                final int MINUTE = 60 * SECOND;
-                final int HOUR = 60 * MINUTE;
-
-                int position = this.appMediaPlayer.getCurrentPosition();
-                int positionHour = position / HOUR;
-                int positionMinute = (position % HOUR) / MINUTE;
-                int positionSecond = (position % MINUTE) / SECOND;
-
-                int duration = this.appMediaPlayer.getDuration();
-                int durationHour = duration / HOUR;
-                int durationMinute = (duration % HOUR) / MINUTE;
-                int durationSecond = (duration % MINUTE) / SECOND;
-
-                StartTime startTime = new StartTime();
-                startTime.setHours(positionHour);
-                startTime.setMinutes(positionMinute);
-                startTime.setSeconds(positionSecond);
-
-                StartTime endTime = new StartTime();
-                endTime.setHours(durationHour);
-                endTime.setMinutes(durationMinute);
-                endTime.setSeconds(durationSecond);
-
-                SetMediaClockTimer timer = new SetMediaClockTimer();
-                timer.setUpdateMode(UpdateMode.COUNTUP);
-                timer.setStartTime(startTime);
-                timer.setEndTime(endTime);
-                this.sendRequest(timer);
-
-                Show show = new Show();
-                show.setMainField3("Playing");
-                this.sendRequest(show);
-                break;
-            }
-            case RESUME: {
-                SetMediaClockTimer timer = new SetMediaClockTimer();
-                timer.setUpdateMode(UpdateMode.RESUME);
-                this.sendRequest(timer);
-
-                Show show = new Show();
-                show.setMainField3("Playing");
-                this.sendRequest(show);
-                break;
-            }
-            case CLEAR: {
-                SetMediaClockTimer timer = new SetMediaClockTimer();
-                timer.setUpdateMode(UpdateMode.CLEAR);
-                this.sendRequest(timer);
-
-                Show show = new Show();
-                show.setMainField3("Stopped");
-                this.sendRequest(show);
-                break;
-            }
-            case PAUSE: {
-                SetMediaClockTimer timer = new SetMediaClockTimer();
-                timer.setUpdateMode(UpdateMode.PAUSE);
-                this.sendRequest(timer);
-
-                Show show = new Show();
-                show.setMainField3("Paused");
-                this.sendRequest(show);
-                break;
-            }
-        }
-    }
-
-    boolean isMediaPlaying() {
-        return this.appMediaPlayer != null && this.appMediaPlayer.isPlaying();
-    }
-
-    boolean isMediaPausedByUser() {
-        return this.appMediaPlayer != null && this.appMediaPlayerUserPaused;
-    }
-
-    //endregion
-
-    //region App notification area
-
-    private void onAppDidConnect() {
-        Log.v("SDL", "onAppDidConnect");
-        this.createMediaPlayer();
-
-        this.sendListFiles();
-    }
-
-    private void onAppDidDisconnect() {
-        Log.v("SDL", "onAppDidDisconnect");
-
-        // audio playback requirements: phase 1
-        this.stopMedia();
-    }
-
-    private void onAppDidStart(boolean firstStart) {
-        Log.v("SDL", "onAppDidStart. firstStart = " + (firstStart ? "yes" : "no"));
-
-        if (firstStart) {
-            // lets subscribe to all buttons
-            SubscribeButton button = new SubscribeButton();
-            button.setButtonName(ButtonName.OK);
-            this.sendRequest(button);
-            button.setButtonName(ButtonName.SEEKLEFT);
-            this.sendRequest(button);
-            button.setButtonName(ButtonName.SEEKRIGHT);
-            this.sendRequest(button);
-
-            String imageName = "sdl_icon.png";
-            Image image = new Image();
-            image.setImageType(ImageType.DYNAMIC);
-            image.setValue(imageName);
-            
-            Show show = new Show();
-            show.setMainField1("Welcome to");
-            show.setMainField2("Hello SDL");
-
-            if (this.sdlSupportFiles) {
-                if (this.sdlRemoteFiles.contains(imageName)) {
-                    // if the image is already available then use it immediately
-                    show.setGraphic(image);
-
-                    // add the show which will also show the graphic
-                    this.sendRequest(show);
-                } else {
-                    // the image does not exist now. we need to send a show without graphic
-                    // and a putfile after that for the graphic. After the putfile another Show follows.
-
-                    // send the first show
-                    this.sendRequest(show);
-
-                    // create the putfile
-                    byte[] data = this.readBytesFromResource(R.drawable.sdl_icon);
-                    PutFile putfile = this.buildPutFile(data, imageName, FileType.GRAPHIC_PNG, false, false);
-
-                    // create the second show
-                    Show showimage = new Show();
-                    showimage.setGraphic(image);
-
-                    // create a list for the putfile and show (with graphic only).
-                    // the list is performed sequentially. The show waits until the graphic is done.
-                    Vector<RPCRequest> requests = new Vector<>();
-                    requests.add(putfile);
-                    requests.add(showimage);
-                    this.sendRequests(requests, true);
-                }
-            } else {
-                this.sendRequest(show);
-            }
+    // the lock screen is shown as long as any session requires it
+    private void updateLockScreenStatus(ProxySession session, LockScreenStatus status) {
+        if (LockScreenStatus.OFF.equals(status)) {
+            this.lockScreenStatus.remove(session);
+        } else {
+            this.lockScreenStatus.put(session, status);
         }
-    }
-
-    private void onAppDidStop() {
-        Log.v("SDL", "onAppDidStop");
-    }
 
-    private void onHMILevelChange(HMILevel hmiLevel) {
-        Log.v("SDL", "onAppHMILevelChange: " + hmiLevel.toString());
-
-        // audio playback requirements: phase 1
-        switch (hmiLevel) {
-            case HMI_FULL:
-                this.setMediaClockTimer(UpdateMode.COUNTUP);
-                break;
-            case HMI_BACKGROUND:
-            case HMI_NONE:
-                this.stopMedia();
+        LockScreenStatus result = LockScreenStatus.OFF;
+        for (LockScreenStatus value : this.lockScreenStatus.values()) {
+            if (LockScreenStatus.REQUIRED.equals(value)) {
+                result = value;
                 break;
-        }
-    }
-
-    private void onAudioStreamingStateChange(AudioStreamingState audioStreamingState) {
-        Log.v("SDL", "onAppAudioStreamingStateChange: " + audioStreamingState.toString());
-
-        // audio playback requirements: phase 3
-        if (audioStreamingState.equals(AudioStreamingState.NOT_AUDIBLE)) {
-            if (this.isMediaPlaying()) {
-                this.pauseMedia(false);
-
-            }
-        } else {
-            if (!this.isMediaPlaying()) {
-                if (!this.isMediaPausedByUser()) {
-                    this.startMedia();
-                }
             }
+            result = value;
         }
-    }
 
-    private void onSystemContextChange(SystemContext systemContext) {
-        Log.v("SDL", "onAppSystemContextChange: " + systemContext.toString());
+        this.lockScreenController.updateStatus(result);
     }
 
     //endregion
 
-    //region Proxy notification area
-
-    @Override
-    public void onError(String info, Exception e) {
-
-    }
-
-    @Override
-    public void onProxyClosed(String info, Exception e, SdlDisconnectedReason reason) {
-        // call the notification to prepare app disconnection
-        this.onAppDidDisconnect();
-        this.disposeProxy();
-    }
-
-    //endregion
+    //region Trace area
 
-    //region RPC notification area
-
-    @Override
-    public void onOnHMIStatus(OnHMIStatus notification) {
-        // wrap logic to provide changes on hmi level
-        if (!notification.getHmiLevel().equals(this.sdlHMILevel)) {
-            // call the notification because hmi level has changed
-            this.onHMILevelChange(notification.getHmiLevel());
-            this.sdlHMILevel = notification.getHmiLevel();
-        }
-
-        // wrap logic to provide changes on audio streaming state
-        if (!notification.getAudioStreamingState().equals(this.sdlAudioStreamingState)) {
-            // call the notification because audio streaming state has changed
-            this.onAudioStreamingStateChange(notification.getAudioStreamingState());
-            this.sdlAudioStreamingState = notification.getAudioStreamingState();
-        }
-
-        // wrap logic to provide changes on system context
-        if (!notification.getSystemContext().equals(this.sdlSystemContext)) {
-            // call the notification becase system context has changed
-            this.onSystemContextChange(notification.getSystemContext());
-            this.sdlSystemContext = notification.getSystemContext();
-        }
-
-        // wrap logic to provide an OnAppDidConnect notification.
-        // this notification is called when the app freshly connected to the head unit.
-        if (this.appDidConnect == false) {
-            this.appDidConnect = true;
-            // the connection handler must be stoped. remove all callbacks
-            connectionHandler.removeCallbacksAndMessages(null);
-            // prepare sdl based parameters
-            try { this.sdlSupportFiles = proxy.getDisplayCapabilities().getGraphicSupported(); }
-            catch (SdlException e) { e.printStackTrace(); }
-
-            // call the notification
-            this.onAppDidConnect();
-        }
-
-        // wrap logic to provide an OnAppDidStart notification.
-        // this notification is called when the app is started by the user
-        // in addition it can tell if it was the first start
-        if (notification.getHmiLevel().equals(HMILevel.HMI_FULL)) {
-            if (this.appDidStart == false) {
-                this.appDidStart = true;
-                // call the notification
-                this.onAppDidStart(notification.getFirstRun());
-            }
-        }
-
-        // wrap logic to provide an OnAppDidStop notification.
-        // this notification is called when the app is stopped by the user
-        if (notification.getHmiLevel().equals(HMILevel.HMI_NONE)) {
-            if (this.appDidStart == true) {
-                this.appDidStart = false;
-                // call the notification
-                this.onAppDidStop();
+    private void enableProfiling(ProxySession session) {
+        SessionProfiler profiler = new SessionProfiler(session.getName(), new SessionProfiler.CpuClock() {
+            @Override
+            public long threadCpuTimeNs() {
+                return Debug.threadCpuTimeNanos();
             }
-        }
-    }
-
-    @Override
-    public void onOnLockScreenNotification(OnLockScreenStatus notification) {
-        LockScreenActivity.updateLockScreenStatus(notification.getShowLockScreen());
-    }
+        });
 
-    @Override
-    public void onOnButtonPress(OnButtonPress notification) {
-        if (notification.getButtonName().equals(ButtonName.OK)) {
-            // audio playback requirements: phase 2
-            if (this.isMediaPlaying()) {
-                this.pauseMedia(true);
-            } else {
-                this.startMedia();
-            }
+        // the reports of all runs of a session name go into one file
+        String fileName = session.getName().replaceAll("[^A-Za-z0-9._-]", "_") + ".txt";
+        File directory = new File(this.getFilesDir(), SESSION_PROFILE_DIRECTORY);
+        File file = new File(directory, fileName);
+        if (file.length() > SESSION_PROFILE_MAX_BYTES) {
+            File previous = new File(directory, fileName + ".1");
+            previous.delete();
+            file.renameTo(previous);
         }
+        session.setProfiler(profiler, file);
     }
 
-    @Override
-    public void onOnButtonEvent(OnButtonEvent notification) {}
-    @Override
-    public void onOnCommand(OnCommand notification){}
-    @Override
-    public void onOnPermissionsChange(OnPermissionsChange notification) {}
-    @Override
-    public void onOnVehicleData(OnVehicleData notification) {}
-    @Override
-    public void onOnTBTClientState(OnTBTClientState notification) {}
-    @Override
-    public void onOnAudioPassThru(OnAudioPassThru notification) {}
-    @Override
-    public void onOnLanguageChange(OnLanguageChange notification) {}
-    @Override
-    public void onOnHashChange(OnHashChange notification) {}
-    @Override
-    public void onOnSystemRequest(OnSystemRequest notification) {}
-    @Override
-    public void onOnKeyboardInput(OnKeyboardInput notification) {}
-    @Override
-    public void onOnTouchEvent(OnTouchEvent notification) {}
-    @Override
-    public void onOnStreamRPC(OnStreamRPC notification) {}
-    @Override
-    public void onOnDriverDistraction(OnDriverDistraction notification) {}
-    @Override
-    public void onServiceEnded(OnServiceEnded serviceEnded) {}
-    @Override
-    public void onServiceNACKed(OnServiceNACKed serviceNACKed) {}
-    @Override
-    public void onServiceDataACK() {}
-
-    //endregion
-
-    //region RPC response area
-
-    @Override
-    public void onListFilesResponse(ListFilesResponse response) {
-        if(response.getSuccess()) {
-            if (response.getFilenames() != null) {
-                this.sdlRemoteFiles = new HashSet<>(response.getFilenames());
-            } else {
-                this.sdlRemoteFiles = new HashSet<>(10);
-            }
+    private void openTraceRecorder() {
+        File directory = new File(this.getFilesDir(), RPC_TRACE_DIRECTORY);
+        if (!directory.exists() && !directory.mkdirs()) {
+            return;
         }
-        
-        this.sendAppIcon();
-
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onPutFileResponse(PutFileResponse response) {
-        String filename = this.sdlPendingRemoteFiles.get(response.getCorrelationID());
 
-        if (filename != null) {
-            this.sdlPendingRemoteFiles.remove(response.getCorrelationID());
-            if (response.getSuccess()) {
-                this.sdlRemoteFiles.add(filename);
-            }
+        // keep the trace of the previous run
+        File file = new File(directory, RPC_TRACE_FILE);
+        File previous = new File(directory, RPC_TRACE_FILE + ".1");
+        if (file.exists()) {
+            previous.delete();
+            file.renameTo(previous);
         }
 
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onDeleteFileResponse(DeleteFileResponse response) {
-        String filename = this.sdlPendingRemoteFiles.get(response.getCorrelationID());
-
-        if (filename != null) {
-            this.sdlPendingRemoteFiles.remove(response.getCorrelationID());
-            if (response.getSuccess()) {
-                this.sdlRemoteFiles.remove(filename);
-            }
+        try {
+            this.traceRecorder = RpcTraceRecorder.open(file, RPC_TRACE_CAPACITY);
+        } catch (IOException e) {
+            Log.w(TAG, "Can't open the trace file", e);
         }
-
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSetAppIconResponse(SetAppIconResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onAddCommandResponse(AddCommandResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSubscribeVehicleDataResponse(SubscribeVehicleDataResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-    @Override
-    public void onAddSubMenuResponse(AddSubMenuResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onCreateInteractionChoiceSetResponse(CreateInteractionChoiceSetResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onAlertResponse(AlertResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onDeleteCommandResponse(DeleteCommandResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onDeleteInteractionChoiceSetResponse(DeleteInteractionChoiceSetResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onDeleteSubMenuResponse(DeleteSubMenuResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onPerformInteractionResponse(PerformInteractionResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onResetGlobalPropertiesResponse(ResetGlobalPropertiesResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSetGlobalPropertiesResponse(SetGlobalPropertiesResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSetMediaClockTimerResponse(SetMediaClockTimerResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onShowResponse(ShowResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSpeakResponse(SpeakResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSubscribeButtonResponse(SubscribeButtonResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onUnsubscribeButtonResponse(UnsubscribeButtonResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onUnsubscribeVehicleDataResponse(UnsubscribeVehicleDataResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onGetVehicleDataResponse(GetVehicleDataResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onReadDIDResponse(ReadDIDResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onGetDTCsResponse(GetDTCsResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onPerformAudioPassThruResponse(PerformAudioPassThruResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onEndAudioPassThruResponse(EndAudioPassThruResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onScrollableMessageResponse(ScrollableMessageResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onChangeRegistrationResponse(ChangeRegistrationResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSetDisplayLayoutResponse(SetDisplayLayoutResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSliderResponse(SliderResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSystemRequestResponse(SystemRequestResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onDiagnosticMessageResponse(DiagnosticMessageResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onStreamRPCResponse(StreamRPCResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onDialNumberResponse(DialNumberResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onSendLocationResponse(SendLocationResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onShowConstantTbtResponse(ShowConstantTbtResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onAlertManeuverResponse(AlertManeuverResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onUpdateTurnListResponse(UpdateTurnListResponse response) {
-        this.handleSequentialRequestsForResponse(response);
-    }
-
-    @Override
-    public void onGenericResponse(GenericResponse response) {
-        this.handleSequentialRequestsForResponse(response);
     }
 
     //endregion
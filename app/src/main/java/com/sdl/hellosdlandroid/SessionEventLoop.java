@@ -0,0 +1,124 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A serial event loop of one session running on the shared worker pool. Tasks of a session are
+// executed one at a time in order. After a batch of tasks the loop goes back to the end of the pool
+// queue so a busy session can't starve the other sessions.
+public class SessionEventLoop implements Executor {
+    private static final String TAG = "SDL Session";
+
+    // number of tasks executed before the loop yields to other sessions
+    private static final int TASKS_PER_TURN = 16;
+
+    private final String name;
+    private final Executor workerPool;
+    private final ConcurrentLinkedQueue<Runnable> tasks;
+    private final AtomicBoolean scheduled;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drainTasks();
+        }
+    };
+
+    public SessionEventLoop(String name, Executor workerPool) {
+        this.name = name;
+        this.workerPool = workerPool;
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean(false);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        this.tasks.add(task);
+        this.schedule();
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            try {
+                this.workerPool.execute(this.drain);
+            } catch (RejectedExecutionException e) {
+                // the pool is shut down. the tasks left, e.g. disposing the proxy, run on the caller.
+                this.drainTasksInline();
+            }
+        }
+    }
+
+    private void drainTasks() {
+        for (int i = 0; i < TASKS_PER_TURN; i++) {
+            Runnable task = this.tasks.poll();
+            if (task == null) {
+                break;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Task of session " + this.name + " failed", e);
+            }
+        }
+
+        this.scheduled.set(false);
+
+        // tasks left or added in the meantime: queue up again behind the other sessions
+        if (!this.tasks.isEmpty()) {
+            this.schedule();
+        }
+    }
+
+    private void drainTasksInline() {
+        Runnable task;
+        while ((task = this.tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Task of session " + this.name + " failed", e);
+            }
+        }
+        this.scheduled.set(false);
+    }
+
+    // returns an implementation of the listener interface that executes every call on this loop
+    @SuppressWarnings("unchecked")
+    public <T> T wrapListener(Class<T> listenerInterface, final T listener) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, final Method method, final Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(listener, args);
+                }
+
+                execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            method.invoke(listener, args);
+                        } catch (IllegalAccessException e) {
+                            throw new IllegalStateException(e);
+                        } catch (InvocationTargetException e) {
+                            Throwable cause = e.getCause();
+                            if (cause instanceof RuntimeException) {
+                                throw (RuntimeException) cause;
+                            }
+                            throw new IllegalStateException(cause);
+                        }
+                    }
+                });
+                return null;
+            }
+        };
+
+        return (T) Proxy.newProxyInstance(listenerInterface.getClassLoader(), new Class<?>[] { listenerInterface }, handler);
+    }
+}
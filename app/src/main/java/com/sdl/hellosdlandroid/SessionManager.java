@@ -0,0 +1,77 @@
+package com.sdl.hellosdlandroid;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Hosts any number of concurrent proxy sessions (e.g. Bluetooth plus TCP test head units).
+// Every session gets its own event loop. All loops share one worker pool.
+public class SessionManager {
+    // time the shutdown waits for the sessions to dispose their proxies
+    private static final long SHUTDOWN_TIMEOUT = 2 * 1000;
+
+    private final ExecutorService workerPool;
+    private final ConcurrentHashMap<String, ProxySession> sessions;
+
+    public SessionManager() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public SessionManager(int workerThreads) {
+        this.workerPool = Executors.newFixedThreadPool(workerThreads);
+        this.sessions = new ConcurrentHashMap<>();
+    }
+
+    public SessionEventLoop newEventLoop(String sessionName) {
+        return new SessionEventLoop(sessionName, this.workerPool);
+    }
+
+    // returns false if a session with the same name exists already
+    public boolean addSession(ProxySession session) {
+        return this.sessions.putIfAbsent(session.getName(), session) == null;
+    }
+
+    public void removeSession(ProxySession session) {
+        this.sessions.remove(session.getName(), session);
+    }
+
+    public ProxySession getSession(String name) {
+        return this.sessions.get(name);
+    }
+
+    public List<ProxySession> getSessions() {
+        return new ArrayList<>(this.sessions.values());
+    }
+
+    public int getSessionCount() {
+        return this.sessions.size();
+    }
+
+    // disposes all sessions and stops the worker pool once they are disposed
+    public void shutdown() {
+        List<ProxySession> sessions = this.getSessions();
+        final CountDownLatch disposed = new CountDownLatch(sessions.size());
+        for (ProxySession session : sessions) {
+            session.dispose();
+            // the loop of the session is serial. this runs after the proxy is disposed.
+            session.post(new Runnable() {
+                @Override
+                public void run() {
+                    disposed.countDown();
+                }
+            });
+        }
+        this.sessions.clear();
+
+        try {
+            disposed.await(SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.workerPool.shutdown();
+    }
+}
@@ -0,0 +1,324 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.proxy.RPCMessage;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Accounts what a session costs: RPCs and transport bytes per RPC type in both directions, CPU time of
+// the callbacks of the proxy, wakeups of timers and the time media is played. The report is appended to
+// a file when the session ends so runs of different builds (e.g. replays of the same trace) can be
+// compared. Doesn't depend on Android so it runs in a plain JVM with a CPU clock of the JVM. Thread safe.
+public class SessionProfiler {
+    // the SDL protocol header and the binary RPC header in front of the JSON of a message
+    private static final int HEADER_SIZE = 12 + 12;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // CPU time of the current thread, e.g. Debug.threadCpuTimeNanos() on Android
+    public interface CpuClock {
+        long threadCpuTimeNs();
+    }
+
+    private static class RpcStats {
+        int sent;
+        long bytesSent;
+        int received;
+        long bytesReceived;
+    }
+
+    private static class TaskStats {
+        int calls;
+        long cpuNs;
+        long maxCpuNs;
+        long wallNs;
+    }
+
+    private final String name;
+    private final CpuClock cpuClock;
+    private final long startNs;
+    private long stopNs;
+
+    private final HashMap<String, RpcStats> rpcs;
+    private final HashMap<String, TaskStats> callbacks;
+    private final HashMap<String, TaskStats> wakeups;
+
+    private int mediaStarts;
+    private long mediaPlayingNs;
+    private long mediaStartNs;
+
+    public SessionProfiler(String name, CpuClock cpuClock) {
+        this.name = name;
+        this.cpuClock = cpuClock;
+        this.startNs = System.nanoTime();
+        this.rpcs = new HashMap<>();
+        this.callbacks = new HashMap<>();
+        this.wakeups = new HashMap<>();
+    }
+
+    //region Accounting area
+
+    public void onMessageSent(RPCMessage message) {
+        int size = transportSize(message);
+        synchronized (this) {
+            RpcStats stats = this.rpcStats(message.getFunctionName());
+            stats.sent++;
+            stats.bytesSent += size;
+        }
+    }
+
+    public void onMessageReceived(RPCMessage message) {
+        int size = transportSize(message);
+        synchronized (this) {
+            RpcStats stats = this.rpcStats(message.getFunctionName() + " (" + message.getMessageType() + ")");
+            stats.received++;
+            stats.bytesReceived += size;
+        }
+    }
+
+    // the size of the message as sent by the SDL protocol: headers, JSON and bulk data
+    static int transportSize(RPCMessage message) {
+        int size = HEADER_SIZE;
+        try {
+            size += message.serializeJSON((byte) 2).toString().getBytes(UTF_8).length;
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+        if (message.getBulkData() != null) {
+            size += message.getBulkData().length;
+        }
+        return size;
+    }
+
+    public synchronized void onMediaStarted() {
+        if (this.mediaStartNs == 0) {
+            this.mediaStartNs = System.nanoTime();
+            this.mediaStarts++;
+        }
+    }
+
+    public synchronized void onMediaStopped() {
+        if (this.mediaStartNs != 0) {
+            this.mediaPlayingNs += System.nanoTime() - this.mediaStartNs;
+            this.mediaStartNs = 0;
+        }
+    }
+
+    // returns a listener measuring the CPU time of every callback and counting the received messages.
+    // wrap inside the event loop so the callbacks are measured on the thread executing them.
+    @SuppressWarnings("unchecked")
+    public <T> T wrapListener(Class<T> listenerInterface, final T listener) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return method.invoke(listener, args);
+                }
+
+                if (args != null && args.length == 1 && args[0] instanceof RPCMessage) {
+                    onMessageReceived((RPCMessage) args[0]);
+                }
+
+                long startCpuNs = cpuClock.threadCpuTimeNs();
+                long startNs = System.nanoTime();
+                try {
+                    return method.invoke(listener, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                } finally {
+                    account(callbacks, method.getName(), cpuClock.threadCpuTimeNs() - startCpuNs, System.nanoTime() - startNs);
+                }
+            }
+        };
+
+        return (T) Proxy.newProxyInstance(listenerInterface.getClassLoader(), new Class<?>[] { listenerInterface }, handler);
+    }
+
+    // returns a task counting as a wakeup of the session, e.g. a timer of the connection handler
+    public Runnable wrapWakeup(final String wakeupName, final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                long startCpuNs = cpuClock.threadCpuTimeNs();
+                long startNs = System.nanoTime();
+                try {
+                    task.run();
+                } finally {
+                    account(wakeups, wakeupName, cpuClock.threadCpuTimeNs() - startCpuNs, System.nanoTime() - startNs);
+                }
+            }
+        };
+    }
+
+    private synchronized void account(HashMap<String, TaskStats> tasks, String taskName, long cpuNs, long wallNs) {
+        TaskStats stats = tasks.get(taskName);
+        if (stats == null) {
+            stats = new TaskStats();
+            tasks.put(taskName, stats);
+        }
+        stats.calls++;
+        stats.cpuNs += cpuNs;
+        stats.maxCpuNs = Math.max(stats.maxCpuNs, cpuNs);
+        stats.wallNs += wallNs;
+    }
+
+    private RpcStats rpcStats(String function) {
+        RpcStats stats = this.rpcs.get(function);
+        if (stats == null) {
+            stats = new RpcStats();
+            this.rpcs.put(function, stats);
+        }
+        return stats;
+    }
+
+    //endregion
+
+    //region Report area
+
+    // ends the accounting of the time of the session
+    public synchronized void stop() {
+        if (this.stopNs == 0) {
+            this.onMediaStopped();
+            this.stopNs = System.nanoTime();
+        }
+    }
+
+    public synchronized long getBytesSent() {
+        long bytes = 0;
+        for (RpcStats stats : this.rpcs.values()) {
+            bytes += stats.bytesSent;
+        }
+        return bytes;
+    }
+
+    public synchronized long getBytesReceived() {
+        long bytes = 0;
+        for (RpcStats stats : this.rpcs.values()) {
+            bytes += stats.bytesReceived;
+        }
+        return bytes;
+    }
+
+    public synchronized long getCallbackCpuNs() {
+        return totalCpuNs(this.callbacks);
+    }
+
+    public synchronized int getWakeups() {
+        int calls = 0;
+        for (TaskStats stats : this.wakeups.values()) {
+            calls += stats.calls;
+        }
+        return calls;
+    }
+
+    public synchronized String getSummary() {
+        int sent = 0;
+        int received = 0;
+        for (RpcStats stats : this.rpcs.values()) {
+            sent += stats.sent;
+            received += stats.received;
+        }
+        return String.format(Locale.US, "%.1f s, %d rpcs sent (%d bytes), %d received (%d bytes), callbacks %.1f ms cpu, "
+                        + "%d wakeups (%.1f ms cpu), media %.1f s",
+                this.getDurationNs() / 1e9, sent, this.getBytesSent(), received, this.getBytesReceived(),
+                totalCpuNs(this.callbacks) / 1e6, this.getWakeups(), totalCpuNs(this.wakeups) / 1e6,
+                this.getMediaPlayingNs() / 1e9);
+    }
+
+    public synchronized String getReport() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("profile of ").append(this.name).append(": ").append(this.getSummary());
+
+        List<Map.Entry<String, RpcStats>> rpcs = new ArrayList<>(this.rpcs.entrySet());
+        Collections.sort(rpcs, new Comparator<Map.Entry<String, RpcStats>>() {
+            @Override
+            public int compare(Map.Entry<String, RpcStats> left, Map.Entry<String, RpcStats> right) {
+                long leftBytes = left.getValue().bytesSent + left.getValue().bytesReceived;
+                long rightBytes = right.getValue().bytesSent + right.getValue().bytesReceived;
+                return leftBytes > rightBytes ? -1 : leftBytes < rightBytes ? 1 : left.getKey().compareTo(right.getKey());
+            }
+        });
+        builder.append(String.format(Locale.US, "\n  %-48s %6s %10s %6s %10s", "rpc", "sent", "bytes", "recv", "bytes"));
+        for (Map.Entry<String, RpcStats> entry : rpcs) {
+            RpcStats stats = entry.getValue();
+            builder.append(String.format(Locale.US, "\n  %-48s %6d %10d %6d %10d", entry.getKey(),
+                    stats.sent, stats.bytesSent, stats.received, stats.bytesReceived));
+        }
+
+        appendTasks(builder, "callback", this.callbacks);
+        appendTasks(builder, "wakeup", this.wakeups);
+
+        builder.append(String.format(Locale.US, "\n  media played %.1f s in %d starts", this.getMediaPlayingNs() / 1e9,
+                this.mediaStarts));
+        return builder.toString();
+    }
+
+    private static void appendTasks(StringBuilder builder, String title, HashMap<String, TaskStats> tasks) {
+        List<Map.Entry<String, TaskStats>> entries = new ArrayList<>(tasks.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, TaskStats>>() {
+            @Override
+            public int compare(Map.Entry<String, TaskStats> left, Map.Entry<String, TaskStats> right) {
+                long leftCpuNs = left.getValue().cpuNs;
+                long rightCpuNs = right.getValue().cpuNs;
+                return leftCpuNs > rightCpuNs ? -1 : leftCpuNs < rightCpuNs ? 1 : left.getKey().compareTo(right.getKey());
+            }
+        });
+        builder.append(String.format(Locale.US, "\n  %-48s %6s %10s %10s %10s", title, "calls", "cpu ms", "max ms", "wall ms"));
+        for (Map.Entry<String, TaskStats> entry : entries) {
+            TaskStats stats = entry.getValue();
+            builder.append(String.format(Locale.US, "\n  %-48s %6d %10.2f %10.3f %10.2f", entry.getKey(),
+                    stats.calls, stats.cpuNs / 1e6, stats.maxCpuNs / 1e6, stats.wallNs / 1e6));
+        }
+    }
+
+    // appends the report to the file
+    public void writeReport(File file) throws IOException {
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF_8);
+        try {
+            writer.write(this.getReport());
+            writer.write("\n\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private synchronized long getDurationNs() {
+        return (this.stopNs != 0 ? this.stopNs : System.nanoTime()) - this.startNs;
+    }
+
+    private synchronized long getMediaPlayingNs() {
+        return this.mediaPlayingNs + (this.mediaStartNs != 0 ? System.nanoTime() - this.mediaStartNs : 0);
+    }
+
+    private static long totalCpuNs(HashMap<String, TaskStats> tasks) {
+        long cpuNs = 0;
+        for (TaskStats stats : tasks.values()) {
+            cpuNs += stats.cpuNs;
+        }
+        return cpuNs;
+    }
+
+    //endregion
+}
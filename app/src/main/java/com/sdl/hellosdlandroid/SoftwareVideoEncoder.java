@@ -0,0 +1,282 @@
+package com.sdl.hellosdlandroid;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Fallback H.264 encoder without any platform codec. Every frame is coded as an IDR picture
+// made of I_PCM macroblocks (constrained baseline, CAVLC). The output is valid H.264 which any
+// decoder accepts but it is not compressed, so it's meant for low resolutions, devices without
+// a usable MediaCodec and for running the streaming pipeline on a plain JVM.
+public class SoftwareVideoEncoder implements VideoEncoder {
+    private static final int NAL_SPS       = 7;
+    private static final int NAL_PPS       = 8;
+    private static final int NAL_IDR_SLICE = 5;
+
+    private static final int MB_TYPE_I_PCM = 25;
+    private static final int MB_SIZE       = 16;
+
+    private int width;
+    private int height;
+    private int mbWidth;
+    private int mbHeight;
+
+    // the I420 frame the renderer fills. sized to full macroblocks.
+    private byte[] frame;
+
+    // rbsp of the current nal unit and the encoded output waiting to be drained
+    private BitWriter rbsp;
+    private byte[] output;
+    private int outputLength;
+
+    private int idrPicId;
+
+    @Override
+    public void start(int width, int height, int frameRate, int bitRate) throws IOException {
+        if (width <= 0 || height <= 0 || width % 2 != 0 || height % 2 != 0) {
+            throw new IOException("Unsupported frame size " + width + "x" + height);
+        }
+
+        this.width = width;
+        this.height = height;
+        this.mbWidth = (width + MB_SIZE - 1) / MB_SIZE;
+        this.mbHeight = (height + MB_SIZE - 1) / MB_SIZE;
+
+        int lumaSize = this.mbWidth * MB_SIZE * this.mbHeight * MB_SIZE;
+        this.frame = new byte[lumaSize + lumaSize / 2];
+
+        // one I_PCM macroblock costs 384 sample bytes plus a few header bits
+        int sliceSize = this.mbWidth * this.mbHeight * (384 + 2) + 64;
+        this.rbsp = new BitWriter(sliceSize);
+        // worst case emulation prevention adds one byte for every two bytes
+        this.output = new byte[sliceSize + sliceSize / 2 + 128];
+        this.outputLength = 0;
+        this.idrPicId = 0;
+    }
+
+    @Override
+    public void renderFrame(VideoStreamRenderer renderer, long presentationTimeUs) {
+        int paddedWidth = this.mbWidth * MB_SIZE;
+        renderer.onFillFrame(this.frame, paddedWidth, this.mbHeight * MB_SIZE, presentationTimeUs);
+
+        // a frame that was never drained is replaced by the new one
+        this.outputLength = 0;
+
+        // parameter sets are repeated with every idr so a receiver can join at any frame
+        this.writeSequenceParameterSet();
+        this.appendNalUnit(NAL_SPS);
+        this.writePictureParameterSet();
+        this.appendNalUnit(NAL_PPS);
+        this.writeSlice(paddedWidth);
+        this.appendNalUnit(NAL_IDR_SLICE);
+
+        this.idrPicId = (this.idrPicId + 1) % 0xffff;
+    }
+
+    @Override
+    public int drain(OutputStream out, byte[] scratch) throws IOException {
+        int written = this.outputLength;
+        if (written > 0) {
+            out.write(this.output, 0, written);
+            this.outputLength = 0;
+        }
+        return written;
+    }
+
+    @Override
+    public void stop() {
+        this.frame = null;
+        this.rbsp = null;
+        this.output = null;
+        this.outputLength = 0;
+    }
+
+    //region Bitstream area
+
+    private void writeSequenceParameterSet() {
+        BitWriter w = this.rbsp;
+        w.reset();
+        w.writeBits(66, 8);                         // profile_idc: baseline
+        w.writeBits(0xC0, 8);                       // constraint_set0/1 (constrained baseline)
+        w.writeBits(40, 8);                         // level_idc
+        w.writeUE(0);                               // seq_parameter_set_id
+        w.writeUE(0);                               // log2_max_frame_num_minus4
+        w.writeUE(2);                               // pic_order_cnt_type
+        w.writeUE(0);                               // max_num_ref_frames
+        w.writeBits(0, 1);                          // gaps_in_frame_num_value_allowed_flag
+        w.writeUE(this.mbWidth - 1);                // pic_width_in_mbs_minus1
+        w.writeUE(this.mbHeight - 1);               // pic_height_in_map_units_minus1
+        w.writeBits(1, 1);                          // frame_mbs_only_flag
+        w.writeBits(1, 1);                          // direct_8x8_inference_flag
+
+        int cropRight = (this.mbWidth * MB_SIZE - this.width) / 2;
+        int cropBottom = (this.mbHeight * MB_SIZE - this.height) / 2;
+        if (cropRight > 0 || cropBottom > 0) {
+            w.writeBits(1, 1);                      // frame_cropping_flag
+            w.writeUE(0);
+            w.writeUE(cropRight);
+            w.writeUE(0);
+            w.writeUE(cropBottom);
+        } else {
+            w.writeBits(0, 1);
+        }
+
+        w.writeBits(0, 1);                          // vui_parameters_present_flag
+        w.writeTrailingBits();
+    }
+
+    private void writePictureParameterSet() {
+        BitWriter w = this.rbsp;
+        w.reset();
+        w.writeUE(0);                               // pic_parameter_set_id
+        w.writeUE(0);                               // seq_parameter_set_id
+        w.writeBits(0, 1);                          // entropy_coding_mode_flag: CAVLC
+        w.writeBits(0, 1);                          // bottom_field_pic_order_in_frame_present_flag
+        w.writeUE(0);                               // num_slice_groups_minus1
+        w.writeUE(0);                               // num_ref_idx_l0_default_active_minus1
+        w.writeUE(0);                               // num_ref_idx_l1_default_active_minus1
+        w.writeBits(0, 1);                          // weighted_pred_flag
+        w.writeBits(0, 2);                          // weighted_bipred_idc
+        w.writeSE(0);                               // pic_init_qp_minus26
+        w.writeSE(0);                               // pic_init_qs_minus26
+        w.writeSE(0);                               // chroma_qp_index_offset
+        w.writeBits(1, 1);                          // deblocking_filter_control_present_flag
+        w.writeBits(0, 1);                          // constrained_intra_pred_flag
+        w.writeBits(0, 1);                          // redundant_pic_cnt_present_flag
+        w.writeTrailingBits();
+    }
+
+    private void writeSlice(int paddedWidth) {
+        BitWriter w = this.rbsp;
+        w.reset();
+        w.writeUE(0);                               // first_mb_in_slice
+        w.writeUE(7);                               // slice_type: I (all slices)
+        w.writeUE(0);                               // pic_parameter_set_id
+        w.writeBits(0, 4);                          // frame_num
+        w.writeUE(this.idrPicId);                   // idr_pic_id
+        w.writeBits(0, 1);                          // no_output_of_prior_pics_flag
+        w.writeBits(0, 1);                          // long_term_reference_flag
+        w.writeSE(0);                               // slice_qp_delta
+        w.writeUE(1);                               // disable_deblocking_filter_idc
+
+        int lumaSize = paddedWidth * this.mbHeight * MB_SIZE;
+        int chromaWidth = paddedWidth / 2;
+        int chromaSize = lumaSize / 4;
+
+        for (int mbY = 0; mbY < this.mbHeight; mbY++) {
+            for (int mbX = 0; mbX < this.mbWidth; mbX++) {
+                w.writeUE(MB_TYPE_I_PCM);
+                w.alignZero();                      // pcm_alignment_zero_bit
+
+                int luma = mbY * MB_SIZE * paddedWidth + mbX * MB_SIZE;
+                for (int row = 0; row < MB_SIZE; row++) {
+                    w.writeBytes(this.frame, luma + row * paddedWidth, MB_SIZE);
+                }
+
+                int chroma = mbY * 8 * chromaWidth + mbX * 8;
+                for (int row = 0; row < 8; row++) {
+                    w.writeBytes(this.frame, lumaSize + chroma + row * chromaWidth, 8);
+                }
+                for (int row = 0; row < 8; row++) {
+                    w.writeBytes(this.frame, lumaSize + chromaSize + chroma + row * chromaWidth, 8);
+                }
+            }
+        }
+
+        w.writeTrailingBits();
+    }
+
+    // copies the current rbsp as an annex b nal unit into the output buffer including emulation prevention
+    private void appendNalUnit(int type) {
+        byte[] out = this.output;
+        int pos = this.outputLength;
+
+        out[pos++] = 0;
+        out[pos++] = 0;
+        out[pos++] = 0;
+        out[pos++] = 1;
+        out[pos++] = (byte) (0x60 | type);          // forbidden_zero_bit 0, nal_ref_idc 3
+
+        byte[] data = this.rbsp.buffer();
+        int length = this.rbsp.length();
+        int zeros = 0;
+        for (int i = 0; i < length; i++) {
+            int b = data[i] & 0xff;
+            if (zeros >= 2 && b <= 3) {
+                out[pos++] = 3;
+                zeros = 0;
+            }
+            out[pos++] = (byte) b;
+            zeros = (b == 0) ? zeros + 1 : 0;
+        }
+
+        this.outputLength = pos;
+    }
+
+    private static class BitWriter {
+        private final byte[] data;
+        private int length;
+        private int current;
+        private int bits;
+
+        BitWriter(int capacity) {
+            this.data = new byte[capacity];
+        }
+
+        void reset() {
+            this.length = 0;
+            this.current = 0;
+            this.bits = 0;
+        }
+
+        byte[] buffer() {
+            return this.data;
+        }
+
+        int length() {
+            return this.length;
+        }
+
+        void writeBits(int value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                this.current = (this.current << 1) | ((value >>> i) & 1);
+                if (++this.bits == 8) {
+                    this.data[this.length++] = (byte) this.current;
+                    this.current = 0;
+                    this.bits = 0;
+                }
+            }
+        }
+
+        // unsigned exp-golomb code
+        void writeUE(int value) {
+            int code = value + 1;
+            int size = 32 - Integer.numberOfLeadingZeros(code);
+            this.writeBits(0, size - 1);
+            this.writeBits(code, size);
+        }
+
+        // signed exp-golomb code
+        void writeSE(int value) {
+            this.writeUE(value <= 0 ? -2 * value : 2 * value - 1);
+        }
+
+        void alignZero() {
+            if (this.bits > 0) {
+                this.writeBits(0, 8 - this.bits);
+            }
+        }
+
+        // requires a byte aligned writer
+        void writeBytes(byte[] source, int offset, int count) {
+            System.arraycopy(source, offset, this.data, this.length, count);
+            this.length += count;
+        }
+
+        void writeTrailingBits() {
+            this.writeBits(1, 1);
+            this.alignZero();
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,67 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Measures the phases of a session from its start until the first Show is on the head unit.
+// Each phase is logged with its own duration and the time since the start.
+public class StartupTrace {
+    private static final String TAG = "SDL Startup";
+
+    private final String name;
+    private final long startNs;
+    private final List<String> phases;
+    private final List<Long> times;
+    private boolean finished;
+
+    public StartupTrace(String name) {
+        this.name = name;
+        this.startNs = System.nanoTime();
+        this.phases = new ArrayList<>();
+        this.times = new ArrayList<>();
+    }
+
+    // marks the end of a phase. only the first mark of a phase counts.
+    public synchronized void mark(String phase) {
+        if (this.finished || this.phases.contains(phase)) {
+            return;
+        }
+        this.phases.add(phase);
+        this.times.add(System.nanoTime());
+    }
+
+    // marks the last phase and logs the trace
+    public synchronized void finish(String phase) {
+        if (this.finished) {
+            return;
+        }
+        this.mark(phase);
+        this.finished = true;
+        Log.i(TAG, this.toString());
+    }
+
+    public synchronized boolean isFinished() {
+        return this.finished;
+    }
+
+    public synchronized long getElapsedMs(String phase) {
+        int index = this.phases.indexOf(phase);
+        return index >= 0 ? (this.times.get(index) - this.startNs) / 1000000 : -1;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("startup of ").append(this.name).append(':');
+        long previous = this.startNs;
+        for (int i = 0; i < this.phases.size(); i++) {
+            long time = this.times.get(i);
+            builder.append(String.format(Locale.US, "\n  %-24s %7.1f ms  (at %7.1f ms)", this.phases.get(i),
+                    (time - previous) / 1e6, (time - this.startNs) / 1e6));
+            previous = time;
+        }
+        return builder.toString();
+    }
+}
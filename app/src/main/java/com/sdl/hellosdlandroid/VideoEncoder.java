@@ -0,0 +1,22 @@
+package com.sdl.hellosdlandroid;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Encodes rendered frames into an H.264 elementary stream (Annex B byte stream).
+// Implementations are driven from a single encoder thread and don't need to be thread safe.
+public interface VideoEncoder {
+
+    // prepares the encoder for the given stream parameters
+    void start(int width, int height, int frameRate, int bitRate) throws IOException;
+
+    // lets the renderer draw the next frame into the encoder input and submits it
+    void renderFrame(VideoStreamRenderer renderer, long presentationTimeUs);
+
+    // writes all encoded data that is available now into the stream. returns the number of bytes written.
+    // the scratch buffer is reused for every call to avoid per frame allocations.
+    int drain(OutputStream out, byte[] scratch) throws IOException;
+
+    // releases all encoder resources
+    void stop();
+}
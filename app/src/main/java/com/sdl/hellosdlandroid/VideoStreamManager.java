@@ -0,0 +1,347 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Drives the projection pipeline: renders and encodes frames on a dedicated thread, writes them
+// into the video stream of the transport and adapts the frame rate to the transport data ACKs.
+public class VideoStreamManager {
+    private static final String TAG = "SDL Video";
+
+    // frames that may be written without an ACK before the stream counts as congested
+    private static final int MAX_FRAMES_IN_FLIGHT = 4;
+
+    // the frame rate never drops below this value while congested
+    private static final int MIN_FRAME_RATE       = 5;
+
+    // size of the buffer used to move encoded data out of native codec buffers
+    private static final int SCRATCH_BUFFER_SIZE  = 64 * 1024;
+
+    // time a new stream waits for the encoder thread of the previous one to close its stream
+    private static final long STOP_TIMEOUT        = 5 * 1000;
+
+    // the proxy sends the stream in protocol frames of at most this payload (MTU 1500 minus the
+    // header). the head unit ACKs every protocol frame, not every encoded frame.
+    static final int PROTOCOL_FRAME_PAYLOAD       = 1488;
+
+    // opens and closes the video stream on the transport (e.g. SdlProxyALM.startH264()/endH264())
+    public interface Transport {
+        OutputStream openVideoStream();
+        void closeVideoStream();
+    }
+
+    // the time of the encoder thread, e.g. simulated by tests
+    interface Clock {
+        long nanoTime();
+
+        void sleep(long ns) throws InterruptedException;
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public void sleep(long ns) throws InterruptedException {
+            TimeUnit.NANOSECONDS.sleep(ns);
+        }
+    };
+
+    private final Transport transport;
+    private final VideoEncoder encoder;
+    private final VideoStreamRenderer renderer;
+    private final int width;
+    private final int height;
+    private final int targetFrameRate;
+    private final int bitRate;
+    private final Clock clock;
+
+    private Thread encoderThread;
+    private volatile boolean running;
+
+    // ACKs are only counted while the stream is open
+    private volatile boolean streamOpen;
+
+    // adapted by the encoder thread only
+    private volatile int currentFrameRate;
+    private int framesSinceCongestion;
+
+    // ACK based flow control is only active after the head unit ACKed at least once
+    private final AtomicLong protocolFramesAcked = new AtomicLong();
+    private final AtomicLong framesWritten = new AtomicLong();
+
+    // protocol frames sent until the end of each of the last frames (encoder thread only).
+    // a frame is ACKed when as many protocol frames were ACKed.
+    private final long[] protocolFramesAtFrameEnd = new long[MAX_FRAMES_IN_FLIGHT];
+    private long protocolFramesSent;
+
+    // metrics
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong encodeTimeTotalNs = new AtomicLong();
+    private volatile long encodeTimeMaxNs;
+    private volatile long streamStartNs;
+    private volatile long streamStopNs;
+
+    public VideoStreamManager(Transport transport, VideoEncoder encoder, VideoStreamRenderer renderer,
+                              int width, int height, int frameRate, int bitRate) {
+        this(transport, encoder, renderer, width, height, frameRate, bitRate, SYSTEM_CLOCK);
+    }
+
+    VideoStreamManager(Transport transport, VideoEncoder encoder, VideoStreamRenderer renderer,
+                       int width, int height, int frameRate, int bitRate, Clock clock) {
+        this.transport = transport;
+        this.encoder = encoder;
+        this.renderer = renderer;
+        this.width = width;
+        this.height = height;
+        this.targetFrameRate = frameRate;
+        this.bitRate = bitRate;
+        this.clock = clock;
+        this.currentFrameRate = frameRate;
+    }
+
+    // returns the hardware encoder if the platform supports it and the software encoder otherwise
+    public static VideoEncoder createDefaultEncoder() {
+        if (MediaCodecVideoEncoder.isSupported()) {
+            return new MediaCodecVideoEncoder();
+        } else {
+            return new SoftwareVideoEncoder();
+        }
+    }
+
+    //region Lifecycle area
+
+    public void start() {
+        this.start(null);
+    }
+
+    // the stream opens after the encoder thread of the previous stream (or null) closed its stream
+    public synchronized void start(final VideoStreamManager previous) {
+        if (this.running) {
+            return;
+        }
+
+        this.running = true;
+        this.encoderThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // two streams can't be open on the transport at the same time
+                if (previous != null && !previous.awaitStopped()) {
+                    Log.w(TAG, "Video stream not started, the previous stream is still open");
+                    running = false;
+                    return;
+                }
+                runEncoderLoop();
+            }
+        }, "SdlVideoEncoder");
+        this.encoderThread.start();
+    }
+
+    // returns at once. the encoder thread closes the stream after the current frame.
+    public synchronized void stop() {
+        if (!this.running) {
+            return;
+        }
+
+        this.running = false;
+        this.encoderThread.interrupt();
+    }
+
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    // waits for the encoder thread to exit. returns false if it's stuck or the waiting thread is stopped.
+    private boolean awaitStopped() {
+        Thread thread;
+        synchronized (this) {
+            thread = this.encoderThread;
+        }
+        if (thread == null) {
+            return true;
+        }
+
+        try {
+            thread.join(STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
+    // to be called for every data ACK of the video service (IProxyListenerALM.onServiceDataACK).
+    // ACKs arriving while no stream is open belong to another service.
+    public void onDataAck() {
+        if (this.streamOpen) {
+            this.protocolFramesAcked.incrementAndGet();
+        }
+    }
+
+    //endregion
+
+    //region Encoder thread area
+
+    private void runEncoderLoop() {
+        OutputStream out = this.transport.openVideoStream();
+        if (out == null) {
+            Log.w(TAG, "Video stream could not be opened");
+            this.running = false;
+            return;
+        }
+        this.streamOpen = true;
+
+        try {
+            this.encoder.start(this.width, this.height, this.targetFrameRate, this.bitRate);
+        } catch (IOException e) {
+            Log.w(TAG, "Video encoder could not be started", e);
+            this.streamOpen = false;
+            this.transport.closeVideoStream();
+            this.running = false;
+            return;
+        }
+
+        byte[] scratch = new byte[SCRATCH_BUFFER_SIZE];
+        this.streamStartNs = this.clock.nanoTime();
+        this.streamStopNs = 0;
+        long nextFrameNs = this.streamStartNs;
+
+        try {
+            while (this.running) {
+                long frameStartNs = this.clock.nanoTime();
+
+                if (this.isCongested()) {
+                    // skip rendering completely. the head unit can't keep up anyway.
+                    this.framesDropped.incrementAndGet();
+                    this.onCongestion();
+                } else {
+                    long presentationTimeUs = TimeUnit.NANOSECONDS.toMicros(frameStartNs - this.streamStartNs);
+                    this.encoder.renderFrame(this.renderer, presentationTimeUs);
+                    int written = this.encoder.drain(out, scratch);
+
+                    long encodeTimeNs = this.clock.nanoTime() - frameStartNs;
+                    this.encodeTimeTotalNs.addAndGet(encodeTimeNs);
+                    if (encodeTimeNs > this.encodeTimeMaxNs) {
+                        this.encodeTimeMaxNs = encodeTimeNs;
+                    }
+
+                    this.bytesWritten.addAndGet(written);
+                    this.onFrameWritten(written);
+                }
+
+                nextFrameNs += TimeUnit.SECONDS.toNanos(1) / this.currentFrameRate;
+                long sleepNs = nextFrameNs - this.clock.nanoTime();
+                if (sleepNs > 0) {
+                    this.clock.sleep(sleepNs);
+                } else {
+                    // we are late. don't try to catch up with a burst of frames.
+                    nextFrameNs = this.clock.nanoTime();
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop() was called
+        } catch (IOException e) {
+            Log.w(TAG, "Video stream closed unexpectedly", e);
+        } finally {
+            this.streamStopNs = this.clock.nanoTime();
+            this.streamOpen = false;
+            this.encoder.stop();
+            this.transport.closeVideoStream();
+            this.running = false;
+        }
+    }
+
+    // congested if the frame written MAX_FRAMES_IN_FLIGHT frames ago isn't ACKed completely
+    private boolean isCongested() {
+        long acked = this.protocolFramesAcked.get();
+        long written = this.framesWritten.get();
+        if (acked == 0 || written < MAX_FRAMES_IN_FLIGHT) {
+            return false;
+        }
+        return this.protocolFramesAtFrameEnd[(int) (written % MAX_FRAMES_IN_FLIGHT)] > acked;
+    }
+
+    // multiplicative decrease on congestion
+    private void onCongestion() {
+        this.framesSinceCongestion = 0;
+        this.currentFrameRate = Math.max(MIN_FRAME_RATE, this.currentFrameRate * 3 / 4);
+    }
+
+    // additive increase after one second worth of frames without congestion
+    private void onFrameWritten(int bytes) {
+        long written = this.framesWritten.get();
+        this.protocolFramesSent += (bytes + PROTOCOL_FRAME_PAYLOAD - 1) / PROTOCOL_FRAME_PAYLOAD;
+        this.protocolFramesAtFrameEnd[(int) (written % MAX_FRAMES_IN_FLIGHT)] = this.protocolFramesSent;
+        this.framesWritten.incrementAndGet();
+
+        if (this.currentFrameRate < this.targetFrameRate) {
+            if (++this.framesSinceCongestion >= this.currentFrameRate) {
+                this.framesSinceCongestion = 0;
+                this.currentFrameRate++;
+            }
+        }
+    }
+
+    //endregion
+
+    //region Metrics area
+
+    public long getFramesEncoded() {
+        return this.framesWritten.get();
+    }
+
+    public long getFramesDropped() {
+        return this.framesDropped.get();
+    }
+
+    public double getFrameDropRate() {
+        long total = this.framesWritten.get() + this.framesDropped.get();
+        return total == 0 ? 0 : (double) this.framesDropped.get() / total;
+    }
+
+    public double getAverageEncodeLatencyMs() {
+        long frames = this.framesWritten.get();
+        return frames == 0 ? 0 : this.encodeTimeTotalNs.get() / (frames * 1e6);
+    }
+
+    public double getMaxEncodeLatencyMs() {
+        return this.encodeTimeMaxNs / 1e6;
+    }
+
+    public long getProtocolFramesAcked() {
+        return this.protocolFramesAcked.get();
+    }
+
+    public long getBytesWritten() {
+        return this.bytesWritten.get();
+    }
+
+    public double getBytesPerSecond() {
+        long start = this.streamStartNs;
+        if (start == 0) {
+            return 0;
+        }
+        long end = this.streamStopNs != 0 ? this.streamStopNs : this.clock.nanoTime();
+        double seconds = (end - start) / 1e9;
+        return seconds <= 0 ? 0 : this.bytesWritten.get() / seconds;
+    }
+
+    public int getCurrentFrameRate() {
+        return this.currentFrameRate;
+    }
+
+    public String getMetricsSummary() {
+        return String.format("frames=%d dropped=%d (%.1f%%) encode avg=%.2fms max=%.2fms rate=%.0fB/s fps=%d",
+                this.getFramesEncoded(), this.getFramesDropped(), this.getFrameDropRate() * 100,
+                this.getAverageEncodeLatencyMs(), this.getMaxEncodeLatencyMs(),
+                this.getBytesPerSecond(), this.getCurrentFrameRate());
+    }
+
+    //endregion
+}
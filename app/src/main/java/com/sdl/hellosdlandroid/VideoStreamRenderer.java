@@ -0,0 +1,13 @@
+package com.sdl.hellosdlandroid;
+
+import android.view.Surface;
+
+// Renders the projected off-screen content. Only one of the methods is called depending on the encoder in use.
+public interface VideoStreamRenderer {
+
+    // hardware path: draw directly into the encoder input surface (no pixel copy)
+    void onDrawFrame(Surface surface, int width, int height, long presentationTimeUs);
+
+    // software path: fill the I420 (YUV 4:2:0 planar) frame buffer
+    void onFillFrame(byte[] frame, int width, int height, long presentationTimeUs);
+}
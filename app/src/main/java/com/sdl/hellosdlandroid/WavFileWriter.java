@@ -0,0 +1,134 @@
+package com.sdl.hellosdlandroid;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+// Writes a captured stream of mono PCM audio into a WAV file. The sizes in the header are written
+// when the capture finished. An incomplete capture keeps the audio received until then.
+public class WavFileWriter implements AudioPassThruManager.Consumer {
+    private static final String TAG = "SDL Audio";
+
+    private static final int HEADER_SIZE = 44;
+
+    private final File file;
+    private OutputStream output;
+    private int sampleRate;
+    private int bitsPerSample;
+    private long dataSize;
+
+    public WavFileWriter(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    @Override
+    public void onCaptureStarted(int sampleRate, int bitsPerSample) {
+        this.sampleRate = sampleRate;
+        this.bitsPerSample = bitsPerSample;
+        this.dataSize = 0;
+
+        try {
+            File directory = this.file.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Can't create " + directory);
+            }
+            this.output = new BufferedOutputStream(new FileOutputStream(this.file));
+            // the header is written again with the sizes when the capture finished
+            this.output.write(this.buildHeader(0));
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write " + this.file, e);
+            this.output = null;
+        }
+    }
+
+    @Override
+    public void onChunk(AudioPassThruManager.Chunk chunk) {
+        if (this.output == null) {
+            return;
+        }
+
+        try {
+            this.output.write(chunk.getData());
+            this.dataSize += chunk.getData().length;
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write " + this.file, e);
+            this.close();
+        }
+    }
+
+    @Override
+    public void onCaptureFinished(boolean complete) {
+        if (this.output == null) {
+            return;
+        }
+
+        this.close();
+
+        try {
+            RandomAccessFile header = new RandomAccessFile(this.file, "rw");
+            try {
+                header.write(this.buildHeader(this.dataSize));
+            } finally {
+                header.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Can't write " + this.file, e);
+        }
+    }
+
+    private void close() {
+        try {
+            this.output.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.output = null;
+    }
+
+    private byte[] buildHeader(long dataSize) {
+        int channels = 1;
+        int blockAlign = channels * this.bitsPerSample / 8;
+        int byteRate = this.sampleRate * blockAlign;
+
+        byte[] header = new byte[HEADER_SIZE];
+        putAscii(header, 0, "RIFF");
+        putInt(header, 4, (int) (HEADER_SIZE - 8 + dataSize));
+        putAscii(header, 8, "WAVE");
+        putAscii(header, 12, "fmt ");
+        putInt(header, 16, 16);
+        putShort(header, 20, 1);
+        putShort(header, 22, channels);
+        putInt(header, 24, this.sampleRate);
+        putInt(header, 28, byteRate);
+        putShort(header, 32, blockAlign);
+        putShort(header, 34, this.bitsPerSample);
+        putAscii(header, 36, "data");
+        putInt(header, 40, (int) dataSize);
+        return header;
+    }
+
+    private static void putAscii(byte[] buffer, int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer[offset + i] = (byte) value.charAt(i);
+        }
+    }
+
+    private static void putShort(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static void putInt(byte[] buffer, int offset, int value) {
+        putShort(buffer, offset, value);
+        putShort(buffer, offset + 2, value >> 16);
+    }
+}
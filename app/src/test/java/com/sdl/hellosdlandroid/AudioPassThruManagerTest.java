@@ -0,0 +1,150 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCResponse;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+// Captures a simulated stream of the microphone of the head unit: chunks of a tone as the head unit
+// sends them every 100 ms, written to a WAV file and metered like in the session.
+public class AudioPassThruManagerTest {
+    private static final int CHUNK_MS = 100;
+    private static final int CHUNK_BYTES = AudioPassThruManager.SAMPLE_RATE * 2 * CHUNK_MS / 1000;
+    private static final int CAPTURE_SECONDS = 60;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    // keeps every tenth chunk until the next chunk arrives, like a consumer handing it to another thread
+    private static class RetainingConsumer implements AudioPassThruManager.Consumer {
+        AudioPassThruManager.Chunk retained;
+        byte[] retainedData;
+        long retainedSequence;
+        int checked;
+
+        @Override
+        public void onCaptureStarted(int sampleRate, int bitsPerSample) {
+        }
+
+        @Override
+        public void onChunk(AudioPassThruManager.Chunk chunk) {
+            this.releaseRetained();
+            if (chunk.getSequence() % 10 == 0) {
+                chunk.retain();
+                this.retained = chunk;
+                this.retainedData = chunk.getData();
+                this.retainedSequence = chunk.getSequence();
+            }
+        }
+
+        @Override
+        public void onCaptureFinished(boolean complete) {
+            this.releaseRetained();
+        }
+
+        private void releaseRetained() {
+            if (this.retained == null) {
+                return;
+            }
+            // the wrapper wasn't reused for the chunks delivered meanwhile
+            assertSame(this.retainedData, this.retained.getData());
+            assertEquals(this.retainedSequence, this.retained.getSequence());
+            this.retained.release();
+            this.retained = null;
+            this.checked++;
+        }
+    }
+
+    private HeadUnitSimulator headUnit;
+    private AudioPassThruManager manager;
+
+    @Before
+    public void setUp() {
+        this.headUnit = new HeadUnitSimulator();
+        this.manager = new AudioPassThruManager(this.headUnit);
+        this.headUnit.getRouter().setHandler(FunctionID.PERFORM_AUDIO_PASS_THRU, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                manager.onPerformAudioPassThruResponse(response);
+            }
+        });
+    }
+
+    // a 500 Hz tone at half of full scale. the proxy parses a new array for every notification.
+    private static byte[][] toneChunks(int count) {
+        byte[][] chunks = new byte[count][CHUNK_BYTES];
+        for (int chunk = 0; chunk < count; chunk++) {
+            for (int i = 0; i < CHUNK_BYTES / 2; i++) {
+                int sample = (int) (16384 * Math.sin(2 * Math.PI * 500 * i / AudioPassThruManager.SAMPLE_RATE));
+                chunks[chunk][2 * i] = (byte) sample;
+                chunks[chunk][2 * i + 1] = (byte) (sample >> 8);
+            }
+        }
+        return chunks;
+    }
+
+    @Test
+    public void captureThroughputAndLatency() {
+        int chunkCount = CAPTURE_SECONDS * 1000 / CHUNK_MS;
+        byte[][] chunks = toneChunks(chunkCount);
+        File file = new File(this.folder.getRoot(), "capture.wav");
+        WavFileWriter writer = new WavFileWriter(file);
+        AudioLevelMeter meter = new AudioLevelMeter();
+        RetainingConsumer retainer = new RetainingConsumer();
+
+        this.manager.start("Recording", CAPTURE_SECONDS * 1000,
+                Arrays.<AudioPassThruManager.Consumer>asList(writer, meter, retainer));
+        long startNs = System.nanoTime();
+        for (byte[] chunk : chunks) {
+            this.manager.onAudioData(chunk);
+        }
+        long elapsedNs = System.nanoTime() - startNs;
+        // the head unit ends the capture after the max duration
+        this.headUnit.respond();
+
+        double audioSeconds = (double) chunkCount * CHUNK_BYTES / (AudioPassThruManager.SAMPLE_RATE * 2);
+        System.out.println(String.format("audio pass thru: %.0f s of audio in %.1f ms (%.0fx real time), %s",
+                audioSeconds, elapsedNs / 1e6, audioSeconds * 1e9 / elapsedNs, this.manager.getMetricsSummary()));
+
+        assertTrue(!this.manager.isCapturing());
+        assertEquals(chunkCount, this.manager.getChunks());
+        assertEquals((long) chunkCount * CHUNK_BYTES, this.manager.getBytes());
+        assertEquals(44 + this.manager.getBytes(), file.length());
+        assertEquals(chunkCount / 10, retainer.checked);
+        // a sine at half of full scale peaks at -6 dB and has an RMS level of -9 dB
+        assertEquals(-6.0, meter.getPeakLevelDb(), 0.1);
+        assertEquals(-9.0, meter.getLastLevelDb(), 0.1);
+
+        // a chunk is handled long before the next one arrives
+        assertTrue(this.manager.getMaxHandlingLatencyMs() + " ms max", this.manager.getMaxHandlingLatencyMs() < CHUNK_MS / 2);
+        assertTrue(this.manager.getAverageHandlingLatencyMs() + " ms avg", this.manager.getAverageHandlingLatencyMs() < 1);
+    }
+
+    @Test
+    public void chunksWithoutCaptureAreDropped() {
+        this.manager.onAudioData(new byte[CHUNK_BYTES]);
+        assertEquals(1, this.manager.getChunksDropped());
+
+        AudioLevelMeter meter = new AudioLevelMeter();
+        this.manager.start("Recording", 1000, Arrays.<AudioPassThruManager.Consumer>asList(meter));
+        this.manager.onAudioData(toneChunks(1)[0]);
+        // e.g. the session closed
+        this.manager.dispose();
+        this.manager.onAudioData(new byte[CHUNK_BYTES]);
+
+        // the metrics are of the last capture
+        assertEquals(1, this.manager.getChunks());
+        assertEquals(1, this.manager.getChunksDropped());
+        assertEquals(-6.0, meter.getPeakLevelDb(), 0.1);
+    }
+}
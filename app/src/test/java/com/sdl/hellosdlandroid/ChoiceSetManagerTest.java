@@ -0,0 +1,125 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.CreateInteractionChoiceSet;
+import com.smartdevicelink.proxy.rpc.CreateInteractionChoiceSetResponse;
+import com.smartdevicelink.proxy.rpc.PerformInteraction;
+import com.smartdevicelink.proxy.rpc.PerformInteractionResponse;
+import com.smartdevicelink.proxy.rpc.enums.InteractionMode;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+// Performs interactions on a simulated head unit which may reject the creation of choice sets.
+public class ChoiceSetManagerTest {
+    private static final List<String> CHOICES = Arrays.asList("Rock", "Jazz", "Pop");
+
+    // selects the first choice of every interaction
+    private static class Interactions implements HeadUnitSimulator.Responder {
+        boolean rejectCreates;
+
+        @Override
+        public boolean respond(RPCRequest request, RPCResponse response) {
+            if (request instanceof CreateInteractionChoiceSet && this.rejectCreates) {
+                response.setSuccess(Boolean.FALSE);
+                response.setResultCode(Result.INVALID_ID);
+            } else if (request instanceof PerformInteraction) {
+                // the choice IDs of the first choice set start at 1
+                ((PerformInteractionResponse) response).setChoiceID(1);
+            }
+            return true;
+        }
+    }
+
+    private HeadUnitSimulator headUnit;
+    private Interactions interactions;
+    private ChoiceSetManager manager;
+    private final List<String> results = new ArrayList<>();
+
+    private final ChoiceSetManager.InteractionListener listener = new ChoiceSetManager.InteractionListener() {
+        @Override
+        public void onChoiceSelected(String choice) {
+            results.add(choice);
+        }
+
+        @Override
+        public void onInteractionCanceled() {
+            results.add("canceled");
+        }
+    };
+
+    @Before
+    public void setUp() {
+        this.headUnit = new HeadUnitSimulator();
+        this.interactions = new Interactions();
+        this.headUnit.setResponder(this.interactions);
+        this.manager = new ChoiceSetManager(this.headUnit);
+
+        ResponseRouter router = this.headUnit.getRouter();
+        router.setHandler(FunctionID.CREATE_INTERACTION_CHOICE_SET, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                manager.onCreateInteractionChoiceSetResponse((CreateInteractionChoiceSetResponse) response);
+            }
+        });
+        router.setHandler(FunctionID.PERFORM_INTERACTION, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                manager.onPerformInteractionResponse((PerformInteractionResponse) response);
+            }
+        });
+    }
+
+    // the function names of the requests sent since the last call
+    private List<String> sent() {
+        List<String> requests = new ArrayList<>();
+        for (RPCRequest request : this.headUnit.sent) {
+            requests.add(request.getFunctionName());
+        }
+        this.headUnit.sent.clear();
+        return requests;
+    }
+
+    @Test
+    public void theInteractionFollowsTheCreatedChoiceSet() {
+        this.manager.performInteraction("Genre", CHOICES, InteractionMode.MANUAL_ONLY, this.listener);
+        assertEquals(Arrays.asList("CreateInteractionChoiceSet"), this.sent());
+
+        this.headUnit.respond();
+        assertEquals(Arrays.asList("PerformInteraction"), this.sent());
+        assertEquals(Arrays.asList("Rock"), this.results);
+
+        // the choice set is reused
+        this.manager.performInteraction("Genre", CHOICES, InteractionMode.MANUAL_ONLY, this.listener);
+        this.headUnit.respond();
+        assertEquals(Arrays.asList("PerformInteraction"), this.sent());
+        assertEquals(1, this.manager.getChoiceSetsReused());
+    }
+
+    @Test
+    public void aRejectedChoiceSetCancelsTheInteraction() {
+        this.interactions.rejectCreates = true;
+        this.manager.performInteraction("Genre", CHOICES, InteractionMode.MANUAL_ONLY, this.listener);
+        this.headUnit.respond();
+
+        // the interaction isn't sent without its choice set
+        assertEquals(Arrays.asList("CreateInteractionChoiceSet"), this.sent());
+        assertEquals(Arrays.asList("canceled"), this.results);
+
+        // the next interaction creates the choice set again
+        this.interactions.rejectCreates = false;
+        this.manager.performInteraction("Genre", CHOICES, InteractionMode.MANUAL_ONLY, this.listener);
+        this.headUnit.respond();
+        assertEquals(Arrays.asList("CreateInteractionChoiceSet", "PerformInteraction"), this.sent());
+        assertEquals(Arrays.asList("canceled", "Rock"), this.results);
+    }
+}
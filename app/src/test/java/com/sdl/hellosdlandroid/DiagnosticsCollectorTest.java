@@ -0,0 +1,219 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.DIDResult;
+import com.smartdevicelink.proxy.rpc.GetDTCs;
+import com.smartdevicelink.proxy.rpc.GetDTCsResponse;
+import com.smartdevicelink.proxy.rpc.ReadDID;
+import com.smartdevicelink.proxy.rpc.ReadDIDResponse;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+import com.smartdevicelink.proxy.rpc.enums.VehicleDataResultCode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// Polls the ECUs of a simulated vehicle through a simulated head unit. The time of the collector is
+// simulated too so minutes of polling run in a moment.
+public class DiagnosticsCollectorTest {
+    private static final int REQUESTS_PER_SECOND = 5;
+    private static final long TICK_MS = 100;
+
+    // every tenth DID changes with every read, the others never change
+    private static class Vehicle implements HeadUnitSimulator.Responder {
+        Result result = Result.SUCCESS;
+        Result dtcResult = Result.SUCCESS;
+        boolean responsesLost;
+        int reads;
+
+        @Override
+        public boolean respond(RPCRequest request, RPCResponse response) {
+            if (this.responsesLost) {
+                return false;
+            }
+            if (this.result != Result.SUCCESS) {
+                response.setSuccess(Boolean.FALSE);
+                response.setResultCode(this.result);
+                return true;
+            }
+            if (request instanceof GetDTCs && this.dtcResult != Result.SUCCESS) {
+                response.setSuccess(Boolean.FALSE);
+                response.setResultCode(this.dtcResult);
+                return true;
+            }
+
+            if (request instanceof ReadDID) {
+                List<DIDResult> results = new ArrayList<>();
+                for (Integer didLocation : ((ReadDID) request).getDidLocation()) {
+                    DIDResult result = new DIDResult();
+                    result.setDidLocation(didLocation);
+                    result.setResultCode(VehicleDataResultCode.SUCCESS);
+                    result.setData(didLocation % 10 == 0 ? Integer.toHexString(this.reads++) : "00");
+                    results.add(result);
+                }
+                ((ReadDIDResponse) response).setDidResult(results);
+            } else if (request instanceof GetDTCs) {
+                ((GetDTCsResponse) response).setEcuHeader(0);
+                ((GetDTCsResponse) response).setDtc(Collections.singletonList("0x01020304"));
+            }
+            return true;
+        }
+    }
+
+    private HeadUnitSimulator headUnit;
+    private Vehicle vehicle;
+    private DiagnosticsCollector collector;
+    private long nowMs;
+
+    @Before
+    public void setUp() {
+        this.headUnit = new HeadUnitSimulator();
+        this.vehicle = new Vehicle();
+        this.headUnit.setResponder(this.vehicle);
+        this.collector = new DiagnosticsCollector(this.headUnit, REQUESTS_PER_SECOND);
+
+        ResponseRouter router = this.headUnit.getRouter();
+        router.setHandler(FunctionID.READ_DID, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                collector.onReadDIDResponse((ReadDIDResponse) response, nowMs);
+            }
+        });
+        router.setHandler(FunctionID.GET_DTCS, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                collector.onGetDTCsResponse((GetDTCsResponse) response, nowMs);
+            }
+        });
+    }
+
+    private static int[] dids(int count) {
+        int[] dids = new int[count];
+        for (int i = 0; i < count; i++) {
+            dids[i] = i;
+        }
+        return dids;
+    }
+
+    private void run(long durationMs) {
+        long endMs = this.nowMs + durationMs;
+        for (; this.nowMs < endMs; this.nowMs += TICK_MS) {
+            this.collector.poll(this.nowMs);
+            this.headUnit.respond();
+        }
+    }
+
+    @Test
+    public void lostResponsesTimeOutAndAreReadAgain() {
+        this.collector.addEcu(1, dids(150));
+        this.vehicle.responsesLost = true;
+
+        // GetDTCs and two batches of DIDs
+        this.collector.poll(this.nowMs);
+        this.headUnit.respond();
+        assertEquals(3, this.collector.getPending());
+
+        this.run(5000);
+        assertEquals(3, this.collector.getRequests());
+
+        this.vehicle.responsesLost = false;
+        this.run(10 * 1000);
+        assertEquals(3, this.collector.getTimeouts());
+        assertEquals(0, this.collector.getPending());
+        assertEquals(6, this.collector.getRequests());
+        assertNotNull(this.collector.getDid(1, 149));
+        assertNotNull(this.collector.getDtcs(1));
+    }
+
+    @Test
+    public void permissionsChangeAllowsDiagnosticsAgain() {
+        this.collector.addEcu(1, dids(10));
+        this.vehicle.result = Result.DISALLOWED;
+
+        this.run(1000);
+        int requests = this.collector.getRequests();
+        this.run(60 * 1000);
+        assertEquals(requests, this.collector.getRequests());
+
+        // e.g. the policy was updated
+        this.vehicle.result = Result.SUCCESS;
+        this.collector.onPermissionsChange();
+        this.run(1000);
+        assertTrue(this.collector.getRequests() > requests);
+        assertNotNull(this.collector.getDid(1, 9));
+    }
+
+    @Test
+    public void failedDtcReadsBackOff() {
+        this.collector.addEcu(1, dids(0));
+        this.vehicle.dtcResult = Result.GENERIC_ERROR;
+
+        // at 0, 5, 15 and 35 s. the next try is a DTC interval later.
+        this.run(60 * 1000);
+        assertEquals(4, this.collector.getRequests());
+        assertEquals(4, this.collector.getFailures());
+        assertNull(this.collector.getDtcs(1));
+
+        this.vehicle.dtcResult = Result.SUCCESS;
+        this.run(20 * 1000);
+        assertEquals(5, this.collector.getRequests());
+        assertNotNull(this.collector.getDtcs(1));
+    }
+
+    @Test
+    public void readsNotAllowedAreNotSent() {
+        this.collector.addEcu(1, dids(10));
+        this.collector.setAllowed(false, false);
+        this.run(10 * 1000);
+        assertEquals(0, this.collector.getRequests());
+
+        // e.g. the app got to an HMI level which allows ReadDID only
+        this.collector.setAllowed(true, false);
+        this.run(1000);
+        assertEquals(1, this.collector.getRequests());
+        assertNotNull(this.collector.getDid(1, 9));
+        assertNull(this.collector.getDtcs(1));
+    }
+
+    @Test
+    public void pollingThroughput() {
+        int ecus = 8;
+        int didsPerEcu = 200;
+        for (int ecu = 0; ecu < ecus; ecu++) {
+            this.collector.addEcu(ecu, dids(didsPerEcu));
+        }
+        long durationMs = TimeUnit.MINUTES.toMillis(10);
+
+        long startNs = System.nanoTime();
+        this.run(durationMs);
+        long elapsedNs = System.nanoTime() - startNs;
+
+        double simulatedSeconds = durationMs / 1000.0;
+        System.out.println(String.format("diagnostics: %d requests, %d dids read in %.0f s simulated (%.1f dids/s), "
+                        + "%.1f ms cpu, %s", this.collector.getRequests(), this.collector.getDidsRequested(),
+                simulatedSeconds, this.collector.getDidsRequested() / simulatedSeconds, elapsedNs / 1e6,
+                this.collector.getMetricsSummary()));
+
+        for (int ecu = 0; ecu < ecus; ecu++) {
+            assertNotNull(this.collector.getDtcs(ecu));
+            for (int did = 0; did < didsPerEcu; did++) {
+                assertNotNull(this.collector.getDid(ecu, did));
+            }
+        }
+        // the rate limit holds and unchanged DIDs are read less often than every 10 s
+        assertTrue(this.collector.getRequests() <= REQUESTS_PER_SECOND * simulatedSeconds + 4);
+        assertTrue(this.collector.getDidsRequested() < ecus * didsPerEcu * simulatedSeconds / 10 / 2);
+        assertEquals(0, this.collector.getTimeouts());
+    }
+}
@@ -0,0 +1,190 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.interfaces.IProxyListenerALM;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+// A session and the head unit at the other end of its transport, both on the test thread. Requests of
+// the managers are queued like on the transport and respond() answers them through a response router
+// like the one of the session. Sequential requests are released by the responses of their predecessors.
+public class HeadUnitSimulator implements RequestSender {
+
+    // decides the response to a request. returns false if the response gets lost.
+    public interface Responder {
+        boolean respond(RPCRequest request, RPCResponse response);
+    }
+
+    public static final Responder SUCCESS = new Responder() {
+        @Override
+        public boolean respond(RPCRequest request, RPCResponse response) {
+            return true;
+        }
+    };
+
+    private final ResponseRouter router;
+    private final ArrayDeque<RPCRequest> pending;
+    private final HashMap<Class<?>, RPCResponse> reusedResponses;
+    private Responder responder;
+    private IProxyListenerALM listener;
+    private boolean reuseResponses;
+    private int correlationID;
+
+    // every request sent since the last clear
+    public final List<RPCRequest> sent;
+
+    public HeadUnitSimulator() {
+        this.router = new ResponseRouter();
+        this.pending = new ArrayDeque<>();
+        this.reusedResponses = new HashMap<>();
+        this.responder = SUCCESS;
+        this.sent = new ArrayList<>();
+    }
+
+    public ResponseRouter getRouter() {
+        return this.router;
+    }
+
+    public void setResponder(Responder responder) {
+        this.responder = responder;
+    }
+
+    // delivers the responses through the listener methods of the proxy instead of the router, e.g. a
+    // RoutingProxyListener wrapped by the session
+    public void setListener(IProxyListenerALM listener) {
+        this.listener = listener;
+    }
+
+    // answers with one response object per type, e.g. to keep them out of allocation measurements
+    public void setReuseResponses(boolean reuseResponses) {
+        this.reuseResponses = reuseResponses;
+    }
+
+    //region Session side
+
+    @Override
+    public int nextCorrelationID() {
+        this.correlationID = (this.correlationID % 0xffff) + 1;
+        return this.correlationID;
+    }
+
+    @Override
+    public void sendRequest(RPCRequest request) {
+        if (request.getCorrelationID() == null) {
+            request.setCorrelationID(this.nextCorrelationID());
+        }
+        this.sent.add(request);
+        this.pending.add(request);
+    }
+
+    @Override
+    public void sendRequests(List<RPCRequest> requests, boolean sequential) {
+        if (!sequential || requests.size() < 2) {
+            for (int i = 0; i < requests.size(); i++) {
+                this.sendRequest(requests.get(i));
+            }
+            return;
+        }
+
+        final List<RPCRequest> next = new ArrayList<>(requests.subList(1, requests.size()));
+        RPCRequest first = requests.get(0);
+        if (first.getCorrelationID() == null) {
+            first.setCorrelationID(this.nextCorrelationID());
+        }
+        this.router.expect(first.getCorrelationID(), new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                sendRequests(next, true);
+            }
+        });
+        this.sendRequest(first);
+    }
+
+    //endregion
+
+    //region Head unit side
+
+    public int getPending() {
+        return this.pending.size();
+    }
+
+    // answers the requests sent so far and the ones released by their responses. returns the number
+    // of responses sent.
+    public int respond() {
+        int responses = 0;
+        RPCRequest request;
+        while ((request = this.pending.poll()) != null) {
+            if (this.respond(request)) {
+                responses++;
+            }
+        }
+        return responses;
+    }
+
+    // answers only the oldest request
+    public boolean respondNext() {
+        RPCRequest request = this.pending.poll();
+        return request != null && this.respond(request);
+    }
+
+    // the requests stay unanswered, e.g. lost on the transport
+    public void drop() {
+        this.pending.clear();
+    }
+
+    private boolean respond(RPCRequest request) {
+        RPCResponse response = this.createResponse(request);
+        response.setCorrelationID(request.getCorrelationID());
+        response.setSuccess(Boolean.TRUE);
+        response.setResultCode(Result.SUCCESS);
+        if (!this.responder.respond(request, response)) {
+            return false;
+        }
+        if (this.listener != null) {
+            this.deliver(response);
+        } else {
+            this.router.dispatch(response);
+        }
+        return true;
+    }
+
+    private void deliver(RPCResponse response) {
+        try {
+            IProxyListenerALM.class.getMethod("on" + response.getFunctionName() + "Response", response.getClass())
+                    .invoke(this.listener, response);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("No listener method for " + response.getFunctionName(), e);
+        }
+    }
+
+    private RPCResponse createResponse(RPCRequest request) {
+        if (this.reuseResponses) {
+            RPCResponse response = this.reusedResponses.get(request.getClass());
+            if (response == null) {
+                response = newResponse(request);
+                this.reusedResponses.put(request.getClass(), response);
+            }
+            return response;
+        }
+        return newResponse(request);
+    }
+
+    private static RPCResponse newResponse(RPCRequest request) {
+        try {
+            Class<?> type = Class.forName("com.smartdevicelink.proxy.rpc." + request.getFunctionName() + "Response");
+            return (RPCResponse) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return new RPCResponse(request.getFunctionName());
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,119 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.SetMediaClockTimer;
+import com.smartdevicelink.proxy.rpc.enums.UpdateMode;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Measures the garbage of the once-per-second media update in the steady state: the track text and
+// the media clock are sent with pooled requests and answered by the simulated head unit.
+public class MediaUpdateAllocationTest {
+    private static final int WARMUP_UPDATES = 20000;
+    private static final int UPDATES = 100000;
+
+    // about 224 bytes remain: per request the boxed correlation ID (16) and its in flight entry (32), the
+    // pending entry of the show (32) and the parameter entries of the changed field (32) and of the clock (64)
+    private static final long MAX_BYTES_PER_UPDATE = 256;
+
+    private HeadUnitSimulator headUnit;
+    private RequestPool requestPool;
+    private ScreenManager screenManager;
+    private int second;
+
+    private void update() {
+        this.second++;
+        this.screenManager.setTextField(ScreenManager.MAIN_FIELD_3, (this.second & 1) == 0 ? "Playing" : "Paused");
+        this.screenManager.commit();
+
+        SetMediaClockTimer timer = this.requestPool.obtainSetMediaClockTimer();
+        timer.setStartTime(this.requestPool.obtainStartTime(0, (this.second / 60) % 60, this.second % 60));
+        timer.setUpdateMode(UpdateMode.COUNTUP);
+        this.headUnit.sendRequest(timer);
+
+        this.headUnit.respond();
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private void setUp() {
+        this.headUnit = new HeadUnitSimulator();
+        this.headUnit.setReuseResponses(true);
+        this.requestPool = new RequestPool(this.headUnit);
+        this.screenManager = new ScreenManager(this.headUnit, this.requestPool);
+
+        ResponseRouter router = this.headUnit.getRouter();
+        router.setHandler(FunctionID.SHOW, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                screenManager.onShowResponse(response);
+            }
+        });
+        router.addCompletionHandler(new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                requestPool.onResponse(response);
+            }
+        });
+    }
+
+    @Test
+    public void steadyStateUpdatesAllocateOnlyTheBoxedIds() {
+        this.setUp();
+        for (int i = 0; i < WARMUP_UPDATES; i++) {
+            this.update();
+            this.headUnit.sent.clear();
+        }
+        int allocated = this.requestPool.getAllocated();
+
+        long startBytes = allocatedBytes();
+        for (int i = 0; i < UPDATES; i++) {
+            this.update();
+            this.headUnit.sent.clear();
+        }
+        long bytesPerUpdate = (allocatedBytes() - startBytes) / UPDATES;
+        System.out.println("media update: " + bytesPerUpdate + " bytes allocated per update");
+
+        assertEquals(allocated, this.requestPool.getAllocated());
+        assertEquals(0, this.requestPool.getInFlight());
+        assertTrue(bytesPerUpdate + " bytes per update", bytesPerUpdate <= MAX_BYTES_PER_UPDATE);
+    }
+
+    @Test
+    public void requestsWithoutResponseAreForgotten() {
+        this.setUp();
+        this.headUnit.setResponder(new HeadUnitSimulator.Responder() {
+            @Override
+            public boolean respond(RPCRequest request, RPCResponse response) {
+                return !(request instanceof SetMediaClockTimer);
+            }
+        });
+
+        this.update();
+        this.update();
+        assertEquals(2, this.requestPool.getInFlight());
+
+        // a request lent after the last check stays until the next one
+        this.requestPool.checkTimeouts();
+        this.update();
+        assertEquals(3, this.requestPool.getInFlight());
+        this.requestPool.checkTimeouts();
+        assertEquals(1, this.requestPool.getInFlight());
+        assertEquals(2, this.requestPool.getExpired());
+
+        this.update();
+        this.requestPool.dispose();
+        assertEquals(0, this.requestPool.getInFlight());
+        assertEquals(4, this.requestPool.getExpired());
+    }
+}
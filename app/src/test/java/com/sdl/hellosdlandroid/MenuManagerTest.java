@@ -0,0 +1,125 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.AddCommand;
+import com.smartdevicelink.proxy.rpc.DeleteCommand;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Updates the menu on a simulated head unit which may lose the responses of menu requests.
+public class MenuManagerTest {
+
+    // loses the responses of the adds of the given titles once
+    private static class Menu implements HeadUnitSimulator.Responder {
+        final List<String> addsToLose = new ArrayList<>();
+
+        @Override
+        public boolean respond(RPCRequest request, RPCResponse response) {
+            return !(request instanceof AddCommand
+                    && this.addsToLose.remove(((AddCommand) request).getMenuParams().getMenuName()));
+        }
+    }
+
+    private HeadUnitSimulator headUnit;
+    private Menu menu;
+    private MenuManager manager;
+
+    @Before
+    public void setUp() {
+        this.headUnit = new HeadUnitSimulator();
+        this.menu = new Menu();
+        this.headUnit.setResponder(this.menu);
+        this.manager = new MenuManager(this.headUnit);
+
+        ResponseRouter.Handler handler = new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                manager.onMenuResponse(response);
+            }
+        };
+        ResponseRouter router = this.headUnit.getRouter();
+        router.setHandler(FunctionID.ADD_COMMAND, handler);
+        router.setHandler(FunctionID.ADD_SUB_MENU, handler);
+        router.setHandler(FunctionID.DELETE_COMMAND, handler);
+        router.setHandler(FunctionID.DELETE_SUB_MENU, handler);
+    }
+
+    private static List<MenuManager.MenuEntry> entries(String... titles) {
+        List<MenuManager.MenuEntry> entries = new ArrayList<>();
+        for (String title : titles) {
+            entries.add(new MenuManager.MenuEntry(title, Collections.singletonList(title), null));
+        }
+        return entries;
+    }
+
+    // the titles of the adds and the cmd IDs of the deletes sent since the last call
+    private List<String> sent() {
+        List<String> requests = new ArrayList<>();
+        for (RPCRequest request : this.headUnit.sent) {
+            if (request instanceof AddCommand) {
+                requests.add("add " + ((AddCommand) request).getMenuParams().getMenuName());
+            } else if (request instanceof DeleteCommand) {
+                requests.add("delete " + ((DeleteCommand) request).getCmdID());
+            }
+        }
+        this.headUnit.sent.clear();
+        return requests;
+    }
+
+    @Test
+    public void onlyTheDifferenceIsSent() {
+        this.manager.setMenu(entries("Play", "Pause"));
+        this.headUnit.respond();
+        assertEquals(Arrays.asList("add Play", "add Pause"), this.sent());
+
+        this.manager.setMenu(entries("Play", "Record"));
+        this.headUnit.respond();
+        assertEquals(Arrays.asList("delete 2", "add Record"), this.sent());
+        assertEquals(4, this.manager.getRpcsSent());
+        assertFalse(this.manager.isBusy());
+    }
+
+    @Test
+    public void lostResponsesTimeOutAndTheMenuIsDiffedAgain() throws InterruptedException {
+        this.manager.setResponseTimeout(50);
+        this.menu.addsToLose.add("Pause");
+        this.manager.setMenu(entries("Play", "Pause"));
+        this.headUnit.respond();
+        assertTrue(this.manager.isBusy());
+
+        // the next update waits for the lost response
+        this.manager.setMenu(entries("Play", "Pause", "Record"));
+        this.headUnit.respond();
+        assertEquals(Arrays.asList("add Play", "add Pause"), this.sent());
+
+        Thread.sleep(60);
+        this.manager.checkTimeouts();
+        assertEquals(1, this.manager.getUpdatesTimedOut());
+
+        // Pause may be on the head unit. it's deleted and added again with the queued menu.
+        this.headUnit.respond();
+        assertEquals(Arrays.asList("delete 2", "add Pause", "add Record"), this.sent());
+        assertFalse(this.manager.isBusy());
+
+        // a late response of the timed out update changes nothing
+        RPCResponse late = ResponseRouter.createResponse(new AddCommand(), Result.GENERIC_ERROR, null);
+        late.setCorrelationID(2);
+        this.manager.onMenuResponse(late);
+        assertFalse(this.manager.isBusy());
+        assertTrue(this.manager.onCommand(3));
+        assertFalse(this.manager.onCommand(2));
+    }
+}
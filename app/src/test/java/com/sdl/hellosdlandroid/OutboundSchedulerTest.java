@@ -0,0 +1,116 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.rpc.PutFile;
+import com.smartdevicelink.proxy.rpc.PutFileResponse;
+import com.smartdevicelink.proxy.rpc.enums.FileType;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+// Sends chunked uploads through the sender thread of the scheduler to a transport which answers
+// only the chunks the test answers.
+public class OutboundSchedulerTest {
+    private static final long WAIT_MS = 2000;
+
+    private final BlockingQueue<RPCRequest> transport = new LinkedBlockingQueue<>();
+    private final BlockingQueue<PutFileResponse> failures = new LinkedBlockingQueue<>();
+    private OutboundScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        this.scheduler = new OutboundScheduler("test", new OutboundScheduler.Sink() {
+            @Override
+            public void sendRPCRequest(RPCRequest request) {
+                transport.add(request);
+            }
+
+            @Override
+            public void onUploadFailed(PutFileResponse response) {
+                failures.add(response);
+            }
+        });
+        this.scheduler.start();
+    }
+
+    @After
+    public void tearDown() {
+        this.scheduler.stop();
+    }
+
+    private static PutFile putFile(String name, int size, int correlationID) {
+        PutFile putFile = new PutFile();
+        putFile.setSdlFileName(name);
+        putFile.setFileType(FileType.BINARY);
+        putFile.setBulkData(new byte[size]);
+        putFile.setCorrelationID(correlationID);
+        return putFile;
+    }
+
+    private static PutFileResponse response(RPCRequest request, boolean success) {
+        PutFileResponse response = new PutFileResponse();
+        response.setCorrelationID(request.getCorrelationID());
+        response.setSuccess(success);
+        response.setResultCode(success ? Result.SUCCESS : Result.GENERIC_ERROR);
+        return response;
+    }
+
+    @Test
+    public void chunksAreSentOneAfterTheOther() throws InterruptedException {
+        this.scheduler.enqueue(putFile("large", 80 * 1024, 1));
+
+        PutFile chunk = (PutFile) this.transport.poll(WAIT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(chunk);
+        assertEquals(Long.valueOf(0), chunk.getOffset());
+        // the next chunk waits for the response
+        assertNull(this.transport.poll(50, TimeUnit.MILLISECONDS));
+
+        assertNull(this.scheduler.filterPutFileResponse(response(chunk, true)));
+        chunk = (PutFile) this.transport.poll(WAIT_MS, TimeUnit.MILLISECONDS);
+        assertNull(this.scheduler.filterPutFileResponse(response(chunk, true)));
+        chunk = (PutFile) this.transport.poll(WAIT_MS, TimeUnit.MILLISECONDS);
+
+        // the last chunk carries the correlation ID of the upload
+        assertEquals(Integer.valueOf(1), chunk.getCorrelationID());
+        PutFileResponse last = response(chunk, true);
+        assertSame(last, this.scheduler.filterPutFileResponse(last));
+        assertEquals(3, this.scheduler.getChunksSent());
+    }
+
+    @Test
+    public void uploadsFailWhenAChunkIsNotAnswered() throws InterruptedException {
+        this.scheduler.setChunkTimeout(50);
+        this.scheduler.enqueue(putFile("large", 80 * 1024, 1));
+        PutFile chunk = (PutFile) this.transport.poll(WAIT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(chunk);
+
+        // the upload is failed back with the correlation ID of the original request
+        PutFileResponse failure = this.failures.poll(WAIT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(failure);
+        assertEquals(Integer.valueOf(1), failure.getCorrelationID());
+        assertEquals(Result.TIMED_OUT, failure.getResultCode());
+        assertEquals(1, this.scheduler.getChunkTimeouts());
+
+        // a late response of the chunk doesn't continue the upload
+        PutFileResponse late = response(chunk, true);
+        assertSame(late, this.scheduler.filterPutFileResponse(late));
+
+        // other uploads go on
+        this.scheduler.enqueue(putFile("small", 1024, 2));
+        RPCRequest next = this.transport.poll(WAIT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(next);
+        assertEquals(Integer.valueOf(2), next.getCorrelationID());
+        assertNull(this.transport.poll(50, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,125 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.HMIPermissions;
+import com.smartdevicelink.proxy.rpc.OnPermissionsChange;
+import com.smartdevicelink.proxy.rpc.PermissionItem;
+import com.smartdevicelink.proxy.rpc.Show;
+import com.smartdevicelink.proxy.rpc.ShowResponse;
+import com.smartdevicelink.proxy.rpc.enums.HMILevel;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Holds back requests of a session at HMI levels the permissions of the simulated head unit don't allow.
+public class PermissionManagerTest {
+    private HeadUnitSimulator headUnit;
+    private PermissionManager permissionManager;
+
+    // the session sends the requests the permission manager lets through
+    private final RequestSender session = new RequestSender() {
+        @Override
+        public int nextCorrelationID() {
+            return headUnit.nextCorrelationID();
+        }
+
+        @Override
+        public void sendRequest(RPCRequest request) {
+            if (request.getCorrelationID() == null) {
+                request.setCorrelationID(this.nextCorrelationID());
+            }
+            if (permissionManager.check(request)) {
+                headUnit.sendRequest(request);
+            }
+        }
+
+        @Override
+        public void sendRequests(List<RPCRequest> requests, boolean sequential) {
+            for (RPCRequest request : requests) {
+                this.sendRequest(request);
+            }
+        }
+    };
+
+    @Before
+    public void setUp() {
+        this.headUnit = new HeadUnitSimulator();
+        this.permissionManager = new PermissionManager(this.session, this.headUnit.getRouter());
+        this.headUnit.getRouter().addCompletionHandler(new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                permissionManager.onResponse(response);
+            }
+        });
+
+        // Show is allowed in FULL only
+        HMIPermissions permissions = new HMIPermissions();
+        permissions.setAllowed(Collections.singletonList(HMILevel.HMI_FULL));
+        permissions.setUserDisallowed(Collections.<HMILevel>emptyList());
+        PermissionItem item = new PermissionItem();
+        item.setRpcName("Show");
+        item.setHMIPermissions(permissions);
+        OnPermissionsChange notification = new OnPermissionsChange();
+        notification.setPermissionItem(Collections.singletonList(item));
+        this.permissionManager.onPermissionsChange(notification);
+        this.permissionManager.setHmiLevel(HMILevel.HMI_NONE);
+    }
+
+    @Test
+    public void heldRequestsGoOutWhenTheLevelAllowsThem() {
+        this.session.sendRequest(new Show());
+        assertEquals(0, this.headUnit.getPending());
+        assertEquals(1, this.permissionManager.getHeld());
+
+        this.permissionManager.setHmiLevel(HMILevel.HMI_FULL);
+        assertEquals(1, this.headUnit.getPending());
+        assertEquals(1, this.permissionManager.getReleased());
+
+        this.session.sendRequest(new Show());
+        assertEquals(2, this.headUnit.getPending());
+    }
+
+    @Test
+    public void droppedRequestsReleaseTheirHandlers() {
+        final List<RPCResponse> responses = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Show show = new Show();
+            show.setCorrelationID(this.session.nextCorrelationID());
+            this.headUnit.getRouter().expect(show.getCorrelationID(), new ResponseRouter.Handler() {
+                @Override
+                public void onResponse(RPCResponse response) {
+                    responses.add(response);
+                }
+            });
+            this.session.sendRequest(show);
+        }
+
+        // the oldest requests are dropped and answered in the order they were held back
+        int dropped = this.permissionManager.getDropped();
+        assertTrue(dropped > 0);
+        assertEquals(40 - dropped, this.permissionManager.getHeld());
+        assertEquals(dropped, responses.size());
+        for (int i = 0; i < dropped; i++) {
+            RPCResponse response = responses.get(i);
+            assertTrue(response instanceof ShowResponse);
+            assertEquals(Integer.valueOf(i + 1), response.getCorrelationID());
+            assertEquals(Result.DISALLOWED, response.getResultCode());
+        }
+        assertEquals(0, this.permissionManager.getDisallowedResponses());
+
+        // the others get their responses from the head unit
+        this.permissionManager.setHmiLevel(HMILevel.HMI_FULL);
+        this.headUnit.respond();
+        assertEquals(40, responses.size());
+        assertEquals(0, this.headUnit.getRouter().getExpectedPending());
+    }
+}
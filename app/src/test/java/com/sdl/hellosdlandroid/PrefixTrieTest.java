@@ -0,0 +1,82 @@
+package com.sdl.hellosdlandroid;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// Completes the entries of a search keyboard from the terms of a trie.
+public class PrefixTrieTest {
+
+    private static PrefixTrie terms() {
+        PrefixTrie terms = new PrefixTrie();
+        terms.put("Hello SDL", 3);
+        terms.put("Help", 5);
+        terms.put("Helsinki", 5);
+        terms.put("Hamburg", 1);
+        terms.put("Radio", 2);
+        return terms;
+    }
+
+    @Test
+    public void theHeaviestTermCompletesThePrefix() {
+        PrefixTrie terms = terms();
+        assertEquals(5, terms.size());
+        // terms of the same weight in alphabetical order
+        assertEquals("Help", terms.complete(""));
+        assertEquals("Help", terms.complete("hel"));
+        assertEquals("Hello SDL", terms.complete("HELLO"));
+        assertEquals("Radio", terms.complete("r"));
+        assertNull(terms.complete("x"));
+        assertNull(terms.complete("Hello SDL!"));
+
+        // a chosen term ranks higher
+        terms.addWeight("Hello SDL", 3);
+        assertEquals("Hello SDL", terms.complete("h"));
+        terms.addWeight("Hanover", 1);
+        assertEquals(6, terms.size());
+    }
+
+    @Test
+    public void matchesAreHeaviestFirst() {
+        PrefixTrie terms = terms();
+        assertEquals(Arrays.asList("Help", "Helsinki", "Hello SDL", "Hamburg"), terms.matches("h", 10));
+        assertEquals(Arrays.asList("Help", "Helsinki"), terms.matches("H", 2));
+        assertEquals(Collections.singletonList("Radio"), terms.matches("radio", 10));
+        assertEquals(Collections.<String>emptyList(), terms.matches("x", 10));
+
+        // the weight of a term is replaced
+        terms.put("Hamburg", 10);
+        assertEquals("Hamburg", terms.matches("h", 1).get(0));
+    }
+
+    @Test
+    public void theNextPrefixFollowsTheHeaviestTerm() {
+        PrefixTrie terms = terms();
+        assertEquals("he", terms.nextPrefix("H"));
+        assertEquals("hello ", terms.nextPrefix("hello"));
+        assertEquals(Arrays.asList("Help", "Helsinki", "Hello SDL"), terms.matches(terms.nextPrefix("h"), 10));
+        // nothing after a whole term or unknown prefixes
+        assertNull(terms.nextPrefix("radio"));
+        assertNull(terms.nextPrefix("x"));
+    }
+
+    @Test
+    public void theNextPrefixCountsTheLowercaseCharacters() {
+        // the dotted capital I is two characters in lowercase, an i and a dot above
+        PrefixTrie terms = new PrefixTrie();
+        terms.put("\u0130stanbul", 5);
+        terms.put("\u0130stiklal", 1);
+        terms.put("Izmir", 1);
+        assertEquals("\u0130stanbul", terms.complete("i\u0307"));
+
+        assertEquals("i\u0307", terms.nextPrefix("i"));
+        assertEquals("i\u0307st", terms.nextPrefix("i\u0307s"));
+        // both terms are prefetched, not only those starting with the first four characters of the term
+        assertEquals(Arrays.asList("\u0130stanbul", "\u0130stiklal"),
+                terms.matches(terms.nextPrefix("i\u0307s"), 10));
+    }
+}
@@ -0,0 +1,204 @@
+package com.sdl.hellosdlandroid;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Compares the index with the LinkedHashMap of RemoteFile objects the file manager kept for every name of
+// the head unit before, at the sizes of head units with many apps.
+public class RemoteFileIndexTest {
+    private static final int[] NAME_COUNTS = { 10000, 50000 };
+    private static final int COPIES = 10;
+    private static final int LOOKUP_ROUNDS = 20;
+    private static final int BENCHMARK_ROUNDS = 10;
+
+    // the entry of the old map
+    private static class RemoteFile {
+        final String name;
+        final int size;
+        final boolean persistent;
+
+        RemoteFile(String name, int size, boolean persistent) {
+            this.name = name;
+            this.size = size;
+            this.persistent = persistent;
+        }
+    }
+
+    // the names of the files of 40 apps
+    private static String[] names(String prefix, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = prefix + (i % 40) + "_artwork_" + i + ".png";
+        }
+        return names;
+    }
+
+    private static RemoteFileIndex index(String[] names) {
+        RemoteFileIndex index = new RemoteFileIndex();
+        index.ensureCapacity(names.length);
+        for (String name : names) {
+            index.add(name);
+        }
+        return index;
+    }
+
+    private static LinkedHashMap<String, RemoteFile> map(String[] names) {
+        LinkedHashMap<String, RemoteFile> map = new LinkedHashMap<>(16, 0.75f, true);
+        for (String name : names) {
+            map.put(name, new RemoteFile(name, -1, true));
+        }
+        return map;
+    }
+
+    private static long usedBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void indexMatchesAHashSet() {
+        RemoteFileIndex index = new RemoteFileIndex();
+        HashSet<String> reference = new HashSet<>();
+        Random random = new Random(42);
+
+        // enough adds and removes to grow the table and to rebuild the filter several times
+        for (int i = 0; i < 200000; i++) {
+            String name = "file" + random.nextInt(5000);
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(reference.add(name), index.add(name));
+                    break;
+                case 1:
+                    assertEquals(reference.remove(name), index.remove(name));
+                    break;
+                default:
+                    assertEquals(name, reference.contains(name), index.contains(name));
+                    break;
+            }
+            assertEquals(reference.size(), index.size());
+        }
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertTrue(!index.contains("file1"));
+    }
+
+    @Test
+    public void memoryOfManyNames() {
+        for (int count : NAME_COUNTS) {
+            String[] names = names("app", count);
+
+            // several copies so the measurement isn't lost in the noise of the heap. the names are shared.
+            Object[] maps = new Object[COPIES];
+            long startBytes = usedBytes();
+            for (int i = 0; i < COPIES; i++) {
+                maps[i] = map(names);
+            }
+            long mapBytes = (usedBytes() - startBytes) / COPIES;
+
+            RemoteFileIndex[] indexes = new RemoteFileIndex[COPIES];
+            startBytes = usedBytes();
+            for (int i = 0; i < COPIES; i++) {
+                indexes[i] = index(names);
+            }
+            long indexBytes = (usedBytes() - startBytes) / COPIES;
+            long reportedBytes = indexes[0].getMemoryBytes();
+
+            System.out.println(String.format("remote file index: %d names in %d KB (reported %d KB), "
+                    + "map of remote files %d KB", count, indexBytes / 1024, reportedBytes / 1024, mapBytes / 1024));
+
+            assertEquals(COPIES, maps.length);
+            assertTrue(indexBytes + " bytes index, " + mapBytes + " bytes map", indexBytes * 2 < mapBytes);
+            // the references may be compressed on the heap, the report assumes they aren't
+            assertTrue(indexBytes + " bytes measured, " + reportedBytes + " bytes reported",
+                    indexBytes < reportedBytes * 1.1 && indexBytes > reportedBytes / 2);
+        }
+    }
+
+    @Test
+    public void lookupsOfManyNames() {
+        // compiles the lookups of both before anything is measured
+        this.benchmarkLookups(NAME_COUNTS[0], false);
+        for (int count : NAME_COUNTS) {
+            this.benchmarkLookups(count, true);
+        }
+    }
+
+    private void benchmarkLookups(int count, boolean measured) {
+        String[] names = names("app", count);
+        // other string instances as the names of a new ListFiles response would be
+        String[] hits = new String[count];
+        for (int i = 0; i < count; i++) {
+            hits[i] = new String(names[i]);
+        }
+        // the names of this app on a head unit which doesn't have them yet
+        String[] misses = names("hello_sdl_", count);
+
+        RemoteFileIndex index = index(names);
+        LinkedHashMap<String, RemoteFile> map = map(names);
+
+        long bestMapHitNs = Long.MAX_VALUE;
+        long bestIndexHitNs = Long.MAX_VALUE;
+        long bestMapMissNs = Long.MAX_VALUE;
+        long bestIndexMissNs = Long.MAX_VALUE;
+        int found = 0;
+        for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+            long startNs = System.nanoTime();
+            for (int i = 0; i < LOOKUP_ROUNDS; i++) {
+                for (String name : hits) {
+                    found += map.get(name) != null ? 1 : 0;
+                }
+            }
+            bestMapHitNs = Math.min(bestMapHitNs, System.nanoTime() - startNs);
+
+            startNs = System.nanoTime();
+            for (int i = 0; i < LOOKUP_ROUNDS; i++) {
+                for (String name : hits) {
+                    found += index.contains(name) ? 1 : 0;
+                }
+            }
+            bestIndexHitNs = Math.min(bestIndexHitNs, System.nanoTime() - startNs);
+
+            startNs = System.nanoTime();
+            for (int i = 0; i < LOOKUP_ROUNDS; i++) {
+                for (String name : misses) {
+                    found += map.get(name) != null ? 1 : 0;
+                }
+            }
+            bestMapMissNs = Math.min(bestMapMissNs, System.nanoTime() - startNs);
+
+            startNs = System.nanoTime();
+            for (int i = 0; i < LOOKUP_ROUNDS; i++) {
+                for (String name : misses) {
+                    found += index.contains(name) ? 1 : 0;
+                }
+            }
+            bestIndexMissNs = Math.min(bestIndexMissNs, System.nanoTime() - startNs);
+        }
+
+        if (!measured) {
+            return;
+        }
+        double lookups = (double) count * LOOKUP_ROUNDS;
+        double falsePositives = index.getFalsePositives() / (lookups * BENCHMARK_ROUNDS);
+        System.out.println(String.format("remote file index: %d names, hit %.1f ns (map %.1f ns), "
+                        + "miss %.1f ns (map %.1f ns), %.2f%% false positives", count, bestIndexHitNs / lookups,
+                bestMapHitNs / lookups, bestIndexMissNs / lookups, bestMapMissNs / lookups, falsePositives * 100));
+
+        assertEquals(2L * count * LOOKUP_ROUNDS * BENCHMARK_ROUNDS, found);
+        // the filter answers almost every miss
+        assertTrue(falsePositives + " false positives", falsePositives < 0.01);
+        // a miss costs two probes of the filter instead of a walk of the table
+        assertTrue(bestIndexMissNs + " ns index, " + bestMapMissNs + " ns map", bestIndexMissNs < bestMapMissNs);
+        assertTrue(bestIndexHitNs + " ns index, " + bestMapHitNs + " ns map", bestIndexHitNs < bestMapHitNs * 1.5);
+    }
+}
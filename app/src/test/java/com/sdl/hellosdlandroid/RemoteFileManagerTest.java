@@ -0,0 +1,262 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.DeleteFile;
+import com.smartdevicelink.proxy.rpc.DeleteFileResponse;
+import com.smartdevicelink.proxy.rpc.ListFiles;
+import com.smartdevicelink.proxy.rpc.ListFilesResponse;
+import com.smartdevicelink.proxy.rpc.PutFile;
+import com.smartdevicelink.proxy.rpc.PutFileResponse;
+import com.smartdevicelink.proxy.rpc.SetAppIcon;
+import com.smartdevicelink.proxy.rpc.SetAppIconResponse;
+import com.smartdevicelink.proxy.rpc.enums.FileType;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Uploads and evicts files on a simulated head unit with a limited storage for the app.
+public class RemoteFileManagerTest {
+    private static final int CAPACITY = 1000;
+
+    // the storage of the head unit. uploads and deletes can get lost on the way.
+    private static class Storage implements HeadUnitSimulator.Responder {
+        final LinkedHashMap<String, Integer> files = new LinkedHashMap<>();
+        int space = CAPACITY;
+        int putFilesToLose;
+        int deletesToLose;
+
+        @Override
+        public boolean respond(RPCRequest request, RPCResponse response) {
+            if (request instanceof ListFiles) {
+                ((ListFilesResponse) response).setFilenames(new ArrayList<>(this.files.keySet()));
+                ((ListFilesResponse) response).setSpaceAvailable(this.space);
+            } else if (request instanceof PutFile) {
+                if (this.putFilesToLose > 0) {
+                    this.putFilesToLose--;
+                    return false;
+                }
+                PutFile putFile = (PutFile) request;
+                int size = putFile.getBulkData().length;
+                if (size > this.space) {
+                    response.setSuccess(Boolean.FALSE);
+                    response.setResultCode(Result.OUT_OF_MEMORY);
+                } else {
+                    this.files.put(putFile.getSdlFileName(), size);
+                    this.space -= size;
+                }
+                ((PutFileResponse) response).setSpaceAvailable(this.space);
+            } else if (request instanceof DeleteFile) {
+                if (this.deletesToLose > 0) {
+                    this.deletesToLose--;
+                    return false;
+                }
+                Integer size = this.files.remove(((DeleteFile) request).getSdlFileName());
+                this.space += size != null ? size : 0;
+                ((DeleteFileResponse) response).setSpaceAvailable(this.space);
+            }
+            return true;
+        }
+    }
+
+    private HeadUnitSimulator headUnit;
+    private Storage storage;
+    private RemoteFileManager manager;
+
+    @Before
+    public void setUp() {
+        this.headUnit = new HeadUnitSimulator();
+        this.storage = new Storage();
+        this.headUnit.setResponder(this.storage);
+        this.manager = new RemoteFileManager(this.headUnit, this.headUnit.getRouter());
+
+        ResponseRouter router = this.headUnit.getRouter();
+        router.setHandler(FunctionID.LIST_FILES, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                manager.onListFilesResponse((ListFilesResponse) response);
+            }
+        });
+        router.setHandler(FunctionID.PUT_FILE, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                manager.onPutFileResponse((PutFileResponse) response);
+            }
+        });
+        router.setHandler(FunctionID.DELETE_FILE, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                manager.onDeleteFileResponse((DeleteFileResponse) response);
+            }
+        });
+    }
+
+    private void listFiles() {
+        this.headUnit.sendRequest(new ListFiles());
+        this.headUnit.respondNext();
+    }
+
+    private static PutFile putFile(String name, int size) {
+        PutFile putFile = new PutFile();
+        putFile.setSdlFileName(name);
+        putFile.setFileType(FileType.GRAPHIC_PNG);
+        putFile.setPersistentFile(false);
+        putFile.setBulkData(new byte[size]);
+        return putFile;
+    }
+
+    private List<String> sent(Class<? extends RPCRequest> type) {
+        List<String> names = new ArrayList<>();
+        for (RPCRequest request : this.headUnit.sent) {
+            if (type.isInstance(request)) {
+                names.add(request instanceof PutFile ? ((PutFile) request).getSdlFileName()
+                        : request instanceof DeleteFile ? ((DeleteFile) request).getSdlFileName()
+                        : request.getFunctionName());
+            }
+        }
+        return names;
+    }
+
+    @Test
+    public void uploadsWaitForTheListAndRunInParallel() {
+        for (int i = 0; i < 5; i++) {
+            this.manager.upload(putFile("file" + i, 10), null);
+        }
+        assertEquals(0, this.headUnit.getPending());
+
+        this.storage.files.put("earlier", 100);
+        this.storage.space -= 100;
+        this.listFiles();
+        assertTrue(this.manager.contains("earlier"));
+        assertEquals(3, this.sent(PutFile.class).size());
+
+        this.headUnit.respond();
+        assertEquals(5, this.manager.getUploads());
+        assertEquals(Integer.valueOf(CAPACITY - 150), this.manager.getSpaceAvailable());
+        assertTrue(this.manager.contains("file4"));
+    }
+
+    @Test
+    public void followUpsAreSentAfterTheUpload() {
+        this.listFiles();
+        this.headUnit.sent.clear();
+
+        SetAppIcon setAppIcon = new SetAppIcon();
+        setAppIcon.setSdlFileName("icon");
+        this.manager.upload(putFile("icon", 10), Collections.<RPCRequest>singletonList(setAppIcon));
+        assertEquals(1, this.headUnit.getPending());
+
+        this.headUnit.respondNext();
+        assertEquals(2, this.headUnit.sent.size());
+        assertTrue(this.headUnit.sent.get(0) instanceof PutFile);
+        assertTrue(this.headUnit.sent.get(1) instanceof SetAppIcon);
+    }
+
+    @Test
+    public void leastRecentlyUsedFilesAreEvicted() {
+        this.listFiles();
+        this.manager.upload(putFile("a", 300), null);
+        this.manager.upload(putFile("b", 300), null);
+        this.manager.upload(putFile("c", 300), null);
+        this.headUnit.respond();
+        assertTrue(this.manager.contains("a"));
+
+        this.manager.upload(putFile("d", 300), null);
+        assertEquals(Collections.singletonList("b"), this.sent(DeleteFile.class));
+        assertFalse(this.sent(PutFile.class).contains("d"));
+
+        this.headUnit.respond();
+        assertFalse(this.manager.contains("b"));
+        assertTrue(this.manager.contains("d"));
+        assertEquals(1, this.manager.getEvictions());
+        assertEquals(4, this.manager.getUploads());
+    }
+
+    @Test
+    public void uploadsContinueAfterALostDelete() throws InterruptedException {
+        this.manager.setResponseTimeout(50);
+        this.listFiles();
+        this.manager.upload(putFile("a", 300), null);
+        this.manager.upload(putFile("b", 300), null);
+        this.manager.upload(putFile("c", 300), null);
+        this.headUnit.respond();
+
+        this.storage.deletesToLose = 1;
+        this.manager.upload(putFile("d", 300), null);
+        this.headUnit.respond();
+        assertTrue(this.manager.isBusy());
+
+        // the upload waits for the delete until the timeout
+        this.manager.checkTimeouts();
+        assertFalse(this.sent(PutFile.class).contains("d"));
+
+        Thread.sleep(60);
+        this.manager.checkTimeouts();
+        this.headUnit.respond();
+
+        assertEquals(1, this.manager.getFailedDeletes());
+        assertEquals(1, this.manager.getEvictions());
+        assertEquals(4, this.manager.getUploads());
+        assertTrue(this.manager.contains("d"));
+        // the file of the lost delete is kept and the next one is evicted
+        assertEquals(Arrays.asList("a", "b"), this.sent(DeleteFile.class));
+        assertTrue(this.manager.contains("a"));
+        assertFalse(this.manager.isBusy());
+    }
+
+    @Test
+    public void lostUploadsFreeTheirSlotsAndFailTheFollowUps() throws InterruptedException {
+        final List<RPCResponse> followUpResponses = new ArrayList<>();
+        this.headUnit.getRouter().setHandler(FunctionID.SET_APP_ICON, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                followUpResponses.add(response);
+            }
+        });
+        this.manager.setResponseTimeout(50);
+        this.listFiles();
+
+        // all upload slots wait for responses which never arrive
+        this.storage.putFilesToLose = 3;
+        for (int i = 0; i < 3; i++) {
+            SetAppIcon setAppIcon = new SetAppIcon();
+            setAppIcon.setSdlFileName("icon" + i);
+            this.manager.upload(putFile("icon" + i, 300), Collections.<RPCRequest>singletonList(setAppIcon));
+        }
+        this.manager.upload(putFile("d", 300), null);
+        this.headUnit.respond();
+        assertFalse(this.sent(PutFile.class).contains("d"));
+        assertTrue(this.manager.isBusy());
+
+        Thread.sleep(60);
+        this.manager.checkTimeouts();
+        assertEquals(3, this.manager.getTimedOutUploads());
+        assertEquals(3, this.manager.getFailedUploads());
+        // the follow ups are never sent and their handlers learn about it
+        assertTrue(this.sent(SetAppIcon.class).isEmpty());
+        assertEquals(3, followUpResponses.size());
+        for (RPCResponse response : followUpResponses) {
+            assertTrue(response instanceof SetAppIconResponse);
+            assertEquals(Result.ABORTED, response.getResultCode());
+        }
+
+        // the slots and the reserved space are free again
+        this.headUnit.respond();
+        assertTrue(this.manager.contains("d"));
+        assertEquals(1, this.manager.getUploads());
+        assertEquals(0, this.manager.getEvictions());
+        assertFalse(this.manager.isBusy());
+    }
+}
@@ -0,0 +1,247 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.interfaces.IProxyListenerALM;
+import com.smartdevicelink.proxy.rpc.PutFileResponse;
+import com.smartdevicelink.proxy.rpc.SetAppIconResponse;
+import com.smartdevicelink.proxy.rpc.ShowResponse;
+import com.smartdevicelink.proxy.rpc.SpeakResponse;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResponseRouterTest {
+    private static final int BENCHMARK_RESPONSES = 2000000;
+    private static final int BENCHMARK_ROUNDS = 5;
+
+    private static class Counter implements ResponseRouter.Handler {
+        int responses;
+
+        @Override
+        public void onResponse(RPCResponse response) {
+            this.responses++;
+        }
+    }
+
+    private static <T extends RPCResponse> T response(T response, int correlationID) {
+        response.setCorrelationID(correlationID);
+        response.setSuccess(true);
+        return response;
+    }
+
+    @Test
+    public void responsesPassTheHandlersInOrder() {
+        final List<String> calls = new ArrayList<>();
+        ResponseRouter router = new ResponseRouter();
+        router.addObserver(new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                calls.add("observer " + response.getFunctionName());
+            }
+        });
+        router.setHandler(FunctionID.SHOW, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                calls.add("handler");
+            }
+        });
+        router.expect(7, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                calls.add("expected");
+            }
+        });
+        router.addCompletionHandler(new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                calls.add("completion " + response.getCorrelationID());
+            }
+        });
+        IProxyListenerALM listener = new RoutingProxyListener(router);
+
+        listener.onShowResponse(response(new ShowResponse(), 7));
+        listener.onShowResponse(response(new ShowResponse(), 7));
+        listener.onSetAppIconResponse(response(new SetAppIconResponse(), 8));
+
+        assertEquals(Arrays.asList("observer Show", "handler", "expected", "completion 7",
+                "observer Show", "handler", "completion 7",
+                "observer SetAppIcon", "completion 8"), calls);
+        assertEquals(1, router.getExpectedHandled());
+        assertEquals(0, router.getExpectedPending());
+    }
+
+    @Test
+    public void filteredResponsesAreDropped() {
+        ResponseRouter router = new ResponseRouter();
+        Counter completions = new Counter();
+        router.setFilter(FunctionID.PUT_FILE, new ResponseRouter.Filter() {
+            @Override
+            public RPCResponse filter(RPCResponse response) {
+                return response.getCorrelationID() > 100 ? null : response;
+            }
+        });
+        router.addCompletionHandler(completions);
+        IProxyListenerALM listener = new RoutingProxyListener(router);
+
+        listener.onPutFileResponse(response(new PutFileResponse(), 101));
+        listener.onPutFileResponse(response(new PutFileResponse(), 5));
+
+        assertEquals(1, completions.responses);
+        assertEquals(1, router.getFiltered());
+        assertEquals(1, router.getDispatched());
+    }
+
+    @Test
+    public void expectedHandlersMatchAMap() {
+        ResponseRouter router = new ResponseRouter();
+        HashMap<Integer, Counter> reference = new HashMap<>();
+        Random random = new Random(42);
+        ShowResponse response = new ShowResponse();
+
+        // sequential and random IDs, more than fit into the initial table
+        for (int i = 0; i < 20000; i++) {
+            int correlationID = random.nextBoolean() ? random.nextInt(300) : random.nextInt();
+            boolean expect = random.nextInt(3) == 0;
+            if (expect && reference.containsKey(correlationID)) {
+                // a second handler for the same ID is refused
+                try {
+                    router.expect(correlationID, new Counter());
+                    fail("expected twice: " + correlationID);
+                } catch (IllegalStateException e) {
+                    // the first handler stays and gets the response
+                }
+            } else if (expect) {
+                Counter counter = new Counter();
+                router.expect(correlationID, counter);
+                reference.put(correlationID, counter);
+            } else {
+                router.dispatch(response(response, correlationID));
+                Counter counter = reference.remove(correlationID);
+                if (counter != null) {
+                    assertEquals(1, counter.responses);
+                }
+            }
+            assertEquals(reference.size(), router.getExpectedPending());
+        }
+
+        for (Integer correlationID : new ArrayList<>(reference.keySet())) {
+            router.dispatch(response(response, correlationID));
+            assertEquals(1, reference.remove(correlationID).responses);
+        }
+        assertEquals(0, router.getExpectedPending());
+    }
+
+    // the per-type listener overrides of the session before the router. every response went through
+    // handleSequentialRequestsForResponse() which looked up a waiting request by the boxed correlation ID.
+    private static class PerTypeListener extends RoutingProxyListener {
+        final HashMap<Integer, RPCRequest> pendingSequentialRequests = new HashMap<>();
+        final Counter screen = new Counter();
+        final Counter pool = new Counter();
+        final Counter permissions = new Counter();
+        final Counter logged = new Counter();
+
+        PerTypeListener() {
+            super(null);
+        }
+
+        @Override
+        public void onShowResponse(ShowResponse response) {
+            this.screen.onResponse(response);
+            this.handleSequentialRequestsForResponse(response);
+        }
+
+        @Override
+        public void onSpeakResponse(SpeakResponse response) {
+            this.handleSequentialRequestsForResponse(response);
+        }
+
+        private void handleSequentialRequestsForResponse(RPCResponse response) {
+            if (response != null) {
+                this.logged.onResponse(response);
+                Integer correlationID = response.getCorrelationID();
+                RPCRequest request = this.pendingSequentialRequests.get(correlationID);
+                if (request != null) {
+                    this.pendingSequentialRequests.remove(correlationID);
+                }
+                this.pool.onResponse(response);
+                this.permissions.onResponse(response);
+            }
+        }
+    }
+
+    // the best time of the rounds in ns per response
+    private static double[] measure(IProxyListenerALM routed, IProxyListenerALM perType) {
+        ShowResponse show = response(new ShowResponse(), 7);
+        SpeakResponse speak = response(new SpeakResponse(), 8);
+
+        long bestRoutedNs = Long.MAX_VALUE;
+        long bestPerTypeNs = Long.MAX_VALUE;
+        for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+            long startNs = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_RESPONSES / 2; i++) {
+                perType.onShowResponse(show);
+                perType.onSpeakResponse(speak);
+            }
+            bestPerTypeNs = Math.min(bestPerTypeNs, System.nanoTime() - startNs);
+
+            startNs = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_RESPONSES / 2; i++) {
+                routed.onShowResponse(show);
+                routed.onSpeakResponse(speak);
+            }
+            bestRoutedNs = Math.min(bestRoutedNs, System.nanoTime() - startNs);
+        }
+        return new double[] { (double) bestRoutedNs / BENCHMARK_RESPONSES, (double) bestPerTypeNs / BENCHMARK_RESPONSES };
+    }
+
+    @Test
+    public void routingIsCheaperThanPerTypeListeners() {
+        // the same handlers as the session: logging, the screen, the pool and the permissions
+        ResponseRouter router = new ResponseRouter();
+        final Counter screen = new Counter();
+        final Counter pool = new Counter();
+        final Counter permissions = new Counter();
+        router.addObserver(new Counter());
+        router.setHandler(FunctionID.SHOW, screen);
+        router.addCompletionHandler(new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                pool.onResponse(response);
+                permissions.onResponse(response);
+            }
+        });
+        IProxyListenerALM routed = new RoutingProxyListener(router);
+        PerTypeListener perType = new PerTypeListener();
+
+        double[] idle = measure(routed, perType);
+
+        // a few sequential requests wait for other responses. both paths read the correlation ID now, which
+        // is a lookup in the synchronized Hashtable of the response.
+        for (int i = 1000; i < 1010; i++) {
+            router.expect(i, new Counter());
+            perType.pendingSequentialRequests.put(i, null);
+        }
+        double[] waiting = measure(routed, perType);
+
+        System.out.println(String.format("response routing: %.1f ns per response (per-type listeners %.1f ns), "
+                + "with sequential requests waiting %.1f ns (%.1f ns)", idle[0], idle[1], waiting[0], waiting[1]));
+
+        assertEquals(perType.pool.responses, pool.responses);
+        assertEquals(perType.screen.responses, screen.responses);
+        assertEquals(10, router.getExpectedPending());
+        assertTrue(idle[0] + " ns routed, " + idle[1] + " ns per type", idle[0] < idle[1]);
+        // dominated by the lookup of the correlation ID in both paths. only guards against a regression.
+        assertTrue(waiting[0] + " ns routed, " + waiting[1] + " ns per type", waiting[0] < waiting[1] * 1.5);
+    }
+}
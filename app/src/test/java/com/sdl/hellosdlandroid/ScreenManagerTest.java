@@ -0,0 +1,157 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.protocol.enums.FunctionID;
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.rpc.SetDisplayLayout;
+import com.smartdevicelink.proxy.rpc.Show;
+import com.smartdevicelink.proxy.rpc.enums.Result;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+// Updates the template of a simulated head unit and checks which fields the Show requests carry.
+public class ScreenManagerTest {
+
+    // rejects the shows while set
+    private static class Display implements HeadUnitSimulator.Responder {
+        boolean rejectShows;
+
+        @Override
+        public boolean respond(RPCRequest request, RPCResponse response) {
+            if (request instanceof Show && this.rejectShows) {
+                response.setSuccess(Boolean.FALSE);
+                response.setResultCode(Result.REJECTED);
+            }
+            return true;
+        }
+    }
+
+    private HeadUnitSimulator headUnit;
+    private Display display;
+    private RequestPool requestPool;
+    private ScreenManager manager;
+
+    @Before
+    public void setUp() {
+        this.headUnit = new HeadUnitSimulator();
+        this.display = new Display();
+        this.headUnit.setResponder(this.display);
+        this.requestPool = new RequestPool(this.headUnit);
+        this.manager = new ScreenManager(this.headUnit, this.requestPool);
+
+        ResponseRouter router = this.headUnit.getRouter();
+        router.setHandler(FunctionID.SHOW, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                manager.onShowResponse(response);
+            }
+        });
+        router.setHandler(FunctionID.SET_DISPLAY_LAYOUT, new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                manager.onSetDisplayLayoutResponse(response);
+            }
+        });
+        router.addCompletionHandler(new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                requestPool.onResponse(response);
+            }
+        });
+    }
+
+    // commits and answers until the head unit got the whole update. the fields of the requests are read
+    // before the pooled shows are recycled with their responses.
+    private List<String> commit() {
+        this.manager.commit();
+        List<String> requests = new ArrayList<>();
+        while (!this.headUnit.sent.isEmpty()) {
+            for (RPCRequest request : this.headUnit.sent) {
+                if (request instanceof Show) {
+                    Show show = (Show) request;
+                    requests.add("show " + show.getMainField1() + ", " + show.getMainField2() + ", "
+                            + show.getMediaTrack());
+                } else if (request instanceof SetDisplayLayout) {
+                    requests.add("layout " + ((SetDisplayLayout) request).getDisplayLayout());
+                }
+            }
+            this.headUnit.sent.clear();
+            // one at a time, the show after a layout is sent with the response of the layout
+            boolean answered = true;
+            while (answered && this.headUnit.sent.isEmpty()) {
+                answered = this.headUnit.respondNext();
+            }
+        }
+        return requests;
+    }
+
+    @Test
+    public void onlyChangedFieldsAreSent() {
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_1, "Hello SDL");
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_2, "Track 1");
+        this.manager.setTextField(ScreenManager.MEDIA_TRACK, "Album");
+        assertEquals(Arrays.asList("show Hello SDL, Track 1, Album"), this.commit());
+
+        // the same text again and one new field
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_1, "Hello SDL");
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_2, "Track 2");
+        assertEquals(Arrays.asList("show null, Track 2, null"), this.commit());
+        assertEquals("Hello SDL".length(), this.manager.getBytesSaved());
+
+        // nothing changed
+        this.manager.setTextField(ScreenManager.MEDIA_TRACK, "Album");
+        assertFalse(this.manager.commit());
+        assertEquals(2, this.manager.getRpcsSent());
+        assertEquals(1, this.manager.getRpcsSaved());
+        assertEquals(0, this.requestPool.getInFlight());
+    }
+
+    @Test
+    public void rejectedFieldsAreSentAgain() {
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_1, "Hello SDL");
+        this.commit();
+
+        this.display.rejectShows = true;
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_2, "Track 1");
+        assertEquals(Arrays.asList("show null, Track 1, null"), this.commit());
+
+        // the rejected field is not on the screen, the confirmed one is
+        this.display.rejectShows = false;
+        this.manager.setTextField(ScreenManager.MEDIA_TRACK, "Album");
+        assertEquals(Arrays.asList("show null, Track 1, Album"), this.commit());
+    }
+
+    @Test
+    public void aNewLayoutShowsEverythingAgain() {
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_1, "Hello SDL");
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_2, "Track 1");
+        this.commit();
+
+        this.manager.setLayout("MEDIA");
+        assertEquals(Arrays.asList("layout MEDIA", "show Hello SDL, Track 1, null"), this.commit());
+        // the layout is sent once
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_2, "Track 2");
+        assertEquals(Arrays.asList("show null, Track 2, null"), this.commit());
+    }
+
+    @Test
+    public void distractedTextIsCompletedAfterwards() {
+        String title = "A title longer than twenty characters";
+        this.manager.setDistracted(true);
+        this.manager.setTextField(ScreenManager.MAIN_FIELD_1, title);
+        assertEquals(Arrays.asList("show " + title.substring(0, 20) + ", null, null"), this.commit());
+        assertEquals(title.length() - 20, this.manager.getBytesDeferred());
+
+        this.manager.setDistracted(false);
+        assertEquals(Arrays.asList("show " + title + ", null, null"), this.commit());
+        assertFalse(this.manager.commit());
+    }
+}
@@ -0,0 +1,215 @@
+package com.sdl.hellosdlandroid;
+
+import android.bluetooth.BluetoothClass;
+import android.content.SharedPreferences;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Decides on connecting devices of the classes a phone sees in a car and checks the statistics kept in
+// the preferences survive a new registry, like after a restart of the app.
+public class SdlDeviceRegistryTest {
+    private static final String HEAD_UNIT = "00:11:22:33:44:55";
+    private static final String OTHER_HEAD_UNIT = "00:11:22:33:44:66";
+    private static final String HEADPHONES = "00:11:22:33:44:77";
+
+    // the preferences of the app in memory
+    private static class Preferences implements SharedPreferences, SharedPreferences.Editor {
+        final HashMap<String, Object> values = new HashMap<>();
+
+        @Override
+        public Map<String, ?> getAll() {
+            return new HashMap<>(this.values);
+        }
+
+        private Object get(String key, Object defaultValue) {
+            return this.values.containsKey(key) ? this.values.get(key) : defaultValue;
+        }
+
+        @Override
+        public String getString(String key, String defaultValue) {
+            return (String) this.get(key, defaultValue);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Set<String> getStringSet(String key, Set<String> defaultValues) {
+            return (Set<String>) this.get(key, defaultValues);
+        }
+
+        @Override
+        public int getInt(String key, int defaultValue) {
+            return (Integer) this.get(key, defaultValue);
+        }
+
+        @Override
+        public long getLong(String key, long defaultValue) {
+            return (Long) this.get(key, defaultValue);
+        }
+
+        @Override
+        public float getFloat(String key, float defaultValue) {
+            return (Float) this.get(key, defaultValue);
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defaultValue) {
+            return (Boolean) this.get(key, defaultValue);
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return this.values.containsKey(key);
+        }
+
+        // the changes are applied right away
+        @Override
+        public Editor edit() {
+            return this;
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        private Editor put(String key, Object value) {
+            this.values.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            return this.put(key, value);
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            return this.put(key, values);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return this.put(key, value);
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            return this.put(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return this.put(key, value);
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return this.put(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            this.values.remove(key);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            this.values.clear();
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return true;
+        }
+
+        @Override
+        public void apply() {
+        }
+    }
+
+    private Preferences preferences;
+    private SdlDeviceRegistry registry;
+
+    @Before
+    public void setUp() {
+        this.preferences = new Preferences();
+        this.registry = new SdlDeviceRegistry(this.preferences);
+    }
+
+    private SdlDeviceRegistry.Decision connect(String address, int deviceClass) {
+        return this.registry.onDeviceConnected(address, deviceClass & 0x1f00, deviceClass);
+    }
+
+    @Test
+    public void devicesAreStartedProbedOrSkippedByClass() {
+        assertEquals(SdlDeviceRegistry.Decision.PROBE,
+                this.connect(HEAD_UNIT, BluetoothClass.Device.AUDIO_VIDEO_CAR_AUDIO));
+        assertEquals(SdlDeviceRegistry.Decision.PROBE,
+                this.connect(OTHER_HEAD_UNIT, BluetoothClass.Device.AUDIO_VIDEO_HANDSFREE));
+        assertEquals(SdlDeviceRegistry.Decision.SKIP,
+                this.connect(HEADPHONES, BluetoothClass.Device.AUDIO_VIDEO_HEADPHONES));
+        assertEquals(SdlDeviceRegistry.Decision.SKIP,
+                this.connect(HEADPHONES, BluetoothClass.Device.Major.WEARABLE));
+        // no class or no device information at all
+        assertEquals(SdlDeviceRegistry.Decision.PROBE, this.registry.onDeviceConnected(HEAD_UNIT,
+                SdlDeviceRegistry.NO_DEVICE_CLASS, SdlDeviceRegistry.NO_DEVICE_CLASS));
+        assertEquals(SdlDeviceRegistry.Decision.START, this.registry.onDeviceConnected(null,
+                SdlDeviceRegistry.NO_DEVICE_CLASS, SdlDeviceRegistry.NO_DEVICE_CLASS));
+
+        assertEquals(1, this.registry.getStarts());
+        assertEquals(3, this.registry.getProbes());
+        assertEquals(2, this.registry.getSkipped());
+    }
+
+    @Test
+    public void registeredDevicesAreStartedAfterARestart() {
+        this.connect(HEAD_UNIT, BluetoothClass.Device.AUDIO_VIDEO_CAR_AUDIO);
+        this.registry.onDeviceRegistered(HEAD_UNIT);
+        this.connect(OTHER_HEAD_UNIT, BluetoothClass.Device.AUDIO_VIDEO_CAR_AUDIO);
+        this.registry.onStartWasted();
+
+        this.registry = new SdlDeviceRegistry(this.preferences);
+        assertTrue(this.registry.isKnownDevice(HEAD_UNIT));
+        assertFalse(this.registry.isKnownDevice(OTHER_HEAD_UNIT));
+        // known head units start even with a class which would be skipped
+        assertEquals(SdlDeviceRegistry.Decision.START,
+                this.connect(HEAD_UNIT, BluetoothClass.Device.AUDIO_VIDEO_HEADPHONES));
+        assertEquals(SdlDeviceRegistry.Decision.PROBE,
+                this.connect(OTHER_HEAD_UNIT, BluetoothClass.Device.AUDIO_VIDEO_CAR_AUDIO));
+
+        assertEquals(1, this.registry.getStarts());
+        assertEquals(3, this.registry.getProbes());
+        assertEquals(1, this.registry.getWasted());
+        assertEquals("1 known devices, 1 starts, 3 probes, 0 skipped, 1 wasted", this.registry.getStatistics());
+    }
+
+    @Test
+    public void theOldestDeviceIsForgotten() {
+        // 16 devices registered one after the other
+        for (int i = 0; i < 16; i++) {
+            this.preferences.values.put("device:device " + i, 1000L + i);
+        }
+        this.registry = new SdlDeviceRegistry(this.preferences);
+        this.registry.onDeviceRegistered("device 16");
+
+        assertFalse(this.registry.isKnownDevice("device 0"));
+        assertFalse(this.preferences.contains("device:device 0"));
+        assertTrue(this.registry.isKnownDevice("device 1"));
+        assertTrue(this.registry.isKnownDevice("device 16"));
+        assertTrue(this.preferences.contains("device:device 16"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.sdl.hellosdlandroid;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Runs the tasks of a session on a worker pool which is shut down while tasks are queued.
+public class SessionEventLoopTest {
+
+    @Test
+    public void tasksQueuedAtShutdownStillRun() throws InterruptedException {
+        ExecutorService workerPool = Executors.newSingleThreadExecutor();
+        final SessionEventLoop loop = new SessionEventLoop("test", workerPool);
+        final List<Integer> ran = new ArrayList<>();
+
+        // more tasks than one turn of the loop, so the loop has to queue up again after the shutdown
+        for (int i = 0; i < 40; i++) {
+            final int task = i;
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (ran) {
+                        ran.add(task);
+                    }
+                }
+            });
+        }
+        workerPool.shutdown();
+        assertTrue(workerPool.awaitTermination(2, TimeUnit.SECONDS));
+
+        // e.g. the dispose of a session posted after the shutdown
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ran) {
+                    ran.add(-1);
+                }
+            }
+        });
+
+        synchronized (ran) {
+            assertEquals(41, ran.size());
+            for (int i = 0; i < 40; i++) {
+                assertEquals(Integer.valueOf(i), ran.get(i));
+            }
+            assertEquals(Arrays.asList(-1), ran.subList(40, 41));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.sdl.hellosdlandroid;
+
+import com.smartdevicelink.proxy.RPCRequest;
+import com.smartdevicelink.proxy.RPCResponse;
+import com.smartdevicelink.proxy.interfaces.IProxyListenerALM;
+import com.smartdevicelink.proxy.rpc.OnHMIStatus;
+import com.smartdevicelink.proxy.rpc.PutFile;
+import com.smartdevicelink.proxy.rpc.Show;
+import com.smartdevicelink.proxy.rpc.enums.FileType;
+import com.smartdevicelink.proxy.rpc.enums.HMILevel;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Profiles a session on a simulated transport: the requests go out through the profiler and the head
+// unit answers through the listener of the proxy wrapped by the profiler, like in the session. The CPU
+// clock advances by a fixed step per reading so the callback times are exact.
+public class SessionProfilerTest {
+    private static final long CPU_STEP_NS = 1000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private HeadUnitSimulator headUnit;
+    private SessionProfiler profiler;
+    private IProxyListenerALM listener;
+    private final List<RPCResponse> responses = new ArrayList<>();
+
+    // the session side of the transport
+    private final RequestSender session = new RequestSender() {
+        @Override
+        public int nextCorrelationID() {
+            return headUnit.nextCorrelationID();
+        }
+
+        @Override
+        public void sendRequest(RPCRequest request) {
+            if (request.getCorrelationID() == null) {
+                request.setCorrelationID(this.nextCorrelationID());
+            }
+            profiler.onMessageSent(request);
+            headUnit.sendRequest(request);
+        }
+
+        @Override
+        public void sendRequests(List<RPCRequest> requests, boolean sequential) {
+            for (RPCRequest request : requests) {
+                this.sendRequest(request);
+            }
+        }
+    };
+
+    @Before
+    public void setUp() {
+        this.headUnit = new HeadUnitSimulator();
+        this.profiler = new SessionProfiler("test", new SessionProfiler.CpuClock() {
+            private long cpuNs;
+
+            @Override
+            public long threadCpuTimeNs() {
+                this.cpuNs += CPU_STEP_NS;
+                return this.cpuNs;
+            }
+        });
+
+        this.headUnit.getRouter().addObserver(new ResponseRouter.Handler() {
+            @Override
+            public void onResponse(RPCResponse response) {
+                responses.add(response);
+            }
+        });
+        this.listener = this.profiler.wrapListener(IProxyListenerALM.class,
+                new RoutingProxyListener(this.headUnit.getRouter()));
+        this.headUnit.setListener(this.listener);
+    }
+
+    private static PutFile putFile(String name, int size) {
+        PutFile putFile = new PutFile();
+        putFile.setSdlFileName(name);
+        putFile.setFileType(FileType.GRAPHIC_PNG);
+        putFile.setPersistentFile(false);
+        putFile.setBulkData(new byte[size]);
+        return putFile;
+    }
+
+    @Test
+    public void rpcsAndCallbacksAreAccounted() {
+        for (int i = 0; i < 3; i++) {
+            Show show = new Show();
+            show.setMainField1("Track " + i);
+            this.session.sendRequest(show);
+        }
+        this.session.sendRequest(putFile("artwork", 5000));
+        assertEquals(4, this.headUnit.respond());
+
+        long bytesSent = 0;
+        for (RPCRequest request : this.headUnit.sent) {
+            bytesSent += SessionProfiler.transportSize(request);
+        }
+        long bytesReceived = 0;
+        for (RPCResponse response : this.responses) {
+            bytesReceived += SessionProfiler.transportSize(response);
+        }
+        assertEquals(4, this.responses.size());
+        assertEquals(bytesSent, this.profiler.getBytesSent());
+        assertTrue(this.profiler.getBytesSent() > 5000);
+        assertEquals(bytesReceived, this.profiler.getBytesReceived());
+        // one step of the clock per callback
+        assertEquals(4 * CPU_STEP_NS, this.profiler.getCallbackCpuNs());
+
+        OnHMIStatus status = new OnHMIStatus();
+        status.setHmiLevel(HMILevel.HMI_FULL);
+        this.listener.onOnHMIStatus(status);
+        assertEquals(5 * CPU_STEP_NS, this.profiler.getCallbackCpuNs());
+
+        String report = this.profiler.getReport();
+        assertTrue(report, report.contains("4 rpcs sent"));
+        assertTrue(report, report.contains("5 received"));
+        assertTrue(report, report.matches("(?s).*\n  onShowResponse +3 .*"));
+        assertTrue(report, report.matches("(?s).*\n  PutFile +1 +" + SessionProfiler.transportSize(this.headUnit.sent.get(3))
+                + " +0 +0.*"));
+        assertTrue(report, report.contains("OnHMIStatus (notification)"));
+    }
+
+    @Test
+    public void wakeupsAreCountedAndReportsAppended() throws IOException {
+        final int[] runs = new int[1];
+        Runnable tick = this.profiler.wrapWakeup("tick", new Runnable() {
+            @Override
+            public void run() {
+                runs[0]++;
+            }
+        });
+        tick.run();
+        tick.run();
+        this.profiler.onMediaStarted();
+        this.profiler.stop();
+
+        assertEquals(2, runs[0]);
+        assertEquals(2, this.profiler.getWakeups());
+        String report = this.profiler.getReport();
+        assertTrue(report, report.matches("(?s).*\n  tick +2 .*"));
+        assertTrue(report, report.contains("in 1 starts"));
+
+        // the reports of several sessions go to the same file
+        File file = new File(this.folder.getRoot(), "profiles/session.txt");
+        this.profiler.writeReport(file);
+        this.profiler.writeReport(file);
+        String written = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+        assertEquals(report + "\n\n" + report + "\n\n", written);
+    }
+}
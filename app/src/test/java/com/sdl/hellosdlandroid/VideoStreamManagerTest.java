@@ -0,0 +1,221 @@
+package com.sdl.hellosdlandroid;
+
+import android.view.Surface;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// Runs the projection pipeline with the software encoder against a simulated head unit which ACKs
+// the protocol frames of the received stream. The encoder thread runs on a simulated clock which
+// pauses it after a number of frames, so the tests wait for latches only.
+public class VideoStreamManagerTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int FRAME_RATE = 30;
+    private static final int FRAMES = 20;
+    private static final long WAIT_MS = 5000;
+
+    // ACKs the stream written by the encoder thread, either every protocol frame or once per write
+    private static class SimulatedHeadUnit implements VideoStreamManager.Transport {
+        final String name;
+        final boolean ackEveryProtocolFrame;
+        final CountDownLatch openAllowed;
+        final CountDownLatch opening = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final List<String> events;
+        VideoStreamManager manager;
+
+        SimulatedHeadUnit(String name, boolean ackEveryProtocolFrame, CountDownLatch openAllowed, List<String> events) {
+            this.name = name;
+            this.ackEveryProtocolFrame = ackEveryProtocolFrame;
+            this.openAllowed = openAllowed;
+            this.events = events;
+        }
+
+        SimulatedHeadUnit(boolean ackEveryProtocolFrame, CountDownLatch openAllowed) {
+            this("video", ackEveryProtocolFrame, openAllowed, Collections.synchronizedList(new ArrayList<String>()));
+        }
+
+        @Override
+        public OutputStream openVideoStream() {
+            this.opening.countDown();
+            try {
+                this.openAllowed.await();
+            } catch (InterruptedException e) {
+                // like the proxy, which doesn't react to the interrupt
+            }
+            this.events.add("open " + this.name);
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    this.write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] data, int offset, int length) throws IOException {
+                    int acks = ackEveryProtocolFrame
+                            ? (length + VideoStreamManager.PROTOCOL_FRAME_PAYLOAD - 1) / VideoStreamManager.PROTOCOL_FRAME_PAYLOAD
+                            : 1;
+                    for (int i = 0; i < acks; i++) {
+                        manager.onDataAck();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void closeVideoStream() {
+            this.events.add("close " + this.name);
+            this.closed.countDown();
+        }
+
+        void awaitClosed() throws InterruptedException {
+            assertTrue(this.name + " not closed", this.closed.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    // time passes only while the encoder thread sleeps until the next frame. after the given number of
+    // frames the thread stays asleep until it's interrupted by stop().
+    private static class SimulatedClock implements VideoStreamManager.Clock {
+        final int frames;
+        final CountDownLatch reached = new CountDownLatch(1);
+        final AtomicLong nowNs = new AtomicLong(1);
+        int sleeps;
+
+        SimulatedClock(int frames) {
+            this.frames = frames;
+        }
+
+        @Override
+        public long nanoTime() {
+            return this.nowNs.get();
+        }
+
+        @Override
+        public void sleep(long ns) throws InterruptedException {
+            this.nowNs.addAndGet(ns);
+            if (++this.sleeps == this.frames) {
+                this.reached.countDown();
+                new CountDownLatch(1).await();
+            }
+        }
+
+        void awaitFrames() throws InterruptedException {
+            assertTrue(this.frames + " frames not reached", this.reached.await(WAIT_MS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static class GrayRenderer implements VideoStreamRenderer {
+        @Override
+        public void onDrawFrame(Surface surface, int width, int height, long presentationTimeUs) {
+        }
+
+        @Override
+        public void onFillFrame(byte[] frame, int width, int height, long presentationTimeUs) {
+            for (int i = 0; i < frame.length; i++) {
+                frame[i] = (byte) 128;
+            }
+        }
+    }
+
+    private static VideoStreamManager createManager(SimulatedHeadUnit headUnit, SimulatedClock clock) {
+        VideoStreamManager manager = new VideoStreamManager(headUnit, new SoftwareVideoEncoder(), new GrayRenderer(),
+                WIDTH, HEIGHT, FRAME_RATE, 512 * 1024, clock);
+        headUnit.manager = manager;
+        return manager;
+    }
+
+    private static void stream(VideoStreamManager manager, SimulatedHeadUnit headUnit, SimulatedClock clock)
+            throws InterruptedException {
+        manager.start();
+        clock.awaitFrames();
+        manager.stop();
+        headUnit.awaitClosed();
+    }
+
+    @Test
+    public void acksOfEveryProtocolFrameKeepTheFrameRate() throws InterruptedException {
+        SimulatedHeadUnit headUnit = new SimulatedHeadUnit(true, new CountDownLatch(0));
+        SimulatedClock clock = new SimulatedClock(FRAMES);
+        VideoStreamManager manager = createManager(headUnit, clock);
+
+        stream(manager, headUnit, clock);
+
+        assertEquals(FRAMES, manager.getFramesEncoded());
+        assertEquals(0, manager.getFramesDropped());
+        assertEquals(FRAME_RATE, manager.getCurrentFrameRate());
+        // a frame of I_PCM macroblocks takes several protocol frames
+        assertTrue(manager.getProtocolFramesAcked() > manager.getFramesEncoded() * 2);
+        assertEquals(manager.getBytesWritten() * FRAME_RATE / FRAMES, manager.getBytesPerSecond(), 1);
+    }
+
+    @Test
+    public void oneAckPerEncodedFrameIsCongestion() throws InterruptedException {
+        SimulatedHeadUnit headUnit = new SimulatedHeadUnit(false, new CountDownLatch(0));
+        SimulatedClock clock = new SimulatedClock(FRAMES);
+        VideoStreamManager manager = createManager(headUnit, clock);
+
+        stream(manager, headUnit, clock);
+
+        assertTrue(manager.getFramesDropped() > 0);
+        assertEquals(FRAMES, manager.getFramesEncoded() + manager.getFramesDropped());
+        assertTrue(manager.getCurrentFrameRate() < FRAME_RATE);
+    }
+
+    @Test
+    public void acksWithoutOpenStreamAreIgnored() throws InterruptedException {
+        SimulatedHeadUnit headUnit = new SimulatedHeadUnit(true, new CountDownLatch(1));
+        VideoStreamManager manager = createManager(headUnit, new SimulatedClock(FRAMES));
+
+        // e.g. ACKs of another service before and while the video service is started
+        manager.onDataAck();
+        manager.start();
+        manager.onDataAck();
+        assertEquals(0, manager.getProtocolFramesAcked());
+
+        manager.stop();
+        headUnit.openAllowed.countDown();
+        headUnit.awaitClosed();
+        manager.onDataAck();
+        assertEquals(0, manager.getProtocolFramesAcked());
+    }
+
+    @Test
+    public void stopDoesNotWaitForTheEncoderThread() throws InterruptedException {
+        // the head unit doesn't answer the start of the video service
+        CountDownLatch openAllowed = new CountDownLatch(1);
+        List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        SimulatedHeadUnit firstHeadUnit = new SimulatedHeadUnit("first", true, openAllowed, events);
+        VideoStreamManager first = createManager(firstHeadUnit, new SimulatedClock(FRAMES));
+        first.start();
+        assertTrue(firstHeadUnit.opening.await(WAIT_MS, TimeUnit.MILLISECONDS));
+
+        long startNs = System.nanoTime();
+        first.stop();
+        long stopMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNs);
+        assertTrue("stop took " + stopMs + " ms", stopMs < 100);
+
+        // the next stream opens once the encoder thread of the first one exited
+        SimulatedHeadUnit secondHeadUnit = new SimulatedHeadUnit("second", true, openAllowed, events);
+        SimulatedClock clock = new SimulatedClock(3);
+        VideoStreamManager second = createManager(secondHeadUnit, clock);
+        second.start(first);
+        openAllowed.countDown();
+        stream(second, secondHeadUnit, clock);
+        firstHeadUnit.awaitClosed();
+
+        assertEquals(Arrays.asList("open first", "close first", "open second", "close second"), events);
+    }
+}